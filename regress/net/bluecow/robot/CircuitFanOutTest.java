@@ -0,0 +1,127 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.bluecow.robot;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.sim.RandomCircuits;
+
+/**
+ * Checks that the circuit's fan-out index agrees with the connections of
+ * its gates while the circuit is being edited.
+ */
+public class CircuitFanOutTest extends TestCase {
+
+    private Random rand;
+    private LevelConfig level;
+    private Robot robot;
+    
+    @Override
+    protected void setUp() throws Exception {
+        rand = new Random(1414);
+        level = new LevelConfig();
+        robot = RandomCircuits.makeRobot(level, rand, 4, 60);
+    }
+    
+    /**
+     * Compares every gate's fan-out with the inputs found by scanning all the
+     * gates in the circuit.
+     */
+    private void checkFanOut(Circuit c) {
+        for (Gate source : c.getGates()) {
+            Set<Gate.Input> expected = new HashSet<Gate.Input>();
+            for (Gate g : c.getGates()) {
+                for (Gate.Input in : g.getInputs()) {
+                    if (in.getConnectedGate() == source) expected.add(in);
+                }
+            }
+            List<Gate.Input> fanOut = c.getFanOut(source);
+            assertEquals("Fan-out of "+source, expected.size(), fanOut.size());
+            assertEquals("Fan-out of "+source, expected, new HashSet<Gate.Input>(fanOut));
+        }
+    }
+    
+    public void testNewCircuit() {
+        checkFanOut(robot.getCircuit());
+    }
+    
+    public void testCopiedCircuit() {
+        Robot copy = new Robot(robot, level);
+        checkFanOut(copy.getCircuit());
+        for (Gate sensor : copy.getCircuit().getOutputs()) {
+            for (Gate.Input in : copy.getCircuit().getFanOut(sensor)) {
+                assertSame(sensor, in.getConnectedGate());
+                assertTrue(copy.getCircuit().getGates().contains(in.getGate()));
+            }
+        }
+    }
+    
+    public void testRewiredAndRemovedGates() {
+        Circuit c = robot.getCircuit();
+        List<Gate> gates = new ArrayList<Gate>(c.getGates());
+        for (int i = 0; i < 40; i++) {
+            RandomCircuits.connectRandomly(gates.get(rand.nextInt(gates.size())), gates, rand);
+        }
+        checkFanOut(c);
+        
+        for (int i = 0; i < 20; i++) {
+            Gate doomed = RandomCircuits.gateAt(c, rand.nextInt(60));
+            if (doomed == null) continue;
+            c.remove(doomed);
+            assertTrue(c.getFanOut(doomed).isEmpty());
+            for (Gate g : c.getGates()) {
+                for (Gate.Input in : g.getInputs()) {
+                    assertNotSame(doomed, in.getConnectedGate());
+                }
+            }
+            checkFanOut(c);
+        }
+    }
+    
+    public void testRemoveAllGates() {
+        Circuit c = robot.getCircuit();
+        c.removeAllGates();
+        checkFanOut(c);
+        for (Gate g : c.getGates()) {
+            assertTrue(c.getFanOut(g).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.bluecow.robot;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.sim.RandomCircuits;
+
+/**
+ * Checks that the circuit's gate and wire hit tests find the same things as
+ * a linear scan over all the gates, while the circuit is being edited.
+ */
+public class CircuitGridTest extends TestCase {
+
+    private Random rand;
+    private Circuit circuit;
+    
+    @Override
+    protected void setUp() throws Exception {
+        rand = new Random(2718);
+        Robot robot = RandomCircuits.makeRobot(new LevelConfig(), rand, 4, 80);
+        circuit = robot.getCircuit();
+        for (Gate g : circuit.getGates()) {
+            g.setBounds(randomBounds());
+        }
+    }
+
+    private Rectangle randomBounds() {
+        return new Rectangle(rand.nextInt(900) - 300, rand.nextInt(700) - 200,
+                5 + rand.nextInt(80), 5 + rand.nextInt(80));
+    }
+    
+    /**
+     * The way Circuit.getGateAt() used to work.
+     */
+    private Gate scanForGate(Point p) {
+        for (Gate g : circuit.getGates()) {
+            if (g.getBounds().contains(p)) return g;
+        }
+        return null;
+    }
+    
+    /**
+     * The way Circuit.getWireAt() used to work.
+     */
+    private Gate.Input scanForWire(Point p) {
+        final int r = 4;
+        for (Gate g : circuit.getGates()) {
+            for (Gate.Input inp : g.getInputs()) {
+                if (inp.getConnectedGate() != null) {
+                    Point start = inp.getPosition();
+                    Point end = inp.getConnectedGate().getOutputPosition();
+                    Line2D wire = new Line2D.Float(start.x, start.y, end.x, end.y);
+                    if (wire.intersects(p.x-r, p.y-r, r*2, r*2)) return inp;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Compares the hit tests with the linear scans at random points, and at
+     * points on and just beside the wires.
+     */
+    private void compareHits() {
+        List<Point> points = new ArrayList<Point>();
+        for (int i = 0; i < 2000; i++) {
+            points.add(new Point(rand.nextInt(1100) - 350, rand.nextInt(900) - 250));
+        }
+        int wires = 0;
+        for (Gate g : circuit.getGates()) {
+            for (Gate.Input inp : g.getInputs()) {
+                if (inp.getConnectedGate() == null) continue;
+                wires++;
+                Point start = inp.getPosition();
+                Point end = inp.getConnectedGate().getOutputPosition();
+                double t = rand.nextDouble();
+                points.add(new Point(
+                        (int) (start.x + (end.x - start.x) * t) + rand.nextInt(13) - 6,
+                        (int) (start.y + (end.y - start.y) * t) + rand.nextInt(13) - 6));
+            }
+        }
+        int gateHits = 0;
+        int wireHits = 0;
+        for (Point p : points) {
+            Gate expectedGate = scanForGate(p);
+            assertSame("Wrong gate at "+p, expectedGate, circuit.getGateAt(p));
+            Gate.Input expectedWire = scanForWire(p);
+            assertSame("Wrong wire at "+p, expectedWire, circuit.getWireAt(p));
+            if (expectedGate != null) gateHits++;
+            if (expectedWire != null) wireHits++;
+        }
+        assertTrue(gateHits > 0);
+        assertTrue(wires == 0 || wireHits > 0);
+    }
+    
+    private List<Gate> removableGates() {
+        List<Gate> removable = new ArrayList<Gate>();
+        for (Gate g : circuit.getGates()) {
+            if (g != circuit.getInputsGate() && !circuit.getOutputs().contains(g)) {
+                removable.add(g);
+            }
+        }
+        return removable;
+    }
+    
+    public void testUnchangedCircuit() {
+        compareHits();
+    }
+    
+    public void testMovedGates() {
+        compareHits();
+        List<Gate> gates = new ArrayList<Gate>(circuit.getGates());
+        for (int i = 0; i < 30; i++) {
+            gates.get(rand.nextInt(gates.size())).setBounds(randomBounds());
+        }
+        compareHits();
+    }
+    
+    public void testRewiredGates() {
+        compareHits();
+        List<Gate> gates = new ArrayList<Gate>(circuit.getGates());
+        for (int i = 0; i < 30; i++) {
+            RandomCircuits.connectRandomly(gates.get(rand.nextInt(gates.size())), gates, rand);
+        }
+        compareHits();
+    }
+    
+    public void testAddedAndRemovedGates() {
+        compareHits();
+        List<Gate> removable = removableGates();
+        for (int i = 0; i < 20; i++) {
+            circuit.remove(removable.remove(rand.nextInt(removable.size())));
+        }
+        compareHits();
+        List<Gate> gates = new ArrayList<Gate>(circuit.getGates());
+        for (int i = 0; i < 20; i++) {
+            Gate g = RandomCircuits.makeGate(rand);
+            circuit.addGate(g, randomBounds());
+            RandomCircuits.connectRandomly(g, gates, rand);
+            gates.add(g);
+        }
+        compareHits();
+        circuit.removeAllGates();
+        compareHits();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.GameConfig.SensorConfig;
+import net.bluecow.robot.GameConfig.SquareConfig;
+import net.bluecow.robot.resource.SystemResourceLoader;
+import net.bluecow.robot.sprite.Sprite;
+
+/**
+ * Tests for the sensor bit indices and square sensor masks.
+ */
+public class GameConfigTest extends TestCase {
+
+    private GameConfig game;
+    private SensorConfig a;
+    private SensorConfig b;
+    private SensorConfig c;
+    private SquareConfig ac;
+    private SquareConfig bc;
+    
+    @Override
+    protected void setUp() throws Exception {
+        game = new GameConfig(new SystemResourceLoader());
+        a = new SensorConfig("a");
+        b = new SensorConfig("b");
+        c = new SensorConfig("c");
+        game.addSensorType(a);
+        game.addSensorType(b);
+        ac = new SquareConfig("AC", 'x', true, (Sprite) null, Arrays.asList(a, c));
+        bc = new SquareConfig("BC", 'y', true, (Sprite) null, Arrays.asList(b, c));
+        game.addSquareType(ac);
+        game.addSquareType(bc);
+        game.addSensorType(c);
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        game.close();
+    }
+    
+    public void testIndicesFollowAddOrder() {
+        assertEquals(0, a.getBitIndex());
+        assertEquals(1, b.getBitIndex());
+        assertEquals(2, c.getBitIndex());
+        assertFalse(new SensorConfig("loose").hasBitIndex());
+    }
+    
+    public void testMasksUpdatedWhenSensorAdded() {
+        assertEquals(0x5L, ac.getSensorMask());
+        assertEquals(0x6L, bc.getSensorMask());
+    }
+    
+    public void testMasksUpdatedWhenSensorRemoved() {
+        game.removeSensorType(a);
+        assertFalse(a.hasBitIndex());
+        assertEquals(0, b.getBitIndex());
+        assertEquals(1, c.getBitIndex());
+        assertEquals(0x2L, ac.getSensorMask());
+        assertEquals(0x3L, bc.getSensorMask());
+    }
+    
+    public void testSetSensorTypes() {
+        List<SensorConfig> sensors = new ArrayList<SensorConfig>();
+        sensors.add(b);
+        ac.setSensorTypes(sensors);
+        assertEquals(0x2L, ac.getSensorMask());
+    }
+    
+    public void testMaskAgreesWithHasSensorType() {
+        for (SquareConfig square : game.getSquareTypes()) {
+            for (SensorConfig sensor : game.getSensorTypes()) {
+                assertEquals(square.hasSensorType(sensor),
+                        (square.getSensorMask() & (1L << sensor.getBitIndex())) != 0);
+            }
+        }
+    }
+}
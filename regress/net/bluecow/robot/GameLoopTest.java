@@ -0,0 +1,258 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.awt.Composite;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.GameConfig.GateConfig;
+import net.bluecow.robot.GameConfig.SensorConfig;
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.fx.Effect;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NotGate;
+import net.bluecow.robot.sim.RandomCircuits;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Tests for the game loop.
+ */
+public class GameLoopTest extends TestCase {
+
+    private static final int SENSORS = 3;
+    
+    private Random rand;
+    private LevelConfig level;
+    private Robot robot;
+    private GameLoop loop;
+    
+    @Override
+    protected void setUp() throws Exception {
+        rand = new Random(4321);
+        List<SensorConfig> sensors = TestLevels.makeSensors(SENSORS);
+        level = TestLevels.makeLevel(rand, sensors, 12, 12);
+        robot = RandomCircuits.makeRobot(level, rand, SENSORS, 60);
+        robot.setStartPosition(new Point2D.Float(6.5f, 6.5f));
+        robot.resetState();
+        level.addRobot(robot);
+        loop = new GameLoop(Collections.singleton(robot), level, new NullRenderSink());
+    }
+    
+    /**
+     * A render sink that isn't a NullRenderSink, so the game loop does its
+     * display work, but that has no display.
+     */
+    private static class FrameCountingSink implements RenderSink {
+        int frameCount = NO_FRAME_COUNT;
+        int repaints;
+        int effects;
+        boolean turbo;
+        boolean effectInTurbo;
+        
+        public void setLevel(LevelConfig level) { }
+        public void addRobot(Robot robot, Composite drawComposite) { }
+        public void addEffect(Effect e) { effects++; effectInTurbo = turbo; }
+        public void setFrameCount(int c) { frameCount = c; }
+        public void setAsyncRepaint(boolean asyncRepaint) { }
+        public void playSound(String soundId) { }
+        public void setSimulationClock(SimulationClock clock) { }
+        public void repaint() { repaints++; }
+        public void setTurbo(boolean turbo) { this.turbo = turbo; }
+    }
+    
+    /**
+     * Returns the number of bytes allocated by this thread so far.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    private void checkNoAllocation() {
+        ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+            System.out.println("Thread allocation counters not available; skipping test");
+            return;
+        }
+        
+        // let every lazily-created or growable structure reach its steady state
+        for (int i = 0; i < 5000; i++) {
+            loop.singleStep();
+        }
+        
+        // the counter query itself might allocate
+        long overhead = -allocatedBytes() + allocatedBytes();
+        
+        // the JIT compiler can allocate a few hundred bytes on this thread
+        // now and then (deoptimization and recompilation), so measure several
+        // windows and only require one of them to be clean; a per-tick
+        // allocation would show up in all of them
+        long allocated = Long.MAX_VALUE;
+        for (int window = 0; window < 10 && allocated > 0; window++) {
+            long before = allocatedBytes();
+            for (int i = 0; i < 1000; i++) {
+                loop.singleStep();
+            }
+            allocated = Math.min(allocated, allocatedBytes() - before - overhead);
+        }
+        
+        assertEquals("Bytes allocated by 1000 calls to singleStep()", 0, allocated);
+        assertFalse(loop.isGoalReached());
+    }
+    
+    public void testSingleStepDoesNotAllocate() {
+        checkNoAllocation();
+    }
+    
+    public void testSingleStepDoesNotAllocateCompiled() {
+        robot.getCircuit().setEvaluationMode(Circuit.EvaluationMode.COMPILED);
+        checkNoAllocation();
+    }
+
+    public void testSingleStepDoesNotAllocateEventDriven() {
+        robot.getCircuit().setEvaluationMode(Circuit.EvaluationMode.EVENT_DRIVEN);
+        checkNoAllocation();
+    }
+    
+    /**
+     * The GUI game loop tells the display the frame count and has a timeline
+     * listening to it, and neither should allocate anything per tick once the
+     * loop count is past the range of cached Integers.
+     */
+    public void testSingleStepDoesNotAllocateWithDisplayAndTimeline() {
+        FrameCountingSink sink = new FrameCountingSink();
+        loop = new GameLoop(Collections.singleton(robot), level, sink);
+        new Timeline(loop, Timeline.DEFAULT_MAX_BYTES);
+        checkNoAllocation();
+        assertEquals(loop.getLoopCount(), sink.frameCount);
+        assertTrue(sink.repaints > 0);
+    }
+    
+    /**
+     * Makes a level with lots of random robots and switches whose actions
+     * and scripts change things the other robots see. The same seed always
+     * makes the same level.
+     */
+    private static GameLoop makeSwarm(long seed) {
+        Random rand = new Random(seed);
+        List<SensorConfig> sensors = TestLevels.makeSensors(SENSORS);
+        LevelConfig level = TestLevels.makeLevel(rand, sensors, 16, 16);
+        for (int i = 0; i < 60; i++) {
+            Robot r = RandomCircuits.makeRobot(level, rand, SENSORS, 30);
+            r.setId("robot" + i);
+            r.setStartPosition(new Point2D.Float(1.5f + rand.nextInt(14), 1.5f + rand.nextInt(14)));
+            r.resetState();
+            level.addRobot(r);
+        }
+        for (int i = 0; i < 12; i++) {
+            Point p = new Point(1 + rand.nextInt(14), 1 + rand.nextInt(14));
+            Switch sw;
+            if (i % 3 == 0) {
+                // moves another robot and turns the map under it into a wall
+                sw = new Switch(p, "switch" + i, null, null,
+                        "level.score++; r = level.getRobots().get(level.score % 60);" +
+                        "r.setX(8.5); r.setY(8.5); level.setSquare(" + p.x + ", " + (p.y % 14 + 1) + ", level.getSquare(0, 0));");
+            } else {
+                sw = new Switch(p, "switch" + i, null, null, null);
+                sw.addOnEnterAction(new SwitchAction.AddScore(i));
+                sw.addOnEnterAction(new SwitchAction.Teleport(1.5f + rand.nextInt(14), 1.5f + rand.nextInt(14)));
+            }
+            level.addSwitch(sw);
+        }
+        return new GameLoop(level.getRobots(), level, new NullRenderSink());
+    }
+    
+    public void testParallelMatchesSequential() {
+        GameLoop sequential = makeSwarm(99);
+        GameLoop parallel = makeSwarm(99);
+        parallel.setParallelism(4);
+        List<Robot> sr = sequential.getRobots();
+        List<Robot> pr = parallel.getRobots();
+        LevelConfig sl = sr.get(0).getLevel();
+        LevelConfig pl = pr.get(0).getLevel();
+        for (int tick = 0; tick < 400; tick++) {
+            sequential.singleStep();
+            parallel.singleStep();
+            for (int i = 0; i < sr.size(); i++) {
+                assertEquals("x of robot " + i + " at tick " + tick, sr.get(i).getX(), pr.get(i).getX());
+                assertEquals("y of robot " + i + " at tick " + tick, sr.get(i).getY(), pr.get(i).getY());
+                assertEquals(sr.get(i).getSensorBits(), pr.get(i).getSensorBits());
+            }
+            assertEquals("score at tick " + tick, sl.getScore(), pl.getScore());
+        }
+        assertTrue("the switches should have done something", sl.getScore() > 0);
+    }
+    
+    /**
+     * Scripts must see the real render sink in turbo mode, so anything they
+     * can do at normal speed they can do in turbo mode too. The sink itself
+     * decides to drop the effects.
+     */
+    public void testScriptsSeeRealSinkInTurbo() throws Exception {
+        List<SensorConfig> sensors = TestLevels.makeSensors(4);
+        LevelConfig level = TestLevels.makeLevel(new Random(1), sensors, 10, 5);
+        List<GateConfig> gateConfigs = Collections.emptyList();
+        Robot robot = new Robot("robot", "Robot", level, sensors, gateConfigs,
+                null, new Point2D.Float(1.5f, 2.5f), 0.1f, null, 1);
+        robot.getCircuit().addGateAllowance(NotGate.class, -1);
+        Gate not = new NotGate();
+        robot.getCircuit().addGate(not, new Rectangle(50, 50, 20, 20));
+        robot.getCircuit().getInputsGate().getInputs()[3].connect(not);
+        level.addRobot(robot);
+        level.addSwitch(new Switch(new Point(3, 2), "fx", null, null,
+                "playfield.addEffect(null); robot.setGoalReached(true);"));
+        
+        FrameCountingSink sink = new FrameCountingSink();
+        final GameLoop loop = new GameLoop(Collections.singleton(robot), level, sink);
+        loop.setUnthrottled(true);
+        Thread t = new Thread(loop);
+        t.start();
+        t.join(10000);
+        loop.setStopRequested(true);
+        t.join();
+        
+        assertTrue(loop.isGoalReached());
+        assertEquals(1, sink.effects);
+        assertTrue(sink.effectInTurbo);
+        assertFalse("turbo should be off once the loop stops", sink.turbo);
+    }
+}
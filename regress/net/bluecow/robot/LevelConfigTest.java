@@ -0,0 +1,298 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.awt.Point;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.GameConfig.SensorConfig;
+import net.bluecow.robot.GameConfig.SquareConfig;
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.sprite.Sprite;
+import bsh.EvalError;
+import bsh.Interpreter;
+
+/**
+ * Tests for finding switches by map position, and for the map itself.
+ */
+public class LevelConfigTest extends TestCase {
+
+    private LevelConfig level;
+    private Random rand;
+    
+    @Override
+    protected void setUp() throws Exception {
+        rand = new Random(12);
+        level = new LevelConfig();
+        level.setSize(40, 30);
+        for (int i = 0; i < 300; i++) {
+            level.addSwitch(new Switch(new Point(rand.nextInt(40), rand.nextInt(30)),
+                    "sw"+i, null, null, null));
+        }
+    }
+    
+    /**
+     * Finds the switch the slow way.
+     */
+    private static Switch scan(LevelConfig level, int x, int y) {
+        for (Switch s : level.getSwitches()) {
+            if (s.getX() == x && s.getY() == y) return s;
+        }
+        return null;
+    }
+    
+    private void checkAllCells(LevelConfig level) {
+        for (int x = -1; x <= 40; x++) {
+            for (int y = -1; y <= 30; y++) {
+                assertSame("at ("+x+","+y+")", scan(level, x, y), level.getSwitch(x, y));
+            }
+        }
+    }
+    
+    public void testLookup() {
+        checkAllCells(level);
+    }
+    
+    public void testMovingAndRemoving() {
+        checkAllCells(level);
+        for (int i = 0; i < 100; i++) {
+            Switch s = level.getSwitches().get(rand.nextInt(level.getSwitches().size()));
+            switch (i % 4) {
+            case 0: s.setX(rand.nextInt(40)); break;
+            case 1: s.setY(rand.nextInt(30)); break;
+            case 2: s.setPosition(rand.nextInt(40), rand.nextInt(30)); break;
+            case 3: level.removeSwitch(s); break;
+            }
+            int x = rand.nextInt(40);
+            int y = rand.nextInt(30);
+            assertSame(scan(level, x, y), level.getSwitch(x, y));
+        }
+        checkAllCells(level);
+    }
+    
+    public void testSharedWithSnapshot() {
+        level.snapshotState();
+        level.resetState();
+        checkAllCells(level);
+        
+        // moving a switch shared with the snapshot has to update both
+        Switch s = level.getSwitches().get(0);
+        s.setPosition(39, 29);
+        checkAllCells(level);
+        level.resetState();
+        checkAllCells(level);
+    }
+    
+    public void testMovedWhileSnapshotted() {
+        level.snapshotState();
+        checkAllCells(level);
+        
+        // the switches now belong to the snapshot, but they're still ours too
+        level.getSwitches().get(0).setPosition(39, 29);
+        level.getSwitches().get(1).setX(0);
+        checkAllCells(level);
+    }
+    
+    /**
+     * Changes to switches in other levels must not throw away this level's
+     * index, since batch runs copy levels all the time.
+     */
+    public void testOtherLevelsKeepTheirIndex() throws Exception {
+        Field indexField = LevelConfig.class.getDeclaredField("switchIndex");
+        indexField.setAccessible(true);
+        level.getSwitch(0, 0);
+        Object index = indexField.get(level);
+        
+        LevelConfig copy = new LevelConfig(level);
+        copy.getSwitches().get(0).setPosition(1, 1);
+        copy.getSwitches().get(1).copyFrom(copy.getSwitches().get(2));
+        new Switch(level.getSwitches().get(3)).setX(5);
+        
+        level.getSwitch(0, 0);
+        assertSame(index, indexField.get(level));
+        checkAllCells(copy);
+    }
+    
+    public void testCopy() {
+        LevelConfig copy = new LevelConfig(level);
+        checkAllCells(copy);
+        copy.getSwitches().get(5).setPosition(0, 0);
+        checkAllCells(copy);
+        checkAllCells(level);
+    }
+    
+    private static Square[] makeSquares(int count) {
+        Square[] squares = new Square[count];
+        for (int i = 0; i < count; i++) {
+            squares[i] = new SquareConfig("sq"+i, (char) ('a' + i), true, (Sprite) null,
+                    Collections.<SensorConfig>emptyList());
+        }
+        return squares;
+    }
+    
+    public void testMapSquares() {
+        Square[] squares = makeSquares(5);
+        Square[][] expected = new Square[40][30];
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 30; y++) {
+                assertNull(level.getSquare(x, y));
+                expected[x][y] = squares[rand.nextInt(squares.length)];
+                level.setSquare(x, y, expected[x][y]);
+            }
+        }
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 30; y++) {
+                assertSame(expected[x][y], level.getSquare(x, y));
+            }
+        }
+        Square[][] map = level.getMap();
+        assertEquals(40, map.length);
+        assertEquals(30, map[0].length);
+        assertSame(expected[39][29], map[39][29]);
+        
+        LevelConfig other = new LevelConfig();
+        other.setMap(expected);
+        assertEquals(40, other.getWidth());
+        assertEquals(30, other.getHeight());
+        assertSame(expected[12][7], other.getSquare(12, 7));
+    }
+    
+    public void testMapOutOfBounds() {
+        try {
+            level.getSquare(40, 0);
+            fail("Got square off the right edge");
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            // expected
+        }
+        try {
+            level.setSquare(0, -1, null);
+            fail("Set square off the top edge");
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            // expected
+        }
+    }
+    
+    public void testResizeKeepsOverlap() {
+        Square[] squares = makeSquares(2);
+        level.setSquare(3, 4, squares[0]);
+        level.setSquare(39, 4, squares[1]);
+        level.setSize(20, 50);
+        assertEquals(20, level.getWidth());
+        assertEquals(50, level.getHeight());
+        assertSame(squares[0], level.getSquare(3, 4));
+        assertNull(level.getSquare(19, 4));
+        assertNull(level.getSquare(3, 49));
+    }
+    
+    public void testMapCopiesAreIndependent() {
+        Square[] squares = makeSquares(3);
+        level.setSquare(1, 1, squares[0]);
+        LevelConfig copy = new LevelConfig(level);
+        copy.setSquare(1, 1, squares[1]);
+        copy.setSquare(2, 2, squares[2]);
+        assertSame(squares[0], level.getSquare(1, 1));
+        assertNull(level.getSquare(2, 2));
+        
+        level.snapshotState();
+        level.setSquare(1, 1, squares[2]);
+        level.resetState();
+        assertSame(squares[0], level.getSquare(1, 1));
+    }
+    
+    public void testSwitchScripts() throws Exception {
+        Switch s = level.getSwitches().get(0);
+        s.setOnEnter("level.score += 10; hits = 1;");
+        s.onEnter(null, null);
+        s.onEnter(null, null);
+        assertEquals(20, level.getScore());
+        
+        s.setOnEnter("level.score = robot == null ? -1 : 1;");
+        s.onEnter(null, null);
+        assertEquals(-1, level.getScore());
+        
+        // the copy gets its own interpreter, so the script has to follow it
+        LevelConfig copy = new LevelConfig(level);
+        copy.getSwitches().get(0).onEnter(null, null);
+        assertEquals(-1, copy.getScore());
+        copy.setScore(5);
+        assertEquals(-1, level.getScore());
+    }
+    
+    public void testSwitchScriptVariablesKeptBetweenRuns() throws Exception {
+        Switch s = level.getSwitches().get(0);
+        s.setOnEnter("if (count == void) count = 0; count++; level.score = count;");
+        s.onEnter(null, null);
+        s.onEnter(null, null);
+        assertEquals(2, level.getScore());
+        assertEquals(2, level.getBshInterpreter().get("count"));
+        
+        // robot and playfield are only set while a script runs
+        assertNull(level.getBshInterpreter().get("robot"));
+        assertNull(level.getBshInterpreter().get("playfield"));
+    }
+    
+    public void testSwitchScriptErrorThrownWhenRun() throws Exception {
+        Switch s = level.getSwitches().get(0);
+        s.setOnEnter("this is not ( valid");
+        try {
+            s.onEnter(null, null);
+            fail("Broken script ran");
+        } catch (EvalError ex) {
+            // expected
+        }
+    }
+    
+    public void testResetReusesInterpreter() throws Exception {
+        Switch s = level.getSwitches().get(0);
+        s.setOnEnter("level.score += 10;");
+        Interpreter interpreter = level.getBshInterpreter();
+        level.snapshotState();
+        level.resetState();
+        level.getBshInterpreter().eval("leftover = 1;");
+        s.onEnter(null, null);
+        assertEquals(10, level.getScore());
+        
+        level.resetState();
+        assertSame(interpreter, level.getBshInterpreter());
+        assertNull(interpreter.get("leftover"));
+        assertSame(level, interpreter.get("level"));
+        assertSame(s, interpreter.get(s.getId()));
+        assertEquals(0, level.getScore());
+        s.onEnter(null, null);
+        assertEquals(10, level.getScore());
+    }
+}
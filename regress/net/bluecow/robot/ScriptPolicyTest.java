@@ -0,0 +1,259 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.io.File;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.resource.CompoundResourceLoader;
+import net.bluecow.robot.resource.PrefixResourceLoader;
+import net.bluecow.robot.resource.ResourceLoader;
+import net.bluecow.robot.resource.SystemResourceLoader;
+import bsh.Interpreter;
+
+/**
+ * Tests for running switch scripts under a level's script policy.
+ */
+public class ScriptPolicyTest extends TestCase {
+
+    private GameConfig game;
+    private LevelConfig level;
+    private Switch cake;
+    private Robot robot;
+    
+    @Override
+    protected void setUp() throws Exception {
+        ResourceLoader builtin = new CompoundResourceLoader(
+                new PrefixResourceLoader(new SystemResourceLoader(), "default/"),
+                new PrefixResourceLoader(new SystemResourceLoader(), "builtin/"));
+        game = LevelStore.loadLevels(builtin);
+        level = game.getLevels().get(0);
+        
+        // loading leaves the switches attached to the snapshot
+        level.resetState();
+        cake = level.getSwitches().get(0);
+        robot = level.getRobots().get(0);
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        game.close();
+    }
+    
+    public void testCheckIgnoresCommentsAndStrings() throws Exception {
+        ScriptPolicy.DEFAULT.check("// System.exit(0);\n level.score = \"Runtime\".length();");
+        try {
+            ScriptPolicy.DEFAULT.check("System.exit(0);");
+            fail("System should have been denied");
+        } catch (ScriptPolicyException ex) {
+            // expected
+        }
+    }
+    
+    public void testDeniedNameFailsWhenTriggered() throws Exception {
+        cake.setOnEnter("java.lang.System.exit(0);");
+        try {
+            cake.onEnter(robot, null);
+            fail("script should have been rejected");
+        } catch (ScriptPolicyException ex) {
+            // expected
+        }
+        
+        level.setScriptPolicy(ScriptPolicy.UNRESTRICTED);
+        cake.setOnEnter("level.score = 3;");
+        cake.onEnter(robot, null);
+        assertEquals(3, level.getScore());
+    }
+    
+    public void testNoScriptsStillRunsActions() throws Exception {
+        level.setScriptPolicy(ScriptPolicy.NO_SCRIPTS);
+        cake.setOnEnter("level.score = 3;");
+        cake.addOnEnterAction(new SwitchAction.AddScore(5));
+        try {
+            cake.onEnter(robot, null);
+            fail("script should have been rejected");
+        } catch (ScriptPolicyException ex) {
+            // expected
+        }
+        assertEquals(5, level.getScore());
+    }
+    
+    public void testRunawayScriptIsStopped() throws Exception {
+        level.setScriptPolicy(ScriptPolicy.DEFAULT.withTimeLimit(200));
+        cake.setOnEnter("while (true) { }");
+        long start = System.currentTimeMillis();
+        try {
+            cake.onEnter(robot, null);
+            fail("script should have timed out");
+        } catch (ScriptTimeoutException ex) {
+            assertTrue(ex.isStopped());
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        
+        // the next script gets a fresh worker
+        cake.setOnEnter("level.score = 4;");
+        cake.onEnter(robot, null);
+        assertEquals(4, level.getScore());
+    }
+    
+    /**
+     * On JVMs without Thread.stop(), a runaway script keeps running, so the
+     * level has to stop using the interpreter it's running in.
+     */
+    public void testUnstoppableScriptAbandonsInterpreter() throws Exception {
+        level.setScriptPolicy(ScriptPolicy.DEFAULT.withTimeLimit(200));
+        cake.setOnEnter("while (level.score != 99) { }");
+        Interpreter old = level.getBshInterpreter();
+        ScriptRunner.stopAllowed = false;
+        try {
+            try {
+                cake.onEnter(robot, null);
+                fail("script should have timed out");
+            } catch (ScriptTimeoutException ex) {
+                assertFalse(ex.isStopped());
+            }
+            assertNotSame(old, level.getBshInterpreter());
+            
+            // resetting the level must leave the runaway script's interpreter alone
+            level.resetState();
+            assertNotSame(old, level.getBshInterpreter());
+            assertSame(level, old.get("level"));
+            
+            // the new interpreter has the level's scripting objects
+            cake.setOnEnter("level.score = ("+robot.getId()+" == robot) ? 4 : 5;");
+            cake.onEnter(robot, null);
+            assertEquals(4, level.getScore());
+        } finally {
+            ScriptRunner.stopAllowed = true;
+            level.setScore(99);
+        }
+    }
+    
+    public void testPlayfieldHiddenByPolicy() throws Exception {
+        cake.setOnEnter("level.score = (playfield == null) ? 1 : 2;");
+        cake.onEnter(robot, new NullRenderSink());
+        assertEquals(2, level.getScore());
+        
+        level.setScriptPolicy(new ScriptPolicy(true, 0, false, ScriptPolicy.DEFAULT_DENIED_NAMES));
+        cake.onEnter(robot, new NullRenderSink());
+        assertEquals(1, level.getScore());
+    }
+    
+    /**
+     * java.io is one of BeanShell's default imports, so this script doesn't
+     * need any denied names to write a file.
+     */
+    public void testDefaultImportsHidden() throws Exception {
+        File f = File.createTempFile("policy", ".txt");
+        f.delete();
+        String script = "w = new PrintWriter(\"" + f.getPath().replace("\\", "/") + "\"); w.println(\"hi\"); w.close();";
+        ScriptPolicy.DEFAULT.check(script);
+        cake.setOnEnter(script);
+        try {
+            cake.onEnter(robot, null);
+            fail("PrintWriter should not have been found");
+        } catch (bsh.EvalError ex) {
+            // expected
+        } finally {
+            assertFalse("the script wrote a file", f.exists());
+            f.delete();
+        }
+    }
+    
+    public void testInterpreterNamesDenied() throws Exception {
+        String[] scripts = {
+                "level.getBshInterpreter().getNameSpace();",
+                "level.score = 1; c = robot.getLevel().getClassManager();",
+                "robot.getLevel().setScriptPolicy(null);",
+                "this.callstack.top();",
+        };
+        for (String script : scripts) {
+            try {
+                ScriptPolicy.DEFAULT.check(script);
+                fail("Should have been denied: " + script);
+            } catch (ScriptPolicyException ex) {
+                // expected
+            }
+        }
+    }
+    
+    public void testQualifiedClassesHidden() throws Exception {
+        level.setScriptPolicy(new ScriptPolicy(true, 0, true, Collections.singleton("System")));
+        String[] scripts = {
+                "f = new java.io.File(\"x\");",
+                "if (level != null) { f = new java.io.File(\"x\"); }",
+                "import java.io.*; f = new File(\"x\");",
+                "r = org.xml.sax.helpers.XMLReaderFactory.createXMLReader();",
+                "l = new ArrayList();",
+                "dir();",
+        };
+        for (String script : scripts) {
+            cake.setOnEnter(script);
+            try {
+                cake.onEnter(robot, null);
+                fail("Should have failed: " + script);
+            } catch (bsh.EvalError ex) {
+                // expected
+            }
+        }
+    }
+    
+    public void testAllowedClassesStillWork() throws Exception {
+        cake.setOnEnter("level.score = Math.max(3, 7) + Integer.parseInt(\"10\");");
+        cake.onEnter(robot, null);
+        assertEquals(17, level.getScore());
+        
+        cake.setOnEnter("level.score = (playfield instanceof net.bluecow.robot.fx.Effect) ? 1 : 2;");
+        cake.onEnter(robot, new NullRenderSink());
+        assertEquals(2, level.getScore());
+    }
+    
+    public void testUnrestrictedKeepsDefaultImports() throws Exception {
+        level.setScriptPolicy(ScriptPolicy.UNRESTRICTED);
+        cake.setOnEnter("l = new ArrayList(); l.add(\"x\"); level.score = l.size();");
+        cake.onEnter(robot, null);
+        assertEquals(1, level.getScore());
+        
+        // and the restriction comes back with the policy
+        level.setScriptPolicy(ScriptPolicy.DEFAULT);
+        try {
+            cake.onEnter(robot, null);
+            fail("ArrayList should be hidden again");
+        } catch (bsh.EvalError ex) {
+            // expected
+        }
+    }
+}
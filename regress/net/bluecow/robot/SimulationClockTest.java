@@ -0,0 +1,88 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the fixed-rate simulation clock.
+ */
+public class SimulationClockTest extends TestCase {
+
+    public void testFirstTickIsDueImmediately() {
+        SimulationClock clock = new SimulationClock(1000);
+        clock.start();
+        assertEquals(1, clock.ticksDue());
+        clock.tickDone();
+        assertEquals(0, clock.ticksDue());
+        assertTrue(clock.nanosUntilNextTick() > 0);
+    }
+    
+    public void testCatchUpIsCapped() throws Exception {
+        SimulationClock clock = new SimulationClock(1);
+        clock.start();
+        Thread.sleep(SimulationClock.MAX_CATCH_UP * 5);
+        assertEquals(SimulationClock.MAX_CATCH_UP, clock.ticksDue());
+        for (int i = 0; i < SimulationClock.MAX_CATCH_UP; i++) {
+            clock.tickDone();
+        }
+        
+        // the dropped ticks should not still be owing
+        assertTrue(clock.ticksDue() < SimulationClock.MAX_CATCH_UP);
+    }
+    
+    public void testDeadlinesDontDrift() {
+        SimulationClock clock = new SimulationClock(50);
+        clock.start();
+        clock.ticksDue();
+        clock.tickDone();
+        long wait = clock.nanosUntilNextTick();
+        assertTrue(wait <= clock.getTickNanos());
+        assertTrue(wait > 0);
+    }
+    
+    public void testTickProgress() throws Exception {
+        SimulationClock clock = new SimulationClock(10000);
+        clock.start();
+        clock.tickDone();
+        float p = clock.getTickProgress();
+        assertTrue(p >= 0f && p < 0.5f);
+        
+        clock = new SimulationClock(1);
+        clock.start();
+        clock.tickDone();
+        Thread.sleep(5);
+        assertEquals(1f, clock.getTickProgress());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.resource.AbstractResourceLoader;
+import net.bluecow.robot.resource.CompoundResourceLoader;
+import net.bluecow.robot.resource.PrefixResourceLoader;
+import net.bluecow.robot.resource.ResourceLoader;
+import net.bluecow.robot.resource.SystemResourceLoader;
+
+/**
+ * Tests for the built-in switch actions, and saving and loading them.
+ */
+public class SwitchActionTest extends TestCase {
+
+    private ResourceLoader builtin;
+    private GameConfig game;
+    private LevelConfig level;
+    private Switch cake;
+    private Robot robot;
+    
+    @Override
+    protected void setUp() throws Exception {
+        builtin = new CompoundResourceLoader(
+                new PrefixResourceLoader(new SystemResourceLoader(), "default/"),
+                new PrefixResourceLoader(new SystemResourceLoader(), "builtin/"));
+        game = LevelStore.loadLevels(builtin);
+        level = game.getLevels().get(0);
+        
+        // loading leaves the switches attached to the snapshot
+        level.resetState();
+        cake = level.getSwitches().get(0);
+        robot = level.getRobots().get(0);
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        game.close();
+    }
+    
+    public void testActionsRunWithoutScript() throws Exception {
+        cake.setOnEnter(null);
+        cake.addOnEnterAction(new SwitchAction.GoalReached());
+        cake.addOnEnterAction(new SwitchAction.AddScore(200));
+        cake.addOnEnterAction(new SwitchAction.Teleport(2.5f, 3.5f));
+        cake.addOnEnterAction(new SwitchAction.SetSwitchEnabled(cake.getId(), null));
+        cake.onEnter(robot, null);
+        
+        assertTrue(robot.isGoalReached());
+        assertEquals(200, level.getScore());
+        assertEquals(2.5, robot.getPosition().getX());
+        assertEquals(3.5, robot.getPosition().getY());
+        assertFalse(cake.isEnabled());
+        
+        // disabled switches don't run their actions
+        cake.onEnter(robot, null);
+        assertEquals(200, level.getScore());
+    }
+    
+    public void testActionsRunBeforeScript() throws Exception {
+        cake.setOnEnter("level.score *= 2;");
+        cake.addOnEnterAction(new SwitchAction.AddScore(5));
+        cake.onEnter(robot, null);
+        assertEquals(10, level.getScore());
+    }
+    
+    /**
+     * Scripts teleport robots by setting their coordinates, and that has to
+     * look like a jump, not a slide across the map.
+     */
+    public void testScriptTeleportDoesNotInterpolate() throws Exception {
+        robot.setPosition(1.5, 1.5);
+        robot.move();
+        cake.setOnEnter("robot.x = 7.5; robot.y = 6.5;");
+        cake.onEnter(robot, null);
+        
+        assertEquals(7.5, robot.getInterpolatedPosition(0.0f).getX());
+        assertEquals(6.5, robot.getInterpolatedPosition(0.0f).getY());
+        assertEquals(7.5, robot.getInterpolatedPosition(0.5f).getX());
+        assertEquals(6.5, robot.getInterpolatedPosition(0.5f).getY());
+    }
+    
+    /**
+     * Level scripts have always been able to read and write the map through
+     * the "map" variable.
+     */
+    public void testScriptsCanUseMapVariable() throws Exception {
+        Square wall = level.getSquare(0, 0);
+        Square other = null;
+        for (int x = 0; other == null && x < level.getWidth(); x++) {
+            for (int y = 0; other == null && y < level.getHeight(); y++) {
+                if (level.getSquare(x, y) != wall) other = level.getSquare(x, y);
+            }
+        }
+        assertNotNull(other);
+        level.setSquare(2, 3, other);
+        
+        cake.setOnEnter("map[2][3] = map[0][0]; level.score = map.length * 1000 + map[0].length;");
+        cake.onEnter(robot, null);
+        assertSame(wall, level.getSquare(2, 3));
+        assertEquals(level.getWidth() * 1000 + level.getHeight(), level.getScore());
+        
+        // a script that doesn't mention it sees the map as it is now
+        level.setSquare(2, 3, other);
+        cake.setOnEnter("level.score = 1;");
+        cake.onEnter(robot, null);
+        assertSame(other, level.getSquare(2, 3));
+    }
+    
+    public void testSaveAndLoad() throws Exception {
+        cake.setOnEnter(null);
+        cake.addOnEnterAction(new SwitchAction.AddScore(-3));
+        cake.addOnEnterAction(new SwitchAction.SetSwitchEnabled("other", Boolean.TRUE));
+        cake.addOnExitAction(new SwitchAction.PlaySound("boing"));
+        cake.addOnExitAction(new SwitchAction.Teleport(1.5f, 1.5f));
+        
+        StringWriter out = new StringWriter();
+        LevelStore.save(out, game, "utf-8");
+        final byte[] saved = out.toString().getBytes("utf-8");
+        ResourceLoader loader = new CompoundResourceLoader(new AbstractResourceLoader() {
+            public InputStream getResourceAsStream(String resourceName) throws IOException {
+                if (resourceName.equals("saved.map")) return new ByteArrayInputStream(saved);
+                throw new FileNotFoundException(resourceName);
+            }
+        }, builtin);
+        GameConfig reloaded = LevelStore.loadLevels(loader, "saved.map");
+        try {
+            Switch s = reloaded.getLevels().get(0).getSwitches().get(0);
+            assertNull(s.getOnEnter());
+            List<SwitchAction> enter = s.getOnEnterActions();
+            assertEquals(2, enter.size());
+            assertEquals(-3, ((SwitchAction.AddScore) enter.get(0)).getPoints());
+            assertEquals("other", ((SwitchAction.SetSwitchEnabled) enter.get(1)).getSwitchId());
+            assertEquals(Boolean.TRUE, ((SwitchAction.SetSwitchEnabled) enter.get(1)).getEnabled());
+            List<SwitchAction> exit = s.getOnExitActions();
+            assertEquals(2, exit.size());
+            assertEquals("boing", ((SwitchAction.PlaySound) exit.get(0)).getSoundId());
+            assertEquals(1.5f, ((SwitchAction.Teleport) exit.get(1)).getY());
+        } finally {
+            reloaded.close();
+        }
+    }
+    
+    public void testCopiesKeepActions() throws Exception {
+        cake.addOnEnterAction(new SwitchAction.AddScore(1));
+        LevelConfig copy = new LevelConfig(level);
+        assertEquals(1, copy.getSwitches().get(0).getOnEnterActions().size());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.bluecow.robot.GameConfig.SensorConfig;
+import net.bluecow.robot.GameConfig.SquareConfig;
+import net.bluecow.robot.sprite.Sprite;
+
+/**
+ * Builds small levels for the game loop tests without going through
+ * the level store.
+ */
+public class TestLevels {
+
+    /**
+     * This class is just a container for static methods.
+     */
+    private TestLevels() {
+    }
+    
+    /**
+     * Creates the given number of sensor types, named "sensor0", "sensor1", and so on.
+     */
+    public static List<SensorConfig> makeSensors(int count) {
+        List<SensorConfig> sensors = new ArrayList<SensorConfig>();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new SensorConfig("sensor" + i));
+        }
+        return sensors;
+    }
+    
+    /**
+     * Creates a level of the given size which is surrounded by walls and
+     * filled with squares that activate random combinations of the given
+     * sensors.
+     */
+    public static LevelConfig makeLevel(Random rand, List<SensorConfig> sensors, int width, int height) {
+        LevelConfig level = new LevelConfig();
+        level.setName("Test Level");
+        List<SensorConfig> none = Collections.emptyList();
+        Square wall = new SquareConfig("WALL", 'X', false, (Sprite) null, none);
+        Square[] floors = new Square[1 << sensors.size()];
+        for (int i = 0; i < floors.length; i++) {
+            List<SensorConfig> active = new ArrayList<SensorConfig>();
+            for (int j = 0; j < sensors.size(); j++) {
+                if ((i & (1 << j)) != 0) active.add(sensors.get(j));
+            }
+            floors[i] = new SquareConfig("FLOOR" + i, (char) ('a' + i), true, (Sprite) null, active);
+        }
+        
+        Square[][] map = new Square[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (x == 0 || y == 0 || x == width - 1 || y == height - 1) {
+                    map[x][y] = wall;
+                } else {
+                    map[x][y] = floors[rand.nextInt(floors.length)];
+                }
+            }
+        }
+        level.setMap(map);
+        return level;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.GameConfig.SensorConfig;
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.sim.RandomCircuits;
+import net.bluecow.robot.sim.StateHash;
+
+/**
+ * Tests for stepping back and scrubbing with the timeline.
+ */
+public class TimelineTest extends TestCase {
+
+    private static final int TICKS = 300;
+    
+    private LevelConfig level;
+    private GameLoop loop;
+    
+    @Override
+    protected void setUp() throws Exception {
+        Random rand = new Random(99);
+        List<SensorConfig> sensors = TestLevels.makeSensors(3);
+        level = TestLevels.makeLevel(rand, sensors, 12, 12);
+        Robot robot = RandomCircuits.makeRobot(level, rand, 3, 60);
+        robot.setStartPosition(new Point2D.Float(6.5f, 6.5f));
+        robot.resetState();
+        level.addRobot(robot);
+        
+        // switches that change the score and disable each other
+        for (int x = 1; x < 11; x++) {
+            for (int y = 1; y < 11; y++) {
+                if ((x + y) % 3 == 0) {
+                    String id = "sw_"+x+"_"+y;
+                    level.addSwitch(new Switch(new Point(x, y), id, null, null,
+                            id+".setEnabled(false); level.score += "+(x * y)+";"));
+                }
+            }
+        }
+        loop = new GameLoop(Collections.singleton(robot), level, new NullRenderSink());
+    }
+    
+    private long hash() {
+        return new StateHash().add(loop.getLoopCount()).addLevel(level, false).get();
+    }
+    
+    public void testRestoreMatchesRecordedStates() {
+        Timeline timeline = new Timeline(loop, Timeline.DEFAULT_MAX_BYTES);
+        long[] hashes = new long[TICKS + 1];
+        hashes[0] = hash();
+        for (int i = 1; i <= TICKS; i++) {
+            loop.singleStep();
+            hashes[i] = hash();
+        }
+        assertTrue("switches should have been hit", level.getScore() > 0);
+        assertEquals(0, timeline.getOldestTick());
+        assertEquals(TICKS, timeline.getNewestTick());
+        
+        Random rand = new Random(5);
+        for (int i = 0; i < 50; i++) {
+            int tick = rand.nextInt(TICKS + 1);
+            timeline.restore(tick);
+            assertEquals("state at tick "+tick, hashes[tick], hash());
+        }
+        
+        timeline.restore(TICKS);
+        for (int tick = TICKS - 1; tick >= 0; tick--) {
+            assertTrue(timeline.stepBack());
+            assertEquals("state at tick "+tick, hashes[tick], hash());
+        }
+        assertFalse(timeline.stepBack());
+    }
+    
+    public void testRunningOnAfterRestoreIsDeterministic() {
+        Timeline timeline = new Timeline(loop, Timeline.DEFAULT_MAX_BYTES);
+        long[] hashes = new long[TICKS + 1];
+        for (int i = 1; i <= TICKS; i++) {
+            loop.singleStep();
+            hashes[i] = hash();
+        }
+        timeline.restore(TICKS / 2);
+        for (int i = TICKS / 2 + 1; i <= TICKS; i++) {
+            loop.singleStep();
+            assertEquals("state at tick "+i, hashes[i], hash());
+        }
+        assertEquals(TICKS, timeline.getNewestTick());
+    }
+    
+    public void testMemoryIsCapped() {
+        Timeline timeline = new Timeline(loop, 2000);
+        int capacity = timeline.getCapacity();
+        assertTrue(capacity < TICKS);
+        for (int i = 0; i < TICKS; i++) {
+            loop.singleStep();
+        }
+        assertEquals(TICKS, timeline.getNewestTick());
+        assertEquals(TICKS - capacity + 1, timeline.getOldestTick());
+        assertFalse(timeline.canRestore(0));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.analysis;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.gate.AbstractGate;
+import net.bluecow.robot.gate.AndGate;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NorGate;
+import net.bluecow.robot.sim.RandomCircuits;
+
+/**
+ * Checks the BDD analysis of circuits against simulation.
+ */
+public class CircuitAnalysisTest extends TestCase {
+
+    private LevelConfig level;
+    private Random rand;
+    
+    @Override
+    protected void setUp() throws Exception {
+        level = new LevelConfig();
+        rand = new Random(2468);
+    }
+    
+    private static boolean[] gateStates(CircuitAnalysis a) {
+        List<Gate> gates = a.getStateGates();
+        boolean[] states = new boolean[gates.size()];
+        for (int k = 0; k < states.length; k++) {
+            states[k] = gates.get(k).getOutputState();
+        }
+        return states;
+    }
+    
+    /**
+     * The output functions should predict every tick of a simulation, and
+     * every state the simulation passes through should be reachable.
+     */
+    public void testMatchesSimulation() {
+        for (int c = 0; c < 10; c++) {
+            Robot robot = RandomCircuits.makeRobot(level, rand, 4, 30);
+            Circuit circuit = robot.getCircuit();
+            CircuitAnalysis a = new CircuitAnalysis(circuit);
+            BDD bdd = a.getBDD();
+            List<Gate> sensors = a.getSensors();
+            for (int t = 0; t < 300; t++) {
+                RandomCircuits.setRandomSensors(robot, rand);
+                assertTrue(a.isReachable(gateStates(a)));
+                boolean[] values = new boolean[bdd.getVarCount()];
+                for (int i = 0; i < sensors.size(); i++) {
+                    values[a.getSensorVariable(i)] = sensors.get(i).getOutputState();
+                }
+                for (int k = 0; k < a.getStateGates().size(); k++) {
+                    values[a.getStateVariable(k)] = a.getStateGates().get(k).getOutputState();
+                }
+                circuit.evaluateOnce();
+                Gate.Input[] inputs = circuit.getInputsGate().getInputs();
+                for (int j = 0; j < inputs.length; j++) {
+                    assertEquals("Input "+j+" at tick "+t+" of circuit "+c,
+                            inputs[j].getState(), bdd.evaluate(a.getOutputFunction(j), values));
+                }
+            }
+        }
+    }
+    
+    /**
+     * The reachable state count should match an explicit search that sets
+     * the gate states and simulates every sensor combination from each one.
+     */
+    public void testReachableStateCount() {
+        for (int c = 0; c < 20; c++) {
+            Robot robot = RandomCircuits.makeRobot(level, rand, 3, 3 + rand.nextInt(10));
+            Circuit circuit = robot.getCircuit();
+            circuit.resetState();
+            CircuitAnalysis a = new CircuitAnalysis(circuit);
+            List<Gate> gates = a.getStateGates();
+            List<Gate> sensors = circuit.getOutputs();
+            
+            Set<Long> seen = new HashSet<Long>();
+            List<Long> queue = new ArrayList<Long>();
+            seen.add(0L);
+            queue.add(0L);
+            int depth = 0;
+            for (int q = 0, levelEnd = 1; q < queue.size(); q++) {
+                if (q == levelEnd) {
+                    depth++;
+                    levelEnd = queue.size();
+                }
+                long state = queue.get(q);
+                for (int combo = 0; combo < (1 << sensors.size()); combo++) {
+                    for (Gate g : circuit.getGates()) {
+                        int k = a.getStateIndex(g);
+                        if (k < 0) continue;
+                        boolean v = (state & (1L << k)) != 0;
+                        ((AbstractGate) g).setOutputStates(v, v);
+                    }
+                    for (int i = 0; i < sensors.size(); i++) {
+                        boolean v = (combo & (1 << i)) != 0;
+                        ((AbstractGate) sensors.get(i)).setOutputStates(v, v);
+                    }
+                    circuit.evaluateOnce();
+                    long next = 0;
+                    for (int k = 0; k < gates.size(); k++) {
+                        if (gates.get(k).getOutputState()) next |= 1L << k;
+                    }
+                    if (seen.add(next)) {
+                        queue.add(next);
+                    }
+                }
+            }
+            assertEquals("Circuit "+c, (double) seen.size(), a.getReachableStateCount());
+            assertEquals("Circuit "+c, depth, a.getReachabilityDepth());
+        }
+    }
+    
+    public void testCombinationalAndLatch() {
+        Robot robot = RandomCircuits.makeRobot(level, rand, 2, 0);
+        Circuit circuit = robot.getCircuit();
+        List<Gate> sensors = circuit.getOutputs();
+        Gate.Input[] inputs = circuit.getInputsGate().getInputs();
+        
+        Gate and = new AndGate(2);
+        circuit.addGate(and, new Rectangle(0, 0, 10, 10));
+        and.getInputs()[0].connect(sensors.get(0));
+        and.getInputs()[1].connect(sensors.get(1));
+        
+        // a set/reset latch: sensor 0 sets it, sensor 1 resets it
+        Gate q = new NorGate(2);
+        Gate qbar = new NorGate(2);
+        circuit.addGate(q, new Rectangle(20, 0, 10, 10));
+        circuit.addGate(qbar, new Rectangle(40, 0, 10, 10));
+        q.getInputs()[0].connect(sensors.get(1));
+        q.getInputs()[1].connect(qbar);
+        qbar.getInputs()[0].connect(sensors.get(0));
+        qbar.getInputs()[1].connect(q);
+        
+        for (Gate.Input in : inputs) {
+            in.connect(null);
+        }
+        inputs[0].connect(and);
+        inputs[1].connect(q);
+        inputs[2].connect(sensors.get(1));
+        
+        CircuitAnalysis a = new CircuitAnalysis(circuit);
+        assertFalse(a.dependsOnState(0));
+        assertTrue(a.dependsOnState(1));
+        assertFalse(a.dependsOnState(2));
+        assertFalse(a.dependsOnState(3));
+        assertEquals(3, a.getStateGates().size());
+        
+        // the latch can't have both outputs on
+        String[] lines = a.getTruthTable().split("\n");
+        assertEquals(5, lines.length);
+        for (int combo = 0; combo < 4; combo++) {
+            String[] cols = lines[combo + 1].split("\\|")[1].trim().split("\\s+");
+            int i0 = a.getSensors().indexOf(sensors.get(0));
+            int i1 = a.getSensors().indexOf(sensors.get(1));
+            boolean v0 = ((i0 == 0 ? combo & 1 : combo & 2) != 0);
+            boolean v1 = ((i1 == 0 ? combo & 1 : combo & 2) != 0);
+            assertEquals(v0 && v1 ? "1" : "0", cols[0]);
+            assertEquals(v1 ? "0" : "*", cols[1]);
+            assertEquals(v1 ? "1" : "0", cols[2]);
+            assertEquals("0", cols[3]);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.analysis;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.CircuitStore;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.gate.AbstractGate;
+import net.bluecow.robot.gate.AndGate;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NandGate;
+import net.bluecow.robot.gate.NorGate;
+import net.bluecow.robot.gate.NotGate;
+import net.bluecow.robot.gate.OrGate;
+import net.bluecow.robot.sim.RandomCircuits;
+
+/**
+ * Checks the circuit equivalence check on pairs of random circuits that are
+ * known to be equivalent, and on pairs that might not be.
+ */
+public class CircuitEquivalenceTest extends TestCase {
+
+    private static final int GATES = 30;
+    
+    private LevelConfig level;
+    private Random rand;
+    private CircuitEquivalence equivalence;
+    
+    @Override
+    protected void setUp() throws Exception {
+        level = new LevelConfig();
+        rand = new Random(97531);
+        equivalence = new CircuitEquivalence();
+    }
+    
+    /**
+     * Returns a copy of the given robot with a circuit that behaves the same
+     * way but is built differently: one gate is duplicated, with some of its
+     * readers moved to the duplicate, and an unused gate is added.
+     */
+    private Robot equivalentCopy(Robot robot) {
+        Robot copy = new Robot(robot, level);
+        Circuit c = copy.getCircuit();
+        Gate g = RandomCircuits.gateAt(c, rand.nextInt(GATES));
+        Gate dup = g.createDisconnectedCopy();
+        c.addGate(dup, new Rectangle(0, 100, 10, 10));
+        for (int i = 0; i < g.getInputs().length; i++) {
+            dup.getInputs()[i].connect(g.getInputs()[i].getConnectedGate());
+        }
+        for (Gate reader : c.getGates()) {
+            for (Gate.Input in : reader.getInputs()) {
+                if (in.getConnectedGate() == g && rand.nextBoolean()) {
+                    in.connect(dup);
+                }
+            }
+        }
+        Gate unused = RandomCircuits.makeGate(rand);
+        c.addGate(unused, new Rectangle(20, 100, 10, 10));
+        unused.getInputs()[0].connect(g);
+        return copy;
+    }
+    
+    /**
+     * Returns a copy of the given robot with one gate input rewired, which
+     * usually changes its behaviour.
+     */
+    private Robot rewiredCopy(Robot robot) {
+        Robot copy = new Robot(robot, level);
+        Circuit c = copy.getCircuit();
+        Gate target = RandomCircuits.gateAt(c, rand.nextInt(GATES));
+        target.getInputs()[0].connect(RandomCircuits.gateAt(c, rand.nextInt(GATES)));
+        return copy;
+    }
+    
+    /**
+     * Checks that the counterexample really makes the circuits' robot inputs
+     * differ on its last tick.
+     */
+    private void checkCounterexample(Circuit a, Circuit b, List<Map<String, Boolean>> ticks) {
+        a.resetState();
+        b.resetState();
+        for (Map<String, Boolean> sensors : ticks) {
+            for (Circuit c : new Circuit[] { a, b }) {
+                for (Gate s : c.getOutputs()) {
+                    Boolean v = sensors.get(s.getLabel());
+                    boolean on = v != null && v;
+                    ((AbstractGate) s).setOutputStates(on, on);
+                }
+                c.evaluateOnce();
+            }
+        }
+        Gate.Input[] ia = a.getInputsGate().getInputs();
+        Gate.Input[] ib = b.getInputsGate().getInputs();
+        boolean differ = false;
+        for (int j = 0; j < ia.length; j++) {
+            differ |= ia[j].getState() != ib[j].getState();
+        }
+        assertTrue("Counterexample doesn't tell the circuits apart", differ);
+    }
+    
+    public void testEquivalent() {
+        for (int k = 0; k < 10; k++) {
+            Robot a = RandomCircuits.makeRobot(level, rand, 4, GATES);
+            Robot b = equivalentCopy(a);
+            CircuitEquivalence.Result r = equivalence.compare(a.getCircuit(), b.getCircuit());
+            assertEquals(CircuitEquivalence.Verdict.EQUIVALENT, r.getVerdict());
+        }
+    }
+    
+    public void testRewired() {
+        int different = 0;
+        for (int k = 0; k < 20; k++) {
+            Robot a = RandomCircuits.makeRobot(level, rand, 4, GATES);
+            Robot b = rewiredCopy(a);
+            CircuitEquivalence.Result r = equivalence.compare(a.getCircuit(), b.getCircuit());
+            if (r.getVerdict() == CircuitEquivalence.Verdict.NOT_EQUIVALENT) {
+                different++;
+                checkCounterexample(a.getCircuit(), b.getCircuit(), r.getCounterexample());
+            } else {
+                assertEquals(CircuitEquivalence.Verdict.EQUIVALENT, r.getVerdict());
+                
+                // simulation must not be able to tell them apart either
+                equivalence.setNodeLimit(2);
+                r = equivalence.compare(a.getCircuit(), b.getCircuit());
+                assertEquals(CircuitEquivalence.Verdict.PROBABLY_EQUIVALENT, r.getVerdict());
+                equivalence.setNodeLimit(BDD.DEFAULT_NODE_LIMIT);
+            }
+        }
+        assertTrue(different > 0);
+    }
+    
+    public void testSimulationFallback() {
+        equivalence.setNodeLimit(2);
+        Robot a = RandomCircuits.makeRobot(level, rand, 4, GATES);
+        CircuitEquivalence.Result r = equivalence.compare(a.getCircuit(), equivalentCopy(a).getCircuit());
+        assertEquals(CircuitEquivalence.Verdict.PROBABLY_EQUIVALENT, r.getVerdict());
+        for (int k = 0; k < 10; k++) {
+            Robot b = rewiredCopy(a);
+            r = equivalence.compare(a.getCircuit(), b.getCircuit());
+            if (r.getVerdict() == CircuitEquivalence.Verdict.NOT_EQUIVALENT) {
+                checkCounterexample(a.getCircuit(), b.getCircuit(), r.getCounterexample());
+            }
+        }
+    }
+    
+    private static byte[] save(Robot robot) {
+        // the inputs gate only gets its bounds when the circuit is laid out for display
+        robot.getCircuit().getInputsGate().setBounds(new Rectangle(0, 0, 10, 10));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CircuitStore.save(out, Collections.singleton(robot));
+        return out.toByteArray();
+    }
+    
+    /**
+     * Makes a random robot whose gates all have their default number of
+     * inputs, since that's all the circuit file format can describe.
+     */
+    private Robot makeSavableRobot() {
+        Robot robot = RandomCircuits.makeRobot(level, rand, 4, 0);
+        Circuit c = robot.getCircuit();
+        List<Gate> sources = new ArrayList<Gate>(c.getOutputs());
+        for (int i = 0; i < GATES; i++) {
+            Gate g;
+            switch (rand.nextInt(5)) {
+            case 0: g = new AndGate(); break;
+            case 1: g = new OrGate(); break;
+            case 2: g = new NandGate(); break;
+            case 3: g = new NorGate(); break;
+            default: g = new NotGate();
+            }
+            c.addGate(g, new Rectangle(RandomCircuits.FIRST_GATE_X + i * RandomCircuits.GATE_SPACING, 0, 10, 10));
+            sources.add(g);
+        }
+        for (Gate g : sources) {
+            RandomCircuits.connectRandomly(g, sources, rand);
+        }
+        RandomCircuits.connectRandomly(c.getInputsGate(), sources, rand);
+        return robot;
+    }
+    
+    public void testCompareSaved() throws Exception {
+        Robot a = makeSavableRobot();
+        level.addRobot(a);
+        byte[] original = save(a);
+        byte[] same = save(equivalentCopy(a));
+        
+        CircuitEquivalence.Result r = equivalence.compareSaved(level,
+                new ByteArrayInputStream(original), new ByteArrayInputStream(same));
+        assertEquals(CircuitEquivalence.Verdict.EQUIVALENT, r.getVerdict());
+        
+        // rewire the robot inputs straight to a sensor and to nothing
+        Robot b = new Robot(a, level);
+        b.getCircuit().getInputsGate().getInputs()[0].connect(b.getCircuit().getOutputs().get(0));
+        b.getCircuit().getInputsGate().getInputs()[1].connect(null);
+        r = equivalence.compareSaved(level,
+                new ByteArrayInputStream(original), new ByteArrayInputStream(save(b)));
+        assertEquals(CircuitEquivalence.Verdict.NOT_EQUIVALENT, r.getVerdict());
+        assertEquals(a.getId(), r.getRobotId());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.CircuitStore;
+import net.bluecow.robot.GameConfig;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.LevelStore;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NotGate;
+import net.bluecow.robot.resource.CompoundResourceLoader;
+import net.bluecow.robot.resource.PrefixResourceLoader;
+import net.bluecow.robot.resource.SystemResourceLoader;
+
+/**
+ * Runs a couple of circuits against the default levels.
+ */
+public class BatchRunnerTest extends TestCase {
+
+    private GameConfig game;
+    private Map<String, byte[]> circuits;
+    
+    @Override
+    protected void setUp() throws Exception {
+        game = LevelStore.loadLevels(new CompoundResourceLoader(
+                new PrefixResourceLoader(new SystemResourceLoader(), "default/"),
+                new PrefixResourceLoader(new SystemResourceLoader(), "builtin/")));
+        circuits = new LinkedHashMap<String, byte[]>();
+        
+        // the first level doesn't hand out any gates of its own
+        game.getLevels().get(0).getRobots().get(0).getCircuit().addGateAllowance(NotGate.class, -1);
+        
+        // work on a copy so the loaded level stays pristine
+        LevelConfig level = new LevelConfig(game.getLevels().get(0));
+        Robot robot = level.getRobots().get(0);
+        robot.getCircuit().getInputsGate().setBounds(new Rectangle(0, 0, 10, 10));
+        circuits.put("empty", save(level));
+        
+        Gate not = new NotGate();
+        robot.getCircuit().addGate(not, new Rectangle(50, 50, 20, 20));
+        robot.getCircuit().getInputsGate().getInputs()[3].connect(not);
+        circuits.put("right", save(level));
+    }
+    
+    private static byte[] save(LevelConfig level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CircuitStore.save(out, level.getRobots());
+        return out.toByteArray();
+    }
+    
+    public void testParallelMatchesSequential() throws Exception {
+        BatchRunner runner = new BatchRunner(game, 500);
+        
+        ForkJoinPool onePool = new ForkJoinPool(1);
+        StringWriter oneOut = new StringWriter();
+        List<RunResult> one = runner.run(circuits, onePool, oneOut, BatchRunner.OutputFormat.CSV);
+        onePool.shutdown();
+        
+        ForkJoinPool manyPool = new ForkJoinPool(4);
+        StringWriter manyOut = new StringWriter();
+        List<RunResult> many = runner.run(circuits, manyPool, manyOut, BatchRunner.OutputFormat.JSON);
+        manyPool.shutdown();
+        
+        assertEquals(circuits.size() * game.getLevels().size(), one.size());
+        assertEquals(one.size(), many.size());
+        for (int i = 0; i < one.size(); i++) {
+            assertEquals(one.get(i).toString(), many.get(i).toString());
+        }
+        
+        // header plus one line per result
+        assertEquals(one.size() + 1, oneOut.toString().split("\n").length);
+        assertTrue(manyOut.toString().trim().startsWith("["));
+        assertTrue(manyOut.toString().trim().endsWith("]"));
+        
+        // the circuits were saved for the first level, so they have to load there
+        assertNull(one.get(0).getError());
+        assertFalse(one.get(0).isGoalReached());
+        assertEquals(500, one.get(0).getTicks());
+    }
+}
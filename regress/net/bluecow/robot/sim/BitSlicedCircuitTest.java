@@ -0,0 +1,83 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.gate.AbstractGate;
+import net.bluecow.robot.gate.Gate;
+
+/**
+ * Checks each lane of the bit-sliced evaluator against a normally-evaluated
+ * copy of the same circuit.
+ */
+public class BitSlicedCircuitTest extends TestCase {
+
+    private static final int SENSORS = 5;
+    
+    public void testLanesMatchStandardEvaluation() {
+        LevelConfig level = new LevelConfig();
+        Random rand = new Random(99);
+        Robot original = RandomCircuits.makeRobot(level, rand, SENSORS, 40);
+        Robot[] lanes = new Robot[BitSlicedCircuit.LANES];
+        for (int k = 0; k < lanes.length; k++) {
+            lanes[k] = new Robot(original, level);
+        }
+        BitSlicedCircuit bsc = new BitSlicedCircuit(original.getCircuit());
+        assertEquals(SENSORS, bsc.getSensorCount());
+        assertEquals(4, bsc.getRobotInputCount());
+        
+        long[] sensorVectors = new long[lanes.length];
+        long[] results = new long[lanes.length];
+        for (int t = 0; t < 200; t++) {
+            for (int k = 0; k < lanes.length; k++) {
+                sensorVectors[k] = rand.nextInt(1 << SENSORS);
+                int j = 0;
+                for (Gate sensor : lanes[k].getCircuit().getOutputs()) {
+                    boolean v = (sensorVectors[k] & (1L << j)) != 0;
+                    ((AbstractGate) sensor).setOutputStates(v, v);
+                    j++;
+                }
+                lanes[k].getCircuit().evaluateOnce();
+            }
+            bsc.step(sensorVectors, results);
+            for (int k = 0; k < lanes.length; k++) {
+                assertEquals("Lane "+k+" tick "+t, RandomCircuits.robotInputs(lanes[k]), results[k]);
+            }
+        }
+    }
+}
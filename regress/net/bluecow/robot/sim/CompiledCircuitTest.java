@@ -0,0 +1,137 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.gate.Gate;
+
+/**
+ * Checks that compiled and event-driven circuit evaluation give exactly the
+ * same results as the normal gate-by-gate evaluation.
+ */
+public class CompiledCircuitTest extends TestCase {
+
+    private static final int GATES = 40;
+    
+    private LevelConfig level;
+    private Random rand;
+    
+    /** Evaluated the normal way. */
+    private Robot standard;
+    
+    /** Evaluated in compiled mode. */
+    private Robot compiled;
+    
+    /** Evaluated in event-driven mode. */
+    private Robot eventDriven;
+    
+    @Override
+    protected void setUp() throws Exception {
+        level = new LevelConfig();
+        rand = new Random(1234);
+        standard = RandomCircuits.makeRobot(level, rand, 5, GATES);
+        compiled = new Robot(standard, level);
+        compiled.getCircuit().setEvaluationMode(Circuit.EvaluationMode.COMPILED);
+        eventDriven = new Robot(standard, level);
+        eventDriven.getCircuit().setEvaluationMode(Circuit.EvaluationMode.EVENT_DRIVEN);
+    }
+    
+    private Robot[] robots() {
+        return new Robot[] { standard, compiled, eventDriven };
+    }
+    
+    private void stepAndCompare(int ticks) {
+        for (int t = 0; t < ticks; t++) {
+            // hold the sensors steady now and then so the circuit can settle
+            if (rand.nextInt(4) != 0) {
+                RandomCircuits.setRandomSensors(standard, rand);
+            }
+            for (Robot r : robots()) {
+                RandomCircuits.copySensors(standard, r);
+                r.getCircuit().evaluateOnce();
+            }
+            for (Robot r : robots()) {
+                assertEquals("Robot inputs differ at tick "+t+" in "+r.getCircuit().getEvaluationMode(),
+                        RandomCircuits.robotInputs(standard),
+                        RandomCircuits.robotInputs(r));
+                for (int i = 0; i < GATES; i++) {
+                    Gate s = RandomCircuits.gateAt(standard.getCircuit(), i);
+                    Gate c = RandomCircuits.gateAt(r.getCircuit(), i);
+                    if (s == null) continue;
+                    assertEquals("Gate "+i+" differs at tick "+t+" in "+r.getCircuit().getEvaluationMode(),
+                            s.getOutputState(), c.getOutputState());
+                }
+            }
+        }
+    }
+    
+    public void testSameResults() {
+        stepAndCompare(500);
+    }
+    
+    public void testResetState() {
+        stepAndCompare(50);
+        for (Robot r : robots()) {
+            r.getCircuit().resetState();
+        }
+        stepAndCompare(50);
+    }
+
+    public void testRecompilesAfterRewiring() {
+        stepAndCompare(50);
+        
+        // rewire a few gates the same way in both circuits
+        for (int k = 0; k < 5; k++) {
+            int target = rand.nextInt(GATES);
+            int source = rand.nextInt(GATES);
+            int input = 0;
+            for (Robot r : robots()) {
+                RandomCircuits.gateAt(r.getCircuit(), target).getInputs()[input].connect(
+                        RandomCircuits.gateAt(r.getCircuit(), source));
+            }
+        }
+        stepAndCompare(50);
+
+        // and remove one
+        for (Robot r : robots()) {
+            r.getCircuit().remove(RandomCircuits.gateAt(r.getCircuit(), 3));
+        }
+        stepAndCompare(50);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for both cycle detection strategies on made-up state sequences.
+ */
+public class CycleDetectorTest extends TestCase {
+
+    /**
+     * Feeds a sequence that has a lead-in of <tt>mu</tt> states, then
+     * repeats a cycle of <tt>lambda</tt> states, into a detector.
+     * 
+     * @return the tick the cycle was detected on
+     */
+    private int feed(CycleDetector d, int mu, int lambda) {
+        for (int tick = 1; tick < 10 * (mu + lambda); tick++) {
+            int i = tick - 1;
+            long state = (i < mu) ? 1000 + i : 5000 + (i - mu) % lambda;
+            if (d.update(state * 0x9e3779b97f4a7c15L, tick)) {
+                return tick;
+            }
+        }
+        fail("No cycle detected (mu="+mu+", lambda="+lambda+")");
+        return -1;
+    }
+    
+    public void testVisitedSetFindsCycleOnFirstRepeat() {
+        CycleDetector d = new CycleDetector(CycleDetector.Strategy.VISITED_SET);
+        for (int mu = 0; mu < 20; mu += 3) {
+            for (int lambda = 1; lambda < 3000; lambda = lambda * 2 + 1) {
+                d.reset();
+                int tick = feed(d, mu, lambda);
+                assertEquals(lambda, d.getCycleLength());
+                assertEquals(mu + lambda + 1, tick);
+            }
+        }
+    }
+    
+    public void testBrentFindsCycleLength() {
+        CycleDetector d = new CycleDetector(CycleDetector.Strategy.BRENT);
+        for (int mu = 0; mu < 20; mu += 3) {
+            for (int lambda = 1; lambda < 3000; lambda = lambda * 2 + 1) {
+                d.reset();
+                int tick = feed(d, mu, lambda);
+                assertEquals(lambda, d.getCycleLength());
+                assertTrue(tick <= 2 * (mu + lambda) + 2);
+            }
+        }
+    }
+    
+    public void testNoFalseCycles() {
+        CycleDetector set = new CycleDetector(CycleDetector.Strategy.VISITED_SET);
+        CycleDetector brent = new CycleDetector(CycleDetector.Strategy.BRENT);
+        for (int tick = 1; tick < 100000; tick++) {
+            assertFalse(set.update(tick * 0x9e3779b97f4a7c15L, tick));
+            assertFalse(brent.update(tick * 0x9e3779b97f4a7c15L, tick));
+        }
+        assertEquals(0, set.getCycleLength());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.CircuitStore;
+import net.bluecow.robot.GameLoop;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.TestLevels;
+import net.bluecow.robot.GameConfig.GateConfig;
+import net.bluecow.robot.GameConfig.SensorConfig;
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NotGate;
+
+/**
+ * Runs a tiny level in the headless engine.
+ */
+public class HeadlessEngineTest extends TestCase {
+
+    /**
+     * A level with one robot at the left, and a goal switch 4.5 squares
+     * to its right. The robot has no circuit.
+     */
+    private LevelConfig level;
+    
+    /**
+     * A saved circuit that always drives the robot to the right.
+     */
+    private byte[] goRightCircuit;
+    
+    @Override
+    protected void setUp() throws Exception {
+        List<SensorConfig> sensors = TestLevels.makeSensors(2);
+        level = TestLevels.makeLevel(new Random(1), sensors, 10, 5);
+        List<GateConfig> gateConfigs = Collections.emptyList();
+        Robot robot = new Robot("robot", "Robot", level, sensors, gateConfigs,
+                null, new Point2D.Float(1.5f, 2.5f), 0.1f, null, 1);
+        robot.getCircuit().addGateAllowance(NotGate.class, -1);
+        level.addRobot(robot);
+        level.addSwitch(new Switch(new Point(6, 2), "goal", null, null,
+                "robot.setGoalReached(true); level.score += 200;"));
+        
+        // an unconnected NOT gate is always on
+        Gate not = new NotGate();
+        robot.getCircuit().addGate(not, new Rectangle(50, 50, 20, 20));
+        robot.getCircuit().getInputsGate().getInputs()[3].connect(not);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CircuitStore.save(out, level.getRobots());
+        goRightCircuit = out.toByteArray();
+        robot.getCircuit().removeAllGates();
+    }
+    
+    public void testReachesGoal() throws Exception {
+        HeadlessEngine engine = new HeadlessEngine(new LevelConfig(level));
+        engine.loadCircuits(new ByteArrayInputStream(goRightCircuit));
+        RunResult result = engine.run(1000);
+        assertTrue(result.isGoalReached());
+        assertEquals(200, result.getScore());
+        assertTrue("Took "+result.getTicks()+" ticks", result.getTicks() > 40 && result.getTicks() < 60);
+    }
+    
+    public void testGivesUp() throws Exception {
+        HeadlessEngine engine = new HeadlessEngine(new LevelConfig(level));
+        RunResult result = engine.run(300);
+        assertFalse(result.isGoalReached());
+        assertEquals(300, result.getTicks());
+        assertEquals(0, result.getScore());
+    }
+    
+    public void testResetAndRunAgain() throws Exception {
+        HeadlessEngine engine = new HeadlessEngine(new LevelConfig(level));
+        engine.loadCircuits(new ByteArrayInputStream(goRightCircuit));
+        engine.setEvaluationMode(net.bluecow.robot.Circuit.EvaluationMode.EVENT_DRIVEN);
+        RunResult first = engine.run(1000);
+        engine.reset();
+        RunResult second = engine.run(1000);
+        assertEquals(first.getTicks(), second.getTicks());
+        assertEquals(first.getScore(), second.getScore());
+        assertTrue(second.isGoalReached());
+    }
+    
+    public void testTurboMatchesNormalSpeed() throws Exception {
+        HeadlessEngine engine = new HeadlessEngine(new LevelConfig(level));
+        engine.loadCircuits(new ByteArrayInputStream(goRightCircuit));
+        RunResult stepped = engine.run(1000);
+        
+        GameLoop loop = engine.getGameLoop();
+        engine.reset();
+        loop.setUnthrottled(true);
+        loop.run();
+        assertTrue(loop.isGoalReached());
+        assertEquals(stepped.getTicks(), loop.getLoopCount());
+        assertEquals(stepped.getScore(), engine.getLevel().getScore());
+        
+        engine.reset();
+        loop.setUnthrottled(false);
+        loop.setFrameDelay(1);
+        loop.setTicksPerFrame(10);
+        loop.run();
+        assertTrue(loop.isGoalReached());
+        assertEquals(stepped.getTicks(), loop.getLoopCount());
+        assertEquals(stepped.getScore(), engine.getLevel().getScore());
+    }
+    
+    public void testStandingStillCyclesForever() throws Exception {
+        for (CycleDetector.Strategy strategy : CycleDetector.Strategy.values()) {
+            HeadlessEngine engine = new HeadlessEngine(new LevelConfig(level));
+            engine.setCycleDetection(strategy);
+            RunResult result = engine.run(1000);
+            assertFalse(result.isGoalReached());
+            assertTrue(strategy+": "+result, result.isCyclesForever());
+            assertEquals(1, result.getCycleLength());
+            assertTrue(result.getTicks() < 10);
+        }
+    }
+    
+    public void testCycleDetectionDoesntStopProgress() throws Exception {
+        for (CycleDetector.Strategy strategy : CycleDetector.Strategy.values()) {
+            HeadlessEngine engine = new HeadlessEngine(new LevelConfig(level));
+            engine.loadCircuits(new ByteArrayInputStream(goRightCircuit));
+            engine.setCycleDetection(strategy);
+            RunResult result = engine.run(1000);
+            assertTrue(strategy+": "+result, result.isGoalReached());
+            assertFalse(result.isCyclesForever());
+            
+            engine.reset();
+            assertEquals(result.getTicks(), engine.run(1000).getTicks());
+        }
+    }
+}
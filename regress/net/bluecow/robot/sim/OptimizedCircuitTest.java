@@ -0,0 +1,288 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.gate.AbstractGate;
+import net.bluecow.robot.gate.AndGate;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NandGate;
+import net.bluecow.robot.gate.NotGate;
+
+/**
+ * Checks that the optimized evaluation gives the same robot inputs as the
+ * normal evaluation, and the same states for every gate, including the ones
+ * that were left out of the netlist.
+ */
+public class OptimizedCircuitTest extends TestCase {
+
+    private static final int GATES = 60;
+    
+    private LevelConfig level;
+    private Random rand;
+    
+    /** Evaluated the normal way. */
+    private Robot standard;
+    
+    /** Evaluated in optimized mode. */
+    private Robot optimized;
+    
+    @Override
+    protected void setUp() throws Exception {
+        level = new LevelConfig();
+        rand = new Random(4321);
+        standard = RandomCircuits.makeRobot(level, rand, 5, GATES);
+        optimized = new Robot(standard, level);
+        optimized.getCircuit().setEvaluationMode(Circuit.EvaluationMode.OPTIMIZED);
+    }
+    
+    private void stepAndCompare(int ticks) {
+        stepAndCompare(ticks, 1);
+    }
+    
+    /**
+     * Runs both robots for the given number of ticks, comparing the robot
+     * inputs on every tick but the gate states only on every
+     * <code>interval</code>th tick, so the optimized circuit has to catch up.
+     */
+    private void stepAndCompare(int ticks, int interval) {
+        for (int t = 0; t < ticks; t++) {
+            // hold the sensors steady now and then so the circuit can settle
+            if (rand.nextInt(4) != 0) {
+                RandomCircuits.setRandomSensors(standard, rand);
+            }
+            RandomCircuits.copySensors(standard, optimized);
+            standard.getCircuit().evaluateOnce();
+            optimized.getCircuit().evaluateOnce();
+            assertEquals("Robot inputs differ at tick "+t,
+                    RandomCircuits.robotInputs(standard),
+                    RandomCircuits.robotInputs(optimized));
+            if (t % interval != interval - 1) continue;
+            for (int i = 0; i < GATES; i++) {
+                Gate g = RandomCircuits.gateAt(standard.getCircuit(), i);
+                if (g == null) continue;
+                assertEquals("Gate "+i+" differs at tick "+t,
+                        g.getOutputState(),
+                        RandomCircuits.gateAt(optimized.getCircuit(), i).getOutputState());
+            }
+        }
+    }
+    
+    public void testSameResults() {
+        stepAndCompare(500);
+    }
+    
+    public void testManyCircuits() {
+        for (int k = 0; k < 20; k++) {
+            standard = RandomCircuits.makeRobot(level, rand, 3, 10 + rand.nextInt(50));
+            optimized = new Robot(standard, level);
+            optimized.getCircuit().setEvaluationMode(Circuit.EvaluationMode.OPTIMIZED);
+            stepAndCompare(200);
+        }
+    }
+    
+    public void testSameResultsWhenRarelyRead() {
+        stepAndCompare(500, 7);
+        stepAndCompare(1000, 150);
+        stepAndCompare(300, 64);
+    }
+    
+    public void testStatesOnlyWorkedOutWhenRead() {
+        stepAndCompare(100);
+        int lazy = 0;
+        for (Gate g : optimized.getCircuit().getGates()) {
+            if (((AbstractGate) g).getStateSource() != null) lazy++;
+        }
+        assertTrue("No gates get their states on demand", lazy >= GATES);
+        
+        // switching modes has to leave the right states in the gates
+        optimized.getCircuit().setEvaluationMode(Circuit.EvaluationMode.COMPILED);
+        for (Gate g : optimized.getCircuit().getGates()) {
+            assertNull(((AbstractGate) g).getStateSource());
+        }
+        stepAndCompare(50);
+    }
+    
+    /**
+     * Dropped nodes that don't form loops only have to catch up on the last
+     * few ticks when they're read; the ones that do form loops have to go
+     * through every tick.
+     */
+    public void testDroppedNodesRarelyRead() {
+        for (boolean loops : new boolean[] { false, true }) {
+            standard = makeLayeredRobot(GATES, loops);
+            optimized = new Robot(standard, level);
+            optimized.getCircuit().setEvaluationMode(Circuit.EvaluationMode.OPTIMIZED);
+            stepAndCompare(300, 5);
+            stepAndCompare(1000, 200);
+            stepAndCompare(200, 1);
+        }
+    }
+    
+    /**
+     * The optimized mode has to be faster than the compiled mode it's built
+     * on, or there's no point to it. Each mode gets the best of several runs
+     * of a circuit where most of the gates don't affect the robot, and
+     * nothing looks at the gates in between.
+     */
+    public void testFasterThanCompiled() {
+        standard = makeLayeredRobot(2000, false);
+        standard.getCircuit().setEvaluationMode(Circuit.EvaluationMode.COMPILED);
+        optimized = new Robot(standard, level);
+        optimized.getCircuit().setEvaluationMode(Circuit.EvaluationMode.OPTIMIZED);
+        long compiledTime = Long.MAX_VALUE;
+        long optimizedTime = Long.MAX_VALUE;
+        for (int run = 0; run < 10; run++) {
+            compiledTime = Math.min(compiledTime, timeTicks(standard, 2000));
+            optimizedTime = Math.min(optimizedTime, timeTicks(optimized, 2000));
+        }
+        assertTrue("Optimized took "+optimizedTime+"ns, compiled "+compiledTime+"ns",
+                optimizedTime < compiledTime);
+    }
+    
+    /**
+     * Makes a robot whose circuit doesn't reduce much: two-input NAND gates
+     * that read the sensors or the gates before them, with nothing left
+     * unconnected. The robot's inputs read the first few gates, so most of
+     * the circuit can't affect the robot.
+     * 
+     * @param loops If true, some gate inputs read later gates instead.
+     */
+    private Robot makeLayeredRobot(int gateCount, boolean loops) {
+        Robot robot = RandomCircuits.makeRobot(level, rand, 5, 0);
+        Circuit c = robot.getCircuit();
+        List<Gate> sources = new ArrayList<Gate>(c.getOutputs());
+        int sensors = sources.size();
+        for (int i = 0; i < gateCount; i++) {
+            Gate g = new NandGate(2);
+            c.addGate(g, new Rectangle(RandomCircuits.FIRST_GATE_X + i * RandomCircuits.GATE_SPACING, 0, 10, 10));
+            sources.add(g);
+        }
+        for (int i = 0; i < gateCount; i++) {
+            for (Gate.Input in : sources.get(sensors + i).getInputs()) {
+                if (loops && rand.nextInt(10) == 0) {
+                    in.connect(sources.get(sensors + i + rand.nextInt(gateCount - i)));
+                } else {
+                    in.connect(sources.get(rand.nextInt(sensors + i)));
+                }
+            }
+        }
+        Gate.Input[] robotInputs = c.getInputsGate().getInputs();
+        for (int i = 0; i < robotInputs.length; i++) {
+            robotInputs[i].connect(sources.get(sensors + i));
+        }
+        return robot;
+    }
+    
+    private long timeTicks(Robot robot, int ticks) {
+        Random sensors = new Random(99);
+        long start = System.nanoTime();
+        for (int t = 0; t < ticks; t++) {
+            RandomCircuits.setRandomSensors(robot, sensors);
+            robot.getCircuit().evaluateOnce();
+        }
+        return System.nanoTime() - start;
+    }
+    
+    public void testResetState() {
+        stepAndCompare(50);
+        standard.getCircuit().resetState();
+        optimized.getCircuit().resetState();
+        stepAndCompare(100);
+    }
+    
+    public void testRecompilesAfterRewiring() {
+        stepAndCompare(50);
+        for (int k = 0; k < 5; k++) {
+            int target = rand.nextInt(GATES);
+            int source = rand.nextInt(GATES);
+            for (Robot r : new Robot[] { standard, optimized }) {
+                RandomCircuits.gateAt(r.getCircuit(), target).getInputs()[0].connect(
+                        RandomCircuits.gateAt(r.getCircuit(), source));
+            }
+        }
+        stepAndCompare(100);
+    }
+    
+    /**
+     * NOT-NOT chains, duplicate gates and gates with unconnected inputs
+     * should all disappear from the netlist.
+     */
+    public void testReduction() {
+        Circuit c = optimized.getCircuit();
+        Gate sensor = c.getOutputs().get(0);
+        Gate[] inputs = new Gate[] { sensor, c.getOutputs().get(1) };
+        int x = 0;
+        Gate prev = sensor;
+        for (int i = 0; i < 4; i++) {
+            Gate not = new NotGate();
+            c.addGate(not, new Rectangle(x += 20, 100, 10, 10));
+            not.getInputs()[0].connect(prev);
+            prev = not;
+        }
+        Gate and1 = new AndGate(2);
+        Gate and2 = new AndGate(2);
+        Gate grounded = new AndGate(2);
+        for (Gate g : new Gate[] { and1, and2, grounded }) {
+            c.addGate(g, new Rectangle(x += 20, 100, 10, 10));
+        }
+        for (int i = 0; i < 2; i++) {
+            and1.getInputs()[i].connect(inputs[i]);
+            and2.getInputs()[i].connect(inputs[i]);
+        }
+        grounded.getInputs()[0].connect(prev);
+        Gate.Input[] robotInputs = c.getInputsGate().getInputs();
+        robotInputs[0].connect(prev);
+        robotInputs[1].connect(and1);
+        robotInputs[2].connect(and2);
+        robotInputs[3].connect(grounded);
+        
+        OptimizedCircuit oc = new OptimizedCircuit(c);
+        oc.ensureCompiled();
+        assertEquals(1, oc.getNodeCount());
+        
+        // the rest of the random circuit is no longer connected to anything
+        standard = new Robot(optimized, level);
+        standard.getCircuit().setEvaluationMode(Circuit.EvaluationMode.STANDARD);
+        stepAndCompare(100);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.awt.geom.Point2D;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.GameConfig.SensorConfig;
+import net.bluecow.robot.GameLoop;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.NullRenderSink;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.TestLevels;
+import net.bluecow.robot.event.CircuitEvent;
+import net.bluecow.robot.event.CircuitListener;
+import net.bluecow.robot.gate.Gate;
+
+/**
+ * Tests for the game loop profiler and the gate activity counts.
+ */
+public class ProfilerTest extends TestCase {
+
+    private Robot robot;
+    private GameLoop loop;
+    
+    /**
+     * Counts every gate state change the circuit reports.
+     */
+    private int toggles;
+    
+    @Override
+    protected void setUp() throws Exception {
+        Random rand = new Random(1234);
+        List<SensorConfig> sensors = TestLevels.makeSensors(3);
+        LevelConfig level = TestLevels.makeLevel(rand, sensors, 12, 12);
+        robot = RandomCircuits.makeRobot(level, rand, 3, 40);
+        robot.setStartPosition(new Point2D.Float(6.5f, 6.5f));
+        robot.resetState();
+        level.addRobot(robot);
+        loop = new GameLoop(Collections.singleton(robot), level, new NullRenderSink());
+        robot.getCircuit().addCircuitListener(new CircuitListener() {
+            public void gatesChangedState(CircuitEvent evt) {
+                toggles += evt.getGatesAffected().size();
+            }
+            public void gatesAdded(CircuitEvent evt) { }
+            public void gatesRemoved(CircuitEvent evt) { }
+            public void gatesConnected(CircuitEvent evt) { }
+            public void gatesRepositioned(CircuitEvent evt) { }
+        });
+    }
+    
+    public void testCountsTicksAndToggles() {
+        Profiler profiler = new Profiler();
+        loop.setProfiler(profiler);
+        for (int i = 0; i < 200; i++) {
+            loop.singleStep();
+        }
+        assertEquals(200, profiler.getTicks());
+        Profiler.RobotTimes times = profiler.getRobotTimes(robot);
+        assertEquals(200, times.getTicks());
+        assertTrue(times.getEvaluateNanos() > 0);
+        assertEquals(1000.0 / loop.getFrameDelay(), profiler.getTargetTicksPerSecond());
+        assertTrue(profiler.getTicksPerSecond() > 0);
+        
+        GateActivity activity = profiler.getGateActivity(robot.getCircuit());
+        assertSame(activity, profiler.getGateActivity(robot));
+        assertEquals(200, activity.getEvaluations());
+        int sum = 0;
+        int max = 0;
+        for (Gate g : robot.getCircuit().getGates()) {
+            sum += activity.getToggleCount(g);
+            max = Math.max(max, activity.getToggleCount(g));
+        }
+        assertEquals(toggles, sum);
+        assertEquals(max, activity.getMaxToggleCount());
+        assertTrue("the random circuit should do something", max > 0);
+    }
+    
+    /**
+     * The optimized mode doesn't report most state changes, but the gate
+     * activity has to come out the same anyway.
+     */
+    public void testCountsEveryGateInOptimizedMode() {
+        Random rand = new Random(4321);
+        Robot standard = RandomCircuits.makeRobot(robot.getLevel(), rand, 5, 60);
+        Robot optimized = new Robot(standard, robot.getLevel());
+        optimized.getCircuit().setEvaluationMode(Circuit.EvaluationMode.OPTIMIZED);
+        GateActivity standardActivity = null;
+        GateActivity optimizedActivity = null;
+        for (int t = 0; t < 300; t++) {
+            if (t == 10) {
+                standardActivity = new GateActivity(standard.getCircuit());
+                optimizedActivity = new GateActivity(optimized.getCircuit());
+            }
+            RandomCircuits.setRandomSensors(standard, rand);
+            RandomCircuits.copySensors(standard, optimized);
+            standard.getCircuit().evaluateOnce();
+            optimized.getCircuit().evaluateOnce();
+        }
+        int max = 0;
+        for (int i = 0; i < 60; i++) {
+            Gate g = RandomCircuits.gateAt(standard.getCircuit(), i);
+            int count = standardActivity.getToggleCount(g);
+            assertEquals("Gate "+i, count,
+                    optimizedActivity.getToggleCount(RandomCircuits.gateAt(optimized.getCircuit(), i)));
+            max = Math.max(max, count);
+        }
+        assertTrue("the random circuit should do something", max > 0);
+    }
+    
+    public void testTurningOffStopsCounting() {
+        Profiler profiler = new Profiler();
+        loop.setProfiler(profiler);
+        for (int i = 0; i < 50; i++) {
+            loop.singleStep();
+        }
+        loop.setProfiler(null);
+        for (int i = 0; i < 50; i++) {
+            loop.singleStep();
+        }
+        assertEquals(50, profiler.getTicks());
+        assertEquals(50, profiler.getGateActivity(robot).getEvaluations());
+        
+        // and it picks up again when it's put back
+        loop.setProfiler(profiler);
+        loop.singleStep();
+        assertEquals(51, profiler.getGateActivity(robot).getEvaluations());
+    }
+}
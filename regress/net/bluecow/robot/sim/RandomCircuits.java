@@ -0,0 +1,194 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.GameConfig.GateConfig;
+import net.bluecow.robot.GameConfig.SensorConfig;
+import net.bluecow.robot.gate.AbstractGate;
+import net.bluecow.robot.gate.AndGate;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NandGate;
+import net.bluecow.robot.gate.NorGate;
+import net.bluecow.robot.gate.NotGate;
+import net.bluecow.robot.gate.OrGate;
+
+/**
+ * Builds robots with randomly-wired circuits for the simulation tests.
+ * Every gate added by this class gets its own position, so the
+ * corresponding gates in copies of the circuit can be found with
+ * {@link #gateAt(Circuit, int)}.
+ */
+public class RandomCircuits {
+
+    /**
+     * The x coordinate of the first random gate.
+     */
+    public static final int FIRST_GATE_X = 1000;
+    
+    /**
+     * The horizontal distance between the random gates.
+     */
+    public static final int GATE_SPACING = 20;
+    
+    private static final Class[] GATE_TYPES = {
+        AndGate.class, OrGate.class, NandGate.class, NorGate.class, NotGate.class
+    };
+    
+    /**
+     * This class is just a container for static methods.
+     */
+    private RandomCircuits() {
+    }
+
+    /**
+     * Creates a robot with the given number of sensors and a circuit of
+     * randomly-chosen and randomly-connected gates, including feedback loops
+     * and unconnected inputs.
+     */
+    public static Robot makeRobot(LevelConfig level, Random rand, int sensorCount, int gateCount) {
+        List<SensorConfig> sensors = new ArrayList<SensorConfig>();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors.add(new SensorConfig("sensor" + i));
+        }
+        List<GateConfig> gateConfigs = Collections.emptyList();
+        Robot robot = new Robot("robot", "Robot", level, sensors, gateConfigs,
+                null, new Point2D.Float(0.5f, 0.5f), 0.1f, null, 1);
+        Circuit c = robot.getCircuit();
+        for (Class gateType : GATE_TYPES) {
+            c.addGateAllowance(gateType, -1);
+        }
+        
+        List<Gate> sources = new ArrayList<Gate>(c.getOutputs());
+        List<Gate> added = new ArrayList<Gate>();
+        for (int i = 0; i < gateCount; i++) {
+            Gate g = makeGate(rand);
+            c.addGate(g, new Rectangle(FIRST_GATE_X + i * GATE_SPACING, 0, 10, 10));
+            sources.add(g);
+            added.add(g);
+        }
+        for (Gate g : added) {
+            connectRandomly(g, sources, rand);
+        }
+        connectRandomly(c.getInputsGate(), sources, rand);
+        return robot;
+    }
+    
+    /**
+     * Creates a new gate of a random type with a random number of inputs.
+     */
+    public static Gate makeGate(Random rand) {
+        int type = rand.nextInt(GATE_TYPES.length);
+        int ninputs = 1 + rand.nextInt(3);
+        switch (type) {
+        case 0: return new AndGate(ninputs);
+        case 1: return new OrGate(ninputs);
+        case 2: return new NandGate(ninputs);
+        case 3: return new NorGate(ninputs);
+        default: return new NotGate();
+        }
+    }
+    
+    /**
+     * Connects each input of the given gate to a random gate in the list,
+     * leaving some of them unconnected.
+     */
+    public static void connectRandomly(Gate g, List<Gate> sources, Random rand) {
+        for (Gate.Input in : g.getInputs()) {
+            if (rand.nextInt(8) == 0) {
+                in.connect(null);
+            } else {
+                in.connect(sources.get(rand.nextInt(sources.size())));
+            }
+        }
+    }
+    
+    /**
+     * Sets the robot's sensor outputs to random states.
+     */
+    public static void setRandomSensors(Robot robot, Random rand) {
+        for (Gate sensor : robot.getCircuit().getOutputs()) {
+            boolean v = rand.nextBoolean();
+            ((AbstractGate) sensor).setOutputStates(v, v);
+        }
+    }
+    
+    /**
+     * Copies the sensor output states of one robot to another robot with
+     * the same sensors.
+     */
+    public static void copySensors(Robot src, Robot dst) {
+        List<Gate> srcSensors = src.getCircuit().getOutputs();
+        List<Gate> dstSensors = dst.getCircuit().getOutputs();
+        for (int i = 0; i < srcSensors.size(); i++) {
+            boolean v = srcSensors.get(i).getOutputState();
+            ((AbstractGate) dstSensors.get(i)).setOutputStates(v, v);
+        }
+    }
+    
+    /**
+     * Returns the states of the robot's up, down, left, and right inputs
+     * packed into the low 4 bits of an int.
+     */
+    public static int robotInputs(Robot robot) {
+        Gate.Input[] inputs = robot.getCircuit().getInputsGate().getInputs();
+        int bits = 0;
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i].getState()) bits |= 1 << i;
+        }
+        return bits;
+    }
+    
+    /**
+     * Returns the gate that {@link #makeRobot} added with the given
+     * sequence number, or null if there is no such gate.
+     */
+    public static Gate gateAt(Circuit c, int i) {
+        int x = FIRST_GATE_X + i * GATE_SPACING;
+        for (Gate g : c.getGates()) {
+            if (g == c.getInputsGate() || c.getOutputs().contains(g)) continue;
+            if (g.getBounds().x == x) return g;
+        }
+        return null;
+    }
+}
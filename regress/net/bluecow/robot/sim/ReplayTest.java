@@ -0,0 +1,246 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.bluecow.robot.GameLoop;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.TestLevels;
+import net.bluecow.robot.GameConfig.GateConfig;
+import net.bluecow.robot.GameConfig.SensorConfig;
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.event.GameLoopEvent;
+import net.bluecow.robot.event.GameLoopListener;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NotGate;
+
+/**
+ * Records a run and plays it back.
+ */
+public class ReplayTest extends TestCase {
+
+    private HeadlessEngine engine;
+    private File file;
+    
+    /**
+     * The robot positions and scores seen during the recorded run, one
+     * entry per tick.
+     */
+    private List<float[]> seen = new ArrayList<float[]>();
+    
+    @Override
+    protected void setUp() throws Exception {
+        List<SensorConfig> sensors = TestLevels.makeSensors(2);
+        LevelConfig level = TestLevels.makeLevel(new Random(1), sensors, 10, 5);
+        List<GateConfig> gateConfigs = Collections.emptyList();
+        Robot robot = new Robot("robot", "Robot", level, sensors, gateConfigs,
+                null, new Point2D.Float(1.5f, 2.5f), 0.1f, null, 1);
+        robot.getCircuit().addGateAllowance(NotGate.class, -1);
+        level.addRobot(robot);
+        level.addSwitch(new Switch(new Point(3, 2), "flag", null, null, "level.score += 5;"));
+        level.addSwitch(new Switch(new Point(6, 2), "goal", null, null,
+                "robot.setGoalReached(true); level.score += 200;"));
+        Gate not = new NotGate();
+        robot.getCircuit().addGate(not, new Rectangle(50, 50, 20, 20));
+        robot.getCircuit().getInputsGate().getInputs()[3].connect(not);
+        
+        engine = new HeadlessEngine(level);
+        file = File.createTempFile("replay", ".grd");
+        file.deleteOnExit();
+    }
+    
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+    
+    private void record(int keyframeInterval) throws Exception {
+        record(keyframeInterval, RunRecorder.MAX_LOG_SIZE);
+    }
+    
+    private void record(int keyframeInterval, long maxLogSize) throws Exception {
+        final GameLoop loop = engine.getGameLoop();
+        GameLoopListener listener = new GameLoopListener() {
+            public void switchEntered(GameLoopEvent evt) { }
+            public void switchExited(GameLoopEvent evt) { }
+            public void tickCompleted(GameLoopEvent evt) {
+                Robot r = loop.getRobots().get(0);
+                seen.add(new float[] { (float) r.getX(), (float) r.getY(), loop.getLevelConfig().getScore() });
+            }
+        };
+        loop.addGameLoopListener(listener);
+        RunRecorder recorder = new RunRecorder(loop, new FileOutputStream(file), keyframeInterval, maxLogSize);
+        try {
+            engine.run(1000);
+            recorder.close();
+        } finally {
+            loop.removeGameLoopListener(listener);
+        }
+        assertEquals(seen.size(), recorder.getTickCount());
+    }
+    
+    public void testSequentialPlayback() throws Exception {
+        long hash = StateHash.hashLevel(engine.getLevel(), true);
+        record(16);
+        Replay replay = new Replay(file);
+        assertEquals(hash, replay.getInitialStateHash());
+        assertEquals(Collections.singletonList("robot"), replay.getRobotIds());
+        assertEquals(2, replay.getSwitchIds().size());
+        assertEquals(seen.size(), replay.getRecordCount());
+        
+        int enters = 0;
+        int i = 0;
+        while (replay.next()) {
+            float[] s = seen.get(i);
+            assertEquals("x at "+i, s[0], replay.getX(0));
+            assertEquals("y at "+i, s[1], replay.getY(0));
+            assertEquals("score at "+i, (int) s[2], replay.getScore());
+            assertEquals(i + 1, replay.getTick());
+            for (int e = 0; e < replay.getEventCount(); e++) {
+                if (replay.isEnterEvent(e)) enters++;
+            }
+            i++;
+        }
+        assertEquals(seen.size(), i);
+        assertEquals(2, enters);
+        assertTrue(replay.isGoalReached(0));
+        assertEquals(205, replay.getScore());
+        assertEquals(Robot.MOVING_RIGHT, replay.getMovingDirection(0));
+    }
+    
+    public void testSeek() throws Exception {
+        record(7);
+        Replay replay = new Replay(file);
+        Random rand = new Random(3);
+        for (int n = 0; n < 100; n++) {
+            int rec = rand.nextInt(replay.getRecordCount());
+            replay.seek(rec);
+            assertEquals(rec, replay.getRecord());
+            assertEquals(seen.get(rec)[0], replay.getX(0));
+            assertEquals((int) seen.get(rec)[2], replay.getScore());
+        }
+    }
+    
+    public void testApplyTo() throws Exception {
+        record(10);
+        Replay replay = new Replay(file);
+        engine.reset();
+        replay.seek(20);
+        replay.applyTo(engine.getLevel(), engine.getGameLoop().getRobots());
+        Robot r = engine.getLevel().getRobots().get(0);
+        assertEquals(seen.get(20)[0], (float) r.getX());
+        assertEquals(seen.get(20)[1], (float) r.getY());
+    }
+    
+    public void testRecorderFailsPastSizeLimit() throws Exception {
+        record(16);
+        long size = file.length();
+        
+        seen.clear();
+        engine.reset();
+        record(16, size);
+        assertEquals(size, file.length());
+        
+        seen.clear();
+        engine.reset();
+        try {
+            record(16, size - 1);
+            fail("Recording past the size limit should have failed");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains(String.valueOf(size - 1)));
+        }
+    }
+    
+    public void testReplayRejectsFileOverSizeLimit() throws Exception {
+        record(16);
+        long size = file.length();
+        assertEquals(seen.size(), new Replay(file, size).getRecordCount());
+        try {
+            new Replay(file, size - 1);
+            fail("Opening a recording past the size limit should have failed");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains(String.valueOf(size - 1)));
+        }
+    }
+    
+    /**
+     * Sends the given number of switch-entered events to the recorder,
+     * followed by the end of a tick.
+     */
+    private void fireEvents(RunRecorder recorder, int count) {
+        GameLoop loop = engine.getGameLoop();
+        Robot robot = loop.getRobots().get(0);
+        Switch sw = engine.getLevel().getSwitches().get(1);
+        for (int i = 0; i < count; i++) {
+            recorder.switchEntered(new GameLoopEvent(loop, 1, robot, sw));
+        }
+        recorder.tickCompleted(new GameLoopEvent(loop, 1, null, null));
+    }
+    
+    public void testManySwitchEventsInOneTick() throws Exception {
+        RunRecorder recorder = new RunRecorder(engine.getGameLoop(), new FileOutputStream(file), 16);
+        fireEvents(recorder, 300);
+        recorder.close();
+        
+        Replay replay = new Replay(file);
+        assertTrue(replay.next());
+        assertEquals(300, replay.getEventCount());
+        assertTrue(replay.isEnterEvent(299));
+        assertEquals(0, replay.getEventRobot(299));
+        assertEquals(1, replay.getEventSwitch(299));
+    }
+    
+    public void testTooManySwitchEventsFailsRecording() throws Exception {
+        RunRecorder recorder = new RunRecorder(engine.getGameLoop(), new FileOutputStream(file), 16);
+        fireEvents(recorder, RunRecorder.MAX_EVENTS_PER_TICK + 1);
+        try {
+            recorder.close();
+            fail("Dropping switch events should have failed the recording");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("switch events"));
+        }
+    }
+}
@@ -39,12 +39,12 @@ package net.bluecow.robot;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.geom.Line2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +55,8 @@ import net.bluecow.robot.event.CircuitListener;
 import net.bluecow.robot.event.GateEvent;
 import net.bluecow.robot.event.GateListener;
 import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.sim.CompiledCircuit;
+import net.bluecow.robot.sim.OptimizedCircuit;
 
 /**
  * The Circuit class represents a collection of logic gates that can
@@ -68,6 +70,41 @@ public class Circuit {
 
     private static final boolean debugOn = false;
     
+    /**
+     * The ways {@link Circuit#evaluateOnce()} can go about evaluating
+     * the gates. All modes leave every gate in the same state after each
+     * evaluation; they only differ in how much work that takes.
+     */
+    public static enum EvaluationMode {
+        
+        /**
+         * Calls evaluateInput() then latchOutput() on every gate object.
+         */
+        STANDARD,
+        
+        /**
+         * Evaluates a flattened array-based copy of the circuit. See
+         * {@link CompiledCircuit}.
+         */
+        COMPILED,
+        
+        /**
+         * Like COMPILED, but only re-evaluates gates whose inputs changed
+         * on the previous tick.
+         */
+        EVENT_DRIVEN,
+        
+        /**
+         * Like COMPILED, but evaluates a reduced netlist with constants,
+         * double inversions and duplicate gates removed. Gates that can't
+         * affect the robot are left out of the netlist, and the states of
+         * the gates that aren't evaluated through their own methods are
+         * only worked out when they are read, so the state change events
+         * only list those. See {@link OptimizedCircuit}.
+         */
+        OPTIMIZED
+    }
+    
     /**
      * Determines whether or not this circuit does not allow structural
      * modifications. Structural modifications include adding and removing
@@ -80,6 +117,17 @@ public class Circuit {
      */
     private boolean locked = false;
     
+    /**
+     * The way this circuit gets evaluated. Defaults to STANDARD.
+     */
+    private EvaluationMode evaluationMode = EvaluationMode.STANDARD;
+    
+    /**
+     * The compiled form of this circuit. Only exists while the evaluation
+     * mode is COMPILED, EVENT_DRIVEN or OPTIMIZED.
+     */
+    private CompiledCircuit compiled;
+    
     /**
      * This circuit's name as it should be displayed to the user.
      */
@@ -91,16 +139,43 @@ public class Circuit {
      */
     private List<Gate> outputs;
 
+    /**
+     * How close a point has to come to a wire for {@link #getWireAt(Point)}
+     * to match it.
+     */
+    private static final int WIRE_HIT_RADIUS = 4;
+    
     /**
      * The special gate that this circuit outputs to (typically, the robot's inputs).
      */
     private Gate inputsGate;
     
     /**
-     * All the gates in this circuit.
+     * All the gates in this circuit, in the order they were added. The order
+     * is kept so that copies of a circuit list their gates in the same order,
+     * which makes recorded runs and state hashes reproducible.
      */
     private Set<Gate> gates;
     
+    /**
+     * The gates in this circuit as an array, so they can be iterated over
+     * without creating an iterator. Set to null whenever {@link #gates}
+     * changes, and rebuilt by {@link #gateArray()} when needed.
+     */
+    private Gate[] gateArray;
+    
+    /**
+     * The list of gates that changed state on the most recent call to
+     * {@link #evaluateOnce()}. It's reused on every evaluation.
+     */
+    private final List<Gate> gatesThatChanged = new ArrayList<Gate>();
+    
+    /**
+     * The event fired after every evaluation. It's a live view of
+     * {@link #gatesThatChanged}.
+     */
+    private final CircuitEvent stateChangeEvent = new CircuitEvent(this, gatesThatChanged, false);
+    
     /**
      * Maps each type of gate to its GateConfig instance.
      */
@@ -128,17 +203,46 @@ public class Circuit {
      */
     private List<CircuitListener> circuitListeners = new ArrayList<CircuitListener>();
 
+    /**
+     * Maps each gate to the inputs in this circuit that its output is
+     * connected to. Kept up to date by {@link #updateFanOut(Gate.Input)}
+     * whenever an input in this circuit is connected or disconnected.
+     */
+    private final Map<Gate, List<Gate.Input>> fanOut = new HashMap<Gate, List<Gate.Input>>();
+    
+    /**
+     * The gate each input is listed under in {@link #fanOut}. The input
+     * events don't say what an input used to be connected to, so this is
+     * how an input is found again when it's reconnected.
+     */
+    private final Map<Gate.Input, Gate> fanOutSources = new HashMap<Gate.Input, Gate>();
+    
+    /**
+     * The spatial index used by {@link #getGateAt(Point)} and
+     * {@link #getWireAt(Point)}. It's built by {@link #grid()} on the first
+     * query, and kept up to date from then on as gates are added, removed,
+     * moved, and connected.
+     */
+    private CircuitGrid grid;
+    
     /**
      * Handles GateEvents from the gates in this circuit by refiring them as
-     * circuit events.
+     * circuit events, after updating the fan-out and spatial indexes.
      */
     private GateListener gateEventHandler = new GateListener() {
 
         public void inputConnected(GateEvent e) {
+            updateFanOut(e.getSourceInput());
+            if (grid != null) {
+                grid.wireChanged(e.getSourceInput());
+            }
             fireConnectEvent(Collections.singletonList(e.getSourceGate()));
         }
 
         public void gateRepositioned(GateEvent e) {
+            if (grid != null) {
+                grid.gateMoved(e.getSourceGate());
+            }
             fireRepositionEvent(Collections.singletonList(e.getSourceGate()));
         }
         
@@ -160,7 +264,7 @@ public class Circuit {
     public Circuit(String name, Gate inputs, Collection<? extends Gate> outputs,
             Collection<GateConfig> gateConfigs, Dimension defaultGateSize) {
         
-        gates = new HashSet<Gate>();
+        gates = new LinkedHashSet<Gate>();
         
         this.name = name;
         inputsGate = inputs;
@@ -177,6 +281,12 @@ public class Circuit {
             output.addGateListener(gateEventHandler);
         }
         
+        for (Gate g : gates) {
+            for (Gate.Input input : g.getInputs()) {
+                updateFanOut(input);
+            }
+        }
+        
         this.gateConfigs = new HashMap<Class<Gate>, GateConfig>();
         for (GateConfig gc : gateConfigs) {
             this.gateConfigs.put(gc.getGateClass(), gc);
@@ -206,7 +316,7 @@ public class Circuit {
         this.name = src.name;
         this.gateAllowances = new HashMap<Class<? extends Gate>, Integer>(src.gateAllowances);
         this.gateConfigs = new HashMap<Class<Gate>, GateConfig>(src.gateConfigs);
-        this.gates = new HashSet<Gate>();
+        this.gates = new LinkedHashSet<Gate>();
         this.inputsGate = inputs;
         inputsGate.addGateListener(gateEventHandler);
         this.locked = src.locked;
@@ -258,6 +368,15 @@ public class Circuit {
             g.addGateListener(gateEventHandler);
         }
         
+        // the connections above were made before the event handler was listening
+        for (Gate g : gates) {
+            for (Gate.Input input : g.getInputs()) {
+                updateFanOut(input);
+            }
+        }
+        
+        setEvaluationMode(src.evaluationMode);
+        
         debug("Gate allowances after copy: "+gateAllowances);
     }
     
@@ -277,12 +396,8 @@ public class Circuit {
         }
 
         // disconnect all the inputs the given gate outputs to
-        for (Gate gg : gates) {
-            for (int i = 0; i < gg.getInputs().length; i++) {
-                if (gg.getInputs()[i].getConnectedGate() == g) {
-                    gg.getInputs()[i].connect(null);
-                }
-            }
+        for (Gate.Input input : new ArrayList<Gate.Input>(getFanOut(g))) {
+            input.connect(null);
         }
         
         // disconnect the outputs from the doomed gate's inputs
@@ -291,6 +406,10 @@ public class Circuit {
         }
         
         boolean removed = gates.remove(g);
+        gateArray = null;
+        if (grid != null) {
+            grid.removeGate(g);
+        }
         
         if (removed) {
             Integer allowance = gateAllowances.get(g.getClass());
@@ -339,16 +458,25 @@ public class Circuit {
         
         g.setBounds(bounds);
         gates.add(g);
+        gateArray = null;
+        for (Gate.Input input : g.getInputs()) {
+            updateFanOut(input);
+        }
+        if (grid != null) {
+            grid.addGate(g);
+        }
         g.addGateListener(gateEventHandler);
         fireAddEvent(Collections.singletonList(g));
     }
 
+    /**
+     * Returns the gate whose bounds contain the given point. If gates
+     * overlap at p, the one that was added to this circuit first is returned.
+     * 
+     * @return The gate at p, or null if there is no gate there.
+     */
     public Gate getGateAt(Point p) {
-        for (Gate g : gates) {
-            Rectangle r = g.getBounds();
-            if (r.contains(p)) return g;
-        }
-        return null;
+        return grid().getGateAt(p);
     }
 
     public List<Gate> getOutputs() {
@@ -392,22 +520,44 @@ public class Circuit {
 
     /**
      * Evaluates each gate in the circuit one time, then fires the state change notification.
+     * The same event object is fired after every evaluation, so listeners must not
+     * hang on to its list of affected gates.
      */
     public void evaluateOnce() {
-        for (Gate gate : gates) {
-            gate.evaluateInput();
-        }
-        
-        List<Gate> gatesThatChanged = new ArrayList<Gate>();
-        for (Gate gate : gates) {
-            boolean oldState = gate.getOutputState();
-            gate.latchOutput();
-            if (gate.getOutputState() != oldState) {
-                gatesThatChanged.add(gate);
+        gatesThatChanged.clear();
+        if (compiled != null) {
+            compiled.evaluateOnce(gatesThatChanged);
+        } else {
+            Gate[] gates = gateArray();
+            for (int i = 0; i < gates.length; i++) {
+                gates[i].evaluateInput();
+            }
+            
+            for (int i = 0; i < gates.length; i++) {
+                Gate gate = gates[i];
+                boolean oldState = gate.getOutputState();
+                gate.latchOutput();
+                if (gate.getOutputState() != oldState) {
+                    gatesThatChanged.add(gate);
+                }
             }
         }
         
-        fireStateChangeEvent(gatesThatChanged);
+        // the event is reused, so this doesn't allocate anything
+        for (int i = circuitListeners.size() - 1; i >= 0; i--) {
+            circuitListeners.get(i).gatesChangedState(stateChangeEvent);
+        }
+    }
+    
+    /**
+     * Returns the gates in this circuit as an array, creating it
+     * if the set of gates has changed since the last call.
+     */
+    private Gate[] gateArray() {
+        if (gateArray == null) {
+            gateArray = gates.toArray(new Gate[gates.size()]);
+        }
+        return gateArray;
     }
 
     /**
@@ -417,12 +567,28 @@ public class Circuit {
         for (Gate gate : gates) {
             gate.reset();
         }
+        if (compiled != null) {
+            compiled.sync();
+        }
         
         // XXX not quite right. should have another event type for reset
         List<Gate> empty = Collections.emptyList();
         fireStateChangeEvent(empty);
     }
 
+    /**
+     * Tells this circuit that its gates' states were set directly instead of
+     * by evaluating the circuit (for example, when going back to a recorded
+     * state), then fires a notification.
+     */
+    public void stateRestored() {
+        if (compiled != null) {
+            compiled.sync();
+        }
+        List<Gate> empty = Collections.emptyList();
+        fireStateChangeEvent(empty);
+    }
+
     /**
      * Searches for a connecting wire that nearly intersects the given point.
      * The current match radius is 4 units.
@@ -431,23 +597,69 @@ public class Circuit {
      * if no connecting wire comes near p.
      */
     public Gate.Input getWireAt(Point p) {
-        final int r = 4;  // the radius of matching
-        for (Gate g : gates) {
-            Gate.Input[] inputs = g.getInputs();
-            for (int i = 0; i < inputs.length; i++) {
-                Gate.Input inp = inputs[i];
-                if (inp.getConnectedGate() != null) {
-                    Point start = inputs[i].getPosition();
-                    Point end = inp.getConnectedGate().getOutputPosition();
-                    Line2D wire = new Line2D.Float(start.x, start.y, end.x, end.y);
-                    if (wire.intersects(p.x-r, p.y-r, r*2, r*2)) {
-                        //((Graphics2D) getGraphics()).draw(wire);
-                        return inp;
-                    }
-                }
+        return grid().getWireAt(p);
+    }
+
+    /**
+     * Returns the inputs in this circuit that the given gate's output is
+     * connected to, in the order they were connected. This takes time
+     * proportional to the number of connections, not to the size of the
+     * circuit.
+     * <p>
+     * The returned list can't be modified, and it's only valid until the next
+     * time an input in this circuit is connected or disconnected; copy it if
+     * you're going to change the circuit while you use it.
+     * 
+     * @param g The gate whose connections to look up. It doesn't have to be
+     * part of this circuit.
+     * @return The inputs g drives. Never null.
+     */
+    public List<Gate.Input> getFanOut(Gate g) {
+        List<Gate.Input> driven = fanOut.get(g);
+        if (driven == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(driven);
+    }
+    
+    /**
+     * Moves the given input to the right list in {@link #fanOut} after it
+     * has been connected or disconnected. Inputs of gates that aren't part of
+     * this circuit are taken out of the index. Calling this when the input
+     * hasn't changed does nothing, so it's safe for duplicate events.
+     */
+    private void updateFanOut(Gate.Input input) {
+        Gate oldSource = fanOutSources.get(input);
+        Gate newSource = gates.contains(input.getGate()) ? input.getConnectedGate() : null;
+        if (oldSource == newSource) return;
+        if (oldSource != null) {
+            List<Gate.Input> driven = fanOut.get(oldSource);
+            driven.remove(input);
+            if (driven.isEmpty()) {
+                fanOut.remove(oldSource);
             }
+            fanOutSources.remove(input);
+        }
+        if (newSource != null) {
+            List<Gate.Input> driven = fanOut.get(newSource);
+            if (driven == null) {
+                driven = new ArrayList<Gate.Input>(2);
+                fanOut.put(newSource, driven);
+            }
+            driven.add(input);
+            fanOutSources.put(input, newSource);
         }
-        return null;
+    }
+    
+    /**
+     * Returns the spatial index of this circuit's gates and wires, building
+     * it first if necessary.
+     */
+    private CircuitGrid grid() {
+        if (grid == null) {
+            grid = new CircuitGrid(this, WIRE_HIT_RADIUS);
+        }
+        return grid;
     }
 
     public void addCircuitListener(CircuitListener l) {
@@ -527,6 +739,34 @@ public class Circuit {
         return locked;
     }
     
+    /**
+     * Changes the way this circuit is evaluated. This can be done at any time,
+     * since all modes work from (and update) the gates' own output states.
+     */
+    public void setEvaluationMode(EvaluationMode mode) {
+        if (mode == null) throw new NullPointerException("Null evaluation mode");
+        if (compiled != null) {
+            removeCircuitListener(compiled);
+            compiled.release();
+            compiled = null;
+        }
+        evaluationMode = mode;
+        if (mode == EvaluationMode.OPTIMIZED) {
+            compiled = new OptimizedCircuit(this);
+            addCircuitListener(compiled);
+        } else if (mode == EvaluationMode.COMPILED || mode == EvaluationMode.EVENT_DRIVEN) {
+            compiled = new CompiledCircuit(this, mode == EvaluationMode.EVENT_DRIVEN);
+            addCircuitListener(compiled);
+        }
+    }
+    
+    /**
+     * Returns the way this circuit is evaluated.
+     */
+    public EvaluationMode getEvaluationMode() {
+        return evaluationMode;
+    }
+    
     /**
      * Returns this circuit's name.
      */
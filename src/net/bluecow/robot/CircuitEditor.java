@@ -72,6 +72,8 @@ import net.bluecow.robot.GameConfig.GateConfig;
 import net.bluecow.robot.event.CircuitEvent;
 import net.bluecow.robot.event.CircuitListener;
 import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.sim.GateActivity;
+import net.bluecow.robot.sim.Profiler;
 import net.bluecow.robot.sound.SoundManager;
 
 public class CircuitEditor extends JPanel {
@@ -670,6 +672,12 @@ public class CircuitEditor extends JPanel {
 	 */
 	private Color activeColor = Color.orange;
 	
+    /**
+     * The profiler whose gate toggle counts for this editor's circuit are
+     * painted over the gates as a heat map, or null for no heat map.
+     */
+    private Profiler profiler;
+    
 	/**
 	 * The colour to make the highlighted gates or inputs.
 	 */
@@ -841,6 +849,28 @@ public class CircuitEditor extends JPanel {
 		}
 	}
 
+    /**
+     * Paints a translucent red box over each gate that has changed state,
+     * more opaque for the gates that changed most often.
+     */
+    private void paintActivity(Graphics2D g2) {
+        GateActivity gateActivity = profiler.getGateActivity(circuit);
+        if (gateActivity == null) return;
+        int max = gateActivity.getMaxToggleCount();
+        if (max == 0) return;
+        Composite backupComposite = g2.getComposite();
+        g2.setColor(Color.RED);
+        for (Gate gate : circuit.getGates()) {
+            int toggles = gateActivity.getToggleCount(gate);
+            if (toggles == 0) continue;
+            float heat = 0.1f + 0.5f * toggles / max;
+            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, heat));
+            Rectangle r = gate.getBounds();
+            g2.fillRect(r.x, r.y, r.width, r.height);
+        }
+        g2.setComposite(backupComposite);
+    }
+    
     @Override
 	public void paintComponent(Graphics g) {
 		Graphics2D g2 = (Graphics2D) g;
@@ -857,6 +887,10 @@ public class CircuitEditor extends JPanel {
             paintGate(g2, zoomingGate);
         }
         
+        if (profiler != null) {
+            paintActivity(g2);
+        }
+        
         Stroke backupStroke = g2.getStroke();
         if (pendingConnectionLine != null) {
             if (pendingConnectionLine.isConnectionPossible()) {
@@ -906,6 +940,20 @@ public class CircuitEditor extends JPanel {
 	public Color getActiveColor() {
 		return activeColor;
 	}
+	
+    /**
+     * Shows the given profiler's gate toggle counts for this circuit as a
+     * heat map over the gates, or turns the heat map off if the argument is
+     * null.
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+        repaint();
+    }
+    
+    public Profiler getProfiler() {
+        return profiler;
+    }
 
 	/**
 	 * @param gate The gate that should be highlighted and given input focus.
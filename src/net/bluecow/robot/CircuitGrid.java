@@ -0,0 +1,355 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.bluecow.robot;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.bluecow.robot.gate.Gate;
+
+/**
+ * The CircuitGrid is a spatial index over the gates and wires of a circuit,
+ * so the circuit editor can find the thing under the mouse without testing
+ * every gate and wire in the circuit.
+ * <p>
+ * The plane is divided into square cells, and every gate and wire is
+ * registered in each cell it could be hit from. A query only looks at the
+ * entries in the cell containing the query point. Entries are kept in each
+ * cell in the order their gates were added to the index (and by input number
+ * within a gate), so a query returns the same gate or wire that a linear scan
+ * of the circuit's gates would.
+ * <p>
+ * The index doesn't watch the gates itself; the circuit has to tell it when
+ * a gate is added, removed, or moved, and when an input is connected, after
+ * it has updated its fan-out index. Gates that don't have bounds yet can't be
+ * hit until they are moved.
+ */
+class CircuitGrid {
+
+    /**
+     * The width and height of each cell.
+     */
+    static final int CELL_SIZE = 64;
+
+    /**
+     * An indexed gate or wire, and the cells it is registered in.
+     */
+    private static class Entry<T> {
+        
+        final T item;
+        
+        /**
+         * The position of this entry in the circuit's gate order. Entries
+         * with lower values win when more than one is hit.
+         */
+        final long order;
+
+        /**
+         * The keys of the cells this entry is registered in.
+         */
+        long[] cells = new long[0];
+        
+        Entry(T item, long order) {
+            this.item = item;
+            this.order = order;
+        }
+    }
+    
+    /**
+     * A wire entry also remembers which gate it was registered from, since
+     * the input may already be connected elsewhere by the time the wire is
+     * unregistered.
+     */
+    private static class Wire extends Entry<Gate.Input> {
+        
+        final Gate source;
+        
+        Wire(Gate.Input input, long order, Gate source) {
+            super(input, order);
+            this.source = source;
+        }
+    }
+    
+    /**
+     * How close (in each direction) a point has to come to a wire to hit it.
+     */
+    private final int wireRadius;
+    
+    private final Map<Gate, Entry<Gate>> gateEntries = new HashMap<Gate, Entry<Gate>>();
+    
+    private final Map<Gate.Input, Wire> wireEntries = new HashMap<Gate.Input, Wire>();
+    
+    private final Map<Long, List<Entry<Gate>>> gateCells = new HashMap<Long, List<Entry<Gate>>>();
+
+    private final Map<Long, List<Wire>> wireCells = new HashMap<Long, List<Wire>>();
+    
+    /**
+     * The order value the next gate added will get.
+     */
+    private long nextOrder;
+    
+    /**
+     * The circuit whose fan-out index tells which wires end at a gate.
+     */
+    private final Circuit circuit;
+    
+    /**
+     * Creates a new index over the gates of the given circuit, which will be
+     * ordered the same way as the circuit's gates.
+     * 
+     * @param circuit The circuit to index.
+     * @param wireRadius How close a point has to be to a wire to hit it.
+     */
+    CircuitGrid(Circuit circuit, int wireRadius) {
+        this.circuit = circuit;
+        this.wireRadius = wireRadius;
+        for (Gate g : circuit.getGates()) {
+            addGate(g);
+        }
+    }
+    
+    /**
+     * Adds the given gate and the wires to its inputs to this index. The
+     * gate comes after all the gates already in the index.
+     */
+    void addGate(Gate g) {
+        if (gateEntries.containsKey(g)) return;
+        Entry<Gate> e = new Entry<Gate>(g, nextOrder);
+        nextOrder += 1L << 20;
+        gateEntries.put(g, e);
+        placeGate(e);
+        for (Gate.Input input : g.getInputs()) {
+            wireChanged(input);
+        }
+    }
+    
+    /**
+     * Removes the given gate and the wires to its inputs from this index.
+     * Wires from the gate's output to other gates are left alone.
+     */
+    void removeGate(Gate g) {
+        Entry<Gate> e = gateEntries.remove(g);
+        if (e == null) return;
+        unregister(gateCells, e);
+        for (Gate.Input input : g.getInputs()) {
+            removeWire(input);
+        }
+    }
+
+    /**
+     * Updates the cells of the given gate, the wires to its inputs, and the
+     * wires from its output after it has been moved or resized.
+     */
+    void gateMoved(Gate g) {
+        Entry<Gate> e = gateEntries.get(g);
+        if (e != null) {
+            unregister(gateCells, e);
+            placeGate(e);
+            for (Gate.Input input : g.getInputs()) {
+                wireChanged(input);
+            }
+        }
+        for (Gate.Input input : circuit.getFanOut(g)) {
+            wireChanged(input);
+        }
+    }
+
+    /**
+     * Updates the wire to the given input after it has been connected or
+     * disconnected. Inputs of gates that aren't in this index are ignored.
+     */
+    void wireChanged(Gate.Input input) {
+        Entry<Gate> owner = gateEntries.get(input.getGate());
+        if (owner == null) return;
+        removeWire(input);
+        Gate source = input.getConnectedGate();
+        if (source == null) return;
+        
+        Gate.Input[] siblings = input.getGate().getInputs();
+        int inputNum;
+        for (inputNum = 0; inputNum < siblings.length && siblings[inputNum] != input; inputNum++);
+        Wire w = new Wire(input, owner.order + inputNum, source);
+        wireEntries.put(input, w);
+        placeWire(w);
+    }
+    
+    /**
+     * Returns the first gate (in index order) whose bounds contain p, or null
+     * if there isn't one.
+     */
+    Gate getGateAt(Point p) {
+        List<Entry<Gate>> candidates = gateCells.get(key(cellOf(p.x), cellOf(p.y)));
+        if (candidates == null) return null;
+        for (Entry<Gate> e : candidates) {
+            if (e.item.getBounds().contains(p)) return e.item;
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the input whose wire comes within the wire radius of p, or null
+     * if there isn't one. If several wires qualify, the one belonging to the
+     * first gate (in index order) and the lowest input number wins.
+     */
+    Gate.Input getWireAt(Point p) {
+        List<Wire> candidates = wireCells.get(key(cellOf(p.x), cellOf(p.y)));
+        if (candidates == null) return null;
+        final int r = wireRadius;
+        for (Wire w : candidates) {
+            Point start = w.item.getPosition();
+            Point end = w.source.getOutputPosition();
+            Line2D wire = new Line2D.Float(start.x, start.y, end.x, end.y);
+            if (wire.intersects(p.x-r, p.y-r, r*2, r*2)) {
+                return w.item;
+            }
+        }
+        return null;
+    }
+    
+    private void removeWire(Gate.Input input) {
+        Wire w = wireEntries.remove(input);
+        if (w == null) return;
+        unregister(wireCells, w);
+    }
+    
+    /**
+     * Registers the given gate in every cell its bounds overlap.
+     */
+    private void placeGate(Entry<Gate> e) {
+        Rectangle b;
+        try {
+            b = e.item.getBounds();
+        } catch (IllegalStateException ex) {
+            return;
+        }
+        if (b.width <= 0 || b.height <= 0) return;
+        int cx0 = cellOf(b.x);
+        int cx1 = cellOf(b.x + b.width - 1);
+        int cy0 = cellOf(b.y);
+        int cy1 = cellOf(b.y + b.height - 1);
+        List<Long> keys = new ArrayList<Long>();
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cy = cy0; cy <= cy1; cy++) {
+                keys.add(key(cx, cy));
+            }
+        }
+        register(gateCells, e, keys);
+    }
+    
+    /**
+     * Registers the given wire in every cell containing a point that is
+     * within the wire radius (plus a unit of slack for rounding) of it. The
+     * wire is cut into one piece per column of cells, and each piece covers
+     * the rows between its lowest and highest point.
+     */
+    private void placeWire(Wire w) {
+        Point start;
+        Point end;
+        try {
+            start = w.item.getPosition();
+            end = w.source.getOutputPosition();
+        } catch (IllegalStateException ex) {
+            return;
+        }
+        final double m = wireRadius + 1;
+        double x0 = start.x, y0 = start.y, x1 = end.x, y1 = end.y;
+        if (x0 > x1) {
+            double t = x0; x0 = x1; x1 = t;
+            t = y0; y0 = y1; y1 = t;
+        }
+        List<Long> keys = new ArrayList<Long>();
+        for (int cx = cellOf(x0 - m); cx <= cellOf(x1 + m); cx++) {
+            double ya, yb;
+            if (x1 == x0) {
+                ya = y0;
+                yb = y1;
+            } else {
+                double left = Math.max(x0, (double) cx * CELL_SIZE - m);
+                double right = Math.min(x1, (double) (cx + 1) * CELL_SIZE + m);
+                double slope = (y1 - y0) / (x1 - x0);
+                ya = y0 + (left - x0) * slope;
+                yb = y0 + (right - x0) * slope;
+            }
+            for (int cy = cellOf(Math.min(ya, yb) - m); cy <= cellOf(Math.max(ya, yb) + m); cy++) {
+                keys.add(key(cx, cy));
+            }
+        }
+        register(wireCells, w, keys);
+    }
+    
+    /**
+     * Adds the entry to each of the given cells, keeping every cell sorted
+     * by entry order.
+     */
+    private static <E extends Entry<?>> void register(Map<Long, List<E>> cells, E e, List<Long> keys) {
+        e.cells = new long[keys.size()];
+        for (int i = 0; i < e.cells.length; i++) {
+            Long key = keys.get(i);
+            e.cells[i] = key;
+            List<E> cell = cells.get(key);
+            if (cell == null) {
+                cell = new ArrayList<E>(4);
+                cells.put(key, cell);
+            }
+            int pos = cell.size();
+            while (pos > 0 && cell.get(pos - 1).order > e.order) pos--;
+            cell.add(pos, e);
+        }
+    }
+    
+    private static <E extends Entry<?>> void unregister(Map<Long, List<E>> cells, E e) {
+        for (long key : e.cells) {
+            List<E> cell = cells.get(key);
+            cell.remove(e);
+            if (cell.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+        e.cells = new long[0];
+    }
+    
+    private static int cellOf(double v) {
+        return (int) Math.floor(v / CELL_SIZE);
+    }
+    
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
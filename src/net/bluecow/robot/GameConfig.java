@@ -112,6 +112,12 @@ public class GameConfig {
         private Sprite sprite;
         private Collection<SensorConfig> sensorTypes;
         
+        /**
+         * One bit for each sensor type in {@link #sensorTypes} that has a
+         * bit index. See {@link #getSensorMask()}.
+         */
+        private long sensorMask;
+        
         public SquareConfig() {
             sensorTypes = new ArrayList<SensorConfig>();
         }
@@ -123,6 +129,7 @@ public class GameConfig {
             this.occupiable = occupiable;
             this.sprite = sprite;
             this.sensorTypes = new ArrayList<SensorConfig>(sensorTypes);
+            updateSensorMask();
         }
 
         public String getName() {
@@ -153,12 +160,38 @@ public class GameConfig {
             return Collections.unmodifiableCollection(sensorTypes);
         }
         
+        public boolean hasSensorType(SensorConfig sensor) {
+            return sensorTypes.contains(sensor);
+        }
+        
         public void setSensorTypes(Collection<SensorConfig> sensorTypes) {
             this.sensorTypes = sensorTypes;
+            updateSensorMask();
         }
 
         public boolean removeSensorType(SensorConfig sc) {
-            return sensorTypes.remove(sc);
+            boolean removed = sensorTypes.remove(sc);
+            updateSensorMask();
+            return removed;
+        }
+        
+        public long getSensorMask() {
+            return sensorMask;
+        }
+        
+        /**
+         * Recalculates this square's sensor mask from the current bit indices
+         * of its sensor types. The game config calls this on all its square
+         * types whenever it renumbers the sensor types.
+         */
+        void updateSensorMask() {
+            long mask = 0L;
+            for (SensorConfig sensor : sensorTypes) {
+                if (sensor.hasBitIndex()) {
+                    mask |= 1L << sensor.getBitIndex();
+                }
+            }
+            sensorMask = mask;
         }
         
         public Sprite getSprite() {
@@ -171,8 +204,23 @@ public class GameConfig {
     }
     
     public static class SensorConfig {
+        
+        /**
+         * The largest number of sensor types in one game that can be given
+         * bit indices. Sensor types beyond this limit still work, but they
+         * don't get the fast path in {@link Robot#updateSensors()}.
+         */
+        public static final int MAX_INDEXED_SENSORS = 64;
+        
         private String id;
         
+        /**
+         * This sensor type's bit position in the sensor mask of every square
+         * type in the same game config, or -1 if it has not been added to a
+         * game config (or there are already too many sensor types).
+         */
+        private int bitIndex = -1;
+        
         public SensorConfig(String id) {
             if (id == null) throw new NullPointerException("Null sensor type not allowed");
             this.id = id;
@@ -186,6 +234,22 @@ public class GameConfig {
             this.id = id;
         }
 
+        /**
+         * Returns this sensor type's bit position in {@link Square#getSensorMask()},
+         * or -1 if it doesn't have one.
+         */
+        public int getBitIndex() {
+            return bitIndex;
+        }
+        
+        /**
+         * Returns true if this sensor type has a bit position in the square
+         * types' sensor masks.
+         */
+        public boolean hasBitIndex() {
+            return bitIndex >= 0;
+        }
+
         @Override
         public int hashCode() {
             return id.hashCode();
@@ -295,6 +359,7 @@ public class GameConfig {
      * for the property "squareTypes".
      */
     public void addSquareType(SquareConfig squareConfig) {
+        squareConfig.updateSensorMask();
         squareTypes.put(squareConfig.getMapChar(), squareConfig);
         pcs.firePropertyChange("squareTypes", null, null);
     }
@@ -310,12 +375,12 @@ public class GameConfig {
         if (squareTypes.remove(squareConfig.getMapChar()) != null) {
             for (LevelConfig level : levels) {
                 // XXX this is too tightly coupled to level config.. need listener api for square type add/removes
-                Square[][] map = level.getMap();
-                for (int row = 0; row < map.length; row++) {
-                    for (int col = 0; col < map[row].length; col++) {
-                        if (map[row][col] != null &&
-                                map[row][col].getMapChar() == squareConfig.getMapChar()) {
-                            map[row][col] = null;
+                for (int x = 0; x < level.getWidth(); x++) {
+                    for (int y = 0; y < level.getHeight(); y++) {
+                        Square square = level.getSquare(x, y);
+                        if (square != null &&
+                                square.getMapChar() == squareConfig.getMapChar()) {
+                            level.setSquare(x, y, null);
                         }
                     }
                 }
@@ -360,6 +425,7 @@ public class GameConfig {
     
     public void addSensorType(SensorConfig sc) {
         sensorTypes.put(sc.getId(), sc);
+        reindexSensors();
         pcs.firePropertyChange("sensorTypes", null, sensorTypes);
     }
 
@@ -370,13 +436,30 @@ public class GameConfig {
      */
     public void removeSensorType(SensorConfig sensorConfig) {
         if (sensorTypes.remove(sensorConfig.getId()) != null) {
+            sensorConfig.bitIndex = -1;
             for (SquareConfig square : squareTypes.values()) {
                 square.removeSensorType(sensorConfig);
             }
+            reindexSensors();
             pcs.firePropertyChange("sensorTypes", null, null);
         }
     }
 
+    /**
+     * Numbers the sensor types in the order they were added, then
+     * recalculates the sensor mask of every square type to match.
+     */
+    private void reindexSensors() {
+        int i = 0;
+        for (SensorConfig sensor : sensorTypes.values()) {
+            sensor.bitIndex = i < SensorConfig.MAX_INDEXED_SENSORS ? i : -1;
+            i++;
+        }
+        for (SquareConfig square : squareTypes.values()) {
+            square.updateSensorMask();
+        }
+    }
+
     public Object getSensor(String typeName) {
         return sensorTypes.get(typeName);
     }
@@ -37,16 +37,24 @@
 package net.bluecow.robot;
 
 import java.awt.AlphaComposite;
-import java.awt.geom.Point2D;
+import java.awt.Composite;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-
-import javax.swing.JOptionPane;
+import java.util.concurrent.locks.LockSupport;
 
 import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.event.GameLoopEvent;
+import net.bluecow.robot.event.GameLoopListener;
+import net.bluecow.robot.event.ScriptErrorEvent;
+import net.bluecow.robot.event.ScriptErrorListener;
+import net.bluecow.robot.fx.Effect;
+import net.bluecow.robot.sim.CycleDetector;
+import net.bluecow.robot.sim.Profiler;
+import net.bluecow.robot.sim.StateHash;
 import bsh.EvalError;
 
 /**
@@ -57,9 +65,25 @@ import bsh.EvalError;
  */
 public class GameLoop implements Runnable {
 
-    private List<Robot> robots = new ArrayList<Robot>();
+    private final List<Robot> robots = new ArrayList<Robot>();
+    
+    /**
+     * The view of {@link #robots} handed out by {@link #getRobots()}. It's
+     * made once because listeners look at it on every tick.
+     */
+    private final List<Robot> robotsView = Collections.unmodifiableList(robots);
     
-    private final Playfield playfield;
+    /**
+     * Where the game gets drawn. This is a {@link NullRenderSink} if the
+     * game isn't being displayed.
+     */
+    private final RenderSink playfield;
+    
+    /**
+     * True if this game loop is not being displayed. The frame count is
+     * not boxed up for the playfield.
+     */
+    private final boolean headless;
     
     /**
      * The current level that the user is playing.
@@ -95,17 +119,97 @@ public class GameLoop implements Runnable {
     private boolean goalReached;
     
     /**
-     * Time to sleep between loops (in milliseconds).
+     * Time between the starts of consecutive loops (in milliseconds).
      */
     private int frameDelay = 50;
     
+    /**
+     * Schedules the ticks while the loop is running, and lets the playfield
+     * know how far along it is between ticks.
+     */
+    private final SimulationClock clock = new SimulationClock(frameDelay);
+    
+    /**
+     * True while the run() method is driving this loop. The playfield then
+     * repaints on its own schedule, so single steps don't ask for repaints.
+     */
+    private boolean clocked;
+    
+    /**
+     * The number of ticks to run every time the clock says a tick is due.
+     * Values greater than 1 put the loop into turbo mode.
+     */
+    private volatile int ticksPerFrame = 1;
+    
+    /**
+     * When true, the running loop doesn't wait for the clock at all; it runs
+     * ticks back-to-back until the goal is reached or it's asked to stop.
+     */
+    private volatile boolean unthrottled;
+    
+    /**
+     * When the display's animations were last advanced while running in turbo
+     * mode. In turbo mode, the animations only advance once per frame period
+     * no matter how many ticks have been run.
+     */
+    private long lastTurboFrameNanos;
+    
+    /**
+     * Whether the render sink was last told the loop is in turbo mode.
+     */
+    private boolean sinkTurbo;
+    
+    /**
+     * Watches the state of the game for a repeat, if cycle detection is
+     * turned on (null otherwise).
+     */
+    private CycleDetector cycleDetector;
+    
+    /**
+     * Hashes the game state for the cycle detector. Reused every tick.
+     */
+    private final StateHash stateHash = new StateHash();
+    
+    /**
+     * Gets set to true if the cycle detector finds that the game has
+     * returned to an earlier state, which means the goal will never be reached.
+     */
+    private boolean cyclesForever;
+    
+    /**
+     * Advances the robots on several threads, or null if they are advanced
+     * one after another. See {@link #setParallelism(int)}.
+     */
+    private ParallelStepper stepper;
+    
+    /**
+     * The profiler that was asked for with {@link #setProfiler(Profiler)}.
+     */
+    private volatile Profiler requestedProfiler;
+    
+    /**
+     * The profiler that's recording this tick, or null if profiling is off.
+     * It only changes at the start of a tick, on the loop's thread, so the
+     * gate activity listeners are never added or removed while a circuit
+     * is being evaluated.
+     */
+    private Profiler profiler;
+    
+    /**
+     * The error from the switch script that ran out of time, if one did.
+     * The loop stops itself when that happens.
+     */
+    private ScriptTimeoutException scriptTimeout;
+    
     /**
      * @param robot
-     * @param playfield
+     * @param playfield The playfield to draw the game on. A null value or a
+     * {@link NullRenderSink} means the game is not being displayed.
      */
-    public GameLoop(Collection<Robot> robots, LevelConfig level, Playfield playfield) {
+    public GameLoop(Collection<Robot> robots, LevelConfig level, RenderSink playfield) {
         this.level = level;
-        this.playfield = playfield;
+        this.playfield = (playfield == null ? new NullRenderSink() : playfield);
+        this.headless = (this.playfield instanceof NullRenderSink);
         for (Robot r : robots) {
             addRobot(r);
         }
@@ -121,11 +225,31 @@ public class GameLoop implements Runnable {
     public final void removeRobot(Robot robot) {
         robots.remove(robot);
     }
+    
+    /**
+     * Returns an unmodifiable view of the robots this game loop moves,
+     * including the ghost robots.
+     */
+    public List<Robot> getRobots() {
+        return robotsView;
+    }
 
     /**
-     * Returns the playfield that this game loop is attached to.
+     * Returns the playfield that this game loop is attached to, or null
+     * if it's not attached to one.
      */
     public Playfield getPlayfield() {
+        if (playfield instanceof Playfield) {
+            return (Playfield) playfield;
+        } else {
+            return null;
+        }
+    }
+    
+    /**
+     * Returns the render sink that this game loop draws on. This is never null.
+     */
+    public RenderSink getRenderSink() {
         return playfield;
     }
     
@@ -162,20 +286,43 @@ public class GameLoop implements Runnable {
         
         pcs.firePropertyChange("running", false, true);
         
+        clocked = true;
+        clock.start();
+        playfield.setSimulationClock(clock);
+        boolean wasUnthrottled = false;
         try {
             while (running) {
                 
-                if (running) {
+                if (unthrottled) {
                     singleStep();
+                    wasUnthrottled = true;
+                    continue;
+                } else if (wasUnthrottled) {
+                    // don't try to catch up on the time spent unthrottled
+                    clock.start();
+                    wasUnthrottled = false;
                 }
                 
-                try {
-                    Thread.sleep(frameDelay);
-                } catch (InterruptedException ex) {
-                    System.out.println("GameLoop was Interrupted while sleeping.");
+                // run every tick that's due, so a late wakeup doesn't slow the game down
+                for (int due = clock.ticksDue(); due > 0 && running; due--) {
+                    for (int i = ticksPerFrame; i > 0 && running; i--) {
+                        singleStep();
+                    }
+                    clock.tickDone();
+                }
+                
+                long wait = clock.nanosUntilNextTick();
+                if (running && wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.interrupted()) {
+                        System.out.println("GameLoop was Interrupted while sleeping.");
+                    }
                 }
             }
         } finally {
+            clocked = false;
+            setSinkTurbo(false);
+            playfield.setSimulationClock(null);
             halt();
         }
     }
@@ -188,51 +335,221 @@ public class GameLoop implements Runnable {
             }
             loopCount++;
         }
+        
+        if (profiler != requestedProfiler) {
+            if (profiler != null) profiler.detach();
+            profiler = requestedProfiler;
+        }
+        if (profiler != null) {
+            profiler.tickStarted(robots);
+        }
 
         boolean allGoalsReached = true;
-        for (Robot robot : robots) {
-            boolean thisGoalReached = robot.isGoalReached();
-            if (!thisGoalReached) {
-                robot.updateSensors();
-                for (int i = 0; i < robot.getEvalsPerStep(); i++) {
-                    // should this loop be in the robot's circuit instead?
-                    robot.getCircuit().evaluateOnce();
+        boolean turbo = clocked && isTurbo();
+        setSinkTurbo(turbo);
+        
+        if (stepper == null) {
+            // indexed loops and primitive positions keep this loop allocation-free
+            for (int r = 0, n = robots.size(); r < n; r++) {
+                Robot robot = robots.get(r);
+                boolean thisGoalReached = robot.isGoalReached();
+                if (!thisGoalReached) {
+                    int oldX = (int) Math.floor(robot.getX());
+                    int oldY = (int) Math.floor(robot.getY());
+                    advance(robot, profiler);
+                    int newX = (int) Math.floor(robot.getX());
+                    int newY = (int) Math.floor(robot.getY());
+                    crossSquares(robot, oldX, oldY, newX, newY);
+                    // XXX: should we re-check if the goal is reached, or wait for the next loop?
                 }
+                allGoalsReached &= thisGoalReached; 
+            }
+        } else {
+            for (int from = 0, n = robots.size(); from < n; ) {
                 
-                Point2D oldPos = robot.getPosition();
-                robot.move();
+                // a robot that might run a script ends the batch, because
+                // the script could change what the robots after it see
+                int to = from;
+                while (to < n && !mayRunScript(robots.get(to))) {
+                    to++;
+                }
+                if (to < n) to++;
                 
-                if (!isSameSquare(oldPos, robot.getPosition())) {
-                    
-                    /*
-                     * This has to be the robot's level (as opposed to the 
-                     * level in this game loop) for ghosts to work properly
-                     */
-                    LevelConfig l = robot.getLevel();
-                    
-                    Switch exitingSwitch = l.getSwitch(oldPos);
-                    Switch enteringSwitch = l.getSwitch(robot.getPosition());
-                    try {
-                        // TODO it might be better (simpler, more reliable) to evaluate the scripts here instead of in the switches
-                        if (exitingSwitch != null) exitingSwitch.onExit(robot, playfield);
-                        if (enteringSwitch != null) enteringSwitch.onEnter(robot, playfield);
-                    } catch (EvalError e) {
-                        JOptionPane.showMessageDialog(null, "Error evaluating switch:\n"+e.getMessage());
+                stepper.advance(robots, from, to, profiler);
+                for (int r = from; r < to; r++) {
+                    boolean thisGoalReached = !stepper.wasAdvanced(r);
+                    if (!thisGoalReached) {
+                        crossSquares(robots.get(r), stepper.getOldX(r), stepper.getOldY(r),
+                                stepper.getNewX(r), stepper.getNewY(r));
                     }
+                    allGoalsReached &= thisGoalReached;
                 }
-                // XXX: should we re-check if the goal is reached, or wait for the next loop?
+                from = to;
+            }
+        }
+        
+        if (!loopListeners.isEmpty()) {
+            fireTickCompleted();
+        }
+        
+        if (profiler != null) {
+            profiler.tickCompleted(this, System.nanoTime());
+        }
+        
+        if (cycleDetector != null && !allGoalsReached && !cyclesForever) {
+            if (cycleDetector.update(hashState(), loopCount)) {
+                setStopRequested(true);
+                setCyclesForever(true);
             }
-            allGoalsReached &= thisGoalReached; 
         }
         
-        playfield.setFrameCount(loopCount);
-        playfield.repaint();
+        if (!headless) {
+            if (!turbo) {
+                playfield.setFrameCount(loopCount);
+                if (!clocked) {
+                    playfield.repaint();
+                }
+            } else {
+                // coalesce the animation steps to one per normal frame period
+                long now = System.nanoTime();
+                if (now - lastTurboFrameNanos >= clock.getTickNanos()) {
+                    lastTurboFrameNanos = now;
+                    playfield.setFrameCount(loopCount);
+                }
+            }
+        }
         
         if (allGoalsReached) {
             setGoalReached(true);
         }
     }
 
+    /**
+     * Reads the given robot's sensors, evaluates its circuit, and moves it.
+     * This only touches the robot itself, and only reads its level's map,
+     * so different robots can be advanced on different threads.
+     * 
+     * @param profiler The profiler to report the time taken to, or null.
+     */
+    static void advance(Robot robot, Profiler profiler) {
+        long start = (profiler == null ? 0L : System.nanoTime());
+        robot.updateSensors();
+        for (int i = 0; i < robot.getEvalsPerStep(); i++) {
+            // should this loop be in the robot's circuit instead?
+            robot.getCircuit().evaluateOnce();
+        }
+        long evaluated = (profiler == null ? 0L : System.nanoTime());
+        robot.move();
+        if (profiler != null) {
+            profiler.robotAdvanced(robot, evaluated - start, System.nanoTime() - evaluated);
+        }
+    }
+    
+    /**
+     * Tells the render sink about a change in turbo mode. Switch scripts see
+     * the real render sink in turbo mode too, so they behave the same at any
+     * speed; the sink just drops their effects and sounds.
+     */
+    private void setSinkTurbo(boolean turbo) {
+        if (turbo != sinkTurbo) {
+            sinkTurbo = turbo;
+            playfield.setTurbo(turbo);
+        }
+    }
+    
+    /**
+     * Fires the switch events and runs the switches for a robot that just
+     * moved from the old square to the new one, if those are different.
+     */
+    private void crossSquares(Robot robot, int oldX, int oldY, int newX, int newY) {
+        if (oldX == newX && oldY == newY) return;
+        
+        /*
+         * This has to be the robot's level (as opposed to the 
+         * level in this game loop) for ghosts to work properly
+         */
+        LevelConfig l = robot.getLevel();
+        
+        Switch exitingSwitch = l.getSwitch(oldX, oldY);
+        Switch enteringSwitch = l.getSwitch(newX, newY);
+        if (exitingSwitch == null && enteringSwitch == null) return;
+        
+        long start = (profiler == null ? 0L : System.nanoTime());
+        if (!loopListeners.isEmpty()) {
+            if (exitingSwitch != null) fireSwitchExited(robot, exitingSwitch);
+            if (enteringSwitch != null) fireSwitchEntered(robot, enteringSwitch);
+        }
+        if (exitingSwitch != null) runSwitch(robot, exitingSwitch, false);
+        if (enteringSwitch != null) runSwitch(robot, enteringSwitch, true);
+        if (profiler != null) {
+            profiler.switchesRun(robot, System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Returns true if the given robot could run a switch script on this
+     * tick: there's a switch with a script on the square it's on, or on a
+     * square it could get to in one move. Switch actions only change the
+     * robot that triggered them, the score, and switches, so switches with
+     * actions but no scripts don't count.
+     */
+    private static boolean mayRunScript(Robot robot) {
+        if (robot.isGoalReached()) return false;
+        LevelConfig l = robot.getLevel();
+        
+        // a little extra so float rounding in Robot.move() can't sneak past
+        double reach = robot.getStepSize() + 0.001;
+        int x0 = (int) Math.floor(robot.getX() - reach);
+        int x1 = (int) Math.floor(robot.getX() + reach);
+        int y0 = (int) Math.floor(robot.getY() - reach);
+        int y1 = (int) Math.floor(robot.getY() + reach);
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                Switch sw = l.getSwitch(x, y);
+                if (sw != null && sw.hasScript()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the onEnter or onExit actions and script of the given switch.
+     * Script errors go to the script error listeners; a script that runs
+     * out of time also stops the loop, because the level's state can't be
+     * trusted after it was cut off in the middle.
+     */
+    private void runSwitch(Robot robot, Switch sw, boolean enter) {
+        try {
+            if (enter) {
+                sw.onEnter(robot, playfield);
+            } else {
+                sw.onExit(robot, playfield);
+            }
+        } catch (EvalError e) {
+            if (e instanceof ScriptTimeoutException) {
+                scriptTimeout = (ScriptTimeoutException) e;
+                setStopRequested(true);
+            }
+            fireScriptFailed(robot, sw, enter, e);
+        }
+    }
+
+    /**
+     * Returns the hash of everything that decides what happens on the next
+     * tick: the score and switches of the level and the ghost levels, and
+     * the positions, movement and gate states of all their robots.
+     */
+    private long hashState() {
+        stateHash.reset();
+        stateHash.addLevel(level, false);
+        for (int i = 0, n = ghostLevels.size(); i < n; i++) {
+            stateHash.addLevel(ghostLevels.get(i), false);
+        }
+        return stateHash.get();
+    }
+
     private void halt() {
         boolean wasRunning;
         synchronized (this) {
@@ -246,11 +563,6 @@ public class GameLoop implements Runnable {
         }
     }
     
-    private static boolean isSameSquare(Point2D p1, Point2D p2) {
-        return (Math.floor(p1.getX()) == Math.floor(p2.getX())) &&
-               (Math.floor(p1.getY()) == Math.floor(p2.getY()));
-    }
-    
     /**
      * Tells whether or not the game loop is currently running.  This is a bound
      * property; to recieve change notifications, register a property change listener
@@ -295,18 +607,157 @@ public class GameLoop implements Runnable {
     }
 
     /**
-     * Sets the amount of time that the loop will sleep between frames.
+     * Turns on cycle detection with the given detector, or turns it off if
+     * the detector is null. With cycle detection on, the game state is hashed
+     * after every tick, and the loop stops itself if the state repeats; see
+     * {@link #isCyclesForever()}.
+     * <p>
+     * Variables that switch scripts keep in the BeanShell interpreter are not
+     * part of the hashed state, so levels whose scripts count things in
+     * variables should not use cycle detection.
+     */
+    public void setCycleDetector(CycleDetector detector) {
+        this.cycleDetector = detector;
+        if (detector != null) {
+            detector.reset();
+        }
+    }
+    
+    public CycleDetector getCycleDetector() {
+        return cycleDetector;
+    }
+    
+    /**
+     * This becomes true when the cycle detector finds that the game has
+     * returned to a state it was in before, so the robots will never reach
+     * the goal. The loop stops itself when that happens. This is a bound
+     * property; it is reset by calling resetState().
+     */
+    public synchronized boolean isCyclesForever() {
+        return cyclesForever;
+    }
+    
+    private synchronized void setCyclesForever(boolean v) {
+        if (cyclesForever != v) {
+            cyclesForever = v;
+            pcs.firePropertyChange("cyclesForever", !cyclesForever, cyclesForever);
+        }
+    }
+    
+    /**
+     * Returns the length (in ticks) of the cycle the game is stuck in, or 0
+     * if no cycle has been detected.
+     */
+    public int getCycleLength() {
+        return cycleDetector == null ? 0 : cycleDetector.getCycleLength();
+    }
+    
+    /**
+     * Turns on profiling with the given profiler, or turns it off if the
+     * profiler is null. The change takes effect at the start of the next
+     * tick. With profiling off, the loop doesn't read the clock or count
+     * anything.
+     */
+    public void setProfiler(Profiler profiler) {
+        requestedProfiler = profiler;
+    }
+    
+    /**
+     * Returns the profiler given to {@link #setProfiler(Profiler)}, or null
+     * if profiling is off.
+     */
+    public Profiler getProfiler() {
+        return requestedProfiler;
+    }
+    
+    /**
+     * Sets how many threads advance the robots on each tick. With more than
+     * one, the robots' sensors, circuits and movement are worked out in
+     * parallel, then the switches they crossed are run one robot at a time
+     * in robot order, exactly as they would be with one thread. A robot that
+     * could trigger a switch script on this tick ends the parallel batch,
+     * and the robots after it wait for its script, so the results are
+     * identical to the one-thread results no matter what the scripts do.
+     * <p>
+     * Circuit listeners are notified on the helper threads while this is
+     * on, and switch event listeners may see robots after the one that
+     * triggered the event already in their new positions.
+     * 
+     * @param threads The number of threads to use (at least 1). The default
+     * is 1, which advances the robots one after another on the loop's thread.
+     */
+    public void setParallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1 (got "+threads+")");
+        }
+        stepper = (threads == 1 ? null : new ParallelStepper(threads));
+    }
+    
+    public int getParallelism() {
+        return stepper == null ? 1 : stepper.getThreads();
+    }
+    
+    /**
+     * Sets the amount of time between the starts of consecutive frames. The
+     * time it takes to run a frame is included in the delay.
      *
-     * @param delayInMS The amount of time to sleep, in milliseconds.
+     * @param delayInMS The frame period, in milliseconds.
      */
     public void setFrameDelay(int delayInMS) {
         frameDelay = delayInMS;
+        clock.setTickPeriod(Math.max(1, delayInMS));
     }
     
     public int getFrameDelay() {
         return frameDelay;
     }
     
+    /**
+     * Sets how many ticks the running loop performs each time its clock
+     * ticks. Values greater than 1 are turbo mode: the display is only
+     * updated once per clock tick, and switch effects and sounds are skipped.
+     * 
+     * @param ticksPerFrame The number of ticks per frame (at least 1).
+     */
+    public void setTicksPerFrame(int ticksPerFrame) {
+        if (ticksPerFrame < 1) {
+            throw new IllegalArgumentException("Ticks per frame must be at least 1 (got "+ticksPerFrame+")");
+        }
+        this.ticksPerFrame = ticksPerFrame;
+    }
+    
+    public int getTicksPerFrame() {
+        return ticksPerFrame;
+    }
+    
+    /**
+     * Puts the running loop into (or takes it out of) unthrottled mode, where
+     * it runs ticks as fast as it can until the goal is reached or the loop
+     * is stopped. Like the other turbo mode, the display is only updated at
+     * the normal frame rate, and switch effects and sounds are skipped.
+     */
+    public void setUnthrottled(boolean unthrottled) {
+        this.unthrottled = unthrottled;
+    }
+    
+    public boolean isUnthrottled() {
+        return unthrottled;
+    }
+    
+    /**
+     * Returns true if the loop is set up to run faster than one tick per frame.
+     */
+    public boolean isTurbo() {
+        return unthrottled || ticksPerFrame > 1;
+    }
+    
+    /**
+     * Returns the clock that schedules this loop's ticks while it is running.
+     */
+    public SimulationClock getClock() {
+        return clock;
+    }
+    
     /**
      * Resets this game loop, its levelconfig and robots, the ghost levels
      * and their robots, and the playfield to their initial states.
@@ -319,6 +770,11 @@ public class GameLoop implements Runnable {
             throw new IllegalStateException("You can't reset the loop when it's running.");
         }
         setGoalReached(false);
+        setCyclesForever(false);
+        if (cycleDetector != null) {
+            cycleDetector.reset();
+        }
+        scriptTimeout = null;
         loopCount = 0;
         level.resetState();
         
@@ -332,7 +788,7 @@ public class GameLoop implements Runnable {
         }
         
         playfield.setLevel(level);
-        playfield.setFrameCount(null);
+        playfield.setFrameCount(RenderSink.NO_FRAME_COUNT);
         playfield.setAsyncRepaint(true);
         
         for (LevelConfig ghostLevel : ghostLevels) {
@@ -340,10 +796,106 @@ public class GameLoop implements Runnable {
         }
     }
 
+    /**
+     * Sets the loop count and goal flag, for going back to a recorded state.
+     * The level and robots have to be restored by the caller.
+     * 
+     * @throws IllegalStateException if the game loop is running
+     */
+    void restoreState(int loopCount, boolean goalReached) {
+        if (isRunning()) {
+            throw new IllegalStateException("You can't restore the loop's state when it's running.");
+        }
+        synchronized (this) {
+            this.loopCount = loopCount;
+        }
+        setGoalReached(goalReached);
+        setCyclesForever(false);
+        if (cycleDetector != null) {
+            cycleDetector.reset();
+        }
+        scriptTimeout = null;
+        if (!headless) {
+            playfield.setFrameCount(loopCount == 0 ? RenderSink.NO_FRAME_COUNT : loopCount);
+            playfield.repaint();
+        }
+    }
+    
     public LevelConfig getLevelConfig() {
         return level;
     }
     
+    /**
+     * Returns the error from the switch script that ran out of time and
+     * stopped this loop, or null if that hasn't happened since the last reset.
+     */
+    public ScriptTimeoutException getScriptTimeout() {
+        return scriptTimeout;
+    }
+    
+    // GAME LOOP LISTENER STUFF (events are only created when there are listeners)
+    private final List<GameLoopListener> loopListeners = new ArrayList<GameLoopListener>();
+    
+    /**
+     * The event passed to every tickCompleted() call. Its tick number is
+     * always the current loop count, so one instance does for every tick.
+     */
+    private final GameLoopEvent tickCompletedEvent = new GameLoopEvent(this);
+    
+    public void addGameLoopListener(GameLoopListener l) {
+        loopListeners.add(l);
+    }
+    
+    public void removeGameLoopListener(GameLoopListener l) {
+        loopListeners.remove(l);
+    }
+    
+    private void fireSwitchExited(Robot robot, Switch sw) {
+        GameLoopEvent evt = new GameLoopEvent(this, loopCount, robot, sw);
+        for (int i = loopListeners.size() - 1; i >= 0; i--) {
+            loopListeners.get(i).switchExited(evt);
+        }
+    }
+    
+    private void fireSwitchEntered(Robot robot, Switch sw) {
+        GameLoopEvent evt = new GameLoopEvent(this, loopCount, robot, sw);
+        for (int i = loopListeners.size() - 1; i >= 0; i--) {
+            loopListeners.get(i).switchEntered(evt);
+        }
+    }
+    
+    private void fireTickCompleted() {
+        for (int i = loopListeners.size() - 1; i >= 0; i--) {
+            loopListeners.get(i).tickCompleted(tickCompletedEvent);
+        }
+    }
+    
+    // SCRIPT ERROR LISTENER STUFF
+    private final List<ScriptErrorListener> scriptErrorListeners = new ArrayList<ScriptErrorListener>();
+    
+    /**
+     * Adds a listener for switch script errors. While there are no
+     * listeners, script errors are printed to the console.
+     */
+    public void addScriptErrorListener(ScriptErrorListener l) {
+        scriptErrorListeners.add(l);
+    }
+    
+    public void removeScriptErrorListener(ScriptErrorListener l) {
+        scriptErrorListeners.remove(l);
+    }
+    
+    private void fireScriptFailed(Robot robot, Switch sw, boolean enter, EvalError error) {
+        ScriptErrorEvent evt = new ScriptErrorEvent(this, loopCount, robot, sw, enter, error);
+        if (scriptErrorListeners.isEmpty()) {
+            System.err.println(evt.getDescription());
+            return;
+        }
+        for (int i = scriptErrorListeners.size() - 1; i >= 0; i--) {
+            scriptErrorListeners.get(i).scriptFailed(evt);
+        }
+    }
+    
     // PROPERTY CHANGE STUFF (for notifying of game wins)
     private PropertyChangeSupport pcs = new PropertyChangeSupport(this);
 
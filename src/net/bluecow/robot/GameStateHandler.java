@@ -44,11 +44,17 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
 
+import javax.swing.AbstractButton;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JOptionPane;
+import javax.swing.JToggleButton;
 import javax.swing.SwingUtilities;
 
+import net.bluecow.robot.event.ScriptErrorEvent;
+import net.bluecow.robot.event.ScriptErrorListener;
 import net.bluecow.robot.resource.ResourceLoader;
 import net.bluecow.robot.sound.SoundManager;
 
@@ -126,6 +132,7 @@ public class GameStateHandler implements ActionListener {
 
         private void finishReset() {
             gl.resetState();
+            stateHandler.timeline.clear();
             gl.getPlayfield().setWinMessage(null);
             for (CircuitEditor ce : editors) {
                 ce.getCircuit().setLocked(false);
@@ -198,6 +205,40 @@ public class GameStateHandler implements ActionListener {
      */
     private final JButton nextLevelButton;
 
+    /**
+     * The button that toggles turbo mode on the game loop. Unlike the other
+     * buttons, this one can be used in any state.
+     */
+    private final JToggleButton turboButton;
+    
+    /**
+     * The number of ticks per frame the game loop runs when the turbo button
+     * is selected. 0 means the loop runs unthrottled.
+     */
+    private int turboTicksPerFrame = 10;
+    
+    /**
+     * The button that takes the game back by one tick.
+     */
+    private final JButton stepBackButton;
+    
+    /**
+     * The button that asks for a tick number and takes the game to it.
+     */
+    private final JButton goToTickButton;
+    
+    /**
+     * Remembers the recent game states for stepping back and scrubbing.
+     */
+    private final Timeline timeline;
+    
+    /**
+     * The script error dialog currently on screen, or null if there isn't
+     * one.  Script errors that happen while it's showing don't pop up
+     * another dialog; they only go to the console.
+     */
+    private JDialog scriptErrorDialog;
+    
     /**
      * Creates a game state handler for the given GameLoop instance.
      * The instance created will only work for the given GameLoop, which
@@ -252,6 +293,31 @@ public class GameStateHandler implements ActionListener {
 
         nextLevelButton.setEnabled(false);
         
+        turboButton = new JToggleButton(">>");
+        turboButton.setToolTipText("Fast forward");
+        turboButton.addActionListener(this);
+        
+        stepBackButton = new JButton("<|");
+        stepBackButton.setToolTipText("Step back");
+        stepBackButton.addActionListener(this);
+        
+        goToTickButton = new JButton("<|>");
+        goToTickButton.setToolTipText("Go to tick");
+        goToTickButton.addActionListener(this);
+        
+        timeline = new Timeline(loop, Timeline.DEFAULT_MAX_BYTES);
+        
+        loop.addScriptErrorListener(new ScriptErrorListener() {
+            public void scriptFailed(final ScriptErrorEvent evt) {
+                System.err.println(evt.getDescription());
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        showScriptError(evt);
+                    }
+                });
+            }
+        });
+        
         loop.addPropertyChangeListener("goalReached", new PropertyChangeListener() {
             public void propertyChange(java.beans.PropertyChangeEvent evt) {
                 debug("Property change! goalReached "+evt.getOldValue()+" -> "+evt.getNewValue()+" (running="+loop.isRunning()+"; goalReached="+loop.isGoalReached()+")");
@@ -266,8 +332,28 @@ public class GameStateHandler implements ActionListener {
         });
     }
 
+    /**
+     * Tells the user about a failed switch script without blocking the
+     * game loop.  Must be called on the Swing event dispatch thread.
+     */
+    private void showScriptError(ScriptErrorEvent evt) {
+        if (scriptErrorDialog != null) return;
+        JOptionPane pane = new JOptionPane(evt.getDescription(), JOptionPane.ERROR_MESSAGE);
+        scriptErrorDialog = pane.createDialog(playfield, "Script Error");
+        scriptErrorDialog.setModal(false);
+        pane.addPropertyChangeListener(JOptionPane.VALUE_PROPERTY, new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent e) {
+                if (scriptErrorDialog != null) {
+                    scriptErrorDialog.dispose();
+                    scriptErrorDialog = null;
+                }
+            }
+        });
+        scriptErrorDialog.setVisible(true);
+    }
+
     public void actionPerformed(ActionEvent e) {
-        JButton source = (JButton) e.getSource();
+        AbstractButton source = (AbstractButton) e.getSource();
         if (source == startButton) {
             if (state == GameState.RUNNING) {
                 setState(GameState.PAUSED);
@@ -280,6 +366,12 @@ public class GameStateHandler implements ActionListener {
             setState(GameState.RESET);
         } else if (source == nextLevelButton) {
             // we leave this action up to clients.
+        } else if (source == turboButton) {
+            updateTurbo();
+        } else if (source == stepBackButton) {
+            stepBack();
+        } else if (source == goToTickButton) {
+            goToTick();
         } else {
             throw new UnsupportedOperationException(
                     "Game State Handler received unexpected actionevent from "+source);
@@ -315,6 +407,10 @@ public class GameStateHandler implements ActionListener {
                 state = GameState.RESET;
                 new GameLoopResetter(loop, this, robots.values(), GameState.RUNNING, sm);
             } else {
+                if (state == GameState.NOT_STARTED) {
+                    // the circuits may have been edited since the timeline was cleared
+                    timeline.clear();
+                }
                 state = newState;
                 sm.play(level.getMarchMusicId());
                 lockEditors(true);
@@ -336,6 +432,7 @@ public class GameStateHandler implements ActionListener {
                 loop.setStopRequested(true);
                 setState(GameState.PAUSED);
             } else if (state == GameState.NOT_STARTED) {
+                timeline.clear();
                 state = newState;
                 sm.play(level.getMarchMusicId());
                 lockEditors(true);
@@ -364,6 +461,123 @@ public class GameStateHandler implements ActionListener {
         }
     }
 
+    /**
+     * Takes the game back one tick. If the game is running, this just
+     * pauses it.
+     * 
+     * @return true if the game went back a tick
+     */
+    public boolean stepBack() {
+        if (state == GameState.RUNNING || loop.isRunning()) {
+            setState(GameState.PAUSED);
+            return false;
+        }
+        if (timeline.stepBack()) {
+            afterRestore();
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Takes the game to the given tick, which can be before or (after
+     * stepping back) after the current one, as long as the timeline still
+     * remembers it. This has no effect while the game is running.
+     * 
+     * @return true if the game is now at the given tick
+     */
+    public boolean scrubTo(int tick) {
+        if (state == GameState.RUNNING || loop.isRunning() || !timeline.canRestore(tick)) {
+            return false;
+        }
+        timeline.restore(tick);
+        afterRestore();
+        return true;
+    }
+    
+    /**
+     * Pauses the game, asks the player which of the ticks the timeline
+     * remembers to go to, and scrubs there.
+     */
+    private void goToTick() {
+        if (state == GameState.RUNNING || loop.isRunning()) {
+            setState(GameState.PAUSED);
+        }
+        int oldest = timeline.getOldestTick();
+        int newest = timeline.getNewestTick();
+        String answer = (String) JOptionPane.showInputDialog(
+                playfield, "Go to tick ("+oldest+" to "+newest+"):", "Go To Tick",
+                JOptionPane.QUESTION_MESSAGE, null, null, String.valueOf(loop.getLoopCount()));
+        if (answer == null) return;
+        int tick;
+        try {
+            tick = Integer.parseInt(answer.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(playfield, "\""+answer+"\" is not a tick number.");
+            return;
+        }
+        if (!scrubTo(tick)) {
+            JOptionPane.showMessageDialog(playfield,
+                    "Can't go to tick "+tick+". The game remembers ticks "+oldest+" to "+newest+".");
+        }
+    }
+    
+    /**
+     * Puts the UI in the paused state after the timeline has changed the game.
+     */
+    private void afterRestore() {
+        if (state == GameState.WON && !loop.isGoalReached()) {
+            playfield.setWinMessage(null);
+        }
+        if (!loop.isGoalReached()) {
+            setState(GameState.PAUSED);
+        }
+    }
+    
+    /**
+     * Returns the timeline of recent game states.
+     */
+    public Timeline getTimeline() {
+        return timeline;
+    }
+    
+    /**
+     * Puts the game loop into or out of turbo mode according to the turbo
+     * button's selection state.
+     */
+    private void updateTurbo() {
+        if (turboButton.isSelected()) {
+            if (turboTicksPerFrame == 0) {
+                loop.setTicksPerFrame(1);
+                loop.setUnthrottled(true);
+            } else {
+                loop.setUnthrottled(false);
+                loop.setTicksPerFrame(turboTicksPerFrame);
+            }
+        } else {
+            loop.setUnthrottled(false);
+            loop.setTicksPerFrame(1);
+        }
+    }
+    
+    /**
+     * Sets how fast turbo mode is.
+     * 
+     * @param ticksPerFrame The number of game loop ticks per frame while
+     * the turbo button is selected, or 0 to run the loop unthrottled.
+     */
+    public void setTurboTicksPerFrame(int ticksPerFrame) {
+        if (ticksPerFrame < 0) {
+            throw new IllegalArgumentException("Turbo speed can't be negative");
+        }
+        turboTicksPerFrame = ticksPerFrame;
+        updateTurbo();
+    }
+    
+    public int getTurboTicksPerFrame() {
+        return turboTicksPerFrame;
+    }
+    
     /** Locks or unlocks all editors in the robots map. */
     private void lockEditors(boolean locked) {
         for (CircuitEditor ce : robots.values()) {
@@ -387,5 +601,17 @@ public class GameStateHandler implements ActionListener {
         return stepButton;
     }
     
+    public JButton getStepBackButton() {
+        return stepBackButton;
+    }
+    
+    public JButton getGoToTickButton() {
+        return goToTickButton;
+    }
+    
+    public JToggleButton getTurboButton() {
+        return turboButton;
+    }
+    
     
 }
\ No newline at end of file
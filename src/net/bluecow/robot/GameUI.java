@@ -45,6 +45,7 @@ import java.util.Map;
 
 import javax.swing.Action;
 import javax.swing.JButton;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -74,6 +75,12 @@ public class GameUI {
         if (debugOn) System.out.println(msg);
     }
     
+    /**
+     * Levels with at least this many robots have their robots advanced on
+     * all the processors.
+     */
+    private static final int SWARM_SIZE = 32;
+    
     /**
      * This is the panel that all the UI components live in.  Its contents and layout
      * are managed by this class.
@@ -130,6 +137,11 @@ public class GameUI {
      */
     private final LoadLevelsAction loadLevelsAction;
 
+    /**
+     * Action that turns circuit profiling on and off for this level.
+     */
+    private final ProfileAction profileAction;
+    
     /**
      * Action for showing the About dialog.
      */
@@ -176,8 +188,12 @@ public class GameUI {
             robots.put(robot, ce);
         }
         final GameLoop gameLoop = new GameLoop(robots.keySet(), level, playfield);
+        if (robots.size() >= SWARM_SIZE) {
+            gameLoop.setParallelism(Runtime.getRuntime().availableProcessors());
+        }
 
         aboutAction = new AboutAction(panel);
+        profileAction = new ProfileAction(panel, gameLoop, robots.values());
         
         saveCircuitAction = new SaveCircuitAction(panel, robots.keySet());
         loadCircuitAction = new LoadCircuitAction(panel, robots.keySet());
@@ -204,9 +220,12 @@ public class GameUI {
         loadLevelsButton.setAction(loadLevelsAction);
         
         JPanel stateButtonsPanel = new JPanel(new FlowLayout());
+        stateButtonsPanel.add(gameStateHandler.getStepBackButton());
+        stateButtonsPanel.add(gameStateHandler.getGoToTickButton());
         stateButtonsPanel.add(gameStateHandler.getStartButton());
         stateButtonsPanel.add(gameStateHandler.getStepButton());
         stateButtonsPanel.add(gameStateHandler.getResetButton());
+        stateButtonsPanel.add(gameStateHandler.getTurboButton());
         stateButtonsPanel.add(gameStateHandler.getNextLevelButton());
         
         JPanel buttonPanel = new JPanel(new BorderLayout());
@@ -274,6 +293,11 @@ public class GameUI {
         menu.add(item = new RecentFilesMenu("Open Recent Ghost", loadGhostAction, RobotUtils.getPrefs().node("recentGhostFiles")));
         item.setMnemonic(KeyEvent.VK_R);
         
+        mb.add(menu = new JMenu("Tools"));
+        menu.setMnemonic(KeyEvent.VK_T);
+        menu.add(item = new JCheckBoxMenuItem(profileAction));
+        item.setMnemonic(KeyEvent.VK_P);
+        
         return mb;
     }
     
@@ -0,0 +1,175 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bsh.EvalError;
+import bsh.Interpreter;
+import bsh.NameSpace;
+
+/**
+ * A pool of ready-made BeanShell interpreters for the level configs.
+ * Creating the first few interpreters in a session is slow (BeanShell loads
+ * and initialises a lot of classes), so when a level pack is loaded, a
+ * background thread fills this pool and the level copies made later on can
+ * take an interpreter without any lag during gameplay.
+ * <p>
+ * Interpreters taken from the pool are never given back. Levels keep their
+ * interpreter for their whole life and clear it in place when their state is
+ * reset, so the pool only has to cover the levels that are created after
+ * loading. The loaded levels and their snapshots are created while the level
+ * pack is parsed, before the pool is filled; the copies that come later are
+ * ghost levels and the editor's playtest levels, each with a snapshot of its
+ * own.
+ */
+public class InterpreterPool {
+
+    /**
+     * Controls debugging features of this class.
+     */
+    private static final boolean debugOn = false;
+    
+    /**
+     * The most interpreters the pool will hold at once.
+     */
+    public static final int MAX_POOLED = 32;
+    
+    /**
+     * The interpreters that are ready to be handed out.
+     */
+    private static final ConcurrentLinkedQueue<Interpreter> pool = new ConcurrentLinkedQueue<Interpreter>();
+    
+    /**
+     * The number of interpreters in {@link #pool} plus the number the warm-up
+     * thread has promised to add. ConcurrentLinkedQueue.size() is not a
+     * constant-time operation, so we keep count ourselves.
+     */
+    private static final AtomicInteger pooled = new AtomicInteger();
+    
+    /**
+     * BeanShell's static initialisation is not thread safe, so interpreters
+     * are only ever created while holding this lock.
+     */
+    private static final Object createLock = new Object();
+    
+    /**
+     * This class is not instantiable.
+     */
+    private InterpreterPool() {
+    }
+    
+    /**
+     * Returns an interpreter from the pool, or a new one if the pool is empty.
+     * The interpreter's global namespace is in the same state as a newly
+     * created interpreter's, except that it is a {@link ScriptNameSpace}
+     * (which starts out unrestricted).
+     */
+    public static Interpreter take() {
+        Interpreter bsh = pool.poll();
+        if (bsh != null) {
+            pooled.decrementAndGet();
+            if (debugOn) System.out.println("InterpreterPool: took pooled interpreter; "+pooled.get()+" left");
+            return bsh;
+        }
+        return create();
+    }
+    
+    /**
+     * Starts a background thread that adds up to <tt>count</tt> interpreters
+     * to the pool (never exceeding {@link #MAX_POOLED}).  Each interpreter
+     * has already declared and run a small method, so the parser and the
+     * method invocation machinery are loaded too.
+     * 
+     * @param count The number of interpreters the caller expects to need soon.
+     */
+    public static void prewarm(int count) {
+        final int wanted = reserve(count);
+        if (wanted == 0) return;
+        Thread t = new Thread("Interpreter pre-warmer") {
+            @Override
+            public void run() {
+                for (int i = 0; i < wanted; i++) {
+                    Interpreter bsh = create();
+                    try {
+                        NameSpace ns = new NameSpace(bsh.getNameSpace(), "warmup");
+                        bsh.eval("void warmup(a) { b = a; }", ns);
+                        ns.invokeMethod("warmup", new Object[] { "warm" }, bsh);
+                    } catch (EvalError e) {
+                        // the interpreter is still fine; it just isn't as warm
+                        if (debugOn) e.printStackTrace();
+                    }
+                    pool.add(bsh);
+                }
+                if (debugOn) System.out.println("InterpreterPool: added "+wanted+" interpreters");
+            }
+        };
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    /**
+     * Reserves room in the pool for up to <tt>count</tt> more interpreters
+     * and returns how many were actually reserved.
+     */
+    private static int reserve(int count) {
+        for (;;) {
+            int current = pooled.get();
+            int n = Math.max(0, Math.min(count, MAX_POOLED - current));
+            if (n == 0 || pooled.compareAndSet(current, current + n)) return n;
+        }
+    }
+    
+    /**
+     * Creates a new interpreter with a {@link ScriptNameSpace} as its global
+     * namespace.
+     */
+    private static Interpreter create() {
+        synchronized (createLock) {
+            Interpreter bsh = new Interpreter();
+            ScriptNameSpace ns = new ScriptNameSpace();
+            ns.loadDefaultImports();
+            try {
+                Object system = bsh.get("bsh");
+                bsh.setNameSpace(ns);
+                bsh.set("bsh", system);
+            } catch (EvalError e) {
+                throw new RuntimeException("Couldn't set up BeanShell namespace", e);
+            }
+            return bsh;
+        }
+    }
+}
@@ -41,6 +41,8 @@ import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -48,8 +50,12 @@ import java.util.List;
 
 import net.bluecow.robot.sound.SoundManager;
 import net.bluecow.robot.sprite.Sprite;
+import bsh.BshMethod;
+import bsh.CallStack;
 import bsh.EvalError;
 import bsh.Interpreter;
+import bsh.NameSpace;
+import bsh.Primitive;
 
 /**
  * LevelConfig represents the configuration of a particular level.  It is not
@@ -89,6 +95,24 @@ public class LevelConfig {
      * when a robot enters or leaves a square.
      */
     public static class Switch implements Labelable {
+
+        /**
+         * BshMethod's invoke variant that runs the method body in the
+         * namespace on top of the call stack instead of a new one, which is
+         * how BeanShell runs its commands. It isn't public, so it is looked
+         * up once here.
+         */
+        private static final Method INVOKE_IN_CALLER;
+        static {
+            try {
+                INVOKE_IN_CALLER = BshMethod.class.getDeclaredMethod("invoke",
+                        Object[].class, Interpreter.class, CallStack.class,
+                        Class.forName("bsh.SimpleNode"), boolean.class);
+                INVOKE_IN_CALLER.setAccessible(true);
+            } catch (Exception ex) {
+                throw new ExceptionInInitializerError(ex);
+            }
+        }
         private LevelConfig level;
         private Point position;
         private String id;
@@ -100,6 +124,65 @@ public class LevelConfig {
         private boolean labelEnabled;
         private Direction labelDirection = Direction.EAST;
         
+        /**
+         * The built-in actions to run when a robot enters this switch, before
+         * the onEnter script (if any).
+         */
+        private List<SwitchAction> onEnterActions = new ArrayList<SwitchAction>();
+
+        /**
+         * The built-in actions to run when a robot exits this switch, before
+         * the onExit script (if any).
+         */
+        private List<SwitchAction> onExitActions = new ArrayList<SwitchAction>();
+        
+        /**
+         * The interpreter that {@link #onEnterMethod} and {@link #onExitMethod}
+         * were compiled in, or null if they have to be (re)compiled before
+         * the next time a script runs.
+         */
+        private Interpreter compiledFor;
+        
+        /**
+         * The script policy that the scripts were checked against when they
+         * were compiled.
+         */
+        private ScriptPolicy compiledPolicy;
+        
+        /**
+         * The onEnter script, compiled into a BeanShell method that takes
+         * the robot and playfield as arguments. Null if there is no onEnter
+         * script or it didn't compile.
+         */
+        private BshMethod onEnterMethod;
+        
+        /**
+         * The error from compiling the onEnter script, if it didn't compile.
+         * It is thrown every time the script is supposed to run.
+         */
+        private EvalError onEnterError;
+
+        /**
+         * True if the onEnter script uses the <code>map</code> variable, which
+         * is only set up for the scripts that need it.
+         */
+        private boolean onEnterUsesMap;
+        
+        /**
+         * The onExit script, compiled like {@link #onEnterMethod}.
+         */
+        private BshMethod onExitMethod;
+        
+        /**
+         * The error from compiling the onExit script, if it didn't compile.
+         */
+        private EvalError onExitError;
+        
+        /**
+         * True if the onExit script uses the <code>map</code> variable.
+         */
+        private boolean onExitUsesMap;
+        
         public Switch(Point position, String id, String label, Sprite sprite, String onEnter) {
             this.position = new Point(position);
             this.id = id;
@@ -125,10 +208,16 @@ public class LevelConfig {
          */
         public final void copyFrom(Switch copyMe) {
             this.position = new Point(copyMe.position);
+            positionChanged();
             this.id = copyMe.id;
-            this.sprite = copyMe.sprite;
+            
+            // sprites have animation state, so copies can't share them
+            this.sprite = (copyMe.sprite == null ? null : copyMe.sprite.clone());
             this.onEnter = copyMe.onEnter;
             this.onExit = copyMe.onExit;
+            this.compiledFor = null;
+            this.onEnterActions = new ArrayList<SwitchAction>(copyMe.onEnterActions);
+            this.onExitActions = new ArrayList<SwitchAction>(copyMe.onExitActions);
             this.enabled = copyMe.enabled;
             this.label = copyMe.label;
             this.labelEnabled = copyMe.labelEnabled;
@@ -136,23 +225,29 @@ public class LevelConfig {
         }
         
         /**
-         * Invokes this switch's onEnter script.  You should call this every
-         * time a robot enters the square occupied by this switch.
+         * Runs this switch's onEnter actions, then its onEnter script.  You
+         * should call this every time a robot enters the square occupied by
+         * this switch.
          * 
          * @param robot The robot that just entered this switch
+         * @param playfield The display the game is being played on. The script
+         * sees this as the "playfield" variable.
          * @throws EvalError if there is a scripting error
          */
-        public void onEnter(Robot robot, Playfield playfield) throws EvalError {
+        public void onEnter(Robot robot, RenderSink playfield) throws EvalError {
             if (level == null) {
                 throw new IllegalStateException(
                         "Can't evaluate switch onEnter: Switch is not attached to a level.");
             }
-            if (onEnter == null) return;
             if (!enabled) return;
+            for (int i = 0; i < onEnterActions.size(); i++) {
+                onEnterActions.get(i).run(this, robot, playfield);
+            }
+            if (onEnter == null) return;
 
             Interpreter bsh = level.getBshInterpreter();
-            bsh.set("robot", robot);
-            bsh.set("playfield", playfield);
+            prepareScripts();
+            if (onEnterError != null) throw onEnterError;
             
             if (debugOn) {
                 System.out.printf("Dump of scripting variables: (bsh=0x%x, interpreter=0x%x)\n", System.identityHashCode(bsh), System.identityHashCode(bsh.getNameSpace()));
@@ -165,32 +260,161 @@ public class LevelConfig {
                     System.out.println("  "+r.getId()+": "+r);
                 }
             }
-            bsh.eval(onEnter);
-            bsh.set("robot", null);
-            bsh.set("playfield", null);
+            invoke(onEnterMethod, onEnterUsesMap, bsh, compiledPolicy, robot, playfield);
         }
 
         /**
-         * Invokes this switch's onExit script.  You should call this every
-         * time a robot exits the square occupied by this switch.
+         * Runs this switch's onExit actions, then its onExit script.  You
+         * should call this every time a robot exits the square occupied by
+         * this switch.
          * 
          * @param robot The robot that just left this switch
+         * @param playfield The display the game is being played on. The script
+         * sees this as the "playfield" variable.
          * @throws EvalError if there is a scripting error
          */
-        public void onExit(Robot robot, Playfield playfield) throws EvalError {
+        public void onExit(Robot robot, RenderSink playfield) throws EvalError {
             if (level == null) {
                 throw new IllegalStateException(
                         "Can't evaluate switch onExit: Switch is not attached to a level.");
             }
-            if (onExit == null) return;
             if (!enabled) return;
+            for (int i = 0; i < onExitActions.size(); i++) {
+                onExitActions.get(i).run(this, robot, playfield);
+            }
+            if (onExit == null) return;
+
+            prepareScripts();
+            if (onExitError != null) throw onExitError;
+            invoke(onExitMethod, onExitUsesMap, level.getBshInterpreter(), compiledPolicy, robot, playfield);
+        }
 
+        /**
+         * Checks this switch's scripts against its level's script policy and
+         * compiles them in its level's interpreter, unless that has already
+         * been done with the same interpreter and policy.  Each script becomes the body
+         * of a BeanShell method with the parameters <code>robot</code> and
+         * <code>playfield</code>, so it only has to be parsed once no matter
+         * how many times it runs.  The body is run right in the level's global
+         * namespace rather than in a namespace of its own, so the script
+         * behaves just like it did when it was parsed on every run: robot and
+         * playfield are level variables while it runs, and the variables it
+         * assigns stay in the level for the next run.
+         * <p>
+         * Scripts that mention <code>map</code> get the level's map as a
+         * <code>Square[x][y]</code> array in that variable, as they always
+         * have. The level doesn't keep its map in that form any more, so the
+         * array is made fresh for each run of such a script, and the squares
+         * it changed are copied back into the level when the run ends.
+         * <p>
+         * Compile errors and policy violations are not thrown here; they are
+         * remembered and thrown every time the broken script is supposed to
+         * run, just like when the script was parsed on every run.
+         */
+        void prepareScripts() {
             Interpreter bsh = level.getBshInterpreter();
-            bsh.set("robot", robot);
-            bsh.set("playfield", playfield);
-            bsh.eval(onExit);
-            bsh.set("robot", null);
-            bsh.set("playfield", null);
+            ScriptPolicy policy = level.getScriptPolicy();
+            if (compiledFor == bsh && compiledPolicy == policy) return;
+            onEnterMethod = null;
+            onEnterError = null;
+            onExitMethod = null;
+            onExitError = null;
+            try {
+                onEnterMethod = compile(bsh, policy, "onEnter", onEnter);
+            } catch (EvalError e) {
+                onEnterError = e;
+            }
+            try {
+                onExitMethod = compile(bsh, policy, "onExit", onExit);
+            } catch (EvalError e) {
+                onExitError = e;
+            }
+            onEnterUsesMap = onEnter != null && ScriptPolicy.mentions(onEnter, "map");
+            onExitUsesMap = onExit != null && ScriptPolicy.mentions(onExit, "map");
+            compiledFor = bsh;
+            compiledPolicy = policy;
+        }
+        
+        /**
+         * Checks the given script against the policy, then compiles it into
+         * a method of the given name. Returns null if the script is null.
+         */
+        private static BshMethod compile(Interpreter bsh, ScriptPolicy policy, String name, String script) throws EvalError {
+            if (script == null) return null;
+            policy.check(script);
+            NameSpace ns = new NameSpace(bsh.getNameSpace(), name);
+            bsh.eval("void "+name+"(robot, playfield) { "+script+"\n}", ns);
+            return ns.getMethods()[0];
+        }
+        
+        /**
+         * Runs a method made by {@link #compile(Interpreter, ScriptPolicy, String, String)}
+         * as the given policy allows. BeanShell doesn't accept plain nulls as
+         * method arguments, so they are passed as its null value instead.
+         * <p>
+         * If the method runs out of time and can't be stopped, it keeps
+         * running in the interpreter, so the level is told to stop using that
+         * interpreter before the timeout is passed on.
+         */
+        private void invoke(final BshMethod method, boolean usesMap, final Interpreter bsh,
+                ScriptPolicy policy, Robot robot, RenderSink playfield) throws EvalError {
+            if (usesMap) {
+                Square[][] map = level.getMap();
+                bsh.set("map", map);
+                try {
+                    invoke(method, false, bsh, policy, robot, playfield);
+                } finally {
+                    level.copyMapBack(map);
+                }
+                return;
+            }
+            if (!policy.isPlayfieldAllowed()) {
+                playfield = null;
+            }
+            final Object[] args = new Object[] {
+                    robot == null ? Primitive.NULL : robot,
+                    playfield == null ? Primitive.NULL : playfield };
+            if (policy.getTimeLimit() == 0) {
+                runInLevelNameSpace(method, args, bsh);
+            } else {
+                try {
+                    ScriptRunner.run(new ScriptRunner.Call() {
+                        public void run() throws EvalError {
+                            runInLevelNameSpace(method, args, bsh);
+                        }
+                    }, policy.getTimeLimit());
+                } catch (ScriptTimeoutException ex) {
+                    if (!ex.isStopped()) {
+                        level.abandonInterpreter(bsh);
+                    }
+                    throw ex;
+                }
+            }
+        }
+
+        /**
+         * Runs the body of a compiled script in the interpreter's global
+         * namespace, with its arguments set as variables there, then clears
+         * <code>robot</code> and <code>playfield</code> again.
+         * <p>
+         * BeanShell only does this for its own commands, so the method is
+         * invoked through {@link #INVOKE_IN_CALLER}.
+         */
+        private static void runInLevelNameSpace(BshMethod method, Object[] args, Interpreter bsh) throws EvalError {
+            try {
+                INVOKE_IN_CALLER.invoke(method, args, bsh, new CallStack(bsh.getNameSpace()), null, Boolean.TRUE);
+            } catch (InvocationTargetException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof EvalError) throw (EvalError) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new RuntimeException(cause);
+            } catch (IllegalAccessException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                bsh.set("robot", null);
+                bsh.set("playfield", null);
+            }
         }
 
         /**
@@ -208,6 +432,7 @@ public class LevelConfig {
          */
         public void setPosition(int x, int y) {
             this.position = new Point(x, y);
+            positionChanged();
         }
 
         /**
@@ -226,6 +451,7 @@ public class LevelConfig {
         
         public void setX(int x) {
             position.x = x;
+            positionChanged();
         }
 
         public int getY() {
@@ -234,6 +460,18 @@ public class LevelConfig {
         
         public void setY(int y) {
             position.y = y;
+            positionChanged();
+        }
+        
+        /**
+         * Tells this switch's level that its switch index is out of date.
+         * Scripts and editors can move switches around at any time, so this
+         * is how the level finds out.
+         */
+        private void positionChanged() {
+            if (level != null) {
+                level.switchMoved();
+            }
         }
 
         public String getId() {
@@ -256,10 +494,61 @@ public class LevelConfig {
             return onEnter;
         }
         
+        /**
+         * Returns true if this switch has an onEnter or onExit script.
+         */
+        public boolean hasScript() {
+            return onEnter != null || onExit != null;
+        }
+        
         public void setOnEnter(String onEnter) {
             this.onEnter = onEnter;
+            this.compiledFor = null;
+            if (level != null) {
+                prepareScripts();
+            }
         }
 
+        /**
+         * Returns an unmodifiable view of the built-in actions that run when
+         * a robot enters this switch.
+         */
+        public List<SwitchAction> getOnEnterActions() {
+            return Collections.unmodifiableList(onEnterActions);
+        }
+        
+        public void addOnEnterAction(SwitchAction action) {
+            onEnterActions.add(action);
+        }
+        
+        public boolean removeOnEnterAction(SwitchAction action) {
+            return onEnterActions.remove(action);
+        }
+        
+        /**
+         * Returns an unmodifiable view of the built-in actions that run when
+         * a robot exits this switch.
+         */
+        public List<SwitchAction> getOnExitActions() {
+            return Collections.unmodifiableList(onExitActions);
+        }
+        
+        public void addOnExitAction(SwitchAction action) {
+            onExitActions.add(action);
+        }
+        
+        public boolean removeOnExitAction(SwitchAction action) {
+            return onExitActions.remove(action);
+        }
+        
+        /**
+         * Returns the level this switch belongs to, or null if it hasn't
+         * been added to a level.
+         */
+        public LevelConfig getLevel() {
+            return level;
+        }
+        
         public boolean isEnabled() {
             return enabled;
         }
@@ -318,13 +607,68 @@ public class LevelConfig {
      * <p>
      * Implementation note: This can't be a map of points to switches 
      * because the bsh scripts are allowed to modify the switch positions
-     * (and the key in the map wouldn't update accordingly).
+     * (and the key in the map wouldn't update accordingly). The cell index
+     * used by {@link #getSwitch(int, int)} copes with that by being rebuilt
+     * whenever a switch moves.
      */
     private List<Switch> switches = new ArrayList<Switch>();
+    
+    /**
+     * The map cells of the switches in {@link #switchIndex}, packed by
+     * {@link #cellKey(int, int)}. This and switchIndex form an open-addressing
+     * hash table from map cell to the first switch (in list order) on that
+     * cell, so its size depends on the number of switches, not the map size.
+     */
+    private long[] switchCells;
+    
+    /**
+     * The switches in the cell index. Null entries are empty slots.
+     */
+    private Switch[] switchIndex;
+    
+    /**
+     * False when switches have been added, removed or moved since the index
+     * was built.
+     */
+    private boolean switchIndexValid;
 
-    private Square[][] map = new Square[0][0];
+    /**
+     * The distinct squares that appear in this level's map. Each map cell
+     * stores an index into this array. Entry 0 is always null, so a freshly
+     * sized map is all nulls. Entries are only ever appended while the
+     * map keeps its size, so indices stay valid until the next
+     * {@link #setMap(Square[][])} or {@link #setSize(int, int)}.
+     */
+    private Square[] palette = new Square[] { null };
+    
+    /**
+     * The number of entries of {@link #palette} that are in use.
+     */
+    private int paletteSize = 1;
+    
+    /**
+     * The map, as palette indices (treated as unsigned) in row-major order:
+     * the square at (x,y) is <code>palette[cells[y * width + x]]</code>.
+     */
+    private short[] cells = new short[0];
+    
+    /**
+     * The width of the map, in squares.
+     */
+    private int width;
+    
+    /**
+     * The height of the map, in squares.
+     */
+    private int height;
+    
     private Interpreter bsh;
     
+    /**
+     * What this level's switch scripts are allowed to do.
+     */
+    private ScriptPolicy scriptPolicy = ScriptPolicy.DEFAULT;
+    
     /**
      * The current score for this level.  See also {@link #getEffectiveScore()}.
      */
@@ -345,6 +689,11 @@ public class LevelConfig {
      * A snapshot of this configuration which can be restored at a later time.
      */
     private LevelConfig snapshot;
+    
+    /**
+     * The level this one is a snapshot of, or null if it isn't a snapshot.
+     */
+    private LevelConfig snapshotOf;
 
     /**
      * The individual pages of this level's description text.  This list is
@@ -383,9 +732,56 @@ public class LevelConfig {
     }
     
     private void initInterpreter() throws EvalError {
-        bsh = new Interpreter();
-        debugf("Created new BSH interpreter 0x%x (namespace 0x%x, level 0x%x)", System.identityHashCode(bsh), System.identityHashCode(bsh.getNameSpace()), System.identityHashCode(LevelConfig.this));
+        bsh = InterpreterPool.take();
+        applyScriptPolicy();
+        debugf("Got BSH interpreter 0x%x (namespace 0x%x, level 0x%x)", System.identityHashCode(bsh), System.identityHashCode(bsh.getNameSpace()), System.identityHashCode(LevelConfig.this));
+        bsh.set("level", this);
+    }
+    
+    /**
+     * Replaces this level's interpreter with a fresh one from the
+     * {@link InterpreterPool} because a script that couldn't be stopped is
+     * still running in it. The old interpreter is never used again, not even
+     * by {@link #resetInterpreter()}, which would otherwise clear its
+     * namespace out from under the runaway script. The level's robots and
+     * switches are bound in the new interpreter, and the switches recompile
+     * their scripts the next time they run. Variables that scripts stored in
+     * the old interpreter are lost.
+     * 
+     * @param poisoned The interpreter the runaway script is running in. If
+     * this level has already moved on to another one, nothing happens.
+     */
+    void abandonInterpreter(Interpreter poisoned) {
+        if (poisoned != bsh) return;
+        debugf("Abandoning BSH interpreter 0x%x (level 0x%x)", System.identityHashCode(bsh), System.identityHashCode(LevelConfig.this));
+        try {
+            initInterpreter();
+            for (Robot r : robots) {
+                bsh.set(r.getId(), r);
+            }
+            for (Switch s : switches) {
+                bsh.set(s.getId(), s);
+            }
+        } catch (EvalError e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    /**
+     * Empties this level's interpreter in place, leaving it as if it was
+     * newly created: all scripting variables (including the robots and
+     * switches) and any methods or imports the scripts declared are gone,
+     * and only the "bsh" system object and "level" remain.  This is much
+     * cheaper than creating a new interpreter, and since the interpreter
+     * itself stays the same, the switches don't have to recompile their
+     * scripts.
+     */
+    private void resetInterpreter() throws EvalError {
+        Object system = bsh.get("bsh");
+        bsh.getNameSpace().clear();
+        bsh.set("bsh", system);
         bsh.set("level", this);
+        debugf("Cleared BSH interpreter 0x%x (level 0x%x)", System.identityHashCode(bsh), System.identityHashCode(LevelConfig.this));
     }
     
     public String getName() {
@@ -492,36 +888,88 @@ public class LevelConfig {
 
     /**
      * Sets the size of the map for this level, in squares.  The new grid of squares
-     * is initialised to nulls. If there was a map before, it will be wiped out.
+     * is initialised to nulls. If there was a map before, the part of it that
+     * fits in the new size is kept.
      */
     public void setSize(int width, int height) {
-        Square[][] oldMap = map;
-        Square[][] newMap = new Square[width][height];
-        for (int y = 0; y < oldMap.length && y < newMap.length; y++) {
-            for (int x = 0; x < oldMap[0].length && x < newMap[0].length; x++) {
-                newMap[y][x] = oldMap[y][x];
-            }
+        short[] oldCells = cells;
+        int oldWidth = this.width;
+        int oldHeight = this.height;
+        short[] newCells = new short[width * height];
+        for (int y = 0; y < oldHeight && y < height; y++) {
+            System.arraycopy(oldCells, y * oldWidth, newCells, y * width, Math.min(oldWidth, width));
         }
-        setMap(newMap);
+        this.width = width;
+        this.height = height;
+        this.cells = newCells;
+        pcs.firePropertyChange("map", null, null);
     }
     
+    /**
+     * Replaces this level's map with the squares in the given array, which
+     * is indexed by [x][y]. The array is not retained, so changes to it after
+     * this method returns will not affect the level.
+     */
     public void setMap(Square[][] map) {
-        final Square[][] oldMap = this.map;
-        this.map = map;
-        try {
-            bsh.set("map", map);
-        } catch (EvalError e) {
-            throw new RuntimeException(e);
+        int w = map.length;
+        int h = w == 0 ? 0 : map[0].length;
+        width = w;
+        height = h;
+        cells = new short[w * h];
+        palette = new Square[] { null };
+        paletteSize = 1;
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                cells[y * w + x] = paletteIndex(map[x][y]);
+            }
+        }
+        pcs.firePropertyChange("map", null, null);
+    }
+    
+    /**
+     * Makes this level's map a copy of the given level's map.  This is
+     * much cheaper than going through {@link #getMap()}, since it copies
+     * the palette indices in one shot.
+     */
+    private void copyMap(LevelConfig src) {
+        if (cells.length == src.cells.length) {
+            System.arraycopy(src.cells, 0, cells, 0, cells.length);
+        } else {
+            cells = src.cells.clone();
+        }
+        width = src.width;
+        height = src.height;
+        palette = src.palette.clone();
+        paletteSize = src.paletteSize;
+        pcs.firePropertyChange("map", null, null);
+    }
+    
+    /**
+     * Returns the palette index of the given square, adding the square to
+     * the palette if it isn't already there.  There are normally only a few
+     * square types in a game, so a linear search is fine.
+     */
+    private short paletteIndex(Square square) {
+        if (square == null) return 0;
+        for (int i = 1; i < paletteSize; i++) {
+            if (palette[i] == square) return (short) i;
+        }
+        if (paletteSize > 0xffff) {
+            throw new IllegalStateException("Too many different squares in one map");
         }
-        pcs.firePropertyChange("map", oldMap, map);
+        if (paletteSize == palette.length) {
+            palette = Arrays.copyOf(palette, palette.length * 2);
+        }
+        palette[paletteSize] = square;
+        return (short) paletteSize++;
     }
     
     public int getWidth() {
-        return map.length;
+        return width;
     }
     
     public int getHeight() {
-        return map[0].length;
+        return height;
     }
 
     public Dimension getSize() {
@@ -529,11 +977,23 @@ public class LevelConfig {
     }
 
     public void setSquare(int x, int y, Square square) {
-        map[x][y] = square;
+        checkBounds(x, y);
+        cells[y * width + x] = paletteIndex(square);
     }
     
     public Square getSquare(int x, int y) {
-        return map[x][y];
+        checkBounds(x, y);
+        return palette[cells[y * width + x] & 0xffff];
+    }
+
+    /**
+     * Throws an ArrayIndexOutOfBoundsException if the given position is
+     * off the map, as the old two-dimensional array did.
+     */
+    private void checkBounds(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new ArrayIndexOutOfBoundsException("(" + x + "," + y + ") is off the " + width + "x" + height + " map");
+        }
     }
 
     public Square getSquare(float x, float y) {
@@ -558,6 +1018,7 @@ public class LevelConfig {
             }
             bsh.set(s.getId(), s);
             switches.add(s);
+            switchIndexValid = false;
             s.level = this;
             pcs.firePropertyChange("switches", null, null);
         } catch (EvalError e) {
@@ -574,6 +1035,7 @@ public class LevelConfig {
         try {
             bsh.unset(sw.getId());
             switches.remove(sw);
+            switchIndexValid = false;
             pcs.firePropertyChange("switches", null, null);
         } catch (EvalError e) {
             throw new RuntimeException(e);
@@ -593,27 +1055,117 @@ public class LevelConfig {
      * switches there.
      */
     public Switch getSwitch(Point2D position) {
-        Point point = new Point((int) position.getX(), (int) position.getY());
-        for (Switch s : switches) {
-            if (s.getPosition().equals(point)) {
-                return s;
+        return getSwitch((int) position.getX(), (int) position.getY());
+    }
+    
+    /**
+     * Returns the switch located on the given map position, or null if there
+     * are no switches there. If there is more than one switch on the square,
+     * the one that was added first is returned.
+     * <p>
+     * This is a hash table lookup that doesn't create any objects, so it's
+     * safe to call every frame. The table is rebuilt on the next lookup after
+     * switches are added, removed or moved.
+     */
+    public Switch getSwitch(int x, int y) {
+        if (!switchIndexValid) {
+            buildSwitchIndex();
+        }
+        long key = cellKey(x, y);
+        int mask = switchIndex.length - 1;
+        for (int i = hashCell(key) & mask; switchIndex[i] != null; i = (i + 1) & mask) {
+            if (switchCells[i] == key) {
+                return switchIndex[i];
             }
         }
         return null;
     }
     
+    /**
+     * Rebuilds the cell index from the current switch list and positions.
+     */
+    private void buildSwitchIndex() {
+        int size = 2;
+        while (size < switches.size() * 2) {
+            size <<= 1;
+        }
+        switchCells = new long[size];
+        switchIndex = new Switch[size];
+        int mask = size - 1;
+        for (Switch s : switches) {
+            long key = cellKey(s.getX(), s.getY());
+            int i = hashCell(key) & mask;
+            while (switchIndex[i] != null && switchCells[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (switchIndex[i] == null) {
+                switchCells[i] = key;
+                switchIndex[i] = s;
+            }
+        }
+        switchIndexValid = true;
+    }
+    
+    /**
+     * Marks the switch index stale after one of this level's switches moved.
+     * Between {@link #snapshotState()} and {@link #resetState()}, a level and
+     * its snapshot share their switch objects, but each switch only knows
+     * about the level it was added to last, so the other level's index is
+     * marked stale too.
+     */
+    private void switchMoved() {
+        switchIndexValid = false;
+        if (snapshot != null) {
+            snapshot.switchIndexValid = false;
+        }
+        if (snapshotOf != null) {
+            snapshotOf.switchIndexValid = false;
+        }
+    }
+    
+    private static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+    
+    private static int hashCell(long key) {
+        key *= 0x9e3779b97f4a7c15L;
+        return (int) (key ^ (key >>> 32));
+    }
+    
     /** Returns an unmodifiable list of this level's robots. */
     public List<Robot> getRobots() {
         return Collections.unmodifiableList(robots);
     }
     
     /**
-     * Returns the actual map that this level uses.  Modifications to the map
-     * will be reflected in the level config, but the LevelConfig has no way of
-     * noticing these changes.  It would be better to use setSquare(x,y) to
-     * modify the map.
+     * Copies the squares in the given [x][y] array that differ from this
+     * level's map into the map. This is how changes that scripts make to their
+     * <code>map</code> variable reach the level.
+     */
+    private void copyMapBack(Square[][] map) {
+        for (int x = 0; x < map.length && x < width; x++) {
+            for (int y = 0; map[x] != null && y < map[x].length && y < height; y++) {
+                if (map[x][y] != getSquare(x, y)) {
+                    setSquare(x, y, map[x][y]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns a copy of this level's map, indexed by [x][y].  The level
+     * doesn't keep its map in this form, so modifications to the returned
+     * array will not be reflected in the level config; use setSquare(x,y) to
+     * modify the map.  For large maps, getSquare(x,y) is much cheaper than
+     * this method.
      */
     public Square[][] getMap() {
+        Square[][] map = new Square[width][height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                map[x][y] = palette[cells[y * width + x] & 0xffff];
+            }
+        }
         return map;
     }
 
@@ -688,6 +1240,7 @@ public class LevelConfig {
      */
     public void snapshotState() {
         snapshot = new LevelConfig();
+        snapshot.snapshotOf = this;
         copyState(this, snapshot, false);
     }
 
@@ -705,21 +1258,16 @@ public class LevelConfig {
      */
     private static void copyState(LevelConfig src, LevelConfig dst, boolean fullyIndependant) {
         try {
-            dst.initInterpreter();
+            dst.resetInterpreter();
             
-            final Square[][] srcMap = src.getMap();
-            Square[][] map = new Square[srcMap.length][srcMap[0].length];
-            for (int x = 0; x < map.length; x++) {
-                for (int y = 0; y < map[0].length; y++) {
-
-                    /* Square objects are immutable, so they can be shared */
-                    map[x][y] = srcMap[x][y];
-                }
-            }
-            dst.setMap(map);
+            /* Square objects are immutable, so they can be shared */
+            dst.copyMap(src);
             
             dst.setName(src.getName());
             dst.setDescription(src.getDescription());
+            if (fullyIndependant) {
+                dst.setScriptPolicy(src.scriptPolicy);
+            }
             
             // need to use addRobot() for each robot to get them into the bsh interpreter
             dst.robots = new ArrayList<Robot>();
@@ -736,6 +1284,7 @@ public class LevelConfig {
 
             // addSwitch() adds the switch to the BSH interpreter
             dst.switches = new ArrayList<Switch>();
+            dst.switchIndexValid = false;
             for (Switch s : src.switches) {
                 Switch switchToAdd;
                 if (fullyIndependant) {
@@ -759,4 +1308,41 @@ public class LevelConfig {
         return bsh;
     }
 
+    /**
+     * Returns the policy this level's switch scripts run under. This is
+     * {@link ScriptPolicy#DEFAULT} unless it has been changed.
+     */
+    public ScriptPolicy getScriptPolicy() {
+        return scriptPolicy;
+    }
+    
+    /**
+     * Sets the policy this level's switch scripts run under. Copies of this
+     * level get the same policy, but resetting the level doesn't change it.
+     */
+    public void setScriptPolicy(ScriptPolicy scriptPolicy) {
+        if (scriptPolicy == null) throw new NullPointerException("Null script policy");
+        this.scriptPolicy = scriptPolicy;
+        applyScriptPolicy();
+    }
+    
+    /**
+     * Hides the classes and commands that the script policy doesn't allow
+     * from this level's interpreter.
+     */
+    private void applyScriptPolicy() {
+        ((ScriptNameSpace) bsh.getNameSpace()).setRestricted(scriptPolicy.isRestricted());
+    }
+
+    /**
+     * Compiles the scripts of all this level's switches now, rather than
+     * the first time each one is triggered.  Errors in the scripts are not
+     * reported until the broken script is triggered.
+     */
+    public void prepareScripts() {
+        for (Switch s : switches) {
+            s.prepareScripts();
+        }
+    }
+
 }
@@ -99,6 +99,13 @@ public class LevelStore {
      */
     public static final String WALL_FLAG = "WALL";
 
+    /**
+     * The number of interpreters the {@link InterpreterPool} is warmed up
+     * with after a level pack is loaded: enough for one copy of a level and
+     * that copy's snapshot.
+     */
+    private static final int COPY_INTERPRETERS = 2;
+
     /**
      * Enables and disables the debugging features of this class.
      */
@@ -220,19 +227,25 @@ public class LevelStore {
                 out.write("    <switch id=\""+s.getId()+"\" " +
                                    "loc-x=\""+s.getX()+"\" " +
                                    "loc-y=\""+s.getY()+"\" " +
-                                "on-enter=\""+s.getOnEnter()+"\" " +
+       (s.getOnEnter() == null ? "" : "on-enter=\""+s.getOnEnter()+"\" ") +
                                  "enabled=\""+s.isEnabled()+"\" " +
                                   ""+makeLabelAttributes(s)+">\n");
                 out.write("      "+makeSpriteTag(s.getSprite())+"\n");
+                for (SwitchAction action : s.getOnEnterActions()) {
+                    out.write("      "+makeActionTag(action, "enter")+"\n");
+                }
+                for (SwitchAction action : s.getOnExitActions()) {
+                    out.write("      "+makeActionTag(action, "exit")+"\n");
+                }
                 out.write("    </switch>\n");
             }
 
             out.write("\n");
 
             out.write("    <map>\n");
-            for (int x = 0; x < level.getMap()[0].length; x++) {
-                for (int y = 0; y < level.getMap().length; y++) {
-                    out.write(level.getMap()[y][x].getMapChar());
+            for (int y = 0; y < level.getHeight(); y++) {
+                for (int x = 0; x < level.getWidth(); x++) {
+                    out.write(level.getSquare(x, y).getMapChar());
                 }
                 out.write("\n");
             }
@@ -264,6 +277,22 @@ public class LevelStore {
         return tag.toString();
     }
 
+    /**
+     * Creates the XML element for the given switch action.
+     * 
+     * @param trigger "enter" or "exit"
+     */
+    private static String makeActionTag(SwitchAction action, String trigger) {
+        StringBuffer tag = new StringBuffer();
+        tag.append("<").append(action.getType());
+        tag.append(" on=\"").append(trigger).append("\"");
+        for (Map.Entry<String, String> ent : action.getAttributes().entrySet()) {
+            tag.append(" ").append(ent.getKey()).append("=\"").append(ent.getValue()).append("\"");
+        }
+        tag.append("/>");
+        return tag.toString();
+    }
+
     public static GameConfig loadLevels(ResourceLoader resourceLoader) throws IOException {
         return loadLevels(resourceLoader, DEFAULT_MAP_RESOURCE_PATH);
     }
@@ -310,7 +339,13 @@ public class LevelStore {
             ioe.initCause(ex);
             throw ioe;
         }
-        return handler.getGameConfig();
+        GameConfig config = handler.getGameConfig();
+        
+        // the levels and their snapshots got their interpreters while parsing,
+        // so the pool only serves copies made later: a ghost level or an
+        // editor playtest level, each of which is a copy plus its snapshot
+        InterpreterPool.prewarm(COPY_INTERPRETERS);
+        return config;
     }
     
     private static class LevelSaxHandler extends DefaultHandler {
@@ -897,6 +932,41 @@ public class LevelStore {
                     setupLabel(newSwitch, attributes);
                     // gets added to level in endElement
                     
+                } else if (SwitchAction.isActionType(qName)) {
+                    // built-in switch actions, nested inside their switch
+                    if (newSwitch == null || nestingContext.size() < 2
+                            || !nestingContext.get(nestingContext.size() - 2).equals("switch")) {
+                        throw new FileFormatException("The <"+qName+"> element has to be inside a <switch>", loc.getLineNumber(), line, loc.getColumnNumber());
+                    }
+                    boolean onExit = false;
+                    Map<String,String> actionAttribs = new HashMap<String,String>();
+                    for (int i = 0; i < attributes.getLength(); i++) {
+                        String aname = attributes.getQName(i);
+                        String aval = attributes.getValue(i);
+                        
+                        if (aname.equals("on")) {
+                            if (aval.equals("exit")) {
+                                onExit = true;
+                            } else if (!aval.equals("enter")) {
+                                throw new FileFormatException("Switch actions have to be on=\"enter\" or on=\"exit\"", loc.getLineNumber(), line, loc.getColumnNumber());
+                            }
+                        } else {
+                            actionAttribs.put(aname, aval);
+                        }
+                    }
+                    
+                    SwitchAction action;
+                    try {
+                        action = SwitchAction.create(qName, actionAttribs);
+                    } catch (IllegalArgumentException ex) {
+                        throw new FileFormatException(ex.getMessage(), loc.getLineNumber(), line, loc.getColumnNumber());
+                    }
+                    if (onExit) {
+                        newSwitch.addOnExitAction(action);
+                    } else {
+                        newSwitch.addOnEnterAction(action);
+                    }
+                    
                 } else if (qName.equals("map")) {
                     // The squares of the map
                     // requires the charData inside this element, so it's handled in the endElement
@@ -955,6 +1025,7 @@ public class LevelStore {
                     if (sprite ==  null) throw new FileFormatException("The <switch> element must contain a nested <graphic> element!", loc.getLineNumber(), line, loc.getColumnNumber());
                     newSwitch.setSprite(sprite);
                     level.addSwitch(newSwitch);
+                    newSwitch = null;
                 } else if (qName.equals("map")) {
                     try {
                         
@@ -997,6 +1068,9 @@ public class LevelStore {
                     }
 
                 } else if (qName.equals("level")) {
+                    
+                    // compile before the snapshot borrows the switches
+                    level.prepareScripts();
                     level.snapshotState();
                     config.addLevel(level);
                     level = null;
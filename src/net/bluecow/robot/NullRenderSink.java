@@ -0,0 +1,109 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.awt.Composite;
+
+import net.bluecow.robot.fx.Effect;
+
+/**
+ * A render sink that ignores everything it's told. Game loops that aren't
+ * attached to a playfield use this, so they can run at full speed with no
+ * Swing components (or even a display) around.
+ */
+public class NullRenderSink implements RenderSink {
+
+    /**
+     * Does nothing.
+     */
+    public void setLevel(LevelConfig level) {
+        // no display
+    }
+
+    /**
+     * Does nothing.
+     */
+    public void addRobot(Robot robot, Composite drawComposite) {
+        // no display
+    }
+
+    /**
+     * Does nothing. The effect will never be painted, so it will never finish.
+     */
+    public void addEffect(Effect e) {
+        // no display
+    }
+
+    /**
+     * Does nothing.
+     */
+    public void setFrameCount(int c) {
+        // no display
+    }
+
+    /**
+     * Does nothing.
+     */
+    public void setAsyncRepaint(boolean asyncRepaint) {
+        // no display
+    }
+
+    /**
+     * Does nothing.
+     */
+    public void playSound(String soundId) {
+        // no display
+    }
+
+    /**
+     * Does nothing.
+     */
+    public void setSimulationClock(SimulationClock clock) {
+        // no display
+    }
+
+    /**
+     * Does nothing.
+     */
+    public void repaint() {
+        // no display
+    }
+
+    /**
+     * Does nothing.
+     */
+    public void setTurbo(boolean turbo) {
+        // no display
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.bluecow.robot.sim.Profiler;
+
+/**
+ * Advances a run of robots (sensors, circuit evaluation and movement) on
+ * several threads at once, and remembers which squares each one moved
+ * between so the game loop can run the switches afterward, one robot at a
+ * time in robot order. See {@link GameLoop#setParallelism(int)} for which
+ * robots can safely be advanced together.
+ * <p>
+ * The helper threads are shared by all the steppers in the JVM. The thread
+ * that asks for a run of robots to be advanced works on them too, and only
+ * waits for the ones the helpers already started on, so a busy or
+ * undersized pool slows things down but can't deadlock.
+ */
+class ParallelStepper {
+
+    /**
+     * Runs shorter than this are advanced on the calling thread; handing
+     * them out costs more than it saves.
+     */
+    static final int MIN_PARALLEL_ROBOTS = 8;
+    
+    /**
+     * The threads that help the game loops, created when first needed.
+     */
+    private static ThreadPoolExecutor helpers;
+    
+    /**
+     * Returns the shared helper pool, creating it if necessary. Its threads
+     * are daemons, and they go away after sitting idle for a few seconds.
+     */
+    private static synchronized ThreadPoolExecutor getHelpers() {
+        if (helpers == null) {
+            int n = Runtime.getRuntime().availableProcessors();
+            helpers = new ThreadPoolExecutor(n, n, 5, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Robot stepper "+count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            helpers.allowCoreThreadTimeOut(true);
+        }
+        return helpers;
+    }
+    
+    /**
+     * The number of threads (including the caller's) that work on a run.
+     */
+    private final int threads;
+    
+    /**
+     * True for each robot that was advanced by the latest call to
+     * {@link #advance(List, int, int, Profiler)}; false for robots that had already
+     * reached the goal.
+     */
+    private boolean[] advanced = new boolean[0];
+    
+    /**
+     * The square each robot was on before and after it moved: four entries
+     * per robot (old x, old y, new x, new y).
+     */
+    private int[] cells = new int[0];
+    
+    /**
+     * The profiler for the current call to {@link #advance}, or null.
+     */
+    private Profiler profiler;
+    
+    ParallelStepper(int threads) {
+        this.threads = threads;
+    }
+    
+    int getThreads() {
+        return threads;
+    }
+    
+    /**
+     * Advances robots <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive) of the given list, and returns once they've all been
+     * advanced. Exceptions thrown while advancing a robot are rethrown here.
+     * 
+     * @param profiler The profiler to report the robots' timings to, or null.
+     */
+    void advance(List<Robot> robots, int from, int to, Profiler profiler) {
+        this.profiler = profiler;
+        if (advanced.length < robots.size()) {
+            advanced = new boolean[robots.size()];
+            cells = new int[robots.size() * 4];
+        }
+        int count = to - from;
+        if (threads < 2 || count < MIN_PARALLEL_ROBOTS) {
+            for (int i = from; i < to; i++) {
+                advanceOne(robots.get(i), i);
+            }
+            return;
+        }
+        
+        // a few chunks per thread evens out robots with bigger circuits
+        int chunk = Math.max(1, count / (threads * 4));
+        int chunks = (count + chunk - 1) / chunk;
+        Batch batch = new Batch(robots, from, to, chunk);
+        ThreadPoolExecutor pool = getHelpers();
+        for (int i = Math.min(threads, chunks) - 1; i > 0; i--) {
+            pool.execute(batch);
+        }
+        batch.run();
+        batch.await();
+    }
+    
+    /**
+     * Advances one robot, unless it has already reached the goal.
+     */
+    private void advanceOne(Robot robot, int i) {
+        if (robot.isGoalReached()) {
+            advanced[i] = false;
+            return;
+        }
+        int c = i * 4;
+        cells[c] = (int) Math.floor(robot.getX());
+        cells[c + 1] = (int) Math.floor(robot.getY());
+        GameLoop.advance(robot, profiler);
+        cells[c + 2] = (int) Math.floor(robot.getX());
+        cells[c + 3] = (int) Math.floor(robot.getY());
+        advanced[i] = true;
+    }
+    
+    /**
+     * Returns true if the given robot was advanced by the latest call to
+     * {@link #advance(List, int, int, Profiler)}.
+     */
+    boolean wasAdvanced(int i) {
+        return advanced[i];
+    }
+    
+    int getOldX(int i) {
+        return cells[i * 4];
+    }
+    
+    int getOldY(int i) {
+        return cells[i * 4 + 1];
+    }
+    
+    int getNewX(int i) {
+        return cells[i * 4 + 2];
+    }
+    
+    int getNewY(int i) {
+        return cells[i * 4 + 3];
+    }
+    
+    /**
+     * One run of robots being advanced. The calling thread and every helper
+     * that picks this up take chunks of robots until there are none left.
+     */
+    private class Batch implements Runnable {
+        private final List<Robot> robots;
+        private final int to;
+        private final int chunk;
+        private final AtomicInteger next;
+        
+        /**
+         * The number of robots that haven't been advanced yet.
+         */
+        private int remaining;
+        
+        /**
+         * The first exception thrown while advancing a robot, if any.
+         */
+        private Throwable failure;
+        
+        Batch(List<Robot> robots, int from, int to, int chunk) {
+            this.robots = robots;
+            this.to = to;
+            this.chunk = chunk;
+            this.next = new AtomicInteger(from);
+            this.remaining = to - from;
+        }
+        
+        public void run() {
+            for (;;) {
+                int start = next.getAndAdd(chunk);
+                if (start >= to) return;
+                int end = Math.min(start + chunk, to);
+                Throwable error = null;
+                try {
+                    for (int i = start; i < end; i++) {
+                        advanceOne(robots.get(i), i);
+                    }
+                } catch (Throwable t) {
+                    error = t;
+                }
+                synchronized (this) {
+                    if (error != null && failure == null) {
+                        failure = error;
+                    }
+                    remaining -= end - start;
+                    if (remaining == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Waits for the helpers to finish the chunks they took, then
+         * rethrows the first failure.
+         */
+        synchronized void await() {
+            boolean interrupted = false;
+            while (remaining > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    // the robots have to be finished either way
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        }
+    }
+}
@@ -68,6 +68,7 @@ import javax.swing.event.AncestorListener;
 import net.bluecow.robot.GameConfig.SquareConfig;
 import net.bluecow.robot.LevelConfig.Switch;
 import net.bluecow.robot.fx.Effect;
+import net.bluecow.robot.sound.SoundManager;
 import net.bluecow.robot.sprite.AnimatedSprite;
 import net.bluecow.robot.sprite.Sprite;
 import net.bluecow.robot.sprite.SpriteLoadException;
@@ -76,7 +77,7 @@ import net.bluecow.robot.sprite.SpriteManager;
 /**
  * Playfield
  */
-public class Playfield extends JPanel {
+public class Playfield extends JPanel implements RenderSink {
     
     /**
      * Controls debugging features of this class, including whether or not
@@ -124,7 +125,13 @@ public class Playfield extends JPanel {
     
     private String winMessage;
     
-    private Integer frameCount;
+    private int frameCount = NO_FRAME_COUNT;
+    
+    /**
+     * True while the game loop is running in turbo mode. Effects and sounds
+     * are dropped then. This is set by the game loop thread.
+     */
+    private volatile boolean turbo;
     
     /**
      * All of the effects that are currently active. To start a new effect, just
@@ -216,6 +223,29 @@ public class Playfield extends JPanel {
      */
     private int frameDelay = 50;
 
+    /**
+     * The number of milliseconds between repaints while the game loop is
+     * running on a {@link SimulationClock}. This is independent of the
+     * game's tick rate.
+     */
+    private static final int RENDER_DELAY = 16;
+    
+    /**
+     * The clock of the game loop that's currently running, or null if the
+     * game loop isn't running. See {@link #setSimulationClock(SimulationClock)}.
+     */
+    private volatile SimulationClock clock;
+    
+    /**
+     * Repaints this playfield every {@link #RENDER_DELAY} ms while there is
+     * a simulation clock.
+     */
+    private final Timer renderTimer = new Timer(RENDER_DELAY, new ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            repaint();
+        }
+    });
+
     /**
      * The location, in squares, of the spotlight.
      */
@@ -347,12 +377,12 @@ public class Playfield extends JPanel {
         Graphics2D g2 = (Graphics2D) g.create();
         FontMetrics fm = getFontMetrics(getFont());
         
-        Square[][] squares = level.getMap();
-        for (int i = 0; i < squares.length; i++) {
-            for (int j = 0; j < squares[0].length; j++) {
+        for (int i = 0; i < level.getWidth(); i++) {
+            for (int j = 0; j < level.getHeight(); j++) {
                 Rectangle r = new Rectangle(i*squareWidth, j*squareWidth, squareWidth, squareWidth);
-                if (squares[i][j] != null) {
-                    squares[i][j].getSprite().paint(g2, r.x, r.y);
+                Square square = level.getSquare(i, j);
+                if (square != null) {
+                    square.getSprite().paint(g2, r.x, r.y);
                 } else {
                     g2.setColor(Color.red);
                     g2.fillRect(r.x, r.y, r.width, r.height);
@@ -375,6 +405,9 @@ public class Playfield extends JPanel {
             }
         }
         
+        SimulationClock clock = this.clock;
+        float tickProgress = (clock == null ? 1f : clock.getTickProgress());
+        
         Composite backupComposite = g2.getComposite();
         for (RoboStuff rs : robots) {
             Robot robot = rs.getRobot();
@@ -385,7 +418,7 @@ public class Playfield extends JPanel {
             }
             
             Sprite sprite = robot.getSprite();
-            Point2D roboPos = robot.getPosition();
+            Point2D roboPos = robot.getInterpolatedPosition(tickProgress);
             AffineTransform backupXform = g2.getTransform();
 
             g2.translate(
@@ -424,7 +457,7 @@ public class Playfield extends JPanel {
                     (int) (spotlightRadius*squareWidth*2));
         }
         
-        if (frameCount != null) {
+        if (frameCount != NO_FRAME_COUNT) {
             String fc = String.format("%4d", frameCount);
             int width = fm.stringWidth(fc);
             int height = fm.getHeight();
@@ -440,7 +473,7 @@ public class Playfield extends JPanel {
             for (RoboStuff rs : robots) {
                 Robot robot = rs.getRobot();
                 if (robot.isLabelEnabled()) {
-                    drawLabel(g2, fm, robot, robot.getPosition());
+                    drawLabel(g2, fm, robot, robot.getInterpolatedPosition(tickProgress));
                 }
             }
             
@@ -530,6 +563,7 @@ public class Playfield extends JPanel {
      * be removed from this playfield.
      */
     public void addEffect(Effect e) {
+        if (turbo) return;
         debug("Adding effect "+e);
         effects.add(e);
     }
@@ -744,7 +778,7 @@ public class Playfield extends JPanel {
         repaint();
     }
     
-    public void setFrameCount(Integer c) {
+    public void setFrameCount(int c) {
         debug("===="+System.identityHashCode(this)+" SetFrameCount Next Frame");
         boolean inPlay = (frameCount != c);
         frameCount = c;
@@ -781,6 +815,39 @@ public class Playfield extends JPanel {
         repaintManager.setEnabled(asyncRepaint);
     }
 
+    /**
+     * Plays the given sound through the game's sound manager, unless the
+     * game is in turbo mode.
+     */
+    public void playSound(String soundId) {
+        if (turbo) return;
+        SoundManager sm = game.getSoundManager();
+        if (sm != null) {
+            sm.play(soundId);
+        }
+    }
+    
+    /**
+     * Turns turbo mode on or off. See {@link RenderSink#setTurbo(boolean)}.
+     */
+    public void setTurbo(boolean turbo) {
+        this.turbo = turbo;
+    }
+    
+    /**
+     * Starts or stops repainting this playfield at display rate. See
+     * {@link RenderSink#setSimulationClock(SimulationClock)}.
+     */
+    public void setSimulationClock(SimulationClock clock) {
+        this.clock = clock;
+        if (clock != null) {
+            renderTimer.start();
+        } else {
+            renderTimer.stop();
+            repaint();
+        }
+    }
+    
     private AsyncRepaintManager repaintManager = new AsyncRepaintManager(frameDelay);
     
     private class AsyncRepaintManager implements ActionListener, AncestorListener {
@@ -0,0 +1,106 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.util.Collection;
+
+import javax.swing.AbstractAction;
+import javax.swing.JOptionPane;
+
+import net.bluecow.robot.sim.Profiler;
+
+/**
+ * Action that turns profiling of a game loop on and off. While it's on,
+ * the circuit editors show how often each gate changes state as a heat map.
+ * When it's turned off, a summary of the tick rate and the robots' timings
+ * is shown in a dialog.
+ */
+public class ProfileAction extends AbstractAction {
+
+    /**
+     * The component that owns the summary dialog.
+     */
+    private final Component owner;
+    
+    private final GameLoop loop;
+    
+    /**
+     * The editors that show the heat maps.
+     */
+    private final Collection<CircuitEditor> editors;
+    
+    public ProfileAction(Component owner, GameLoop loop, Collection<CircuitEditor> editors) {
+        super("Profile Circuits");
+        putValue(SELECTED_KEY, Boolean.FALSE);
+        this.owner = owner;
+        this.loop = loop;
+        this.editors = editors;
+    }
+    
+    public void actionPerformed(ActionEvent e) {
+        if (Boolean.TRUE.equals(getValue(SELECTED_KEY))) {
+            Profiler profiler = new Profiler();
+            loop.setProfiler(profiler);
+            for (CircuitEditor ce : editors) {
+                ce.setProfiler(profiler);
+            }
+        } else {
+            Profiler profiler = loop.getProfiler();
+            loop.setProfiler(null);
+            for (CircuitEditor ce : editors) {
+                ce.setProfiler(null);
+            }
+            if (profiler != null) {
+                showSummary(profiler);
+            }
+        }
+    }
+    
+    private void showSummary(Profiler profiler) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<html>");
+        sb.append(String.format("<p>%d ticks at %.1f ticks/sec (target %.1f)",
+                profiler.getTicks(), profiler.getTicksPerSecond(), profiler.getTargetTicksPerSecond()));
+        sb.append("<table><tr><th>Robot<th>Ticks<th>Evaluate<th>Move<th>Switches");
+        for (Profiler.RobotTimes t : profiler.getRobotTimes()) {
+            sb.append(String.format("<tr><td>%s<td>%d<td>%.3f ms<td>%.3f ms<td>%.3f ms",
+                    t.getRobot().getId(), t.getTicks(), t.getEvaluateNanos() / 1e6,
+                    t.getMoveNanos() / 1e6, t.getSwitchNanos() / 1e6));
+        }
+        sb.append("</table>");
+        JOptionPane.showMessageDialog(owner, sb.toString(), "Profile", JOptionPane.INFORMATION_MESSAGE);
+    }
+}
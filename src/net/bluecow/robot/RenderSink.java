@@ -0,0 +1,116 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.awt.Composite;
+
+import net.bluecow.robot.fx.Effect;
+
+/**
+ * The RenderSink interface is the part of the playfield that the game loop
+ * and the switch scripts talk to while a level is being played. The
+ * {@link Playfield} is the real implementation; {@link NullRenderSink} lets
+ * levels run without any display at all.
+ */
+public interface RenderSink {
+
+    /**
+     * Sets the level being displayed, and forgets about any robots that
+     * were added with {@link #addRobot(Robot, Composite)}.
+     */
+    void setLevel(LevelConfig level);
+    
+    /**
+     * Adds a robot (which does not have to be in the current level) to the
+     * display.
+     * 
+     * @param drawComposite The robot will be drawn with this composite
+     * operation. Null means normal compositing.
+     */
+    void addRobot(Robot robot, Composite drawComposite);
+    
+    /**
+     * Adds the given effect, which will be painted every frame until it
+     * says it is finished.
+     */
+    void addEffect(Effect e);
+    
+    /**
+     * The frame count that means the game is not in play.
+     */
+    static final int NO_FRAME_COUNT = -1;
+    
+    /**
+     * Tells the display which game loop iteration it's showing, and advances
+     * the animations to the next frame. {@link #NO_FRAME_COUNT} means the
+     * game is not in play. This is called on every tick, so it takes a
+     * primitive to keep the game loop from boxing the count.
+     */
+    void setFrameCount(int c);
+    
+    /**
+     * Switches between repainting on a timer (true) and repainting only
+     * when {@link #repaint()} is called (false).
+     */
+    void setAsyncRepaint(boolean asyncRepaint);
+    
+    /**
+     * Plays the sound manager entry with the given ID, if there is one.
+     * Switch scripts use this for their sound effects.
+     */
+    void playSound(String soundId);
+    
+    /**
+     * Gives the display the clock that the game loop is being run by. While
+     * there is a clock, the display repaints itself at its own rate and draws
+     * the robots part-way between their previous and current positions.
+     * Null means the game loop isn't running on a clock, and the robots are
+     * drawn exactly where they are when {@link #repaint()} is called.
+     */
+    void setSimulationClock(SimulationClock clock);
+    
+    /**
+     * Requests that the current state of the game be drawn.
+     */
+    void repaint();
+    
+    /**
+     * Tells the display whether the game loop is running in turbo mode. While
+     * it is, effects and sounds are dropped instead of being shown or played,
+     * since they would flash by too quickly to see or hear (or pile up).
+     * The switch scripts see the same render sink either way, so turbo mode
+     * doesn't change what they can do.
+     */
+    void setTurbo(boolean turbo);
+}
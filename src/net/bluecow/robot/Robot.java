@@ -64,10 +64,10 @@ public class Robot implements Labelable {
         if (debugOn) System.out.format(fmt, args);
     }
     
-    private static final int MOVING_UP = 1 << 0;
-    private static final int MOVING_DOWN = 1 << 1;
-    private static final int MOVING_LEFT = 1 << 2;
-    private static final int MOVING_RIGHT = 1 << 3;
+    public static final int MOVING_UP = 1 << 0;
+    public static final int MOVING_DOWN = 1 << 1;
+    public static final int MOVING_LEFT = 1 << 2;
+    public static final int MOVING_RIGHT = 1 << 3;
 	
     /**
      * A bitmask of the directions this robot is currently moving.
@@ -84,6 +84,13 @@ public class Robot implements Labelable {
     
 	private LevelConfig level;
 	private Point2D.Float position;
+    
+    /**
+     * Where this robot was before its most recent move. The playfield
+     * uses this to draw the robot between ticks.
+     */
+    private Point2D.Float prevPosition;
+    
 	private Sprite sprite;
 	private float stepSize;
     private int evalsPerStep; 
@@ -99,6 +106,18 @@ public class Robot implements Labelable {
 	/** A collection of outputs that report the robot's current state and surroundings. */
 	private Map<SensorConfig,RobotSensorOutput> outputs;
 
+    /**
+     * The keys of the {@link #outputs} map as an array, so
+     * {@link #updateSensors()} doesn't have to iterate over the map.
+     * Entry i corresponds with entry i of {@link #sensorOutputs}.
+     */
+    private SensorConfig[] sensorTypes;
+    
+    /**
+     * The values of the {@link #outputs} map as an array.
+     */
+    private RobotSensorOutput[] sensorOutputs;
+
     /** Indicates whether or not this robot has reached its goal. */
     private boolean goalReached;
     
@@ -178,6 +197,7 @@ public class Robot implements Labelable {
         for (SensorConfig sensor : sensorList) {
             outputs.put(sensor, new RobotSensorOutput(sensor));
         }
+        indexSensors();
         
         this.circuit = new Circuit(
                 name, robotInputsGate, outputs.values(),
@@ -224,6 +244,9 @@ public class Robot implements Labelable {
         this.position = new Point2D.Float(
                 (float) src.position.getX(),
                 (float) src.position.getY());
+        this.prevPosition = new Point2D.Float(
+                (float) src.prevPosition.getX(),
+                (float) src.prevPosition.getY());
         this.stepSize = src.stepSize;
         this.evalsPerStep = src.evalsPerStep;
         this.labelDirection = src.labelDirection;
@@ -238,11 +261,22 @@ public class Robot implements Labelable {
             SensorConfig sensor = entry.getKey();
             outputs.put(sensor, new RobotSensorOutput(sensor));
         }
+        indexSensors();
         
         this.circuit = new Circuit(src.circuit, robotInputsGate, outputs.values());
     }
     
+    /**
+     * Rebuilds the sensor arrays from the outputs map.
+     */
+    private void indexSensors() {
+        sensorTypes = outputs.keySet().toArray(new SensorConfig[outputs.size()]);
+        sensorOutputs = outputs.values().toArray(new RobotSensorOutput[outputs.size()]);
+    }
+    
     public void move() {
+        prevPosition.x = position.x;
+        prevPosition.y = position.y;
         int direction = 0;
 	    if (upInput.getState() == true) {
 	        moveUp();
@@ -275,9 +309,14 @@ public class Robot implements Labelable {
      */
 	public void updateSensors() {
 	    Square s = level.getSquare(position.x, position.y);
-        Collection squareSensors = s.getSensorTypes();
-        for (Map.Entry<SensorConfig, RobotSensorOutput> entry : outputs.entrySet()) {
-            entry.getValue().setState(squareSensors.contains(entry.getKey()));
+	    long mask = s.getSensorMask();
+        for (int i = 0; i < sensorTypes.length; i++) {
+            int bit = sensorTypes[i].getBitIndex();
+            if (bit >= 0) {
+                sensorOutputs[i].setState((mask & (1L << bit)) != 0);
+            } else {
+                sensorOutputs[i].setState(s.hasSensorType(sensorTypes[i]));
+            }
         }
 	}
 	
@@ -589,6 +628,56 @@ public class Robot implements Labelable {
         return movingDirection != 0;
     }
 
+    /**
+     * Returns the bitmask of directions this robot moved in on its most
+     * recent step. See the <tt>MOVING_*</tt> constants.
+     */
+    public int getMovingDirection() {
+        return movingDirection;
+    }
+    
+    /**
+     * Sets the bitmask of directions this robot is moving in, as if it had
+     * just started moving that way. This is for restoring recorded states;
+     * the robot's circuit decides the direction when the game is in play.
+     */
+    public void setMovingDirection(int movingDirection) {
+        this.movingDirection = movingDirection;
+        this.movingFrame = 0;
+    }
+    
+    /**
+     * Returns the heading, in radians, that this robot was most recently
+     * drawn with. It faces this way while it's standing still.
+     */
+    public double getPreviousHeading() {
+        return prevHeading;
+    }
+    
+    /**
+     * Sets the heading that this robot will face while standing still.
+     * This is for restoring recorded states.
+     */
+    public void setPreviousHeading(double headingRadians) {
+        this.prevHeading = headingRadians;
+    }
+    
+    /**
+     * Returns the current states of this robot's sensors as a bitmask. Bit
+     * <i>i</i> is set if the <i>i</i>th sensor (in the order of the sensor
+     * list this robot was created with) is on. Robots with more than 64
+     * sensors only report the first 64.
+     */
+    public long getSensorBits() {
+        long bits = 0L;
+        for (int i = 0, n = Math.min(64, sensorOutputs.length); i < n; i++) {
+            if (sensorOutputs[i].getOutputState()) {
+                bits |= 1L << i;
+            }
+        }
+        return bits;
+    }
+
     public LevelConfig getLevel() {
         return level;
     }
@@ -652,6 +741,20 @@ public class Robot implements Labelable {
      */
     public final void setPosition(Point2D position) {
         this.position = new Point2D.Float((float) position.getX(), (float) position.getY());
+        this.prevPosition = new Point2D.Float((float) position.getX(), (float) position.getY());
+    }
+    
+    /**
+     * Returns a point between this robot's position before its most recent
+     * move and its current position.
+     * 
+     * @param progress How far along to go, from 0.0 (the previous position)
+     * to 1.0 (the current position).
+     */
+    public Point2D getInterpolatedPosition(float progress) {
+        return new Point2D.Float(
+                prevPosition.x + (position.x - prevPosition.x) * progress,
+                prevPosition.y + (position.y - prevPosition.y) * progress);
     }
 
     /**
@@ -713,6 +816,8 @@ public class Robot implements Labelable {
     
     /**
      * Sets this robot's x position.  The y position will remain unchanged.
+     * Like {@link #setPosition(Point2D)}, this is a jump, so the robot won't
+     * be drawn sliding across the map to its new position.
      * 
      * <p>Note: this bean property is expressed as a double so that it will work
      * in the bean shell with an expression like "grod.x = 1.0" (the literal
@@ -721,6 +826,7 @@ public class Robot implements Labelable {
      */
     public void setX(double x) {
         position.x = (float) x;
+        prevPosition.x = position.x;
     }
 
     /**
@@ -737,6 +843,8 @@ public class Robot implements Labelable {
     
     /**
      * Sets this robot's y position.  The x position will remain unchanged.
+     * Like {@link #setPosition(Point2D)}, this is a jump, so the robot won't
+     * be drawn sliding across the map to its new position.
      * 
      * <p>Note: this bean property is expressed as a double so that it will work
      * in the bean shell with an expression like "grod.x = 1.0" (the literal
@@ -745,6 +853,7 @@ public class Robot implements Labelable {
      */
     public void setY(double y) {
         position.y = (float) y;
+        prevPosition.y = position.y;
     }
 
 
@@ -0,0 +1,140 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import bsh.Interpreter;
+import bsh.NameSpace;
+import bsh.UtilEvalError;
+import bsh.classpath.ClassManagerImpl;
+
+/**
+ * The global namespace of a level's BeanShell interpreter. When it's
+ * restricted, the scripts running in the interpreter can only refer to the
+ * classes in <code>java.lang</code> and the game's effects package, whether
+ * by their simple names or fully qualified, and BeanShell's commands
+ * (<code>cat</code>, <code>dir</code>, <code>print</code> and so on) are gone.
+ * This takes away the default imports (<code>java.io</code>,
+ * <code>java.net</code>, <code>java.util</code>, Swing, AWT) that would
+ * otherwise let a script get at the file system or the network without
+ * mentioning a single suspicious name.
+ * <p>
+ * Every interpreter in the {@link InterpreterPool} has one of these, and
+ * the level sets the restriction according to its {@link ScriptPolicy}.
+ * The restriction is checked on every lookup, so it can be changed at any
+ * time, and it survives {@link #clear()}. Classes are hidden by this
+ * namespace's class manager, which all the namespaces below this one
+ * (those of methods and blocks, for instance) load their classes through,
+ * and by this namespace itself, which caches the classes it has resolved.
+ */
+class ScriptNameSpace extends NameSpace {
+
+    /**
+     * The packages whose classes restricted scripts may use.
+     */
+    private static final String[] ALLOWED_PACKAGES = { "java.lang", "net.bluecow.robot.fx" };
+    
+    /**
+     * A class manager that pretends classes outside the allowed packages
+     * don't exist while its namespace is restricted.
+     */
+    private static class ScriptClassManager extends ClassManagerImpl {
+        
+        volatile boolean restricted;
+        
+        @Override
+        public Class classForName(String name) {
+            Class c = super.classForName(name);
+            if (c == null || !restricted || isAllowed(c)) {
+                return c;
+            }
+            return null;
+        }
+    }
+    
+    private final ScriptClassManager classManager;
+    
+    ScriptNameSpace() {
+        this(new ScriptClassManager());
+    }
+    
+    private ScriptNameSpace(ScriptClassManager classManager) {
+        super(classManager, "global");
+        this.classManager = classManager;
+    }
+    
+    public boolean isRestricted() {
+        return classManager.restricted;
+    }
+    
+    public void setRestricted(boolean restricted) {
+        classManager.restricted = restricted;
+    }
+    
+    /**
+     * Looks up a class as usual, but pretends classes outside the allowed
+     * packages don't exist while restricted. Scripts' own namespaces ask
+     * this one for every class they don't import themselves.
+     */
+    @Override
+    public Class getClass(String name) throws UtilEvalError {
+        Class c = super.getClass(name);
+        if (c == null || !isRestricted() || isAllowed(c)) {
+            return c;
+        }
+        return null;
+    }
+    
+    private static boolean isAllowed(Class c) {
+        while (c.isArray()) {
+            c = c.getComponentType();
+        }
+        String className = c.getName();
+        int dot = className.lastIndexOf('.');
+        String pkg = (dot < 0 ? "" : className.substring(0, dot));
+        for (String allowed : ALLOWED_PACKAGES) {
+            if (allowed.equals(pkg)) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Looks up a BeanShell command as usual, unless this namespace is
+     * restricted, in which case there are no commands.
+     */
+    @Override
+    public Object getCommand(String name, Class[] argTypes, Interpreter interpreter) throws UtilEvalError {
+        if (isRestricted()) return null;
+        return super.getCommand(name, argTypes, interpreter);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A ScriptPolicy decides what a level's switch scripts are allowed to do:
+ * whether they may run at all, how long one run may take, whether they get
+ * to draw on the playfield, and which names they may not mention.
+ * <p>
+ * A policy that denies any names is restricted, which works in two parts.
+ * First, the script's source is screened for the denied identifiers, such
+ * as <code>System</code>, <code>getClass</code> or
+ * <code>getBshInterpreter</code>. Second, the level's interpreter hides
+ * every class outside <code>java.lang</code> and the game's effects
+ * package, along with BeanShell's commands (see {@link ScriptNameSpace}),
+ * so the classes that BeanShell normally imports by default, like
+ * <code>java.io.PrintWriter</code>, can't be used to reach the file system
+ * or the network. BeanShell has no security model of its own, though, and
+ * scripts can still call any public method of the objects they are given,
+ * so this keeps casual mischief (and honest mistakes) out of the game, but
+ * it is not a real sandbox. Untrusted level packs should also be run with a
+ * time limit, which is enforced by running each script on a worker thread
+ * (at the cost of a thread handoff for every script call).
+ * <p>
+ * Instances of this class are immutable. The policy is chosen by whoever
+ * runs the level, not by the level file, so a hostile level can't grant
+ * itself more room.
+ */
+public class ScriptPolicy {
+
+    /**
+     * The time limit for one run of a switch script under
+     * {@link #TIME_LIMITED}, in milliseconds.
+     */
+    public static final long DEFAULT_TIME_LIMIT = 1000;
+    
+    /**
+     * The names that scripts may not use under the default policy: ways out
+     * to the JVM, the file system and the network, reflection, the
+     * BeanShell commands and objects that evaluate other code or reach the
+     * interpreter and its namespaces, and the level's own way to loosen
+     * its script policy.
+     */
+    public static final Set<String> DEFAULT_DENIED_NAMES =
+        Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+                "java", "javax", "sun", "bsh", "System", "Runtime", "Thread", "ThreadGroup",
+                "Process", "ProcessBuilder", "ClassLoader", "Class", "class", "getClass",
+                "getDeclaringClass", "getClassLoader", "loadClass",
+                "forName", "File", "FileInputStream", "FileOutputStream",
+                "FileReader", "FileWriter", "RandomAccessFile", "Socket",
+                "ServerSocket", "URL", "URLConnection", "eval", "source", "exec",
+                "run", "load", "save", "rm", "cd", "exit", "server", "frame",
+                "importCommands", "importPackage", "importClass", "importObject",
+                "importStatic", "setAccessibility", "addClassPath",
+                "setClassPath", "reloadClasses", "interpreter", "namespace",
+                "callstack", "caller", "getBshInterpreter", "getClassManager",
+                "getNameSpace", "setNameSpace", "setScriptPolicy")));
+    
+    /**
+     * The policy that levels have unless they are given another one:
+     * scripts are allowed, with the default denied names, and run directly
+     * on the game loop's thread with no time limit. A time limit means every
+     * script call is handed to a worker thread and waited for, which is too
+     * much overhead for the switches an interactive game triggers all the
+     * time, so it's left to batch and headless runs to ask for one.
+     */
+    public static final ScriptPolicy DEFAULT =
+        new ScriptPolicy(true, 0, true, DEFAULT_DENIED_NAMES);
+    
+    /**
+     * The default policy with the default time limit. This is what batch and
+     * headless runs use, since they often run level packs nobody is watching.
+     */
+    public static final ScriptPolicy TIME_LIMITED =
+        DEFAULT.withTimeLimit(DEFAULT_TIME_LIMIT);
+    
+    /**
+     * A policy that lets scripts do anything for as long as they like, and
+     * runs them on the game loop's own thread. This is how scripts were run
+     * before there were policies.
+     */
+    public static final ScriptPolicy UNRESTRICTED =
+        new ScriptPolicy(true, 0, true, Collections.<String>emptySet());
+    
+    /**
+     * A policy that doesn't allow scripts at all. Switches can still use the
+     * built-in {@link SwitchAction}s.
+     */
+    public static final ScriptPolicy NO_SCRIPTS =
+        new ScriptPolicy(false, 0, false, Collections.<String>emptySet());
+    
+    /**
+     * Matches the things in a script that are not code: comments, and
+     * string and character literals.
+     */
+    private static final Pattern NOT_CODE = Pattern.compile(
+            "//[^\\n]*|/\\*.*?\\*/|\"(?:\\\\.|[^\"\\\\])*\"|'(?:\\\\.|[^'\\\\])*'",
+            Pattern.DOTALL);
+    
+    /**
+     * Matches an identifier.
+     */
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+    
+    private final boolean scriptsAllowed;
+    private final long timeLimit;
+    private final boolean playfieldAllowed;
+    private final Set<String> deniedNames;
+    
+    /**
+     * Creates a new script policy.
+     * 
+     * @param scriptsAllowed Whether or not switch scripts may run at all
+     * @param timeLimit The most time one run of a script may take, in
+     * milliseconds. 0 means no limit, in which case scripts run directly on
+     * the game loop's thread.
+     * @param playfieldAllowed Whether or not scripts get to see the playfield.
+     * If not, their <code>playfield</code> variable is null.
+     * @param deniedNames Identifiers that scripts may not contain. A copy of
+     * this collection is made.
+     */
+    public ScriptPolicy(boolean scriptsAllowed, long timeLimit,
+            boolean playfieldAllowed, Collection<String> deniedNames) {
+        if (timeLimit < 0) throw new IllegalArgumentException("Negative time limit");
+        this.scriptsAllowed = scriptsAllowed;
+        this.timeLimit = timeLimit;
+        this.playfieldAllowed = playfieldAllowed;
+        this.deniedNames = Collections.unmodifiableSet(new HashSet<String>(deniedNames));
+    }
+    
+    /**
+     * Returns a policy that is the same as this one, but with the given
+     * time limit.
+     */
+    public ScriptPolicy withTimeLimit(long timeLimit) {
+        return new ScriptPolicy(scriptsAllowed, timeLimit, playfieldAllowed, deniedNames);
+    }
+    
+    public boolean isScriptsAllowed() {
+        return scriptsAllowed;
+    }
+    
+    /**
+     * Returns the most time one run of a script may take, in milliseconds,
+     * or 0 if there is no limit.
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+    
+    public boolean isPlayfieldAllowed() {
+        return playfieldAllowed;
+    }
+    
+    /**
+     * Returns the identifiers that scripts may not contain.
+     */
+    public Set<String> getDeniedNames() {
+        return deniedNames;
+    }
+    
+    /**
+     * Returns true if this policy denies any names, in which case scripts
+     * also can't use classes outside <code>java.lang</code> and the effects
+     * package, or BeanShell's commands.
+     */
+    public boolean isRestricted() {
+        return !deniedNames.isEmpty();
+    }
+    
+    /**
+     * Checks the given script against this policy.
+     * 
+     * @throws ScriptPolicyException if scripts are not allowed, or the script
+     * contains a denied name.
+     */
+    public void check(String script) throws ScriptPolicyException {
+        if (!scriptsAllowed) {
+            throw new ScriptPolicyException("Scripts are not allowed in this level");
+        }
+        if (deniedNames.isEmpty()) return;
+        Matcher m = IDENTIFIER.matcher(NOT_CODE.matcher(script).replaceAll(" "));
+        while (m.find()) {
+            if (deniedNames.contains(m.group())) {
+                throw new ScriptPolicyException(
+                        "Scripts in this level are not allowed to use \""+m.group()+"\"");
+            }
+        }
+    }
+    
+    /**
+     * Tells whether the given script contains the given identifier outside
+     * of its comments and string literals.
+     */
+    static boolean mentions(String script, String name) {
+        Matcher m = IDENTIFIER.matcher(NOT_CODE.matcher(script).replaceAll(" "));
+        while (m.find()) {
+            if (m.group().equals(name)) return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public String toString() {
+        return "ScriptPolicy[scriptsAllowed="+scriptsAllowed+", timeLimit="+timeLimit+
+            ", playfieldAllowed="+playfieldAllowed+", deniedNames="+deniedNames+"]";
+    }
+}
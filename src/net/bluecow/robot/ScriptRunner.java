@@ -0,0 +1,189 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import bsh.EvalError;
+
+/**
+ * Runs switch scripts on worker threads so a script that takes too long can
+ * be abandoned without taking the game loop down with it.  BeanShell has no
+ * way of counting or limiting the instructions a script executes, so the
+ * budget is wall-clock time: the calling thread waits for the script up to
+ * the time limit, then interrupts and stops the worker thread.
+ * <p>
+ * Handing every call to another thread and waiting for it costs a couple of
+ * thread switches and a few objects per call, which is why scripts only run
+ * here when their policy has a time limit (see {@link ScriptPolicy}).
+ * <p>
+ * Every calling thread gets its own worker, and the caller is blocked while
+ * the script runs, so the script still sees (and changes) the game state in
+ * the same order it always did, and stopping a worker can never hit another
+ * caller's script.  Workers that sit idle for a few seconds go away.
+ */
+public class ScriptRunner {
+
+    /**
+     * A piece of script to run.
+     */
+    public static interface Call {
+        void run() throws EvalError;
+    }
+    
+    /**
+     * How long a worker waits for its next script before it goes away.
+     */
+    private static final long WORKER_KEEP_ALIVE = 5000;
+    
+    /**
+     * Whether {@link #abandon(Worker, Future)} tries Thread.stop(). The tests
+     * turn this off to see what happens on JVMs that don't support it.
+     */
+    static volatile boolean stopAllowed = true;
+    
+    /**
+     * A single worker thread and its executor.
+     */
+    private static class Worker implements ThreadFactory {
+        private final ThreadPoolExecutor executor;
+        private volatile Thread thread;
+        
+        Worker() {
+            executor = new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), this);
+            executor.allowCoreThreadTimeOut(true);
+        }
+        
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Switch script worker");
+            t.setDaemon(true);
+            thread = t;
+            return t;
+        }
+    }
+    
+    /**
+     * The worker for each calling thread.
+     */
+    private static final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+    
+    /**
+     * This class is not instantiable.
+     */
+    private ScriptRunner() {
+    }
+    
+    /**
+     * Runs the given call on this thread's worker, and waits up to the given
+     * number of milliseconds for it to finish.
+     * 
+     * @throws EvalError if the call threw one
+     * @throws ScriptTimeoutException if the call took too long. If the
+     * exception's {@link ScriptTimeoutException#isStopped() isStopped()} is
+     * true, the call has been cancelled. Otherwise it may still be running on
+     * an abandoned thread, and the interpreter and objects it uses must not be
+     * trusted (or reused) any more.
+     */
+    public static void run(final Call call, long timeLimit) throws EvalError {
+        Worker worker = workers.get();
+        Future<Object> future = worker.executor.submit(new Callable<Object>() {
+            public Object call() throws EvalError {
+                call.run();
+                return null;
+            }
+        });
+        try {
+            future.get(timeLimit, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            boolean stopped = abandon(worker, future);
+            throw new ScriptTimeoutException(
+                    "Script took longer than "+timeLimit+"ms and was "+
+                    (stopped ? "cancelled" : "abandoned, but it could not be stopped"), stopped);
+        } catch (InterruptedException ex) {
+            boolean stopped = abandon(worker, future);
+            Thread.currentThread().interrupt();
+            throw new ScriptTimeoutException("Interrupted while waiting for script", stopped);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof EvalError) throw (EvalError) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Cancels the given script and throws away the worker that was running
+     * it. Interrupting isn't enough, because BeanShell never checks for
+     * interrupts, so this falls back on Thread.stop(), which newer JVMs
+     * no longer support.
+     * 
+     * @return true if the script is known to have stopped
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean abandon(Worker worker, Future<Object> future) {
+        workers.remove();
+        future.cancel(true);
+        worker.executor.shutdownNow();
+        Thread t = worker.thread;
+        if (stopAllowed && t != null && t.isAlive()) {
+            try {
+                t.stop();
+            } catch (UnsupportedOperationException ex) {
+                // the script keeps running on its own; nothing more we can do
+            } catch (SecurityException ex) {
+                // same as above
+            }
+        }
+        try {
+            return worker.executor.awaitTermination(100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+/**
+ * The SimulationClock decides when the game loop should run its next tick.
+ * Ticks are scheduled against absolute deadlines on the {@link System#nanoTime()}
+ * clock, so the tick rate doesn't drift with the cost of each step or with
+ * sleep jitter: if a tick runs late, the following ones are run back-to-back
+ * until the simulation has caught up.
+ * <p>
+ * The clock also remembers when the most recent tick happened, so a display
+ * that repaints at its own rate can ask how far along it is towards the next
+ * tick and interpolate the robot positions accordingly.
+ * <p>
+ * Only the game loop's thread should call {@link #start()},
+ * {@link #ticksDue()}, {@link #tickDone()} and {@link #nanosUntilNextTick()};
+ * {@link #getTickProgress()} is safe to call from any thread.
+ */
+public class SimulationClock {
+
+    /**
+     * The most ticks that will be run back-to-back to catch up. If the
+     * simulation falls further behind than this (for instance, because the
+     * machine was suspended), the clock gives up on the missed ticks instead
+     * of running them all in one burst.
+     */
+    public static final int MAX_CATCH_UP = 10;
+    
+    /**
+     * The time between ticks, in nanoseconds.
+     */
+    private volatile long tickNanos;
+    
+    /**
+     * The nanoTime at which the next tick should run.
+     */
+    private long nextTickNanos;
+    
+    /**
+     * The nanoTime at which the most recent tick completed.
+     */
+    private volatile long lastTickNanos;
+    
+    /**
+     * Creates a new clock that ticks every <tt>tickMillis</tt> milliseconds.
+     */
+    public SimulationClock(int tickMillis) {
+        setTickPeriod(tickMillis);
+    }
+    
+    /**
+     * Changes the time between ticks. Takes effect after the next tick.
+     * 
+     * @param tickMillis The tick period, in milliseconds. Must be at least 1.
+     */
+    public void setTickPeriod(int tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick period must be at least 1ms (got "+tickMillis+")");
+        }
+        tickNanos = tickMillis * 1000000L;
+    }
+    
+    /**
+     * Returns the time between ticks, in nanoseconds.
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+    
+    /**
+     * Makes the first tick due right away.
+     */
+    public void start() {
+        nextTickNanos = System.nanoTime();
+        lastTickNanos = nextTickNanos;
+    }
+    
+    /**
+     * Returns the number of ticks that should be run now to meet the
+     * schedule. This is 0 if the next deadline hasn't arrived yet, and
+     * never more than {@link #MAX_CATCH_UP}; when the schedule has slipped
+     * further than that, the extra ticks are dropped.
+     */
+    public int ticksDue() {
+        long now = System.nanoTime();
+        long late = now - nextTickNanos;
+        if (late < 0) return 0;
+        long due = late / tickNanos + 1;
+        if (due > MAX_CATCH_UP) {
+            nextTickNanos = now - (MAX_CATCH_UP - 1) * tickNanos;
+            return MAX_CATCH_UP;
+        }
+        return (int) due;
+    }
+    
+    /**
+     * Records that a tick has been run, and moves the deadline along by
+     * one tick period.
+     */
+    public void tickDone() {
+        nextTickNanos += tickNanos;
+        lastTickNanos = System.nanoTime();
+    }
+    
+    /**
+     * Returns how long the caller can sleep before the next tick is due.
+     * The result is 0 if a tick is due already.
+     */
+    public long nanosUntilNextTick() {
+        return Math.max(0L, nextTickNanos - System.nanoTime());
+    }
+    
+    /**
+     * Returns how far along the clock is from the most recent tick to the next
+     * one, as a fraction between 0.0 and 1.0.
+     */
+    public float getTickProgress() {
+        float progress = (float) (System.nanoTime() - lastTickNanos) / tickNanos;
+        return Math.max(0f, Math.min(1f, progress));
+    }
+}
@@ -63,4 +63,20 @@ public interface Square {
      */
     public Collection<SensorConfig> getSensorTypes();
 
+    /**
+     * Returns true if stepping onto this square activates the given type of
+     * sensor. This is the same as <code>getSensorTypes().contains(sensor)</code>,
+     * but it doesn't create any objects.
+     */
+    public boolean hasSensorType(SensorConfig sensor);
+
+    /**
+     * Returns the sensor types activated by this square as a bit mask, where
+     * bit <i>n</i> is set if the sensor type whose
+     * {@link SensorConfig#getBitIndex() bit index} is <i>n</i> is activated.
+     * Sensor types without a bit index are not represented in the mask; use
+     * {@link #hasSensorType(SensorConfig)} for those.
+     */
+    public long getSensorMask();
+
 }
@@ -0,0 +1,334 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.bluecow.robot.LevelConfig.Switch;
+
+/**
+ * A built-in switch effect that runs as plain Java code instead of through
+ * the level's BeanShell interpreter.  Switch actions cover the things that
+ * nearly every switch script does (reach the goal, add points, teleport the
+ * robot, enable or disable another switch, play a sound), so most switches
+ * don't need a script at all.
+ * <p>
+ * Actions are immutable, so switches and their copies can share them. In
+ * level files, each action is an element nested inside its switch; the
+ * element name is the action's {@link #getType() type} and the attributes
+ * are its {@link #getAttributes() attributes}.
+ */
+public abstract class SwitchAction {
+
+    /**
+     * Performs this action.
+     * 
+     * @param sw The switch that was triggered. Its level is the level to
+     * act on.
+     * @param robot The robot that triggered the switch
+     * @param playfield The display the game is being played on, or null if
+     * there isn't one
+     */
+    public abstract void run(Switch sw, Robot robot, RenderSink playfield);
+    
+    /**
+     * Returns the name of this type of action, which is also its element name
+     * in level files.
+     */
+    public abstract String getType();
+    
+    /**
+     * Returns the properties of this action as attribute name and value
+     * pairs, in the order they should appear in level files. The action can
+     * be recreated by passing the type and these attributes to
+     * {@link #create(String, Map)}.
+     */
+    public abstract Map<String, String> getAttributes();
+    
+    @Override
+    public String toString() {
+        return getType() + getAttributes();
+    }
+    
+    /**
+     * Returns true if the given name is the type of one of the built-in switch
+     * actions.
+     */
+    public static boolean isActionType(String type) {
+        return type.equals(GoalReached.TYPE)
+            || type.equals(AddScore.TYPE)
+            || type.equals(Teleport.TYPE)
+            || type.equals(SetSwitchEnabled.TYPE)
+            || type.equals(PlaySound.TYPE);
+    }
+    
+    /**
+     * Creates the switch action of the given type with the given attributes.
+     * 
+     * @throws IllegalArgumentException if the type isn't known, a mandatory
+     * attribute is missing, or an attribute's value can't be parsed.
+     */
+    public static SwitchAction create(String type, Map<String, String> attributes) {
+        try {
+            if (type.equals(GoalReached.TYPE)) {
+                return new GoalReached();
+            } else if (type.equals(AddScore.TYPE)) {
+                return new AddScore(Integer.parseInt(mandatory(type, attributes, "points")));
+            } else if (type.equals(Teleport.TYPE)) {
+                return new Teleport(
+                        Float.parseFloat(mandatory(type, attributes, "x")),
+                        Float.parseFloat(mandatory(type, attributes, "y")));
+            } else if (type.equals(SetSwitchEnabled.TYPE)) {
+                String value = attributes.get("value");
+                Boolean enabled;
+                if (value == null || value.equals(SetSwitchEnabled.TOGGLE)) {
+                    enabled = null;
+                } else {
+                    enabled = Boolean.valueOf(value);
+                }
+                return new SetSwitchEnabled(mandatory(type, attributes, "switch"), enabled);
+            } else if (type.equals(PlaySound.TYPE)) {
+                return new PlaySound(mandatory(type, attributes, "sound"));
+            } else {
+                throw new IllegalArgumentException("Unknown switch action type \""+type+"\"");
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Bad number in <"+type+"> switch action: "+ex.getMessage());
+        }
+    }
+    
+    private static String mandatory(String type, Map<String, String> attributes, String name) {
+        String value = attributes.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("The <"+type+"> switch action requires the attribute \""+name+"\"");
+        }
+        return value;
+    }
+    
+    /**
+     * Marks the robot as having reached its goal. The same as the script
+     * <code>robot.setGoalReached(true)</code>.
+     */
+    public static class GoalReached extends SwitchAction {
+        public static final String TYPE = "goal-reached";
+        
+        @Override
+        public void run(Switch sw, Robot robot, RenderSink playfield) {
+            robot.setGoalReached(true);
+        }
+        
+        @Override
+        public String getType() {
+            return TYPE;
+        }
+        
+        @Override
+        public Map<String, String> getAttributes() {
+            return Collections.emptyMap();
+        }
+    }
+    
+    /**
+     * Adds a number of points (which may be negative) to the level's score.
+     * The same as the script <code>level.score += points</code>.
+     */
+    public static class AddScore extends SwitchAction {
+        public static final String TYPE = "add-score";
+        private final int points;
+        
+        public AddScore(int points) {
+            this.points = points;
+        }
+        
+        public int getPoints() {
+            return points;
+        }
+        
+        @Override
+        public void run(Switch sw, Robot robot, RenderSink playfield) {
+            LevelConfig level = sw.getLevel();
+            level.setScore(level.getScore() + points);
+        }
+        
+        @Override
+        public String getType() {
+            return TYPE;
+        }
+        
+        @Override
+        public Map<String, String> getAttributes() {
+            return Collections.singletonMap("points", String.valueOf(points));
+        }
+    }
+    
+    /**
+     * Moves the robot to a fixed position on the map. The same as the script
+     * <code>robot.setPosition(x, y)</code>.
+     */
+    public static class Teleport extends SwitchAction {
+        public static final String TYPE = "teleport";
+        private final float x;
+        private final float y;
+        
+        public Teleport(float x, float y) {
+            this.x = x;
+            this.y = y;
+        }
+        
+        public float getX() {
+            return x;
+        }
+        
+        public float getY() {
+            return y;
+        }
+        
+        @Override
+        public void run(Switch sw, Robot robot, RenderSink playfield) {
+            robot.setPosition(x, y);
+        }
+        
+        @Override
+        public String getType() {
+            return TYPE;
+        }
+        
+        @Override
+        public Map<String, String> getAttributes() {
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            attributes.put("x", String.valueOf(x));
+            attributes.put("y", String.valueOf(y));
+            return attributes;
+        }
+    }
+    
+    /**
+     * Enables, disables, or toggles another switch in the same level.  The
+     * switch is looked up by ID every time the action runs, so the action
+     * works in copies of the level too.  Nothing happens if the level has no
+     * switch with the ID.
+     */
+    public static class SetSwitchEnabled extends SwitchAction {
+        public static final String TYPE = "switch-enabled";
+        
+        /**
+         * The value attribute that means "toggle".
+         */
+        public static final String TOGGLE = "toggle";
+        
+        private final String switchId;
+        private final Boolean enabled;
+        
+        /**
+         * @param switchId The ID of the switch to change
+         * @param enabled The new enabled state, or null to toggle it
+         */
+        public SetSwitchEnabled(String switchId, Boolean enabled) {
+            if (switchId == null) throw new NullPointerException("Null switch ID");
+            this.switchId = switchId;
+            this.enabled = enabled;
+        }
+        
+        public String getSwitchId() {
+            return switchId;
+        }
+        
+        /**
+         * Returns the state this action sets, or null if it toggles.
+         */
+        public Boolean getEnabled() {
+            return enabled;
+        }
+        
+        @Override
+        public void run(Switch sw, Robot robot, RenderSink playfield) {
+            for (Switch target : sw.getLevel().getSwitches()) {
+                if (switchId.equals(target.getId())) {
+                    target.setEnabled(enabled == null ? !target.isEnabled() : enabled);
+                    return;
+                }
+            }
+        }
+        
+        @Override
+        public String getType() {
+            return TYPE;
+        }
+        
+        @Override
+        public Map<String, String> getAttributes() {
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            attributes.put("switch", switchId);
+            attributes.put("value", enabled == null ? TOGGLE : enabled.toString());
+            return attributes;
+        }
+    }
+    
+    /**
+     * Plays a sound from the game's sound manager. The same as the script
+     * <code>playfield.playSound(sound)</code>.
+     */
+    public static class PlaySound extends SwitchAction {
+        public static final String TYPE = "play-sound";
+        private final String soundId;
+        
+        public PlaySound(String soundId) {
+            if (soundId == null) throw new NullPointerException("Null sound ID");
+            this.soundId = soundId;
+        }
+        
+        public String getSoundId() {
+            return soundId;
+        }
+        
+        @Override
+        public void run(Switch sw, Robot robot, RenderSink playfield) {
+            if (playfield != null) {
+                playfield.playSound(soundId);
+            }
+        }
+        
+        @Override
+        public String getType() {
+            return TYPE;
+        }
+        
+        @Override
+        public Map<String, String> getAttributes() {
+            return Collections.singletonMap("sound", soundId);
+        }
+    }
+}
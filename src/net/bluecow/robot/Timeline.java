@@ -0,0 +1,344 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.event.GameLoopEvent;
+import net.bluecow.robot.event.GameLoopListener;
+import net.bluecow.robot.gate.AbstractGate;
+import net.bluecow.robot.gate.Gate;
+
+/**
+ * The Timeline remembers the recent states of a game loop so the game can
+ * be stepped backward or scrubbed to any recent tick without replaying from
+ * the start.
+ * <p>
+ * Each tick's state is packed into a fixed number of <tt>long</tt>s: the loop
+ * count, the score of every level involved, every switch's enabled flag, and
+ * each robot's position, movement, heading, goal flag, and gate output bits.
+ * The snapshots live in a ring buffer whose size is capped by the memory
+ * limit given to the constructor; once it's full, the oldest ticks are
+ * forgotten. Restoring a snapshot takes time proportional to the size of
+ * the state.
+ * <p>
+ * Things that aren't restored: variables kept in the levels' BeanShell
+ * interpreters, changes scripts make to the map or to switch positions,
+ * and the animation frames of sprites.
+ */
+public class Timeline implements GameLoopListener {
+
+    /**
+     * The default memory limit for the snapshots, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024L * 1024L;
+    
+    private final GameLoop loop;
+    
+    private final long maxBytes;
+    
+    // the layout of a snapshot; worked out by layout()
+    
+    private Robot[] robots;
+    private Gate[][] gates;
+    private LevelConfig[] levels;
+    private Switch[] switches;
+    private int snapshotWords;
+    
+    /**
+     * The snapshots, <tt>snapshotWords</tt> longs each.
+     */
+    private long[] ring;
+    
+    /**
+     * The number of snapshots the ring can hold.
+     */
+    private int capacity;
+    
+    /**
+     * The ring index of the oldest snapshot.
+     */
+    private int oldest;
+    
+    /**
+     * The number of snapshots currently in the ring.
+     */
+    private int size;
+    
+    /**
+     * Creates a timeline for the given game loop, and starts listening to it.
+     * The loop's current state becomes the first snapshot.
+     * 
+     * @param maxBytes The most memory the snapshots may use. At least one
+     * snapshot is always kept, even if it's bigger than this.
+     */
+    public Timeline(GameLoop loop, long maxBytes) {
+        this.loop = loop;
+        this.maxBytes = maxBytes;
+        clear();
+        loop.addGameLoopListener(this);
+    }
+    
+    /**
+     * Works out the size of a snapshot for the game loop's current robots,
+     * gates and switches, and makes a ring buffer that fits in the memory
+     * limit.
+     */
+    private void layout() {
+        List<Robot> robotList = loop.getRobots();
+        robots = robotList.toArray(new Robot[robotList.size()]);
+        gates = new Gate[robots.length][];
+        
+        List<LevelConfig> levelList = new ArrayList<LevelConfig>();
+        levelList.add(loop.getLevelConfig());
+        int words = 1; // loop count and goal flag
+        for (int i = 0; i < robots.length; i++) {
+            gates[i] = robots[i].getCircuit().getGates().toArray(new Gate[0]);
+            words += 3 + (gates[i].length * 2 + 63) / 64; // position, movement and heading, gates
+            if (!levelList.contains(robots[i].getLevel())) {
+                levelList.add(robots[i].getLevel());
+            }
+        }
+        levels = levelList.toArray(new LevelConfig[levelList.size()]);
+        List<Switch> switchList = new ArrayList<Switch>();
+        for (LevelConfig l : levels) {
+            switchList.addAll(l.getSwitches());
+        }
+        switches = switchList.toArray(new Switch[switchList.size()]);
+        words += levels.length + (switches.length + 63) / 64;
+        
+        snapshotWords = words;
+        capacity = (int) Math.max(1L, Math.min(Integer.MAX_VALUE / words, maxBytes / (8L * words)));
+        ring = new long[capacity * words];
+        oldest = 0;
+        size = 0;
+    }
+    
+    /**
+     * Forgets all the snapshots, and takes a new first one of the game
+     * loop's current state. Call this after the game loop has been reset,
+     * or after robots, gates or switches have been added or removed.
+     */
+    public synchronized void clear() {
+        layout();
+        record();
+    }
+    
+    public void switchEntered(GameLoopEvent evt) {
+        // only whole ticks are recorded
+    }
+
+    public void switchExited(GameLoopEvent evt) {
+        // only whole ticks are recorded
+    }
+
+    public synchronized void tickCompleted(GameLoopEvent evt) {
+        record();
+    }
+    
+    /**
+     * Appends a snapshot of the current state. Any snapshots after the
+     * current tick (left over from stepping back) are dropped first.
+     */
+    private void record() {
+        if (loop.getRobots().size() != robots.length) {
+            // a ghost has been added; the old snapshots don't fit anymore
+            layout();
+        }
+        int tick = loop.getLoopCount();
+        while (size > 0 && getNewestTick() >= tick) {
+            size--;
+        }
+        int slot;
+        if (size < capacity) {
+            slot = (oldest + size) % capacity;
+            size++;
+        } else {
+            slot = oldest;
+            oldest = (oldest + 1) % capacity;
+        }
+        int w = slot * snapshotWords;
+        
+        ring[w++] = ((long) tick << 1) | (loop.isGoalReached() ? 1 : 0);
+        for (int i = 0; i < levels.length; i++) {
+            ring[w++] = levels[i].getScore();
+        }
+        for (int i = 0; i < robots.length; i++) {
+            Robot r = robots[i];
+            ring[w++] = ((long) Float.floatToIntBits((float) r.getX()) << 32)
+                    | (Float.floatToIntBits((float) r.getY()) & 0xffffffffL);
+            ring[w++] = (r.getMovingDirection() << 1) | (r.isGoalReached() ? 1 : 0);
+            ring[w++] = Double.doubleToLongBits(r.getPreviousHeading());
+            Gate[] g = gates[i];
+            long bits = 0L;
+            int bit = 0;
+            for (int j = 0; j < g.length; j++) {
+                if (g[j].getOutputState()) bits |= 1L << bit;
+                if (g[j] instanceof AbstractGate && ((AbstractGate) g[j]).getNextOutputState()) {
+                    bits |= 1L << (bit + 1);
+                }
+                bit += 2;
+                if (bit == 64) {
+                    ring[w++] = bits;
+                    bits = 0L;
+                    bit = 0;
+                }
+            }
+            if (bit > 0) ring[w++] = bits;
+        }
+        long bits = 0L;
+        int bit = 0;
+        for (int i = 0; i < switches.length; i++) {
+            if (switches[i].isEnabled()) bits |= 1L << bit;
+            if (++bit == 64) {
+                ring[w++] = bits;
+                bits = 0L;
+                bit = 0;
+            }
+        }
+        if (bit > 0) ring[w++] = bits;
+    }
+    
+    /**
+     * Returns the loop count of the oldest tick that can be restored.
+     */
+    public synchronized int getOldestTick() {
+        return tickAt(0);
+    }
+    
+    /**
+     * Returns the loop count of the newest tick that can be restored.
+     */
+    public synchronized int getNewestTick() {
+        return tickAt(size - 1);
+    }
+    
+    /**
+     * Returns the loop count of the n<sup>th</sup> oldest snapshot.
+     */
+    private int tickAt(int n) {
+        return (int) (ring[((oldest + n) % capacity) * snapshotWords] >>> 1);
+    }
+    
+    /**
+     * Returns the number of snapshots this timeline can hold.
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Returns true if the given tick can be restored.
+     */
+    public synchronized boolean canRestore(int tick) {
+        return tick >= getOldestTick() && tick <= getNewestTick();
+    }
+    
+    /**
+     * Puts the game loop, its levels and its robots back in the state they
+     * were in after the given tick. Snapshots after that tick are kept until
+     * the game loop runs again, so it's possible to scrub forward as well as
+     * back.
+     * 
+     * @param tick The loop count to go back to.
+     * @throws IllegalArgumentException if the tick isn't in this timeline
+     * @throws IllegalStateException if the game loop is running
+     */
+    public synchronized void restore(int tick) {
+        if (!canRestore(tick)) {
+            throw new IllegalArgumentException(
+                    "Tick "+tick+" isn't in the timeline ("+getOldestTick()+".."+getNewestTick()+")");
+        }
+        int n = tick - getOldestTick();
+        int w = ((oldest + n) % capacity) * snapshotWords;
+        
+        long head = ring[w++];
+        loop.restoreState((int) (head >>> 1), (head & 1) != 0);
+        for (int i = 0; i < levels.length; i++) {
+            levels[i].setScore((int) ring[w++]);
+        }
+        for (int i = 0; i < robots.length; i++) {
+            Robot r = robots[i];
+            long pos = ring[w++];
+            r.setPosition(new Point2D.Float(
+                    Float.intBitsToFloat((int) (pos >>> 32)),
+                    Float.intBitsToFloat((int) pos)));
+            long movement = ring[w++];
+            r.setMovingDirection((int) (movement >>> 1));
+            r.setGoalReached((movement & 1) != 0);
+            r.setPreviousHeading(Double.longBitsToDouble(ring[w++]));
+            Gate[] g = gates[i];
+            long bits = 0L;
+            int bit = 64;
+            for (int j = 0; j < g.length; j++) {
+                if (bit == 64) {
+                    bits = ring[w++];
+                    bit = 0;
+                }
+                if (g[j] instanceof AbstractGate) {
+                    ((AbstractGate) g[j]).setOutputStates(
+                            (bits & (1L << bit)) != 0, (bits & (1L << (bit + 1))) != 0);
+                }
+                bit += 2;
+            }
+            r.getCircuit().stateRestored();
+        }
+        long bits = 0L;
+        int bit = 64;
+        for (int i = 0; i < switches.length; i++) {
+            if (bit == 64) {
+                bits = ring[w++];
+                bit = 0;
+            }
+            switches[i].setEnabled((bits & (1L << bit)) != 0);
+            bit++;
+        }
+    }
+    
+    /**
+     * Goes back one tick, if the previous tick is still in the timeline.
+     * 
+     * @return true if the state was restored; false if there was nothing to
+     * go back to.
+     */
+    public synchronized boolean stepBack() {
+        int tick = loop.getLoopCount() - 1;
+        if (!canRestore(tick)) return false;
+        restore(tick);
+        return true;
+    }
+}
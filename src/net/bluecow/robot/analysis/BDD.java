@@ -0,0 +1,460 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.analysis;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A reduced, ordered binary decision diagram package. Every function is
+ * identified by an int (the index of its root node), and equal functions
+ * always get the same int, so comparing two functions is just comparing
+ * two ints. {@link #FALSE} and {@link #TRUE} are the constant functions.
+ * <p>
+ * Variables are numbered from 0, and a lower number is closer to the root.
+ * Nodes are never freed, so one BDD object should only be used for one
+ * analysis. To keep a runaway analysis from eating all the memory, creating
+ * more than the node limit's worth of nodes throws an {@link AnalysisException}.
+ */
+public class BDD {
+
+    public static final int FALSE = 0;
+    
+    public static final int TRUE = 1;
+    
+    /**
+     * The node limit used when none is given.
+     */
+    public static final int DEFAULT_NODE_LIMIT = 1 << 21;
+    
+    private static final int CACHE_SIZE = 1 << 16;
+    
+    /**
+     * The number of variables.
+     */
+    private final int varCount;
+    
+    /**
+     * The most nodes this BDD will create.
+     */
+    private final int nodeLimit;
+    
+    /**
+     * The variable each node tests. The terminals test {@link #varCount}.
+     */
+    private int[] var;
+    
+    /**
+     * The node to go to when the variable is false.
+     */
+    private int[] low;
+    
+    /**
+     * The node to go to when the variable is true.
+     */
+    private int[] high;
+    
+    /**
+     * The number of nodes in use.
+     */
+    private int size;
+    
+    /**
+     * Open-addressed hash table of every non-terminal node (0 means empty),
+     * so no node is ever created twice.
+     */
+    private int[] unique;
+    
+    /**
+     * A direct-mapped cache of recent {@link #ite(int, int, int)} results.
+     * Entries are never wrong, since nodes never go away; they just get
+     * overwritten.
+     */
+    private final int[] cacheF = new int[CACHE_SIZE];
+    private final int[] cacheG = new int[CACHE_SIZE];
+    private final int[] cacheH = new int[CACHE_SIZE];
+    private final int[] cacheResult = new int[CACHE_SIZE];
+    
+    public BDD(int varCount) {
+        this(varCount, DEFAULT_NODE_LIMIT);
+    }
+    
+    public BDD(int varCount, int nodeLimit) {
+        this.varCount = varCount;
+        this.nodeLimit = nodeLimit;
+        int capacity = 1024;
+        var = new int[capacity];
+        low = new int[capacity];
+        high = new int[capacity];
+        unique = new int[capacity * 2];
+        for (int i = 0; i < 2; i++) {
+            var[i] = varCount;
+            low[i] = i;
+            high[i] = i;
+        }
+        size = 2;
+        Arrays.fill(cacheF, -1);
+    }
+    
+    public int getVarCount() {
+        return varCount;
+    }
+    
+    /**
+     * Returns the number of nodes created so far, including the terminals.
+     */
+    public int getNodeCount() {
+        return size;
+    }
+    
+    /**
+     * Returns the function that is true exactly when the given variable is.
+     */
+    public int variable(int v) {
+        if (v < 0 || v >= varCount) {
+            throw new IllegalArgumentException("No such variable: "+v);
+        }
+        return mk(v, FALSE, TRUE);
+    }
+    
+    /**
+     * Returns the variable tested by the root of the given function, or the
+     * variable count if the function is constant.
+     */
+    public int var(int f) {
+        return var[f];
+    }
+    
+    /**
+     * Returns the given function with its root variable set to false.
+     */
+    public int low(int f) {
+        return low[f];
+    }
+    
+    /**
+     * Returns the given function with its root variable set to true.
+     */
+    public int high(int f) {
+        return high[f];
+    }
+    
+    public int not(int f) {
+        return ite(f, FALSE, TRUE);
+    }
+    
+    public int and(int f, int g) {
+        return ite(f, g, FALSE);
+    }
+    
+    public int or(int f, int g) {
+        return ite(f, TRUE, g);
+    }
+    
+    public int xor(int f, int g) {
+        return ite(f, not(g), g);
+    }
+    
+    /**
+     * Returns the function that's true when f and g agree.
+     */
+    public int equiv(int f, int g) {
+        return ite(f, g, not(g));
+    }
+    
+    /**
+     * Returns the function "if f then g else h". All the other operations
+     * are built on this one.
+     */
+    public int ite(int f, int g, int h) {
+        if (f == TRUE) return g;
+        if (f == FALSE) return h;
+        if (g == h) return g;
+        if (g == TRUE && h == FALSE) return f;
+        
+        int slot = (int) (((f * 31L + g) * 31L + h) & (CACHE_SIZE - 1));
+        if (cacheF[slot] == f && cacheG[slot] == g && cacheH[slot] == h) {
+            return cacheResult[slot];
+        }
+        
+        int v = Math.min(var[f], Math.min(var[g], var[h]));
+        int t = ite(cofactor(f, v, true), cofactor(g, v, true), cofactor(h, v, true));
+        int e = ite(cofactor(f, v, false), cofactor(g, v, false), cofactor(h, v, false));
+        int result = mk(v, e, t);
+        
+        cacheF[slot] = f;
+        cacheG[slot] = g;
+        cacheH[slot] = h;
+        cacheResult[slot] = result;
+        return result;
+    }
+    
+    /**
+     * Returns f with variable v set to the given value, where v is at or
+     * above f's root variable.
+     */
+    private int cofactor(int f, int v, boolean value) {
+        if (var[f] != v) return f;
+        return value ? high[f] : low[f];
+    }
+    
+    /**
+     * Returns the function "there is a value of each of the given variables
+     * that makes f true".
+     * 
+     * @param quantified Which variables to quantify, by variable number.
+     */
+    public int exists(int f, boolean[] quantified) {
+        return exists(f, quantified, new HashMap<Integer, Integer>());
+    }
+    
+    private int exists(int f, boolean[] quantified, Map<Integer, Integer> memo) {
+        if (f == TRUE || f == FALSE) return f;
+        Integer known = memo.get(f);
+        if (known != null) return known;
+        int v = var[f];
+        int lo = exists(low[f], quantified, memo);
+        int result;
+        if (quantified[v]) {
+            result = (lo == TRUE) ? TRUE : or(lo, exists(high[f], quantified, memo));
+        } else {
+            result = mk(v, lo, exists(high[f], quantified, memo));
+        }
+        memo.put(f, result);
+        return result;
+    }
+    
+    /**
+     * Returns the function "for every value of the given variables, f is
+     * true".
+     */
+    public int forAll(int f, boolean[] quantified) {
+        return not(exists(not(f), quantified));
+    }
+    
+    /**
+     * Returns the same thing as exists(and(f, g), quantified), but without
+     * building the whole conjunction first. This is the workhorse of image
+     * computation.
+     */
+    public int andExists(int f, int g, boolean[] quantified) {
+        return andExists(f, g, quantified, new HashMap<Long, Integer>());
+    }
+    
+    private int andExists(int f, int g, boolean[] quantified, Map<Long, Integer> memo) {
+        if (f == FALSE || g == FALSE) return FALSE;
+        if (f == TRUE && g == TRUE) return TRUE;
+        if (f == TRUE) return exists(g, quantified);
+        if (g == TRUE || f == g) return exists(f, quantified);
+        if (f > g) {
+            int tmp = f;
+            f = g;
+            g = tmp;
+        }
+        Long key = ((long) f << 32) | g;
+        Integer known = memo.get(key);
+        if (known != null) return known;
+        
+        int v = Math.min(var[f], var[g]);
+        int lo = andExists(cofactor(f, v, false), cofactor(g, v, false), quantified, memo);
+        int result;
+        if (quantified[v]) {
+            if (lo == TRUE) {
+                result = TRUE;
+            } else {
+                result = or(lo, andExists(cofactor(f, v, true), cofactor(g, v, true), quantified, memo));
+            }
+        } else {
+            result = mk(v, lo, andExists(cofactor(f, v, true), cofactor(g, v, true), quantified, memo));
+        }
+        memo.put(key, result);
+        return result;
+    }
+    
+    /**
+     * Returns f with every variable v replaced by variable map[v]. The map
+     * doesn't have to keep the variables in order.
+     */
+    public int rename(int f, int[] map) {
+        return rename(f, map, new HashMap<Integer, Integer>());
+    }
+    
+    private int rename(int f, int[] map, Map<Integer, Integer> memo) {
+        if (f == TRUE || f == FALSE) return f;
+        Integer known = memo.get(f);
+        if (known != null) return known;
+        int lo = rename(low[f], map, memo);
+        int hi = rename(high[f], map, memo);
+        int result = ite(variable(map[var[f]]), hi, lo);
+        memo.put(f, result);
+        return result;
+    }
+    
+    /**
+     * Returns the value of f for the given variable values.
+     */
+    public boolean evaluate(int f, boolean[] values) {
+        while (f != TRUE && f != FALSE) {
+            f = values[var[f]] ? high[f] : low[f];
+        }
+        return f == TRUE;
+    }
+    
+    /**
+     * Returns one variable assignment that makes f true, or null if f is
+     * unsatisfiable. Variables f doesn't care about are left false.
+     */
+    public boolean[] satisfyingAssignment(int f) {
+        if (f == FALSE) return null;
+        boolean[] values = new boolean[varCount];
+        while (f != TRUE) {
+            if (low[f] != FALSE) {
+                f = low[f];
+            } else {
+                values[var[f]] = true;
+                f = high[f];
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * Returns the number of assignments to n variables that make f true,
+     * where f doesn't depend on any variables but those n.
+     */
+    public double satCount(int f, int n) {
+        return fractionTrue(f, new HashMap<Integer, Double>()) * Math.pow(2.0, n);
+    }
+    
+    /**
+     * Returns the fraction of all variable assignments that make f true.
+     */
+    private double fractionTrue(int f, Map<Integer, Double> memo) {
+        if (f == TRUE) return 1.0;
+        if (f == FALSE) return 0.0;
+        Double known = memo.get(f);
+        if (known != null) return known;
+        double result = (fractionTrue(low[f], memo) + fractionTrue(high[f], memo)) / 2.0;
+        memo.put(f, result);
+        return result;
+    }
+    
+    /**
+     * Returns which variables f depends on.
+     */
+    public boolean[] support(int f) {
+        boolean[] support = new boolean[varCount];
+        boolean[] seen = new boolean[size];
+        support(f, support, seen);
+        return support;
+    }
+    
+    private void support(int f, boolean[] support, boolean[] seen) {
+        if (f == TRUE || f == FALSE || seen[f]) return;
+        seen[f] = true;
+        support[var[f]] = true;
+        support(low[f], support, seen);
+        support(high[f], support, seen);
+    }
+    
+    /**
+     * Returns the number of nodes in f, including the terminals it reaches.
+     */
+    public int nodeCount(int f) {
+        return nodeCount(f, new boolean[size]);
+    }
+    
+    private int nodeCount(int f, boolean[] seen) {
+        if (seen[f]) return 0;
+        seen[f] = true;
+        if (f == TRUE || f == FALSE) return 1;
+        return 1 + nodeCount(low[f], seen) + nodeCount(high[f], seen);
+    }
+    
+    /**
+     * Returns the node for "if v then hi else lo", creating it if there
+     * isn't one already.
+     */
+    private int mk(int v, int lo, int hi) {
+        if (lo == hi) return lo;
+        int mask = unique.length - 1;
+        int slot = hash(v, lo, hi) & mask;
+        for (;;) {
+            int node = unique[slot];
+            if (node == 0) break;
+            if (var[node] == v && low[node] == lo && high[node] == hi) {
+                return node;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= nodeLimit) {
+            throw new AnalysisException("More than "+nodeLimit+" BDD nodes needed");
+        }
+        if (size == var.length) {
+            grow();
+            return mk(v, lo, hi);
+        }
+        int node = size++;
+        var[node] = v;
+        low[node] = lo;
+        high[node] = hi;
+        unique[slot] = node;
+        return node;
+    }
+    
+    private static int hash(int v, int lo, int hi) {
+        int h = v * 0x9e3779b1 + lo * 0x85ebca6b + hi * 0xc2b2ae35;
+        return h ^ (h >>> 15);
+    }
+    
+    /**
+     * Doubles the node arrays and rebuilds the unique table.
+     */
+    private void grow() {
+        int capacity = var.length * 2;
+        var = Arrays.copyOf(var, capacity);
+        low = Arrays.copyOf(low, capacity);
+        high = Arrays.copyOf(high, capacity);
+        unique = new int[capacity * 2];
+        int mask = unique.length - 1;
+        for (int node = 2; node < size; node++) {
+            int slot = hash(var[node], low[node], high[node]) & mask;
+            while (unique[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            unique[slot] = node;
+        }
+    }
+}
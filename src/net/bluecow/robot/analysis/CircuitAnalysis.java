@@ -0,0 +1,688 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.gate.AndGate;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NandGate;
+import net.bluecow.robot.gate.NorGate;
+import net.bluecow.robot.gate.NotGate;
+import net.bluecow.robot.gate.OrGate;
+
+/**
+ * Works out what a robot's circuit does for every combination of sensor
+ * states and every state of its gates, using binary decision diagrams
+ * instead of simulation.
+ * <p>
+ * Every gate in the circuit takes one tick to pass its inputs on to its
+ * output, so the state of the circuit is the output states of its gates.
+ * Only the gates that the robot's inputs depend on (directly or through
+ * other gates) are part of the state, and only the sensors those gates
+ * read are inputs. Gates that compute the same function of the same signals
+ * are always in the same state, so they share one state variable (and only
+ * the first of them is a "state gate"). The analysis builds:
+ * <ul>
+ *  <li>a next-state function for each of those gates, which gives its
+ *      output after a tick in terms of the gate states before the tick and
+ *      the sensor states during it
+ *  <li>an output function for each of the robot's inputs, which gives its
+ *      state after a tick in the same terms
+ *  <li>the set of gate states that can be reached from the reset state
+ *      (every gate off) with some sequence of sensor states
+ * </ul>
+ * Sensor variable i is {@link #getSensorVariable(int)}; the state of gate
+ * k before the tick is {@link #getStateVariable(int)}. The functions all
+ * live in the {@link BDD} returned by {@link #getBDD()}.
+ * <p>
+ * This class only understands the basic AND, OR, NAND, NOR and NOT gates.
+ * It isn't thread safe, and it doesn't notice changes to the circuit after
+ * it was created.
+ */
+public class CircuitAnalysis {
+
+    private static final boolean debugOn = false;
+    
+    /**
+     * The most sensors {@link #getTruthTable()} will make a table for.
+     */
+    public static final int MAX_TRUTH_TABLE_SENSORS = 10;
+    
+    /**
+     * The circuits being analysed. There's only one, except when comparing
+     * circuits.
+     */
+    private final Circuit[] circuits;
+    
+    private final BDD bdd;
+    
+    /**
+     * The sensors the robot's inputs depend on.
+     */
+    private final List<Gate> sensors = new ArrayList<Gate>();
+    
+    /**
+     * The gates the robot's inputs depend on.
+     */
+    private final List<Gate> stateGates = new ArrayList<Gate>();
+    
+    /**
+     * The index in {@link #stateGates} of the gate each gate in the robot
+     * inputs' cone always agrees with.
+     */
+    private final Map<Gate, Integer> stateIndex = new HashMap<Gate, Integer>();
+    
+    /**
+     * The variable for each sensor, in the same order as {@link #sensors}.
+     */
+    private int[] sensorVar;
+    
+    /**
+     * The variable for each state gate's state before the tick.
+     */
+    private int[] stateVar;
+    
+    /**
+     * The variable for each state gate's state after the tick. These
+     * variables are only used for working out the reachable states.
+     */
+    private int[] nextVar;
+    
+    /**
+     * The next-state function of each state gate.
+     */
+    private int[] nextState;
+    
+    /**
+     * The output function for each of the robot's inputs, by circuit.
+     */
+    private int[][] outputs;
+    
+    /**
+     * The set of reachable states, once it's been worked out.
+     */
+    private int reachable = -1;
+    
+    /**
+     * How many ticks after a reset it takes to reach every reachable state.
+     */
+    private int reachabilityDepth;
+    
+    /**
+     * The states first reached on each tick after a reset (so element 0 is
+     * just the reset state).
+     */
+    private final List<Integer> layers = new ArrayList<Integer>();
+    
+    /**
+     * Analyses the given circuit with the default node limit.
+     */
+    public CircuitAnalysis(Circuit circuit) {
+        this(circuit, BDD.DEFAULT_NODE_LIMIT);
+    }
+    
+    /**
+     * Analyses the given circuit.
+     * 
+     * @param nodeLimit The most BDD nodes the analysis can create before
+     * giving up with an {@link AnalysisException}.
+     * @throws AnalysisException if the circuit contains gates this class
+     * doesn't understand, or the node limit is reached.
+     */
+    public CircuitAnalysis(Circuit circuit, int nodeLimit) {
+        this(new Circuit[] { circuit }, nodeLimit);
+    }
+    
+    /**
+     * Analyses several circuits side by side, as one big circuit that has
+     * all their gates. Sensors with the same label in different circuits
+     * are the same input. {@link #getCircuit()}, {@link #getOutputFunction(int)}
+     * and the truth table are about the first circuit.
+     */
+    CircuitAnalysis(Circuit[] circuits, int nodeLimit) {
+        this.circuits = circuits;
+        
+        Set<Gate> sensorSet = new HashSet<Gate>();
+        Set<Gate> circuitGates = new HashSet<Gate>();
+        int robotInputCount = 0;
+        for (Circuit c : circuits) {
+            sensorSet.addAll(c.getOutputs());
+            circuitGates.addAll(c.getGates());
+            robotInputCount = Math.max(robotInputCount, c.getInputsGate().getInputs().length);
+        }
+        
+        // find the gates and sensors the robot's inputs depend on, depth first so
+        // gates that feed each other end up near each other in the variable order.
+        // With several circuits, the search walks them in step so that gates in the
+        // same place in each circuit (which often agree) end up next to each other
+        List<Gate> visitOrder = new ArrayList<Gate>();
+        Map<Gate, Integer> coneIndex = new HashMap<Gate, Integer>();
+        Set<String> sensorLabels = new HashSet<String>();
+        List<Gate[]> stack = new ArrayList<Gate[]>();
+        for (int j = robotInputCount - 1; j >= 0; j--) {
+            Gate[] tuple = new Gate[circuits.length];
+            for (int c = 0; c < circuits.length; c++) {
+                Gate.Input[] robotInputs = circuits[c].getInputsGate().getInputs();
+                if (j < robotInputs.length) {
+                    tuple[c] = robotInputs[j].getConnectedGate();
+                }
+            }
+            stack.add(tuple);
+        }
+        List<Gate> cone = new ArrayList<Gate>();
+        while (!stack.isEmpty()) {
+            Gate[] tuple = stack.remove(stack.size() - 1);
+            int inputCount = 0;
+            for (int c = 0; c < tuple.length; c++) {
+                Gate g = tuple[c];
+                tuple[c] = null;
+                if (g == null || coneIndex.containsKey(g)) continue;
+                if (sensorSet.contains(g)) {
+                    if (sensorLabels.add(g.getLabel())) {
+                        visitOrder.add(g);
+                    }
+                    continue;
+                }
+                if (!circuitGates.contains(g)) {
+                    throw new AnalysisException("Gate "+g+" is connected to a gate outside the circuit");
+                }
+                checkGateType(g);
+                coneIndex.put(g, cone.size());
+                cone.add(g);
+                visitOrder.add(g);
+                tuple[c] = g;
+                inputCount = Math.max(inputCount, g.getInputs().length);
+            }
+            for (int i = inputCount - 1; i >= 0; i--) {
+                Gate[] inputs = new Gate[tuple.length];
+                for (int c = 0; c < tuple.length; c++) {
+                    if (tuple[c] != null && i < tuple[c].getInputs().length) {
+                        inputs[c] = tuple[c].getInputs()[i].getConnectedGate();
+                    }
+                }
+                stack.add(inputs);
+            }
+        }
+        
+        int[] cls = findEquivalentGates(cone, coneIndex);
+        
+        // one variable per sensor label, and two per class of gates that always agree
+        Map<String, Integer> sensorVarOf = new HashMap<String, Integer>();
+        Map<Integer, Integer> classIndex = new HashMap<Integer, Integer>();
+        List<Integer> sensorVars = new ArrayList<Integer>();
+        List<Integer> stateVars = new ArrayList<Integer>();
+        int vars = 0;
+        for (Gate g : visitOrder) {
+            if (sensorSet.contains(g)) {
+                sensorVarOf.put(g.getLabel(), vars);
+                sensors.add(g);
+                sensorVars.add(vars);
+                vars++;
+            } else if (!classIndex.containsKey(cls[coneIndex.get(g)])) {
+                classIndex.put(cls[coneIndex.get(g)], stateGates.size());
+                stateGates.add(g);
+                stateVars.add(vars);
+                vars += 2;
+            }
+        }
+        Map<Gate, Integer> varOf = new HashMap<Gate, Integer>();
+        for (Gate g : sensorSet) {
+            if (sensorVarOf.containsKey(g.getLabel())) {
+                varOf.put(g, sensorVarOf.get(g.getLabel()));
+            }
+        }
+        for (Gate g : cone) {
+            int k = classIndex.get(cls[coneIndex.get(g)]);
+            stateIndex.put(g, k);
+            varOf.put(g, stateVars.get(k));
+        }
+        
+        bdd = new BDD(vars, nodeLimit);
+        sensorVar = new int[sensors.size()];
+        for (int i = 0; i < sensorVar.length; i++) {
+            sensorVar[i] = sensorVars.get(i);
+        }
+        stateVar = new int[stateGates.size()];
+        nextVar = new int[stateGates.size()];
+        for (int k = 0; k < stateVar.length; k++) {
+            stateVar[k] = stateVars.get(k);
+            nextVar[k] = stateVar[k] + 1;
+        }
+        
+        nextState = new int[stateGates.size()];
+        for (int k = 0; k < nextState.length; k++) {
+            Gate g = stateGates.get(k);
+            Class<?> c = g.getClass();
+            boolean and = (c == AndGate.class || c == NandGate.class);
+            boolean invert = (c == NandGate.class || c == NorGate.class || c == NotGate.class);
+            int f = and ? BDD.TRUE : BDD.FALSE;
+            for (Gate.Input in : g.getInputs()) {
+                int x = valueOf(in.getConnectedGate(), varOf);
+                f = and ? bdd.and(f, x) : bdd.or(f, x);
+            }
+            nextState[k] = invert ? bdd.not(f) : f;
+        }
+        
+        outputs = new int[circuits.length][];
+        for (int c = 0; c < circuits.length; c++) {
+            Gate.Input[] robotInputs = circuits[c].getInputsGate().getInputs();
+            outputs[c] = new int[robotInputs.length];
+            for (int j = 0; j < robotInputs.length; j++) {
+                Gate src = robotInputs[j].getConnectedGate();
+                if (src == null) {
+                    outputs[c][j] = BDD.FALSE;
+                } else if (sensorSet.contains(src)) {
+                    outputs[c][j] = valueOf(src, varOf);
+                } else {
+                    outputs[c][j] = nextState[stateIndex.get(src)];
+                }
+            }
+        }
+        debug("Analysed "+getCircuit().getName()+": "+sensors.size()+" sensors, "+
+                stateGates.size()+" state gates, "+bdd.getNodeCount()+" nodes");
+    }
+    
+    /**
+     * Throws an exception if the given gate isn't one of the basic types.
+     */
+    private static void checkGateType(Gate g) {
+        Class<?> c = g.getClass();
+        if (c != AndGate.class && c != OrGate.class && c != NandGate.class &&
+                c != NorGate.class && c != NotGate.class) {
+            throw new AnalysisException("Can't analyse "+g.getType()+" gates");
+        }
+    }
+    
+    /**
+     * Sorts the given gates into classes of gates that always have the same
+     * state. Gates that compute the same function of the same signals are
+     * in the same state on every tick after a reset (when they're all off),
+     * so starting from one class, this keeps splitting classes whose gates
+     * don't do that until nothing changes.
+     * 
+     * @return The class number of each gate, by index in the list.
+     */
+    private int[] findEquivalentGates(List<Gate> cone, Map<Gate, Integer> coneIndex) {
+        int[] cls = new int[cone.size()];
+        int classCount = 1;
+        for (;;) {
+            Map<String, Integer> classOf = new HashMap<String, Integer>();
+            int[] next = new int[cls.length];
+            for (int i = 0; i < cls.length; i++) {
+                Gate g = cone.get(i);
+                Set<String> signals = new TreeSet<String>();
+                for (Gate.Input in : g.getInputs()) {
+                    Gate src = in.getConnectedGate();
+                    if (src == null) {
+                        signals.add("0");
+                    } else if (coneIndex.containsKey(src)) {
+                        signals.add("g" + cls[coneIndex.get(src)]);
+                    } else {
+                        signals.add("s" + src.getLabel());
+                    }
+                }
+                
+                // a gate with one input (after removing repeats) just passes it on
+                Class<?> c = g.getClass();
+                boolean and = (c == AndGate.class || c == NandGate.class) && signals.size() != 1;
+                boolean invert = (c == NandGate.class || c == NorGate.class || c == NotGate.class);
+                String key = cls[i] + (and ? "&" : "|") + (invert ? "!" : "") + signals;
+                Integer k = classOf.get(key);
+                if (k == null) {
+                    k = classOf.size();
+                    classOf.put(key, k);
+                }
+                next[i] = k;
+            }
+            cls = next;
+            if (classOf.size() == classCount) break;
+            classCount = classOf.size();
+        }
+        return cls;
+    }
+    
+    /**
+     * Returns the function for the current output of the given gate (or of
+     * an unconnected input, if the gate is null).
+     */
+    private int valueOf(Gate g, Map<Gate, Integer> varOf) {
+        if (g == null) return BDD.FALSE;
+        return bdd.variable(varOf.get(g));
+    }
+    
+    public Circuit getCircuit() {
+        return circuits[0];
+    }
+    
+    public BDD getBDD() {
+        return bdd;
+    }
+    
+    /**
+     * Returns the sensors the robot's inputs depend on. Sensor i is BDD
+     * variable {@link #getSensorVariable(int) getSensorVariable(i)}.
+     */
+    public List<Gate> getSensors() {
+        return Collections.unmodifiableList(sensors);
+    }
+    
+    /**
+     * Returns the gates the robot's inputs depend on, leaving out any gate
+     * that always agrees with one earlier in the list. The state of gate k
+     * before a tick is BDD variable {@link #getStateVariable(int) getStateVariable(k)}.
+     */
+    public List<Gate> getStateGates() {
+        return Collections.unmodifiableList(stateGates);
+    }
+    
+    /**
+     * Returns the index in {@link #getStateGates()} of the gate whose state
+     * the given gate always has, or -1 if the robot's inputs don't depend on
+     * the given gate.
+     */
+    public int getStateIndex(Gate g) {
+        Integer k = stateIndex.get(g);
+        return k == null ? -1 : k;
+    }
+    
+    public int getSensorVariable(int i) {
+        return sensorVar[i];
+    }
+    
+    public int getStateVariable(int k) {
+        return stateVar[k];
+    }
+    
+    /**
+     * Returns the function for the output of the given state gate after a
+     * tick.
+     */
+    public int getNextStateFunction(int k) {
+        return nextState[k];
+    }
+    
+    /**
+     * Returns the function for the state of the given robot input after a
+     * tick.
+     * 
+     * @param j The index of the input in the robot's inputs gate.
+     */
+    public int getOutputFunction(int j) {
+        return outputs[0][j];
+    }
+    
+    /**
+     * Returns the function for the state of the given robot input of the
+     * given circuit after a tick.
+     */
+    int getOutputFunction(int c, int j) {
+        return outputs[c][j];
+    }
+    
+    /**
+     * Returns the number of the robot's inputs.
+     */
+    public int getOutputCount() {
+        return outputs[0].length;
+    }
+    
+    /**
+     * Returns the set of gate states that can occur at the start of a tick,
+     * as a function of the state variables.
+     */
+    public int getReachableStates() {
+        if (reachable < 0) {
+            search(BDD.FALSE);
+        }
+        return reachable;
+    }
+    
+    /**
+     * Returns the number of different gate states that can occur.
+     */
+    public double getReachableStateCount() {
+        return bdd.satCount(getReachableStates(), stateGates.size());
+    }
+    
+    /**
+     * Returns the number of ticks after a reset it can take to get the
+     * circuit into any of its reachable states.
+     */
+    public int getReachabilityDepth() {
+        getReachableStates();
+        return reachabilityDepth;
+    }
+    
+    /**
+     * Returns the set of states that can first occur the given number of
+     * ticks after a reset, as a function of the state variables.
+     */
+    int getReachableStates(int ticks) {
+        if (layers.isEmpty()) {
+            getReachableStates();
+        }
+        return layers.get(ticks);
+    }
+    
+    /**
+     * Returns the first tick after a reset on which the circuit can be in a
+     * state where, with some sensor states, the given function of the state
+     * and sensor variables is true. The search stops there, so this can be
+     * a lot quicker than finding all the reachable states first.
+     * 
+     * @return The tick, or -1 if the function is never true.
+     */
+    int findFirstTick(int target) {
+        if (reachable < 0) {
+            return search(target);
+        }
+        for (int t = 0; t < layers.size(); t++) {
+            if (bdd.and(layers.get(t), target) != BDD.FALSE) return t;
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns true if the given gate states can occur.
+     * 
+     * @param states The output state of each state gate, by index.
+     */
+    public boolean isReachable(boolean[] states) {
+        boolean[] values = new boolean[bdd.getVarCount()];
+        for (int k = 0; k < stateVar.length; k++) {
+            values[stateVar[k]] = states[k];
+        }
+        return bdd.evaluate(getReachableStates(), values);
+    }
+    
+    /**
+     * Returns true if the given robot input, over the reachable states, is not
+     * just a function of the sensors. A circuit for which this is false for
+     * every input behaves the same way no matter what happened before.
+     */
+    public boolean dependsOnState(int j) {
+        int r = getReachableStates();
+        boolean[] states = stateVariables();
+        int canBeTrue = bdd.andExists(r, outputs[0][j], states);
+        int canBeFalse = bdd.andExists(r, bdd.not(outputs[0][j]), states);
+        return bdd.and(canBeTrue, canBeFalse) != BDD.FALSE;
+    }
+    
+    /**
+     * Returns a table of the robot's inputs after a tick for every combination
+     * of sensor states, one line per combination. Each input is 1 or 0 when it
+     * is always on or always off for that combination in every reachable state,
+     * and * when it depends on the state.
+     * 
+     * @throws AnalysisException if there are more than
+     * {@link #MAX_TRUTH_TABLE_SENSORS} sensors.
+     */
+    public String getTruthTable() {
+        if (sensors.size() > MAX_TRUTH_TABLE_SENSORS) {
+            throw new AnalysisException("Too many sensors for a truth table: "+sensors.size());
+        }
+        Gate.Input[] robotInputs = getCircuit().getInputsGate().getInputs();
+        StringBuilder sb = new StringBuilder();
+        for (Gate sensor : sensors) {
+            sb.append(sensor.getLabel()).append(' ');
+        }
+        sb.append('|');
+        for (Gate.Input in : robotInputs) {
+            sb.append(' ').append(in.getLabel());
+        }
+        sb.append('\n');
+        
+        int r = getReachableStates();
+        for (int combo = 0; combo < (1 << sensors.size()); combo++) {
+            int cube = r;
+            for (int i = 0; i < sensors.size(); i++) {
+                boolean on = (combo & (1 << i)) != 0;
+                int x = bdd.variable(sensorVar[i]);
+                cube = bdd.and(cube, on ? x : bdd.not(x));
+                sb.append(pad(on ? "1" : "0", sensors.get(i).getLabel().length() + 1));
+            }
+            sb.append('|');
+            for (int j = 0; j < robotInputs.length; j++) {
+                boolean canBeTrue = bdd.and(cube, outputs[0][j]) != BDD.FALSE;
+                boolean canBeFalse = bdd.and(cube, bdd.not(outputs[0][j])) != BDD.FALSE;
+                String v = canBeTrue ? (canBeFalse ? "*" : "1") : "0";
+                sb.append(' ').append(pad(v, robotInputs[j].getLabel().length()));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+    
+    private static String pad(String s, int width) {
+        StringBuilder sb = new StringBuilder(s);
+        while (sb.length() < width) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Returns which variables are state variables (before the tick).
+     */
+    private boolean[] stateVariables() {
+        boolean[] vars = new boolean[bdd.getVarCount()];
+        for (int v : stateVar) {
+            vars[v] = true;
+        }
+        return vars;
+    }
+    
+    /**
+     * Works out the reachable states by breadth-first search from the reset
+     * state, one tick at a time, until no new states turn up or some new
+     * states satisfy the target function.
+     * 
+     * @return The tick on which the target was first satisfied, or -1 if it
+     * never was (and all the reachable states have been found).
+     */
+    private int search(int target) {
+        int n = stateGates.size();
+        
+        // the transition relation, in one part per gate: next == f(state, sensors)
+        int[] parts = new int[n];
+        for (int k = 0; k < n; k++) {
+            parts[k] = bdd.equiv(bdd.variable(nextVar[k]), nextState[k]);
+        }
+        
+        // quantify each state and sensor variable out right after the last part that uses it
+        boolean[][] quantifyAfter = new boolean[Math.max(n, 1)][bdd.getVarCount()];
+        boolean[] quantified = new boolean[bdd.getVarCount()];
+        for (int v : stateVar) quantified[v] = true;
+        for (int v : sensorVar) quantified[v] = true;
+        int[] lastUse = new int[bdd.getVarCount()];
+        for (int k = 0; k < n; k++) {
+            boolean[] support = bdd.support(nextState[k]);
+            for (int v = 0; v < support.length; v++) {
+                if (support[v]) lastUse[v] = k;
+            }
+        }
+        for (int v = 0; v < quantified.length; v++) {
+            if (quantified[v]) quantifyAfter[lastUse[v]][v] = true;
+        }
+        
+        int[] rename = new int[bdd.getVarCount()];
+        for (int v = 0; v < rename.length; v++) {
+            rename[v] = v;
+        }
+        for (int k = 0; k < n; k++) {
+            rename[nextVar[k]] = stateVar[k];
+        }
+        
+        int reached = BDD.TRUE;
+        for (int k = 0; k < n; k++) {
+            reached = bdd.and(reached, bdd.not(bdd.variable(stateVar[k])));
+        }
+        int frontier = reached;
+        layers.clear();
+        layers.add(frontier);
+        int depth = 0;
+        for (;;) {
+            if (bdd.and(frontier, target) != BDD.FALSE) return depth;
+            int image = frontier;
+            for (int k = 0; k < n; k++) {
+                image = bdd.andExists(image, parts[k], quantifyAfter[k]);
+            }
+            image = bdd.rename(image, rename);
+            int fresh = bdd.and(image, bdd.not(reached));
+            if (fresh == BDD.FALSE) break;
+            reached = bdd.or(reached, fresh);
+            frontier = fresh;
+            layers.add(frontier);
+            depth++;
+        }
+        reachable = reached;
+        reachabilityDepth = depth;
+        debug("Reachable states of "+getCircuit().getName()+": "+getReachableStateCount()+
+                " within "+depth+" ticks, "+bdd.getNodeCount()+" nodes");
+        return -1;
+    }
+    
+    private static void debug(String msg) {
+        if (debugOn) System.out.println(msg);
+    }
+}
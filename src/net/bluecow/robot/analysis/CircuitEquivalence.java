@@ -0,0 +1,399 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.CircuitStore;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.sim.BitSlicedCircuit;
+
+/**
+ * Decides whether two robot circuits behave the same way: starting from a
+ * reset, and given the same sensor states on every tick, they always set
+ * the robot's inputs the same way. How the gates are laid out, and what the
+ * gates that don't affect the robot are doing, doesn't matter.
+ * <p>
+ * The check builds a miter with {@link CircuitAnalysis}: both circuits are
+ * analysed side by side, and they're equivalent exactly when no reachable
+ * state of the pair has an input combination that makes their outputs
+ * differ. When they're not equivalent, the result includes the shortest
+ * sequence of sensor states that tells them apart.
+ * <p>
+ * If the decision diagrams get too big, or a circuit has gates the analysis
+ * doesn't understand, the check falls back to simulating both circuits with
+ * random sensor states. A difference found that way is still a definite
+ * answer, but not finding one only makes the circuits probably equivalent.
+ */
+public class CircuitEquivalence {
+
+    private static final boolean debugOn = false;
+    
+    public static enum Verdict {
+        
+        /**
+         * The circuits always behave the same way.
+         */
+        EQUIVALENT,
+        
+        /**
+         * The circuits behave differently for some sequence of sensor states.
+         */
+        NOT_EQUIVALENT,
+        
+        /**
+         * The circuits couldn't be checked exactly, but behaved the same way
+         * in every simulated case.
+         */
+        PROBABLY_EQUIVALENT
+    }
+    
+    /**
+     * The outcome of a comparison.
+     */
+    public static class Result {
+        
+        private final Verdict verdict;
+        private final String robotId;
+        private final List<Map<String, Boolean>> counterexample;
+        
+        Result(Verdict verdict, String robotId, List<Map<String, Boolean>> counterexample) {
+            this.verdict = verdict;
+            this.robotId = robotId;
+            this.counterexample = counterexample;
+        }
+        
+        public Verdict getVerdict() {
+            return verdict;
+        }
+        
+        /**
+         * Returns true if the circuits are known or believed to be equivalent.
+         */
+        public boolean isEquivalent() {
+            return verdict != Verdict.NOT_EQUIVALENT;
+        }
+        
+        /**
+         * Returns the ID of the robot whose circuits were compared. When
+         * comparing saved circuits for several robots, this is the first
+         * robot whose circuits differ (or aren't known to be equivalent).
+         */
+        public String getRobotId() {
+            return robotId;
+        }
+        
+        /**
+         * Returns the sensor states, tick by tick from a reset, that make
+         * the robot's inputs differ on the last tick. Each tick's states are
+         * keyed by sensor label. Returns null unless the verdict is
+         * NOT_EQUIVALENT.
+         */
+        public List<Map<String, Boolean>> getCounterexample() {
+            return counterexample;
+        }
+        
+        @Override
+        public String toString() {
+            return verdict + (robotId == null ? "" : " (robot "+robotId+")") +
+                (counterexample == null ? "" : " after "+counterexample.size()+" ticks");
+        }
+    }
+    
+    /**
+     * The most BDD nodes to create before falling back to simulation.
+     */
+    private int nodeLimit = BDD.DEFAULT_NODE_LIMIT;
+    
+    /**
+     * The number of ticks to simulate when falling back to simulation.
+     */
+    private int simulationTicks = 2000;
+    
+    /**
+     * The number of ticks between resets when falling back to simulation.
+     */
+    private int simulationRunLength = 100;
+    
+    private long seed = 0L;
+    
+    public int getNodeLimit() {
+        return nodeLimit;
+    }
+    
+    /**
+     * Sets the number of BDD nodes the exact check can use before falling
+     * back to simulation.
+     */
+    public void setNodeLimit(int nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+    
+    public int getSimulationTicks() {
+        return simulationTicks;
+    }
+    
+    /**
+     * Sets the number of ticks (each covering 64 random cases) to simulate
+     * when the exact check isn't possible. The simulation restarts from a
+     * reset every {@link #setSimulationRunLength(int) run length} ticks.
+     */
+    public void setSimulationTicks(int simulationTicks) {
+        this.simulationTicks = simulationTicks;
+    }
+    
+    public int getSimulationRunLength() {
+        return simulationRunLength;
+    }
+    
+    public void setSimulationRunLength(int simulationRunLength) {
+        this.simulationRunLength = simulationRunLength;
+    }
+    
+    /**
+     * Sets the seed for the random sensor states used by the simulation
+     * fallback, so results can be repeated.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+    
+    /**
+     * Compares the circuits described by two streams in the format written by
+     * {@link CircuitStore#save}, for every robot in the given level. Neither
+     * the level nor its robots are modified.
+     */
+    public Result compareSaved(LevelConfig level, InputStream a, InputStream b) throws IOException {
+        LevelConfig levelA = new LevelConfig(level);
+        LevelConfig levelB = new LevelConfig(level);
+        for (int i = 0; i < levelA.getRobots().size(); i++) {
+            levelA.getRobots().get(i).getCircuit().removeAllGates();
+            levelB.getRobots().get(i).getCircuit().removeAllGates();
+        }
+        CircuitStore.load(a, levelA.getRobots());
+        CircuitStore.load(b, levelB.getRobots());
+        
+        Result probably = null;
+        for (int i = 0; i < levelA.getRobots().size(); i++) {
+            Robot ra = levelA.getRobots().get(i);
+            Robot rb = levelB.getRobots().get(i);
+            Result r = compare(ra.getCircuit(), rb.getCircuit(), ra.getId());
+            if (r.getVerdict() == Verdict.NOT_EQUIVALENT) {
+                return r;
+            } else if (r.getVerdict() == Verdict.PROBABLY_EQUIVALENT && probably == null) {
+                probably = r;
+            }
+        }
+        return probably != null ? probably : new Result(Verdict.EQUIVALENT, null, null);
+    }
+    
+    /**
+     * Compares two circuits. The circuits' gate states aren't used or changed.
+     * 
+     * @throws IllegalArgumentException if the circuits don't have the same
+     * number of robot inputs.
+     * @throws AnalysisException if the circuits can't be checked either exactly
+     * or by simulation.
+     */
+    public Result compare(Circuit a, Circuit b) {
+        return compare(a, b, null);
+    }
+    
+    private Result compare(Circuit a, Circuit b, String robotId) {
+        int inputCount = a.getInputsGate().getInputs().length;
+        if (b.getInputsGate().getInputs().length != inputCount) {
+            throw new IllegalArgumentException(
+                    "The circuits have different numbers of robot inputs");
+        }
+        try {
+            return compareExactly(a, b, robotId);
+        } catch (AnalysisException ex) {
+            debug("Exact check failed, simulating instead: "+ex.getMessage());
+            return compareBySimulation(a, b, robotId);
+        }
+    }
+    
+    /**
+     * Compares the circuits with a BDD miter.
+     */
+    private Result compareExactly(Circuit a, Circuit b, String robotId) {
+        CircuitAnalysis pair = new CircuitAnalysis(new Circuit[] { a, b }, nodeLimit);
+        BDD bdd = pair.getBDD();
+        int differ = BDD.FALSE;
+        for (int j = 0; j < a.getInputsGate().getInputs().length; j++) {
+            differ = bdd.or(differ, bdd.xor(pair.getOutputFunction(0, j), pair.getOutputFunction(1, j)));
+        }
+        if (differ == BDD.FALSE) {
+            return new Result(Verdict.EQUIVALENT, robotId, null);
+        }
+        
+        int d = pair.findFirstTick(differ);
+        if (d < 0) {
+            return new Result(Verdict.EQUIVALENT, robotId, null);
+        }
+        int bad = bdd.and(pair.getReachableStates(d), differ);
+        return new Result(Verdict.NOT_EQUIVALENT, robotId, trace(pair, d, bad));
+    }
+    
+    /**
+     * Works backwards from a state and sensor combination that's first
+     * reachable on the given tick to the sensor states that lead there.
+     */
+    private List<Map<String, Boolean>> trace(CircuitAnalysis pair, int d, int bad) {
+        BDD bdd = pair.getBDD();
+        List<Map<String, Boolean>> ticks = new ArrayList<Map<String, Boolean>>();
+        boolean[] values = bdd.satisfyingAssignment(bad);
+        ticks.add(sensorStates(pair, values));
+        for (int t = d - 1; t >= 0; t--) {
+            // some state on tick t, with some sensor states, leads to the state we have
+            int leadsThere = pair.getReachableStates(t);
+            for (int k = 0; k < pair.getStateGates().size(); k++) {
+                int f = pair.getNextStateFunction(k);
+                leadsThere = bdd.and(leadsThere, values[pair.getStateVariable(k)] ? f : bdd.not(f));
+            }
+            values = bdd.satisfyingAssignment(leadsThere);
+            ticks.add(sensorStates(pair, values));
+        }
+        Collections.reverse(ticks);
+        return ticks;
+    }
+    
+    private static Map<String, Boolean> sensorStates(CircuitAnalysis pair, boolean[] values) {
+        Map<String, Boolean> states = new LinkedHashMap<String, Boolean>();
+        for (int i = 0; i < pair.getSensors().size(); i++) {
+            states.put(pair.getSensors().get(i).getLabel(), values[pair.getSensorVariable(i)]);
+        }
+        return states;
+    }
+    
+    /**
+     * Compares the circuits by simulating both with the same random sensor
+     * states, 64 cases at a time.
+     */
+    private Result compareBySimulation(Circuit a, Circuit b, String robotId) {
+        BitSlicedCircuit sa;
+        BitSlicedCircuit sb;
+        try {
+            sa = new BitSlicedCircuit(a);
+            sb = new BitSlicedCircuit(b);
+        } catch (IllegalArgumentException ex) {
+            throw new AnalysisException(ex.getMessage());
+        }
+        
+        // the sensors of both circuits, matched by label
+        Set<String> labels = new LinkedHashSet<String>();
+        for (Gate s : a.getOutputs()) labels.add(s.getLabel());
+        for (Gate s : b.getOutputs()) labels.add(s.getLabel());
+        List<String> labelList = new ArrayList<String>(labels);
+        int[] mapA = sensorMap(a, labelList);
+        int[] mapB = sensorMap(b, labelList);
+        
+        Random rand = new Random(seed);
+        int inputCount = sa.getRobotInputCount();
+        long[] words = new long[labelList.size()];
+        long[] wordsA = new long[mapA.length];
+        long[] wordsB = new long[mapB.length];
+        long[] outA = new long[inputCount];
+        long[] outB = new long[inputCount];
+        List<long[]> history = new ArrayList<long[]>();
+        
+        for (int tick = 0; tick < simulationTicks; tick++) {
+            if (tick % simulationRunLength == 0) {
+                sa.reset();
+                sb.reset();
+                history.clear();
+            }
+            // each sensor changes in about a quarter of the cases on each tick
+            for (int i = 0; i < words.length; i++) {
+                if (history.isEmpty()) {
+                    words[i] = rand.nextLong();
+                } else {
+                    words[i] ^= rand.nextLong() & rand.nextLong();
+                }
+            }
+            history.add(words.clone());
+            for (int i = 0; i < mapA.length; i++) wordsA[i] = words[mapA[i]];
+            for (int i = 0; i < mapB.length; i++) wordsB[i] = words[mapB[i]];
+            sa.evaluateOnce(wordsA, outA);
+            sb.evaluateOnce(wordsB, outB);
+            
+            long diff = 0L;
+            for (int j = 0; j < inputCount; j++) {
+                diff |= outA[j] ^ outB[j];
+            }
+            if (diff != 0L) {
+                int lane = Long.numberOfTrailingZeros(diff);
+                List<Map<String, Boolean>> ticks = new ArrayList<Map<String, Boolean>>();
+                for (long[] w : history) {
+                    Map<String, Boolean> states = new LinkedHashMap<String, Boolean>();
+                    for (int i = 0; i < labelList.size(); i++) {
+                        states.put(labelList.get(i), ((w[i] >>> lane) & 1L) != 0);
+                    }
+                    ticks.add(states);
+                }
+                return new Result(Verdict.NOT_EQUIVALENT, robotId, ticks);
+            }
+        }
+        return new Result(Verdict.PROBABLY_EQUIVALENT, robotId, null);
+    }
+    
+    /**
+     * Returns the position in the label list of each of the circuit's
+     * sensors, in the order of its outputs list.
+     */
+    private static int[] sensorMap(Circuit c, List<String> labels) {
+        List<Gate> sensors = c.getOutputs();
+        int[] map = new int[sensors.size()];
+        for (int i = 0; i < map.length; i++) {
+            map[i] = labels.indexOf(sensors.get(i).getLabel());
+        }
+        return map;
+    }
+    
+    private static void debug(String msg) {
+        if (debugOn) System.out.println(msg);
+    }
+}
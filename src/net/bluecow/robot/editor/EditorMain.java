@@ -363,9 +363,12 @@ public class EditorMain {
                 final GameStateHandler gsh = new GameStateHandler(gameLoop, soundManager, project.getResourceManager(), editors);
                 JButton quitPlaytestButton = new JButton("Quit Playtest");
 
+                tb.add(gsh.getStepBackButton());
+                tb.add(gsh.getGoToTickButton());
                 tb.add(gsh.getStartButton());
                 tb.add(gsh.getStepButton());
                 tb.add(gsh.getResetButton());
+                tb.add(gsh.getTurboButton());
                 tb.add(quitPlaytestButton);
 
                 quitPlaytestButton.addActionListener(new ActionListener() {
@@ -53,7 +53,7 @@ public class CircuitEvent {
     private final Circuit source;
     
     /**
-     * An unmodifiable copy of the list of gates given in the constructor.
+     * An unmodifiable copy (or view) of the list of gates given in the constructor.
      */
     private List<Gate> gates;
     
@@ -61,8 +61,28 @@ public class CircuitEvent {
      * Creates a new event object for the given circuit.
      */
     public CircuitEvent(Circuit source, List<Gate> gatesAffected) {
+        this(source, gatesAffected, true);
+    }
+    
+    /**
+     * Creates a new event object for the given circuit, optionally
+     * without copying the list of affected gates.
+     * <p>
+     * An event that doesn't copy the list is a live view of it, so the
+     * creator can fire the same event object over and over again after
+     * updating the list's contents. Listeners receiving such an event
+     * must not hang on to the list after they return.
+     * 
+     * @param copy If true, the event gets its own copy of the list. If false,
+     * the event presents an unmodifiable view of the given list.
+     */
+    public CircuitEvent(Circuit source, List<Gate> gatesAffected, boolean copy) {
         this.source = source;
-        this.gates = Collections.unmodifiableList(new ArrayList<Gate>(gatesAffected));
+        if (copy) {
+            this.gates = Collections.unmodifiableList(new ArrayList<Gate>(gatesAffected));
+        } else {
+            this.gates = Collections.unmodifiableList(gatesAffected);
+        }
     }
     
     /**
@@ -0,0 +1,130 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.event;
+
+import net.bluecow.robot.GameLoop;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.LevelConfig.Switch;
+
+/**
+ * The GameLoopEvent represents something that happened while a game
+ * loop was running: a tick finishing, or a robot entering or leaving
+ * a switch.
+ */
+public class GameLoopEvent {
+
+    /**
+     * The game loop in which this event happened.
+     */
+    private final GameLoop source;
+    
+    /**
+     * The loop count at the time of the event.
+     */
+    private final int tick;
+    
+    /**
+     * The robot that caused this event, if any.
+     */
+    private final Robot robot;
+    
+    /**
+     * The switch that the robot entered or left, if any.
+     */
+    private final Switch sw;
+    
+    /**
+     * True if {@link #tick} is ignored in favour of the source's current
+     * loop count.
+     */
+    private final boolean live;
+    
+    /**
+     * Creates a new event object for the given game loop.
+     * 
+     * @param robot The robot involved, or null if this event isn't about a robot
+     * @param sw The switch involved, or null if this event isn't about a switch
+     */
+    public GameLoopEvent(GameLoop source, int tick, Robot robot, Switch sw) {
+        this.source = source;
+        this.tick = tick;
+        this.robot = robot;
+        this.sw = sw;
+        this.live = false;
+    }
+
+    /**
+     * Creates an event that isn't about a robot or switch, and whose tick is
+     * always the given game loop's current loop count. The game loop fires
+     * the same one of these after every tick rather than making a new event
+     * each time.
+     */
+    public GameLoopEvent(GameLoop source) {
+        this.source = source;
+        this.tick = 0;
+        this.robot = null;
+        this.sw = null;
+        this.live = true;
+    }
+
+    /**
+     * Returns the game loop in which this event happened.
+     */
+    public GameLoop getSource() {
+        return source;
+    }
+    
+    /**
+     * Returns the game loop's loop count at the time of this event.
+     */
+    public int getTick() {
+        return live ? source.getLoopCount() : tick;
+    }
+    
+    /**
+     * Returns the robot involved in this event, or null if the event isn't
+     * about a specific robot.
+     */
+    public Robot getRobot() {
+        return robot;
+    }
+    
+    /**
+     * Returns the switch involved in this event, or null if the event isn't
+     * about a switch.
+     */
+    public Switch getSwitch() {
+        return sw;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.event;
+
+/**
+ * The GameLoopListener interface offers implementers a way of
+ * following along with a game loop, one tick at a time.
+ * <p>
+ * All of these methods are called on the game loop's thread, in
+ * the middle of the loop. They should return quickly.
+ */
+public interface GameLoopListener {
+
+    /**
+     * Messaged when a robot moves off the square of a switch. This happens
+     * whether or not the switch is enabled, just before its onExit script
+     * runs.
+     */
+    void switchExited(GameLoopEvent evt);
+    
+    /**
+     * Messaged when a robot moves onto the square of a switch. This happens
+     * whether or not the switch is enabled, just before its onEnter script
+     * runs.
+     */
+    void switchEntered(GameLoopEvent evt);
+    
+    /**
+     * Messaged after every robot has taken its step for the current tick.
+     * The same event object is passed for every tick (its tick number is
+     * always the loop's current count), so don't hang on to it.
+     */
+    void tickCompleted(GameLoopEvent evt);
+}
@@ -0,0 +1,93 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.event;
+
+import net.bluecow.robot.GameLoop;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.ScriptTimeoutException;
+import net.bluecow.robot.LevelConfig.Switch;
+import bsh.EvalError;
+
+/**
+ * The ScriptErrorEvent describes a switch script that failed while a
+ * game loop was running: it didn't compile, it threw an exception, it
+ * broke its level's script policy, or it ran out of time.
+ */
+public class ScriptErrorEvent extends GameLoopEvent {
+
+    /**
+     * True if the script was the switch's onEnter script; false for onExit.
+     */
+    private final boolean onEnter;
+    
+    /**
+     * What went wrong.
+     */
+    private final EvalError error;
+    
+    public ScriptErrorEvent(GameLoop source, int tick, Robot robot, Switch sw,
+            boolean onEnter, EvalError error) {
+        super(source, tick, robot, sw);
+        this.onEnter = onEnter;
+        this.error = error;
+    }
+    
+    /**
+     * Returns true if the failed script was the switch's onEnter script,
+     * or false if it was the onExit script.
+     */
+    public boolean isOnEnter() {
+        return onEnter;
+    }
+    
+    public EvalError getError() {
+        return error;
+    }
+    
+    /**
+     * Returns true if the script was cancelled because it ran out of time.
+     * The game loop stops itself when this happens.
+     */
+    public boolean isTimeout() {
+        return error instanceof ScriptTimeoutException;
+    }
+    
+    /**
+     * Returns a one-line description of this error, suitable for logs.
+     */
+    public String getDescription() {
+        return "Error in "+(onEnter ? "onEnter" : "onExit")+" script of switch \""+
+            getSwitch().getId()+"\" at tick "+getTick()+": "+error.getMessage();
+    }
+}
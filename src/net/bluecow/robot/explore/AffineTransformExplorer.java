@@ -60,7 +60,6 @@ import net.bluecow.robot.GameConfig;
 import net.bluecow.robot.LevelConfig;
 import net.bluecow.robot.Playfield;
 import net.bluecow.robot.Robot;
-import net.bluecow.robot.Square;
 import net.bluecow.robot.GameConfig.GateConfig;
 import net.bluecow.robot.GameConfig.SensorConfig;
 import net.bluecow.robot.resource.ResourceLoader;
@@ -99,10 +98,9 @@ public class AffineTransformExplorer {
         
         LevelConfig level = new LevelConfig();
         level.setSize(11, 11);
-        Square[][] map = level.getMap();
         for (int x = 0; x < 11; x++) {
             for (int y = 0; y < 11; y++) {
-                map[x][y] = gc.getSquare('b');
+                level.setSquare(x, y, gc.getSquare('b'));
             }            
         }
         Sprite sprite = SpriteManager.load(resourceLoader, "ROBO-INF/images/grod/grod.rsf");
@@ -85,6 +85,18 @@ public abstract class AbstractGate implements Gate {
 	 */
     protected boolean nextOutputState;
     
+    /**
+     * Where this gate's output state comes from instead of
+     * {@link #outputState}, or null if the fields are up to date.
+     * See {@link #setStateSource(StateSource, int)}.
+     */
+    private StateSource stateSource;
+    
+    /**
+     * The number that identifies this gate to its {@link #stateSource}.
+     */
+    private int stateIndex;
+    
 	/**
 	 * These are the inputs to this gate. Subclass constructors should
 	 * initialise this array to the correct length and types.
@@ -187,6 +199,19 @@ public abstract class AbstractGate implements Gate {
         }
 	}
     
+    /**
+     * Something that works out the output states of gates only when they
+     * are asked for, instead of storing every new state in the gates.
+     */
+    public static interface StateSource {
+        
+        /**
+         * Returns the current output state (which is also the next output
+         * state) of the gate that was given the index.
+         */
+        public boolean getOutputState(int index);
+    }
+    
 	/**
 	 * Returns the list of inputs.
 	 */
@@ -199,10 +224,12 @@ public abstract class AbstractGate implements Gate {
      * the current outputState variable.
      */
     public final void latchOutput() {
+        stateSource = null;
         outputState = nextOutputState;
     }
     
     public final void reset() {
+        stateSource = null;
         outputState = false;
         nextOutputState = false;
         if (outputState || nextOutputState) {
@@ -210,6 +237,55 @@ public abstract class AbstractGate implements Gate {
         }
     }
 
+    /**
+     * Overwrites both the current and next output states of this gate.
+     * This bypasses the normal evaluateInput()/latchOutput() cycle, so
+     * it's only meant for code that evaluates the circuit by some other
+     * means (such as {@link net.bluecow.robot.sim.CompiledCircuit}) and
+     * has to publish the results back to the gates.
+     *
+     * @param output The new current output state
+     * @param next The new next output state
+     */
+    public final void setOutputStates(boolean output, boolean next) {
+        stateSource = null;
+        outputState = output;
+        nextOutputState = next;
+    }
+
+    /**
+     * Returns the output state that will become current the next time
+     * {@link #latchOutput()} is called.
+     */
+    public final boolean getNextOutputState() {
+        if (stateSource != null) return stateSource.getOutputState(stateIndex);
+        return nextOutputState;
+    }
+    
+    /**
+     * Makes this gate get its current and next output states from the given
+     * source until they are set again by {@link #setOutputStates(boolean, boolean)},
+     * {@link #latchOutput()} or {@link #reset()}. Like setOutputStates(), this is
+     * only meant for code that evaluates the circuit by some other means
+     * (such as {@link net.bluecow.robot.sim.OptimizedCircuit}), which can then
+     * leave the states of most gates alone until somebody looks at them.
+     * 
+     * @param source The source of the states
+     * @param index The number to pass to the source's getOutputState()
+     */
+    public final void setStateSource(StateSource source, int index) {
+        stateSource = source;
+        stateIndex = index;
+    }
+    
+    /**
+     * Returns the source this gate's output state comes from, or null if
+     * the state is stored in this gate.
+     */
+    public final StateSource getStateSource() {
+        return stateSource;
+    }
+
     
     // -------------- EVENT STUFF ---------------
     
@@ -252,6 +328,7 @@ public abstract class AbstractGate implements Gate {
 	}
 	
 	public final boolean getOutputState() {
+	    if (stateSource != null) return stateSource.getOutputState(stateIndex);
 	    return outputState;
 	}
     
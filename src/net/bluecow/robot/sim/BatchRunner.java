@@ -0,0 +1,434 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.GameConfig;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.LevelStore;
+import net.bluecow.robot.ScriptPolicy;
+import net.bluecow.robot.resource.CompoundResourceLoader;
+import net.bluecow.robot.resource.DirectoryResourceManager;
+import net.bluecow.robot.resource.PrefixResourceLoader;
+import net.bluecow.robot.resource.ResourceLoader;
+import net.bluecow.robot.resource.SystemResourceLoader;
+import net.bluecow.robot.resource.ZipFileResourceLoader;
+
+/**
+ * Runs many circuits against every level of a game config, spreading the runs
+ * over a work-stealing thread pool, and writes out the results as each run
+ * finishes.
+ * <p>
+ * The game config is loaded once and never modified. Every run gets its own
+ * deep copy of its level (see {@link LevelConfig#LevelConfig(LevelConfig)}),
+ * which has its own BeanShell interpreter, robots, circuits, switches and
+ * sprite clones, so runs on different threads share no mutable state.
+ */
+public class BatchRunner {
+
+    /**
+     * The formats results can be written in.
+     */
+    public static enum OutputFormat {
+        
+        /**
+         * One header line, then one comma-separated line per run.
+         */
+        CSV,
+        
+        /**
+         * A JSON array with one object per run.
+         */
+        JSON
+    }
+    
+    /**
+     * The levels to run. This is never modified.
+     */
+    private final GameConfig game;
+    
+    /**
+     * The number of ticks after which a run is cut off.
+     */
+    private final int maxTicks;
+    
+    /**
+     * The evaluation mode for every circuit that gets run.
+     */
+    private Circuit.EvaluationMode evaluationMode = Circuit.EvaluationMode.COMPILED;
+    
+    /**
+     * How runs are checked for cycling forever, or null for no checking.
+     */
+    private CycleDetector.Strategy cycleDetection;
+    
+    /**
+     * The policy every level's switch scripts run under.
+     */
+    private ScriptPolicy scriptPolicy = ScriptPolicy.TIME_LIMITED;
+    
+    /**
+     * How many threads advance the robots within each run.
+     */
+    private int parallelism = 1;
+    
+    /**
+     * Creates a batch runner for the levels in the given game config.
+     * 
+     * @param maxTicks The number of ticks after which a run that hasn't
+     * reached its goal is given up on.
+     */
+    public BatchRunner(GameConfig game, int maxTicks) {
+        this.game = game;
+        this.maxTicks = maxTicks;
+    }
+    
+    /**
+     * Sets the way the robots' circuits will be evaluated. Defaults to COMPILED.
+     */
+    public void setEvaluationMode(Circuit.EvaluationMode evaluationMode) {
+        this.evaluationMode = evaluationMode;
+    }
+    
+    /**
+     * Sets how runs are checked for being stuck in a cycle of states. Null
+     * (the default) means they aren't, and run until the goal or the tick limit.
+     */
+    public void setCycleDetection(CycleDetector.Strategy cycleDetection) {
+        this.cycleDetection = cycleDetection;
+    }
+    
+    /**
+     * Sets the policy every level's switch scripts run under, which decides
+     * among other things how long a script may run before the run is
+     * abandoned. Defaults to {@link ScriptPolicy#TIME_LIMITED}.
+     */
+    public void setScriptPolicy(ScriptPolicy scriptPolicy) {
+        this.scriptPolicy = scriptPolicy;
+    }
+    
+    /**
+     * Sets how many threads advance the robots within each run. Defaults to
+     * 1; more only helps when there are fewer runs than threads and the
+     * levels have lots of robots.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * One (level, circuit) pair to run.
+     */
+    private static class Job {
+        final int levelIndex;
+        final String circuitName;
+        final byte[] circuit;
+        
+        Job(int levelIndex, String circuitName, byte[] circuit) {
+            this.levelIndex = levelIndex;
+            this.circuitName = circuitName;
+            this.circuit = circuit;
+        }
+    }
+    
+    /**
+     * Runs a range of jobs, splitting it in half until there's only one
+     * job left so idle threads can steal the other half.
+     */
+    private class RunTask extends RecursiveAction {
+        private final List<Job> jobs;
+        private final RunResult[] results;
+        private final ResultWriter writer;
+        private final int lo;
+        private final int hi;
+        
+        RunTask(List<Job> jobs, RunResult[] results, ResultWriter writer, int lo, int hi) {
+            this.jobs = jobs;
+            this.results = results;
+            this.writer = writer;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                results[lo] = runOne(jobs.get(lo));
+                writer.write(results[lo]);
+            } else if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new RunTask(jobs, results, writer, lo, mid),
+                          new RunTask(jobs, results, writer, mid, hi));
+            }
+        }
+    }
+    
+    /**
+     * Runs every circuit against every level on the given pool, writing each
+     * result to the given writer as soon as it's available.
+     * 
+     * @param circuits The circuit files to run, as saved by
+     * {@link net.bluecow.robot.CircuitStore#save}, keyed by name.
+     * @param pool The pool to run on.
+     * @param out Where to write the results. Results are written in the order
+     * they finish, which is not necessarily the order of the returned list.
+     * @param format The format to write the results in.
+     * @return All the results, ordered by circuit and then by level.
+     */
+    public List<RunResult> run(Map<String, byte[]> circuits, ForkJoinPool pool,
+            Writer out, OutputFormat format) {
+        List<Job> jobs = new ArrayList<Job>();
+        for (Map.Entry<String, byte[]> circuit : circuits.entrySet()) {
+            for (int i = 0; i < game.getLevels().size(); i++) {
+                jobs.add(new Job(i, circuit.getKey(), circuit.getValue()));
+            }
+        }
+        
+        RunResult[] results = new RunResult[jobs.size()];
+        ResultWriter writer = new ResultWriter(out, format);
+        writer.start();
+        pool.invoke(new RunTask(jobs, results, writer, 0, jobs.size()));
+        writer.finish();
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Runs one job on a fresh copy of its level. Problems loading the circuit
+     * or running the level are reported in the result rather than thrown.
+     */
+    private RunResult runOne(Job job) {
+        LevelConfig template = game.getLevels().get(job.levelIndex);
+        try {
+            HeadlessEngine engine = new HeadlessEngine(new LevelConfig(template));
+            engine.loadCircuits(new ByteArrayInputStream(job.circuit));
+            engine.setEvaluationMode(evaluationMode);
+            engine.setCycleDetection(cycleDetection);
+            engine.setScriptPolicy(scriptPolicy);
+            engine.setParallelism(parallelism);
+            return engine.run(maxTicks).withCircuitName(job.circuitName);
+        } catch (Exception ex) {
+            return new RunResult(template.getName(), job.circuitName, false, 0, 0, ex.toString());
+        }
+    }
+    
+    /**
+     * Writes results in one of the output formats. The methods are synchronized
+     * because results arrive from all of the pool's threads.
+     */
+    private static class ResultWriter {
+        private final PrintWriter out;
+        private final OutputFormat format;
+        private int count;
+        
+        ResultWriter(Writer out, OutputFormat format) {
+            this.out = new PrintWriter(out);
+            this.format = format;
+        }
+        
+        synchronized void start() {
+            if (format == OutputFormat.CSV) {
+                out.println("level,circuit,goalReached,ticks,score,cycleLength,error");
+            } else {
+                out.print("[");
+            }
+            out.flush();
+        }
+        
+        synchronized void write(RunResult r) {
+            if (format == OutputFormat.CSV) {
+                out.println(csv(r.getLevelName()) + "," + csv(r.getCircuitName()) + "," +
+                        r.isGoalReached() + "," + r.getTicks() + "," + r.getScore() + "," +
+                        r.getCycleLength() + "," + csv(r.getError()));
+            } else {
+                if (count > 0) out.print(",");
+                out.println();
+                out.print("  {\"level\": " + json(r.getLevelName()) +
+                        ", \"circuit\": " + json(r.getCircuitName()) +
+                        ", \"goalReached\": " + r.isGoalReached() +
+                        ", \"ticks\": " + r.getTicks() +
+                        ", \"score\": " + r.getScore() +
+                        ", \"cycleLength\": " + r.getCycleLength() +
+                        ", \"error\": " + json(r.getError()) + "}");
+            }
+            count++;
+            out.flush();
+        }
+        
+        synchronized void finish() {
+            if (format == OutputFormat.JSON) {
+                out.println();
+                out.println("]");
+            }
+            out.flush();
+        }
+        
+        private static String csv(String s) {
+            if (s == null) return "";
+            if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        
+        private static String json(String s) {
+            if (s == null) return "null";
+            StringBuilder sb = new StringBuilder("\"");
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.append('"').toString();
+        }
+    }
+    
+    /**
+     * Reads the whole file into memory.
+     */
+    private static byte[] readFile(File f) throws IOException {
+        InputStream in = new FileInputStream(f);
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                buf.write(chunk, 0, n);
+            }
+            return buf.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+    
+    private static void usage() {
+        System.err.println(
+                "Usage: BatchRunner [-csv|-json] [-threads n] [-maxticks n] [-mode STANDARD|COMPILED|EVENT_DRIVEN|OPTIMIZED]\n" +
+                "                   [-cycles VISITED_SET|BRENT] [-scripttime ms] [-robotthreads n]\n" +
+                "                   levels.rk|levelsdir circuitfile ...");
+        System.exit(1);
+    }
+    
+    /**
+     * Runs every given circuit file against every level in the given levels
+     * file (or directory), writing the results to stdout.
+     */
+    public static void main(String[] args) throws IOException {
+        OutputFormat format = OutputFormat.CSV;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxTicks = 10000;
+        Circuit.EvaluationMode mode = Circuit.EvaluationMode.COMPILED;
+        CycleDetector.Strategy cycles = null;
+        long scriptTime = ScriptPolicy.DEFAULT_TIME_LIMIT;
+        int robotThreads = 1;
+        
+        int argi = 0;
+        try {
+            for (; argi < args.length && args[argi].startsWith("-"); argi++) {
+                String opt = args[argi];
+                if (opt.equals("-csv")) {
+                    format = OutputFormat.CSV;
+                } else if (opt.equals("-json")) {
+                    format = OutputFormat.JSON;
+                } else if (opt.equals("-threads")) {
+                    threads = Integer.parseInt(args[++argi]);
+                } else if (opt.equals("-maxticks")) {
+                    maxTicks = Integer.parseInt(args[++argi]);
+                } else if (opt.equals("-mode")) {
+                    mode = Circuit.EvaluationMode.valueOf(args[++argi]);
+                } else if (opt.equals("-cycles")) {
+                    cycles = CycleDetector.Strategy.valueOf(args[++argi]);
+                } else if (opt.equals("-scripttime")) {
+                    scriptTime = Long.parseLong(args[++argi]);
+                } else if (opt.equals("-robotthreads")) {
+                    robotThreads = Integer.parseInt(args[++argi]);
+                } else {
+                    usage();
+                }
+            }
+        } catch (RuntimeException ex) {
+            usage();
+        }
+        if (args.length - argi < 2) usage();
+        
+        File levelsFile = new File(args[argi++]);
+        ResourceLoader levelsLoader;
+        if (levelsFile.isDirectory()) {
+            levelsLoader = new DirectoryResourceManager(levelsFile);
+        } else {
+            levelsLoader = new ZipFileResourceLoader(levelsFile);
+        }
+        ResourceLoader builtinResourceLoader =
+            new PrefixResourceLoader(new SystemResourceLoader(), "builtin/");
+        GameConfig game = LevelStore.loadLevels(
+                new CompoundResourceLoader(levelsLoader, builtinResourceLoader));
+        
+        Map<String, byte[]> circuits = new LinkedHashMap<String, byte[]>();
+        for (; argi < args.length; argi++) {
+            File f = new File(args[argi]);
+            circuits.put(f.getPath(), readFile(f));
+        }
+        
+        BatchRunner runner = new BatchRunner(game, maxTicks);
+        runner.setEvaluationMode(mode);
+        runner.setCycleDetection(cycles);
+        runner.setScriptPolicy(ScriptPolicy.DEFAULT.withTimeLimit(scriptTime));
+        runner.setParallelism(robotThreads);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            runner.run(circuits, pool, new OutputStreamWriter(System.out), format);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.util.List;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.gate.Gate;
+
+/**
+ * Evaluates 64 independent instances of one robot circuit at the same time.
+ * Each gate's state is a <code>long</code> in which bit <i>k</i> is the
+ * gate's output in scenario (or "lane") <i>k</i>, so every AND, OR, NAND,
+ * NOR, and NOT gate is evaluated for all 64 scenarios with one bitwise
+ * operation per input.
+ * <p>
+ * The circuit's sensor outputs are the inputs of the bit-sliced circuit, and
+ * the inputs of the robot's inputs gate (up, down, left, right, in that order)
+ * are its outputs. Evaluation follows the same two-phase rule as
+ * {@link Circuit#evaluateOnce()}: every gate computes its next state from the
+ * current states, then all gates latch together. The robot output values
+ * returned after a tick are the ones the robot would see when it moves.
+ * <p>
+ * The bit-sliced form is a snapshot of the circuit's structure at the time
+ * it was created; later changes to the circuit are not reflected. Circuits
+ * containing gate types other than the basic ones can't be bit-sliced.
+ */
+public class BitSlicedCircuit {
+
+    /**
+     * The number of scenarios evaluated at once.
+     */
+    public static final int LANES = 64;
+    
+    /**
+     * The number of gates, which is also the index of the ground word.
+     */
+    private final int n;
+    
+    private final byte[] kind;
+    private final boolean[] invert;
+    private final int[] inputStart;
+    private final int[] inputIndex;
+    
+    /**
+     * The gate index of each sensor, in the same order as the circuit's
+     * outputs list.
+     */
+    private final int[] sensorIndex;
+    
+    /**
+     * The gate index that each input of the robot's inputs gate is
+     * connected to (n for unconnected inputs).
+     */
+    private final int[] robotInputIndex;
+    
+    /**
+     * The current output state word of each gate, plus the ground word.
+     */
+    private final long[] output;
+    
+    /**
+     * The next output state word of each gate.
+     */
+    private final long[] next;
+    
+    /**
+     * Creates a bit-sliced form of the given circuit, with all gates
+     * in all lanes starting out in the reset (false) state.
+     * 
+     * @throws IllegalArgumentException if the circuit contains a gate type
+     * that can't be bit-sliced.
+     */
+    public BitSlicedCircuit(Circuit circuit) {
+        CompiledCircuit cc = new CompiledCircuit(circuit);
+        cc.ensureCompiled();
+        n = cc.n;
+        kind = cc.kind;
+        invert = cc.invert;
+        inputStart = cc.inputStart;
+        inputIndex = cc.inputIndex;
+        
+        List<Gate> sensors = circuit.getOutputs();
+        sensorIndex = new int[sensors.size()];
+        for (int i = 0; i < sensorIndex.length; i++) {
+            sensorIndex[i] = indexOf(cc, sensors.get(i));
+        }
+        
+        int inputsGateIndex = indexOf(cc, circuit.getInputsGate());
+        robotInputIndex = new int[inputStart[inputsGateIndex + 1] - inputStart[inputsGateIndex]];
+        for (int i = 0; i < robotInputIndex.length; i++) {
+            robotInputIndex[i] = inputIndex[inputStart[inputsGateIndex] + i];
+        }
+        
+        for (int i = 0; i < n; i++) {
+            if (kind[i] == CompiledCircuit.KIND_OPAQUE
+                    && i != inputsGateIndex && !isSensor(i)) {
+                throw new IllegalArgumentException(
+                        "Can't bit-slice gate "+cc.gates[i]+" ("+cc.gates[i].getType()+")");
+            }
+        }
+        
+        output = new long[n + 1];
+        next = new long[n + 1];
+    }
+    
+    private static int indexOf(CompiledCircuit cc, Gate g) {
+        for (int i = 0; i < cc.n; i++) {
+            if (cc.gates[i] == g) return i;
+        }
+        throw new IllegalStateException("Gate "+g+" is not part of the circuit");
+    }
+    
+    private boolean isSensor(int gateIndex) {
+        for (int s : sensorIndex) {
+            if (s == gateIndex) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the number of sensor inputs this circuit has.
+     */
+    public int getSensorCount() {
+        return sensorIndex.length;
+    }
+    
+    /**
+     * Returns the number of robot inputs (outputs of this circuit).
+     */
+    public int getRobotInputCount() {
+        return robotInputIndex.length;
+    }
+    
+    /**
+     * Puts every gate in every lane back in its initial (false) state.
+     */
+    public void reset() {
+        for (int i = 0; i <= n; i++) {
+            output[i] = 0L;
+            next[i] = 0L;
+        }
+    }
+    
+    /**
+     * Sets the sensor states for all lanes, then evaluates every gate once.
+     * 
+     * @param sensorWords One word per sensor (in the order of the circuit's
+     * outputs list). Bit <i>k</i> of each word is the sensor's state in lane <i>k</i>.
+     * @param robotInputWords Receives one word per robot input (up, down, left,
+     * right). Bit <i>k</i> of each word is the input's state in lane <i>k</i>
+     * after this evaluation.
+     */
+    public void evaluateOnce(long[] sensorWords, long[] robotInputWords) {
+        final long[] output = this.output;
+        final long[] next = this.next;
+        for (int i = 0; i < sensorIndex.length; i++) {
+            output[sensorIndex[i]] = sensorWords[i];
+            next[sensorIndex[i]] = sensorWords[i];
+        }
+        
+        for (int i = 0; i < n; i++) {
+            long v;
+            switch (kind[i]) {
+            case CompiledCircuit.KIND_AND:
+                v = -1L;
+                for (int j = inputStart[i], end = inputStart[i + 1]; j < end; j++) {
+                    v &= output[inputIndex[j]];
+                }
+                break;
+            case CompiledCircuit.KIND_OR:
+                v = 0L;
+                for (int j = inputStart[i], end = inputStart[i + 1]; j < end; j++) {
+                    v |= output[inputIndex[j]];
+                }
+                break;
+            default:
+                // sensors keep their state; the robot inputs gate's output is always off
+                next[i] = output[i];
+                continue;
+            }
+            next[i] = invert[i] ? ~v : v;
+        }
+        
+        System.arraycopy(next, 0, output, 0, n);
+        
+        for (int i = 0; i < robotInputIndex.length; i++) {
+            robotInputWords[i] = output[robotInputIndex[i]];
+        }
+    }
+    
+    /**
+     * Evaluates one tick of up to 64 scenarios given as per-scenario bit vectors.
+     * 
+     * @param sensorVectors One entry per lane (at most 64). Bit <i>j</i> of
+     * entry <i>k</i> is the state of sensor <i>j</i> in lane <i>k</i>.
+     * @param robotInputVectors Receives one entry per lane. Bit <i>j</i> of
+     * entry <i>k</i> is the state of robot input <i>j</i> (up=0, down=1, left=2,
+     * right=3) in lane <i>k</i>.
+     */
+    public void step(long[] sensorVectors, long[] robotInputVectors) {
+        if (sensorVectors.length > LANES) {
+            throw new IllegalArgumentException(
+                    "At most "+LANES+" scenarios can be evaluated at once");
+        }
+        long[] sensorWords = new long[sensorIndex.length];
+        transpose(sensorVectors, sensorVectors.length, sensorWords);
+        long[] robotInputWords = new long[robotInputIndex.length];
+        evaluateOnce(sensorWords, robotInputWords);
+        
+        for (int k = 0; k < robotInputVectors.length; k++) {
+            long v = 0L;
+            for (int j = 0; j < robotInputWords.length; j++) {
+                v |= ((robotInputWords[j] >>> k) & 1L) << j;
+            }
+            robotInputVectors[k] = v;
+        }
+    }
+
+    /**
+     * Converts per-lane vectors into per-signal words.
+     */
+    private static void transpose(long[] vectors, int lanes, long[] words) {
+        for (int j = 0; j < words.length; j++) {
+            long w = 0L;
+            for (int k = 0; k < lanes; k++) {
+                w |= ((vectors[k] >>> j) & 1L) << k;
+            }
+            words[j] = w;
+        }
+    }
+}
@@ -0,0 +1,587 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.event.CircuitEvent;
+import net.bluecow.robot.event.CircuitListener;
+import net.bluecow.robot.gate.AbstractGate;
+import net.bluecow.robot.gate.AndGate;
+import net.bluecow.robot.gate.Gate;
+import net.bluecow.robot.gate.NandGate;
+import net.bluecow.robot.gate.NorGate;
+import net.bluecow.robot.gate.NotGate;
+import net.bluecow.robot.gate.OrGate;
+
+/**
+ * A flattened, array-based form of a {@link Circuit} which can be
+ * evaluated without going through the gate and input objects.
+ * <p>
+ * Every gate gets a dense index, and the inputs of all the gates are stored
+ * back-to-back in a single int array of source gate indices. Unconnected inputs
+ * point at an extra "ground" slot whose state is always false. The basic gate
+ * types (AND, OR, NAND, NOR and NOT) are evaluated directly on boolean arrays;
+ * any other kind of gate (robot sensor outputs, the robot's inputs gate,
+ * and gate types this class doesn't know about) is evaluated by calling
+ * its own evaluateInput() and latchOutput() methods, so the results are always
+ * identical to evaluating the circuit the normal way.
+ * <p>
+ * After each evaluation, the new output states of the gates that changed are
+ * copied back to the gate objects, so the circuit editor, the robot, and
+ * everything else that looks at individual gates see the usual values.
+ * <p>
+ * In event-driven mode, only the gates whose inputs changed state on the
+ * previous tick (plus the opaque gates, which are always evaluated) are
+ * re-evaluated. A gate's next state is a function of its inputs' current
+ * states only, so skipping the others gives exactly the same results, and a
+ * quiet circuit costs next to nothing to evaluate.
+ * <p>
+ * Instances of this class listen to their circuit for structural changes, and
+ * recompile themselves lazily (at the next evaluation) when gates are added,
+ * removed, or reconnected. This also keeps the fan-out lists used by
+ * event-driven mode in step with every {@link Gate.Input#connect(Gate)} call.
+ */
+public class CompiledCircuit implements CircuitListener {
+
+    private static final boolean debugOn = false;
+    
+    /**
+     * Gate kind for gates that compute the AND of their inputs (AND, NAND).
+     */
+    static final byte KIND_AND = 0;
+    
+    /**
+     * Gate kind for gates that compute the OR of their inputs (OR, NOR, NOT).
+     */
+    static final byte KIND_OR = 1;
+    
+    /**
+     * Gate kind for gates that have to be evaluated through their own
+     * evaluateInput() and latchOutput() methods.
+     */
+    static final byte KIND_OPAQUE = 2;
+    
+    /**
+     * The circuit this is a compiled form of.
+     */
+    private final Circuit circuit;
+    
+    /**
+     * Whether or not to evaluate only the gates whose inputs have changed.
+     */
+    private final boolean eventDriven;
+    
+    /**
+     * Set to true whenever the structure of the circuit changes. The compiled
+     * form gets rebuilt on the next evaluation when this is true.
+     */
+    private boolean stale = true;
+    
+    /**
+     * The gates of the circuit, by index.
+     */
+    Gate[] gates;
+    
+    /**
+     * The number of gates in the circuit. This is also the index of the
+     * ground slot in the state arrays.
+     */
+    int n;
+    
+    /**
+     * The kind of each gate (one of the KIND_ constants).
+     */
+    byte[] kind;
+    
+    /**
+     * Whether or not the output of each gate is the inverse of
+     * its AND or OR function.
+     */
+    boolean[] invert;
+    
+    /**
+     * The inputs of gate i are inputIndex[inputStart[i]] up to (but
+     * not including) inputIndex[inputStart[i+1]].
+     */
+    int[] inputStart;
+    
+    /**
+     * The index of the gate each input is connected to, or {@link #n} for
+     * unconnected inputs.
+     */
+    int[] inputIndex;
+    
+    /**
+     * The gates that gate i's output is connected to are
+     * fanoutIndex[fanoutStart[i]] up to (but not including)
+     * fanoutIndex[fanoutStart[i+1]]. A gate appears once per input
+     * it has connected to gate i.
+     */
+    int[] fanoutStart;
+    
+    /**
+     * See {@link #fanoutStart}.
+     */
+    int[] fanoutIndex;
+    
+    /**
+     * The indices of all the opaque gates.
+     */
+    int[] opaque;
+    
+    /**
+     * The gates being evaluated on the current tick in event-driven mode.
+     * Only the first {@link #dirtyCount} entries are meaningful.
+     */
+    private int[] dirty;
+    
+    private int dirtyCount;
+    
+    /**
+     * The gates to evaluate on the next tick, built up from the fan-outs
+     * of the gates that change. Swapped with {@link #dirty} each tick.
+     */
+    private int[] nextDirty;
+    
+    private int nextDirtyCount;
+    
+    /**
+     * Whether or not each gate is already in {@link #nextDirty}.
+     */
+    private boolean[] queued;
+    
+    /**
+     * The current output state of each gate, plus the ground slot at the end.
+     */
+    boolean[] output;
+    
+    /**
+     * The next output state of each gate.
+     */
+    boolean[] next;
+    
+    /**
+     * Creates a compiled form of the given circuit which evaluates every gate
+     * on every tick. The new instance does not register itself as a listener
+     * on the circuit; the caller has to do that if the circuit's structure
+     * might change.
+     */
+    public CompiledCircuit(Circuit circuit) {
+        this(circuit, false);
+    }
+    
+    /**
+     * Creates a compiled form of the given circuit. The new instance does not
+     * register itself as a listener on the circuit; the caller has to do that
+     * if the circuit's structure might change.
+     * 
+     * @param eventDriven If true, only gates whose inputs changed state will be
+     * re-evaluated on each tick.
+     */
+    public CompiledCircuit(Circuit circuit, boolean eventDriven) {
+        this.circuit = circuit;
+        this.eventDriven = eventDriven;
+    }
+    
+    /**
+     * Returns true if this compiled circuit only evaluates the gates whose
+     * inputs have changed.
+     */
+    public boolean isEventDriven() {
+        return eventDriven;
+    }
+    
+    /**
+     * Returns the circuit this is the compiled form of.
+     */
+    public Circuit getCircuit() {
+        return circuit;
+    }
+
+    /**
+     * Rebuilds the compiled form of the circuit if its structure has
+     * changed since the last time it was compiled.
+     */
+    public void ensureCompiled() {
+        if (stale) {
+            compile();
+        }
+    }
+    
+    /**
+     * Rebuilds all the arrays from the current gates in the circuit, and
+     * picks up the gates' current output states.
+     */
+    private void compile() {
+        Collection<Gate> circuitGates = circuit.getGates();
+        n = circuitGates.size();
+        gates = circuitGates.toArray(new Gate[n]);
+        Map<Gate, Integer> indices = new HashMap<Gate, Integer>(n * 2);
+        for (int i = 0; i < n; i++) {
+            indices.put(gates[i], i);
+        }
+        
+        kind = new byte[n];
+        invert = new boolean[n];
+        inputStart = new int[n + 1];
+        List<Integer> inputList = new ArrayList<Integer>();
+        List<Integer> opaqueList = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++) {
+            Gate g = gates[i];
+            Class<?> c = g.getClass();
+            if (c == AndGate.class) {
+                kind[i] = KIND_AND;
+            } else if (c == NandGate.class) {
+                kind[i] = KIND_AND;
+                invert[i] = true;
+            } else if (c == OrGate.class) {
+                kind[i] = KIND_OR;
+            } else if (c == NorGate.class || c == NotGate.class) {
+                kind[i] = KIND_OR;
+                invert[i] = true;
+            } else {
+                kind[i] = KIND_OPAQUE;
+            }
+            
+            inputStart[i] = inputList.size();
+            for (Gate.Input in : g.getInputs()) {
+                Gate src = in.getConnectedGate();
+                if (src == null) {
+                    inputList.add(n);
+                } else if (indices.containsKey(src)) {
+                    inputList.add(indices.get(src));
+                } else {
+                    // connected to something outside this circuit; let the gate read it itself
+                    debug("Gate "+g+" is connected to foreign gate "+src);
+                    kind[i] = KIND_OPAQUE;
+                    inputList.add(n);
+                }
+            }
+            if (kind[i] != KIND_OPAQUE && !(g instanceof AbstractGate)) {
+                kind[i] = KIND_OPAQUE;
+            }
+            if (kind[i] == KIND_OPAQUE) {
+                opaqueList.add(i);
+            }
+        }
+        inputStart[n] = inputList.size();
+        
+        inputIndex = new int[inputList.size()];
+        for (int i = 0; i < inputIndex.length; i++) {
+            inputIndex[i] = inputList.get(i);
+        }
+        opaque = new int[opaqueList.size()];
+        for (int i = 0; i < opaque.length; i++) {
+            opaque[i] = opaqueList.get(i);
+        }
+        
+        // invert the input lists to get the fan-out lists (ground has none)
+        fanoutStart = new int[n + 2];
+        for (int j = 0; j < inputIndex.length; j++) {
+            fanoutStart[inputIndex[j] + 1]++;
+        }
+        for (int i = 0; i <= n; i++) {
+            fanoutStart[i + 1] += fanoutStart[i];
+        }
+        fanoutIndex = new int[inputIndex.length];
+        int[] fill = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            for (int j = inputStart[i]; j < inputStart[i + 1]; j++) {
+                int src = inputIndex[j];
+                fanoutIndex[fanoutStart[src] + fill[src]++] = i;
+            }
+        }
+        
+        dirty = new int[n];
+        nextDirty = new int[n];
+        queued = new boolean[n];
+        
+        output = new boolean[n + 1];
+        next = new boolean[n + 1];
+        stale = false;
+        sync();
+        debug("Compiled circuit "+circuit.getName()+": "+n+" gates, "+opaque.length+" opaque");
+    }
+    
+    /**
+     * Re-reads the current output state of every gate from the gate objects.
+     * This has to be called whenever gate states are modified other than by
+     * {@link #evaluateOnce(List)}, for example after the circuit is reset.
+     */
+    public void sync() {
+        if (stale) {
+            compile();
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            output[i] = gates[i].getOutputState();
+            next[i] = output[i];
+        }
+        output[n] = false;
+        
+        // every gate could now disagree with its inputs
+        for (int i = 0; i < n; i++) {
+            nextDirty[i] = i;
+            queued[i] = true;
+        }
+        nextDirtyCount = n;
+        dirtyCount = 0;
+    }
+
+    /**
+     * Tells this compiled form that the circuit isn't going to use it
+     * anymore. Afterwards, every gate's state is stored in the gate itself.
+     */
+    public void release() {
+        // the states are always copied back to the gates
+    }
+
+    /**
+     * Evaluates each gate in the circuit one time, with exactly the same
+     * results as {@link Circuit#evaluateOnce()} would produce, and copies the
+     * new output states back to the gates.
+     * 
+     * @param gatesThatChanged The gates whose output state changed during this
+     * evaluation will be appended to this list.
+     */
+    public void evaluateOnce(List<Gate> gatesThatChanged) {
+        ensureCompiled();
+        if (eventDriven) {
+            evaluateDirty(gatesThatChanged);
+        } else {
+            evaluateAll(gatesThatChanged);
+        }
+    }
+    
+    /**
+     * Evaluates and latches every gate.
+     */
+    private void evaluateAll(List<Gate> gatesThatChanged) {
+        final Gate[] gates = this.gates;
+        final byte[] kind = this.kind;
+        final boolean[] output = this.output;
+        final boolean[] next = this.next;
+        final int[] inputStart = this.inputStart;
+        final int[] inputIndex = this.inputIndex;
+        final int n = this.n;
+        
+        // sensor outputs are set from outside the circuit between evaluations
+        for (int i = 0; i < opaque.length; i++) {
+            int g = opaque[i];
+            output[g] = gates[g].getOutputState();
+        }
+        
+        for (int i = 0; i < n; i++) {
+            switch (kind[i]) {
+            case KIND_AND: {
+                boolean v = true;
+                for (int j = inputStart[i], end = inputStart[i + 1]; j < end; j++) {
+                    if (!output[inputIndex[j]]) {
+                        v = false;
+                        break;
+                    }
+                }
+                next[i] = v ^ invert[i];
+                break;
+            }
+            case KIND_OR: {
+                boolean v = false;
+                for (int j = inputStart[i], end = inputStart[i + 1]; j < end; j++) {
+                    if (output[inputIndex[j]]) {
+                        v = true;
+                        break;
+                    }
+                }
+                next[i] = v ^ invert[i];
+                break;
+            }
+            default:
+                gates[i].evaluateInput();
+            }
+        }
+        
+        for (int i = 0; i < n; i++) {
+            boolean v;
+            if (kind[i] == KIND_OPAQUE) {
+                gates[i].latchOutput();
+                v = gates[i].getOutputState();
+            } else {
+                v = next[i];
+            }
+            if (v != output[i]) {
+                output[i] = v;
+                if (kind[i] != KIND_OPAQUE) {
+                    ((AbstractGate) gates[i]).setOutputStates(v, v);
+                }
+                gatesThatChanged.add(gates[i]);
+            }
+        }
+    }
+    
+    /**
+     * Evaluates and latches only the gates on the dirty list and the opaque
+     * gates, then builds the dirty list for the next tick from the fan-outs of
+     * the gates that changed.
+     */
+    private void evaluateDirty(List<Gate> gatesThatChanged) {
+        final Gate[] gates = this.gates;
+        final byte[] kind = this.kind;
+        final boolean[] output = this.output;
+        final boolean[] next = this.next;
+        final int[] inputStart = this.inputStart;
+        final int[] inputIndex = this.inputIndex;
+        final int[] opaque = this.opaque;
+        
+        // sensor outputs are set from outside the circuit between evaluations
+        for (int i = 0; i < opaque.length; i++) {
+            int g = opaque[i];
+            boolean v = gates[g].getOutputState();
+            if (v != output[g]) {
+                output[g] = v;
+                markFanout(g);
+            }
+        }
+        swapDirtyLists();
+        
+        final int[] dirty = this.dirty;
+        final int dirtyCount = this.dirtyCount;
+        for (int d = 0; d < dirtyCount; d++) {
+            int i = dirty[d];
+            if (kind[i] == KIND_AND) {
+                boolean v = true;
+                for (int j = inputStart[i], end = inputStart[i + 1]; j < end; j++) {
+                    if (!output[inputIndex[j]]) {
+                        v = false;
+                        break;
+                    }
+                }
+                next[i] = v ^ invert[i];
+            } else if (kind[i] == KIND_OR) {
+                boolean v = false;
+                for (int j = inputStart[i], end = inputStart[i + 1]; j < end; j++) {
+                    if (output[inputIndex[j]]) {
+                        v = true;
+                        break;
+                    }
+                }
+                next[i] = v ^ invert[i];
+            }
+        }
+        for (int i = 0; i < opaque.length; i++) {
+            gates[opaque[i]].evaluateInput();
+        }
+        
+        for (int d = 0; d < dirtyCount; d++) {
+            int i = dirty[d];
+            if (kind[i] != KIND_OPAQUE && next[i] != output[i]) {
+                boolean v = next[i];
+                output[i] = v;
+                ((AbstractGate) gates[i]).setOutputStates(v, v);
+                gatesThatChanged.add(gates[i]);
+                markFanout(i);
+            }
+        }
+        for (int k = 0; k < opaque.length; k++) {
+            int i = opaque[k];
+            gates[i].latchOutput();
+            boolean v = gates[i].getOutputState();
+            if (v != output[i]) {
+                output[i] = v;
+                gatesThatChanged.add(gates[i]);
+                markFanout(i);
+            }
+        }
+    }
+    
+    /**
+     * Adds every gate connected to the given gate's output to the
+     * dirty list for the next tick.
+     */
+    private void markFanout(int g) {
+        for (int j = fanoutStart[g], end = fanoutStart[g + 1]; j < end; j++) {
+            int target = fanoutIndex[j];
+            if (!queued[target]) {
+                queued[target] = true;
+                nextDirty[nextDirtyCount++] = target;
+            }
+        }
+    }
+    
+    /**
+     * Makes the list being built up into the current dirty list, and starts
+     * a new empty list for the next tick.
+     */
+    private void swapDirtyLists() {
+        int[] tmp = dirty;
+        dirty = nextDirty;
+        dirtyCount = nextDirtyCount;
+        nextDirty = tmp;
+        nextDirtyCount = 0;
+        for (int d = 0; d < dirtyCount; d++) {
+            queued[dirty[d]] = false;
+        }
+    }
+    
+    // ------------ CircuitListener implementation --------------
+    
+    public void gatesAdded(CircuitEvent evt) {
+        stale = true;
+    }
+
+    public void gatesRemoved(CircuitEvent evt) {
+        stale = true;
+    }
+
+    public void gatesConnected(CircuitEvent evt) {
+        stale = true;
+    }
+
+    public void gatesChangedState(CircuitEvent evt) {
+        // only care about structural changes
+    }
+
+    public void gatesRepositioned(CircuitEvent evt) {
+        // only care about structural changes
+    }
+    
+    private static void debug(String msg) {
+        if (debugOn) System.out.println(msg);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+/**
+ * Watches the sequence of per-tick state hashes of a run (see
+ * {@link StateHash}) for an exact repeat. The simulation is deterministic,
+ * so once a state repeats, the run will cycle through the same states
+ * forever and can be stopped early.
+ * <p>
+ * There are two strategies. {@link Strategy#VISITED_SET} remembers every
+ * hash it has seen (12 bytes per tick) and notices a repeat on the first
+ * tick of the second time around the cycle. {@link Strategy#BRENT} uses
+ * Brent's cycle-finding algorithm, which only keeps one hash but can take
+ * up to about twice as long past the start of the cycle to notice it.
+ * Both report the exact cycle length.
+ * <p>
+ * Since only hashes are compared, a 64-bit hash collision could cause
+ * a false verdict. Instances of this class are not thread safe.
+ */
+public class CycleDetector {
+
+    /**
+     * The ways of finding a repeated state.
+     */
+    public static enum Strategy {
+        
+        /**
+         * Remember every state hash in a compact hash table.
+         */
+        VISITED_SET,
+        
+        /**
+         * Brent's algorithm: constant memory, somewhat slower detection.
+         */
+        BRENT
+    }
+    
+    private final Strategy strategy;
+    
+    /**
+     * The length of the cycle that was found, or 0 if none has been found yet.
+     */
+    private int cycleLength;
+    
+    /**
+     * The tick on which the cycle was noticed.
+     */
+    private int detectedAt;
+    
+    // VISITED_SET state: an open-addressing table of hash -> tick first seen
+    
+    private long[] keys;
+    private int[] ticks;
+    private boolean[] used;
+    private int entries;
+    
+    // BRENT state
+    
+    private boolean started;
+    private long tortoise;
+    private int power;
+    private int lambda;
+    
+    public CycleDetector(Strategy strategy) {
+        this.strategy = strategy;
+        reset();
+    }
+    
+    /**
+     * Forgets all the states seen so far.
+     */
+    public void reset() {
+        cycleLength = 0;
+        detectedAt = 0;
+        if (strategy == Strategy.VISITED_SET) {
+            keys = new long[1024];
+            ticks = new int[1024];
+            used = new boolean[1024];
+            entries = 0;
+        } else {
+            started = false;
+        }
+    }
+    
+    /**
+     * Feeds in the state hash for the given tick. Ticks have to be fed in
+     * order, one at a time.
+     * 
+     * @return true if this state completes a cycle (from then on,
+     * {@link #getCycleLength()} is nonzero).
+     */
+    public boolean update(long stateHash, int tick) {
+        if (cycleLength != 0) return true;
+        int length = (strategy == Strategy.VISITED_SET)
+                ? visit(stateHash, tick) : brent(stateHash);
+        if (length != 0) {
+            cycleLength = length;
+            detectedAt = tick;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Adds the hash to the visited set.
+     * 
+     * @return The distance back to the previous visit of the same state,
+     * or 0 if this is a new state.
+     */
+    private int visit(long hash, int tick) {
+        int mask = keys.length - 1;
+        int i = mix(hash) & mask;
+        while (used[i]) {
+            if (keys[i] == hash) {
+                return tick - ticks[i];
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = hash;
+        ticks[i] = tick;
+        entries++;
+        if (entries * 4 > keys.length * 3) {
+            grow();
+        }
+        return 0;
+    }
+    
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldTicks = ticks;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        ticks = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (!oldUsed[j]) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (used[i]) {
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            keys[i] = oldKeys[j];
+            ticks[i] = oldTicks[j];
+        }
+    }
+    
+    private static int mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+    
+    /**
+     * One step of Brent's algorithm. The tortoise jumps to the hare's state
+     * every time the hare has gone a power of two steps past it.
+     * 
+     * @return The cycle length, if the hare just caught up with the tortoise;
+     * otherwise 0.
+     */
+    private int brent(long hash) {
+        if (!started) {
+            started = true;
+            tortoise = hash;
+            power = 1;
+            lambda = 0;
+            return 0;
+        }
+        lambda++;
+        if (hash == tortoise) {
+            return lambda;
+        }
+        if (lambda == power) {
+            tortoise = hash;
+            power <<= 1;
+            lambda = 0;
+        }
+        return 0;
+    }
+    
+    public Strategy getStrategy() {
+        return strategy;
+    }
+    
+    /**
+     * Returns the number of ticks in the cycle that was found, or 0 if no
+     * cycle has been found.
+     */
+    public int getCycleLength() {
+        return cycleLength;
+    }
+    
+    /**
+     * Returns the tick on which the cycle was noticed, or 0 if no cycle has
+     * been found.
+     */
+    public int getDetectedAt() {
+        return detectedAt;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.event.CircuitEvent;
+import net.bluecow.robot.event.CircuitListener;
+import net.bluecow.robot.gate.Gate;
+
+/**
+ * Counts how many times each gate of a circuit changes state. It listens to
+ * the circuit's state change events, so a circuit that isn't being watched
+ * pays nothing. In OPTIMIZED mode the events only list some of the gates,
+ * so every gate's state is compared with the one it had after the previous
+ * evaluation instead.
+ * <p>
+ * The counts are updated by whichever thread evaluates the circuit and can
+ * be read from any thread; the methods are synchronized.
+ */
+public class GateActivity implements CircuitListener {
+
+    private final Circuit circuit;
+    
+    /**
+     * The number of times each gate has changed state. Gates that have
+     * never changed aren't in the map.
+     */
+    private final Map<Gate, int[]> toggles = new IdentityHashMap<Gate, int[]>();
+    
+    /**
+     * The number of times the circuit has been evaluated.
+     */
+    private int evaluations;
+    
+    /**
+     * The highest count in {@link #toggles}.
+     */
+    private int maxToggles;
+    
+    /**
+     * The state each gate had after the previous evaluation. Only kept up
+     * to date in OPTIMIZED mode.
+     */
+    private final Map<Gate, boolean[]> lastStates = new IdentityHashMap<Gate, boolean[]>();
+    
+    /**
+     * Starts counting state changes in the given circuit. Call
+     * {@link #detach()} to stop.
+     */
+    public GateActivity(Circuit circuit) {
+        this.circuit = circuit;
+        attach();
+    }
+    
+    /**
+     * Starts counting again after {@link #detach()}.
+     */
+    public void attach() {
+        circuit.removeCircuitListener(this);
+        circuit.addCircuitListener(this);
+        if (circuit.getEvaluationMode() == Circuit.EvaluationMode.OPTIMIZED) {
+            synchronized (this) {
+                for (Gate g : circuit.getGates()) {
+                    lastStates.put(g, new boolean[] { g.getOutputState() });
+                }
+            }
+        }
+    }
+    
+    /**
+     * Stops counting. The counts so far are kept.
+     */
+    public void detach() {
+        circuit.removeCircuitListener(this);
+    }
+    
+    public Circuit getCircuit() {
+        return circuit;
+    }
+    
+    /**
+     * Forgets all the counts.
+     */
+    public synchronized void reset() {
+        toggles.clear();
+        evaluations = 0;
+        maxToggles = 0;
+    }
+    
+    /**
+     * Returns the number of times the circuit has been evaluated while this
+     * was counting. Resetting the circuit also counts as an evaluation.
+     */
+    public synchronized int getEvaluations() {
+        return evaluations;
+    }
+    
+    /**
+     * Returns the number of times the given gate has changed state.
+     */
+    public synchronized int getToggleCount(Gate g) {
+        int[] count = toggles.get(g);
+        return count == null ? 0 : count[0];
+    }
+    
+    /**
+     * Returns the toggle count of the busiest gate.
+     */
+    public synchronized int getMaxToggleCount() {
+        return maxToggles;
+    }
+    
+    /**
+     * Returns the fraction of evaluations on which the given gate changed
+     * state, from 0.0 (never) to 1.0 (every time).
+     */
+    public synchronized double getToggleRate(Gate g) {
+        return evaluations == 0 ? 0.0 : (double) getToggleCount(g) / evaluations;
+    }
+    
+    public synchronized void gatesChangedState(CircuitEvent evt) {
+        evaluations++;
+        if (circuit.getEvaluationMode() == Circuit.EvaluationMode.OPTIMIZED) {
+            for (Gate g : circuit.getGates()) {
+                boolean v = g.getOutputState();
+                boolean[] last = lastStates.get(g);
+                if (last == null) {
+                    lastStates.put(g, new boolean[] { v });
+                } else if (last[0] != v) {
+                    last[0] = v;
+                    countToggle(g);
+                }
+            }
+            return;
+        }
+        List<Gate> changed = evt.getGatesAffected();
+        for (int i = 0, n = changed.size(); i < n; i++) {
+            countToggle(changed.get(i));
+        }
+    }
+    
+    private void countToggle(Gate g) {
+        int[] count = toggles.get(g);
+        if (count == null) {
+            count = new int[1];
+            toggles.put(g, count);
+        }
+        if (++count[0] > maxToggles) {
+            maxToggles = count[0];
+        }
+    }
+    
+    public synchronized void gatesRemoved(CircuitEvent evt) {
+        for (Gate g : evt.getGatesAffected()) {
+            toggles.remove(g);
+            lastStates.remove(g);
+        }
+    }
+    
+    public void gatesAdded(CircuitEvent evt) {
+        // new gates haven't toggled yet
+    }
+    
+    public void gatesConnected(CircuitEvent evt) {
+        // doesn't change the counts
+    }
+    
+    public void gatesRepositioned(CircuitEvent evt) {
+        // doesn't change the counts
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.CircuitStore;
+import net.bluecow.robot.GameLoop;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.NullRenderSink;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.ScriptPolicy;
+import net.bluecow.robot.ScriptTimeoutException;
+
+/**
+ * Runs a level as fast as possible without a playfield, Swing, or a display.
+ * The robots are driven by a normal {@link GameLoop} attached to a
+ * {@link NullRenderSink}, and the loop is stepped directly with no sleeping
+ * between ticks.
+ * <p>
+ * The engine takes ownership of the level it's given: running it changes
+ * the level's state just like playing it in the game would. Give the engine
+ * a copy (see {@link LevelConfig#LevelConfig(LevelConfig)}) if you want to
+ * keep the original. Instances of this class are not thread safe, but
+ * separate engines running separate level copies can run on separate threads.
+ */
+public class HeadlessEngine {
+
+    /**
+     * The level being run.
+     */
+    private final LevelConfig level;
+    
+    /**
+     * The game loop that drives the level's robots.
+     */
+    private final GameLoop loop;
+    
+    /**
+     * Creates a new engine for the given level, and makes a snapshot of the
+     * level's current state so {@link #reset()} can return to it. If the
+     * level has the default script policy, it's switched to
+     * {@link ScriptPolicy#TIME_LIMITED}, since nobody is watching a headless
+     * run to notice a script that never finishes.
+     */
+    public HeadlessEngine(LevelConfig level) {
+        this.level = level;
+        if (level.getScriptPolicy() == ScriptPolicy.DEFAULT) {
+            level.setScriptPolicy(ScriptPolicy.TIME_LIMITED);
+        }
+        level.snapshotState();
+        loop = new GameLoop(level.getRobots(), level, new NullRenderSink());
+        
+        // taking the snapshot attaches the switches to it; this puts them back
+        loop.resetState();
+    }
+    
+    /**
+     * Loads circuits for this level's robots from the given stream, which
+     * should be in the format written by {@link CircuitStore#save}.
+     */
+    public void loadCircuits(InputStream in) throws IOException {
+        CircuitStore.load(in, level.getRobots());
+    }
+    
+    /**
+     * Sets the evaluation mode of every robot's circuit.
+     */
+    public void setEvaluationMode(Circuit.EvaluationMode mode) {
+        for (Robot r : level.getRobots()) {
+            r.getCircuit().setEvaluationMode(mode);
+        }
+    }
+    
+    /**
+     * Turns on cycle detection with the given strategy, or turns it off if
+     * the strategy is null. With cycle detection on, a run that returns to
+     * an earlier state is stopped right away instead of running out the
+     * clock, and its result says it cycles forever.
+     * 
+     * @see GameLoop#setCycleDetector(CycleDetector)
+     */
+    public void setCycleDetection(CycleDetector.Strategy strategy) {
+        loop.setCycleDetector(strategy == null ? null : new CycleDetector(strategy));
+    }
+    
+    /**
+     * Sets how many threads advance the level's robots on each tick. The
+     * results are the same no matter how many threads are used.
+     * 
+     * @see GameLoop#setParallelism(int)
+     */
+    public void setParallelism(int threads) {
+        loop.setParallelism(threads);
+    }
+    
+    /**
+     * Sets the policy that the level's switch scripts run under. A run whose
+     * script runs out of time is stopped, and its result has an error.
+     */
+    public void setScriptPolicy(ScriptPolicy policy) {
+        level.setScriptPolicy(policy);
+    }
+    
+    /**
+     * Returns the level this engine is running.
+     */
+    public LevelConfig getLevel() {
+        return level;
+    }
+    
+    /**
+     * Returns the game loop that drives this engine.
+     */
+    public GameLoop getGameLoop() {
+        return loop;
+    }
+    
+    /**
+     * Puts the level and its robots back in the state they were in when
+     * this engine was created. Loaded circuits are kept.
+     */
+    public void reset() {
+        loop.resetState();
+    }
+    
+    /**
+     * Runs the level until all robots have reached their goals, the
+     * given number of ticks have been run, a switch script runs out of time,
+     * or (with cycle detection on) the run is found to be stuck in a cycle,
+     * whichever comes first.
+     * 
+     * @param maxTicks The most ticks to run before giving up.
+     * @return The outcome of the run.
+     */
+    public RunResult run(int maxTicks) {
+        while (!loop.isGoalReached() && !loop.isCyclesForever()
+                && loop.getScriptTimeout() == null && loop.getLoopCount() < maxTicks) {
+            loop.singleStep();
+        }
+        ScriptTimeoutException timeout = loop.getScriptTimeout();
+        return new RunResult(level.getName(), null, loop.isGoalReached(),
+                loop.getLoopCount(), level.getEffectiveScore(),
+                timeout == null ? null : timeout.getMessage(), loop.getCycleLength());
+    }
+}
@@ -0,0 +1,966 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.event.CircuitEvent;
+import net.bluecow.robot.gate.AbstractGate;
+import net.bluecow.robot.gate.Gate;
+
+/**
+ * A compiled circuit that evaluates a reduced netlist instead of every gate.
+ * The reduction works on the flattened form built by {@link CompiledCircuit}:
+ * <ul>
+ *  <li>Gates with one input (NOT gates, and one-input AND, OR, NAND and NOR
+ *      gates) aren't evaluated at all. Whoever reads one reads its source
+ *      instead, inverted if necessary and from one tick further back, so
+ *      a NOT-NOT chain is just its source delayed by two ticks.
+ *  <li>Unconnected inputs (which are always false) and inputs that are
+ *      constant for other reasons are folded into the gates they feed, and
+ *      gates whose inputs decide their output regardless of the rest
+ *      (including AND of x and NOT x) become constants.
+ *  <li>Gates that compute the same function of the same signals are merged.
+ *  <li>Gates that can't affect the robot (they don't lead to any of the
+ *      gates that are evaluated through their own methods, such as the
+ *      robot's inputs gate) are dropped from the netlist.
+ * </ul>
+ * Every signal keeps a 64-tick history so delayed reads are a shift and a
+ * mask. The reductions only hold once any initial states have flushed
+ * through the delays and constants, so after compiling and after every
+ * {@link #sync()} (reset or restore) the circuit is evaluated the normal
+ * compiled way for a few ticks, and only then switches to the netlist.
+ * <p>
+ * Only the gates evaluated through their own methods get new states on each
+ * tick. Every other gate is given this class as its
+ * {@link AbstractGate.StateSource}, and its state is only worked out when
+ * something (the editor, the timeline, a state hash) asks for it: a gate
+ * that kept its node has its state in the history, and the rest read theirs
+ * through the same literals the netlist uses. The states are exactly what
+ * the other evaluation modes would give. The state change events only list
+ * the gates evaluated through their own methods, though.
+ * <p>
+ * The nodes that were dropped from the netlist are evaluated only when
+ * one of their states is read, catching up on the ticks since the last
+ * time. They read the netlist's signals from the histories, which only go
+ * back 64 ticks. Usually only the last few ticks matter, because every
+ * path through the dropped nodes is short; then the ticks nobody looked at
+ * are skipped, and unless something reads them the dropped nodes cost
+ * nothing. If they have loops of their own, their states depend on
+ * everything that happened before, so they catch up at least every 64
+ * ticks whether anything reads them or not.
+ * <p>
+ * The states are worked out on whichever thread asks for them. Catching up
+ * and evaluating are synchronized on this object, so the editor can look at
+ * a circuit while another thread runs it.
+ */
+public class OptimizedCircuit extends CompiledCircuit implements AbstractGate.StateSource {
+
+    private static final boolean debugOn = false;
+    
+    /**
+     * The longest delay a literal can have. Gates that would be read
+     * further back than this are evaluated instead.
+     */
+    static final int MAX_DELAY = 62;
+    
+    /**
+     * The literal that's always false. Literals for gate signals are
+     * never negative.
+     */
+    static final int CONST_FALSE = -2;
+    
+    /**
+     * The literal that's always true.
+     */
+    static final int CONST_TRUE = -1;
+    
+    /** Gate mode: evaluated as a node of the netlist. */
+    private static final byte MODE_NODE = 0;
+    
+    /** Gate mode: reads its one remaining input through a literal. */
+    private static final byte MODE_INLINE = 1;
+    
+    /** Gate mode: always has the same value (once settled). */
+    private static final byte MODE_CONST = 2;
+    
+    /** Gate mode: always has the same value as an earlier gate. */
+    private static final byte MODE_ALIAS = 3;
+    
+    /** Gate mode: evaluated through its own methods. */
+    private static final byte MODE_OPAQUE = 4;
+    
+    /**
+     * Set whenever the structure of the circuit changes. The netlist is
+     * rebuilt on the next evaluation when this is true.
+     */
+    private boolean netlistStale = true;
+    
+    // ---- the reduction, by gate index ----
+    
+    private byte[] mode;
+    
+    /**
+     * For inline gates, the gate whose signal this one passes on (the
+     * ground index for an unconnected input).
+     */
+    private int[] wireInput;
+    
+    /**
+     * For inline gates, whether the signal is inverted on the way through.
+     */
+    private boolean[] wireInvert;
+    
+    /**
+     * For alias gates, the gate this one always agrees with.
+     */
+    private int[] aliasOf;
+    
+    /**
+     * For constant gates, the value.
+     */
+    private boolean[] constValue;
+    
+    /**
+     * For constant and alias gates, the number of ticks after a sync until
+     * the gate is certain to have its constant value (or the same value as
+     * the gate it's an alias of).
+     */
+    private int[] settle;
+    
+    /**
+     * For node gates, the number of ticks after a sync until the literals
+     * in {@link #nodeLits} all give the right values.
+     */
+    private int[] nodeSettle;
+    
+    /**
+     * Gates that must stay nodes, because reading through them would go
+     * around a loop or too far back in time.
+     */
+    private boolean[] pinned;
+    
+    /**
+     * The literal for each gate's current value, worked out on each pass.
+     */
+    private int[] lit;
+    
+    /**
+     * The number of ticks after a sync until each literal in {@link #lit}
+     * gives the right value.
+     */
+    private int[] litSettle;
+    
+    /**
+     * Where each gate is in the literal search: 0 not visited, 1 in
+     * progress, 2 done.
+     */
+    private byte[] litState;
+    
+    /**
+     * The sorted literals of each node gate's inputs, after folding.
+     */
+    private int[][] nodeLits;
+    
+    /**
+     * True if a pass changed the mode of any gate.
+     */
+    private boolean changed;
+    
+    /**
+     * The number of ticks to evaluate normally after a sync.
+     */
+    private int warmupTicks;
+    
+    // ---- the netlist ----
+    
+    /**
+     * The gate index of each node. The first {@link #liveCount} are the ones
+     * that get evaluated on every tick; the rest are the nodes that were
+     * dropped, which are only evaluated when {@link #catchUp()} is called.
+     */
+    private int[] nodes;
+    
+    private int liveCount;
+    
+    private boolean[] nodeAnd;
+    
+    private boolean[] nodeInvert;
+    
+    /**
+     * The literals of node k are nodeInput[nodeInputStart[k]] up to (but
+     * not including) nodeInput[nodeInputStart[k+1]].
+     */
+    private int[] nodeInputStart;
+    
+    private int[] nodeInput;
+    
+    /**
+     * The literal each gate's current state comes from, by gate index. Not
+     * used for opaque gates.
+     */
+    private int[] stateLit;
+    
+    /**
+     * Whether or not each gate is one of the dropped nodes, by gate index.
+     */
+    private boolean[] lazy;
+    
+    /**
+     * The recent values of every node and opaque gate, by gate index. Bit 0
+     * is the current value, bit 1 the one before that, and so on. Between
+     * ticks, the opaque gates' histories are one tick behind: they are
+     * brought up to date at the start of each tick, after the sensors have
+     * been set. See {@link #opaqueLag}.
+     */
+    private long[] history;
+    
+    /**
+     * How many ticks the opaque gates' histories are behind the nodes'.
+     */
+    private int opaqueLag;
+    
+    /**
+     * The number of ticks the netlist has evaluated since the warm-up.
+     */
+    private long tick;
+    
+    /**
+     * The tick the dropped nodes' histories are up to.
+     */
+    private long lazyTick;
+    
+    /**
+     * The most ticks the dropped nodes can fall behind before the signals
+     * they read from the netlist drop out of the histories.
+     */
+    private int maxLag;
+    
+    /**
+     * The number of ticks of evaluating the dropped nodes it takes until
+     * all their states are right again, no matter what their histories were
+     * before, or -1 if that never happens (because they have loops of their
+     * own or are too deep). In the first case, they don't have to go through
+     * the ticks nobody looked at; in the second case, they have to catch up
+     * at least every {@link #maxLag} ticks.
+     */
+    private int lazyFlush;
+    
+    /**
+     * True while the gates get their states from this object.
+     */
+    private boolean attached;
+    
+    /**
+     * The next value of each node, by gate index.
+     */
+    private boolean[] nextValue;
+    
+    /**
+     * The number of normal evaluations left before the netlist takes over.
+     */
+    private int warmupLeft;
+    
+    public OptimizedCircuit(Circuit circuit) {
+        super(circuit, false);
+    }
+    
+    /**
+     * Returns the number of gates that are evaluated on each tick (after
+     * the warm-up), not counting the ones evaluated through their own methods.
+     */
+    public int getNodeCount() {
+        ensureOptimized();
+        return liveCount;
+    }
+    
+    /**
+     * Returns the number of gates the circuit has.
+     */
+    public int getGateCount() {
+        ensureOptimized();
+        return n;
+    }
+    
+    /**
+     * Returns the number of ticks after each sync that are evaluated the
+     * normal way before the netlist takes over.
+     */
+    public int getWarmupTicks() {
+        ensureOptimized();
+        return warmupTicks;
+    }
+    
+    private void ensureOptimized() {
+        ensureCompiled();
+        if (netlistStale) {
+            optimize();
+            startWarmup();
+        }
+    }
+    
+    @Override
+    public synchronized void sync() {
+        detach();
+        super.sync();
+        if (!netlistStale) {
+            startWarmup();
+        }
+    }
+    
+    @Override
+    public synchronized void release() {
+        detach();
+    }
+    
+    /**
+     * Stores the current state of every gate that gets it from this object
+     * in the gate itself. This has to be done before anything that would
+     * make the histories or the gate indices meaningless.
+     */
+    private void detach() {
+        if (!attached) return;
+        catchUp();
+        for (int i = 0; i < n; i++) {
+            if (kind[i] == KIND_OPAQUE) continue;
+            AbstractGate gate = (AbstractGate) gates[i];
+            if (gate.getStateSource() == this) {
+                boolean v = getOutputState(i);
+                gate.setOutputStates(v, v);
+            }
+        }
+        attached = false;
+    }
+    
+    /**
+     * Makes every gate except the opaque ones get its state from this
+     * object. The histories have to agree with the gates' states.
+     */
+    private void attach() {
+        tick = 0;
+        lazyTick = 0;
+        opaqueLag = 1;
+        for (int i = 0; i < n; i++) {
+            if (kind[i] != KIND_OPAQUE) {
+                ((AbstractGate) gates[i]).setStateSource(this, i);
+            }
+        }
+        attached = true;
+    }
+    
+    /**
+     * Forgets the signal histories and starts over with the normal
+     * evaluation from the gates' current states.
+     */
+    private void startWarmup() {
+        // the opaque gates' states get pushed at the start of each tick
+        for (int i = 0; i < n; i++) {
+            history[i] = (kind[i] != KIND_OPAQUE && gates[i].getOutputState()) ? 1L : 0L;
+        }
+        warmupLeft = warmupTicks;
+    }
+    
+    @Override
+    public synchronized void evaluateOnce(List<Gate> gatesThatChanged) {
+        ensureOptimized();
+        if (warmupLeft > 0) {
+            evaluateWarmup(gatesThatChanged);
+        } else {
+            evaluateNetlist(gatesThatChanged);
+        }
+    }
+    
+    /**
+     * Evaluates the whole circuit the normal compiled way, and records the
+     * signal histories the netlist will need.
+     */
+    private void evaluateWarmup(List<Gate> gatesThatChanged) {
+        for (int i = 0; i < opaque.length; i++) {
+            int g = opaque[i];
+            history[g] = (history[g] << 1) | (gates[g].getOutputState() ? 1L : 0L);
+        }
+        super.evaluateOnce(gatesThatChanged);
+        for (int k = 0; k < nodes.length; k++) {
+            int g = nodes[k];
+            history[g] = (history[g] << 1) | (gates[g].getOutputState() ? 1L : 0L);
+        }
+        if (--warmupLeft == 0) {
+            attach();
+        }
+    }
+    
+    /**
+     * Evaluates one tick of the reduced netlist. Only the opaque gates' new
+     * states go to the gate objects.
+     */
+    private void evaluateNetlist(List<Gate> gatesThatChanged) {
+        final long[] history = this.history;
+        final boolean[] nextValue = this.nextValue;
+        final int[] nodes = this.nodes;
+        final int[] nodeInputStart = this.nodeInputStart;
+        final int[] nodeInput = this.nodeInput;
+        final int[] opaque = this.opaque;
+        final int liveCount = this.liveCount;
+        
+        // after this tick, the oldest signals the dropped nodes need would be gone
+        if (lazyFlush < 0 && tick + 1 - lazyTick > maxLag) {
+            catchUp();
+        }
+        
+        // sensor outputs are set from outside the circuit between evaluations
+        for (int i = 0; i < opaque.length; i++) {
+            int g = opaque[i];
+            history[g] = (history[g] << 1) | (gates[g].getOutputState() ? 1L : 0L);
+        }
+        opaqueLag = 0;
+        
+        for (int k = 0; k < liveCount; k++) {
+            boolean and = nodeAnd[k];
+            boolean v = and;
+            for (int j = nodeInputStart[k], end = nodeInputStart[k + 1]; j < end; j++) {
+                int l = nodeInput[j];
+                boolean in = (((history[l >>> 7] >>> ((l >>> 1) & 0x3f)) & 1L) != 0) ^ ((l & 1) != 0);
+                if (in != and) {
+                    v = !and;
+                    break;
+                }
+            }
+            nextValue[nodes[k]] = v ^ nodeInvert[k];
+        }
+        
+        // this reads the other gates' current states through getOutputState(int)
+        for (int i = 0; i < opaque.length; i++) {
+            gates[opaque[i]].evaluateInput();
+        }
+        
+        for (int k = 0; k < liveCount; k++) {
+            int g = nodes[k];
+            history[g] = (history[g] << 1) | (nextValue[g] ? 1L : 0L);
+        }
+        tick++;
+        opaqueLag = 1;
+        
+        for (int i = 0; i < opaque.length; i++) {
+            int g = opaque[i];
+            gates[g].latchOutput();
+            if (gates[g].getOutputState() != ((history[g] & 1L) != 0)) {
+                gatesThatChanged.add(gates[g]);
+            }
+        }
+    }
+    
+    /**
+     * Evaluates the dropped nodes for every tick since they were last
+     * evaluated, or just enough of the last ticks if that's all it takes.
+     * They read the netlist's signals from further back in the histories
+     * the further behind they are.
+     */
+    private synchronized void catchUp() {
+        final long[] history = this.history;
+        final boolean[] nextValue = this.nextValue;
+        final int[] nodes = this.nodes;
+        final int[] nodeInputStart = this.nodeInputStart;
+        final int[] nodeInput = this.nodeInput;
+        final boolean[] lazy = this.lazy;
+        
+        if (lazyFlush >= 0 && tick - lazyTick > lazyFlush) {
+            lazyTick = tick - lazyFlush;
+        }
+        for (; lazyTick < tick; lazyTick++) {
+            int behind = (int) (tick - lazyTick);
+            for (int k = liveCount; k < nodes.length; k++) {
+                boolean and = nodeAnd[k];
+                boolean v = and;
+                for (int j = nodeInputStart[k], end = nodeInputStart[k + 1]; j < end; j++) {
+                    int l = nodeInput[j];
+                    int src = l >>> 7;
+                    int bit = (l >>> 1) & 0x3f;
+                    if (!lazy[src]) {
+                        bit += (kind[src] == KIND_OPAQUE) ? behind - 1 : behind;
+                    }
+                    boolean in = (((history[src] >>> bit) & 1L) != 0) ^ ((l & 1) != 0);
+                    if (in != and) {
+                        v = !and;
+                        break;
+                    }
+                }
+                nextValue[nodes[k]] = v ^ nodeInvert[k];
+            }
+            for (int k = liveCount; k < nodes.length; k++) {
+                int g = nodes[k];
+                history[g] = (history[g] << 1) | (nextValue[g] ? 1L : 0L);
+            }
+        }
+    }
+    
+    // ------------ AbstractGate.StateSource implementation --------------
+    
+    /**
+     * Returns the current state of the given gate, which is also its next
+     * state. The gate must not be opaque.
+     */
+    public synchronized boolean getOutputState(int g) {
+        if (!attached) {
+            // the gate was detached while this thread waited for the lock
+            return g < n && gates[g].getOutputState();
+        }
+        int l = stateLit[g];
+        if (l < 0) return l == CONST_TRUE;
+        int src = l >>> 7;
+        int bit = (l >>> 1) & 0x3f;
+        if (lazy[src]) {
+            catchUp();
+        } else if (kind[src] == KIND_OPAQUE) {
+            // (a gate's literal is never an opaque gate's current value)
+            bit -= opaqueLag;
+        }
+        return (((history[src] >>> bit) & 1L) != 0) ^ ((l & 1) != 0);
+    }
+    
+    // ------------ building the netlist --------------
+    
+    private static int makeLit(int src, int delay, boolean negated) {
+        return (src << 7) | (delay << 1) | (negated ? 1 : 0);
+    }
+    
+    private static int delayOf(int lit) {
+        return lit < 0 ? 0 : (lit >>> 1) & 0x3f;
+    }
+    
+    /**
+     * Returns the literal for the value one tick after the given literal's,
+     * inverted if requested.
+     */
+    private static int passOn(int lit, boolean invert) {
+        if (lit < 0) {
+            return invert ? (lit == CONST_TRUE ? CONST_FALSE : CONST_TRUE) : lit;
+        }
+        return (lit + 2) ^ (invert ? 1 : 0);
+    }
+    
+    /**
+     * Works out the reduction of the compiled circuit, then builds the netlist.
+     */
+    private void optimize() {
+        mode = new byte[n];
+        wireInput = new int[n];
+        wireInvert = new boolean[n];
+        aliasOf = new int[n];
+        constValue = new boolean[n];
+        settle = new int[n];
+        nodeSettle = new int[n];
+        pinned = new boolean[n];
+        lit = new int[n];
+        litSettle = new int[n];
+        litState = new byte[n];
+        nodeLits = new int[n][];
+        
+        for (int i = 0; i < n; i++) {
+            if (kind[i] == KIND_OPAQUE) {
+                mode[i] = MODE_OPAQUE;
+            } else if (inputStart[i + 1] - inputStart[i] == 1) {
+                mode[i] = MODE_INLINE;
+                wireInput[i] = inputIndex[inputStart[i]];
+                wireInvert[i] = invert[i];
+            } else {
+                mode[i] = MODE_NODE;
+            }
+        }
+        
+        // every change makes something simpler, so this can't go on forever
+        do {
+            changed = false;
+            Arrays.fill(litState, (byte) 0);
+            for (int i = 0; i < n; i++) {
+                litOf(i);
+            }
+            Map<String, Integer> seen = new HashMap<String, Integer>();
+            for (int i = 0; i < n && !changed; i++) {
+                if (mode[i] != MODE_NODE) continue;
+                String key = fold(i);
+                if (key == null) continue;
+                Integer rep = seen.get(key);
+                if (rep == null) {
+                    seen.put(key, i);
+                } else if (!pinned[i]) {
+                    mode[i] = MODE_ALIAS;
+                    aliasOf[i] = rep;
+                    settle[i] = Math.max(nodeSettle[i], nodeSettle[rep]);
+                    changed = true;
+                }
+            }
+        } while (changed);
+        // every literal is right from its settle time on, and the nodes read literals
+        int maxSettle = 0;
+        for (int i = 0; i < n; i++) {
+            maxSettle = Math.max(maxSettle, litSettle[i]);
+            if (mode[i] == MODE_NODE) maxSettle = Math.max(maxSettle, nodeSettle[i]);
+        }
+        
+        // only gates that lead to an opaque gate can affect anything
+        boolean[] needed = new boolean[n];
+        List<Integer> queue = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++) {
+            if (mode[i] == MODE_OPAQUE || opaque.length == 0) {
+                needed[i] = true;
+                queue.add(i);
+            }
+        }
+        for (int q = 0; q < queue.size(); q++) {
+            int g = queue.get(q);
+            for (int j = inputStart[g]; j < inputStart[g + 1]; j++) {
+                int src = inputIndex[j];
+                if (src != n && !needed[src]) {
+                    needed[src] = true;
+                    queue.add(src);
+                }
+            }
+        }
+        
+        // the live nodes are the ones those gates' values come from, and their
+        // inputs; the dropped ones are the same for the rest of the gates
+        boolean[] live = new boolean[n];
+        List<Integer> nodeList = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++) {
+            if (mode[i] != MODE_OPAQUE && needed[i] && lit[i] >= 0) {
+                markLive(lit[i] >>> 7, live, nodeList);
+            }
+        }
+        for (int q = 0; q < nodeList.size(); q++) {
+            for (int l : nodeLits[nodeList.get(q)]) {
+                markLive(l >>> 7, live, nodeList);
+            }
+        }
+        liveCount = nodeList.size();
+        for (int i = 0; i < n; i++) {
+            if (mode[i] != MODE_OPAQUE && !needed[i] && lit[i] >= 0) {
+                markLive(lit[i] >>> 7, live, nodeList);
+            }
+        }
+        for (int q = liveCount; q < nodeList.size(); q++) {
+            for (int l : nodeLits[nodeList.get(q)]) {
+                markLive(l >>> 7, live, nodeList);
+            }
+        }
+        
+        nodes = new int[nodeList.size()];
+        nodeAnd = new boolean[nodes.length];
+        nodeInvert = new boolean[nodes.length];
+        nodeInputStart = new int[nodes.length + 1];
+        int inputCount = 0;
+        for (int k = 0; k < nodes.length; k++) {
+            nodes[k] = nodeList.get(k);
+            inputCount += nodeLits[nodes[k]].length;
+        }
+        nodeInput = new int[inputCount];
+        inputCount = 0;
+        for (int k = 0; k < nodes.length; k++) {
+            int g = nodes[k];
+            nodeAnd[k] = (kind[g] == KIND_AND);
+            nodeInvert[k] = invert[g];
+            nodeInputStart[k] = inputCount;
+            for (int l : nodeLits[g]) {
+                nodeInput[inputCount++] = l;
+            }
+        }
+        nodeInputStart[nodes.length] = inputCount;
+        
+        lazy = new boolean[n];
+        maxLag = 63;
+        for (int k = liveCount; k < nodes.length; k++) {
+            lazy[nodes[k]] = true;
+        }
+        for (int k = liveCount; k < nodes.length; k++) {
+            for (int j = nodeInputStart[k]; j < nodeInputStart[k + 1]; j++) {
+                int src = nodeInput[j] >>> 7;
+                if (lazy[src]) continue;
+                // the signals they read from the netlist have to stay in the histories
+                int oldest = 63 - delayOf(nodeInput[j]) + (kind[src] == KIND_OPAQUE ? 1 : 0);
+                maxLag = Math.min(maxLag, oldest);
+            }
+        }
+        lazyFlush = 0;
+        int[] nodeIndex = new int[n];
+        for (int k = 0; k < nodes.length; k++) {
+            nodeIndex[nodes[k]] = k;
+        }
+        int[] depth = new int[n];
+        for (int k = liveCount; k < nodes.length && lazyFlush >= 0; k++) {
+            if (lazyDepth(nodes[k], nodeIndex, depth) < 0) {
+                lazyFlush = -1;
+            }
+        }
+        for (int i = 0; i < n && lazyFlush >= 0; i++) {
+            if (mode[i] == MODE_OPAQUE || lit[i] < 0 || !lazy[lit[i] >>> 7]) continue;
+            // gates that read a dropped node's history need it right that far back too
+            lazyFlush = Math.max(lazyFlush, depth[lit[i] >>> 7] + delayOf(lit[i]));
+        }
+        if (lazyFlush > maxLag) {
+            lazyFlush = -1;
+        }
+        
+        stateLit = lit;
+        history = new long[n];
+        nextValue = new boolean[n];
+        warmupTicks = maxSettle + 1;
+        netlistStale = false;
+        
+        // the working arrays aren't needed anymore
+        lit = null;
+        litSettle = null;
+        litState = null;
+        nodeLits = null;
+        debug("Optimized circuit "+getCircuit().getName()+": "+n+" gates, "+
+                liveCount+" nodes, "+(nodes.length - liveCount)+" dropped nodes (flushed in "+
+                lazyFlush+" ticks), "+warmupTicks+" warm-up ticks");
+    }
+    
+    /**
+     * Works out how many ticks of evaluation it takes until the given dropped
+     * node's state no longer depends on the histories of the dropped nodes
+     * at the start, and stores it in the depth array.
+     * 
+     * @return The number of ticks, or -1 if the node is on a loop of
+     * dropped nodes (its state always depends on its history).
+     */
+    private int lazyDepth(int g, int[] nodeIndex, int[] depth) {
+        if (depth[g] > 0) return depth[g];
+        if (depth[g] < 0) return -1;
+        depth[g] = -1;
+        int d = 1;
+        int k = nodeIndex[g];
+        for (int j = nodeInputStart[k]; j < nodeInputStart[k + 1]; j++) {
+            int src = nodeInput[j] >>> 7;
+            if (!lazy[src]) continue;
+            int srcDepth = lazyDepth(src, nodeIndex, depth);
+            if (srcDepth < 0) return -1;
+            d = Math.max(d, srcDepth + delayOf(nodeInput[j]) + 1);
+        }
+        depth[g] = d;
+        return d;
+    }
+    
+    /**
+     * Adds the given gate to the live node list if it's a node that isn't
+     * already on it.
+     */
+    private void markLive(int g, boolean[] live, List<Integer> nodeList) {
+        if (mode[g] == MODE_NODE && !live[g]) {
+            live[g] = true;
+            nodeList.add(g);
+        }
+    }
+    
+    /**
+     * Returns the settle time of the given gate's literal.
+     */
+    private int settleOf(int g) {
+        return g == n ? 0 : litSettle[g];
+    }
+    
+    /**
+     * Returns the literal for the current value of the given gate (or the
+     * ground slot), following inline gates and aliases back to a node,
+     * an opaque gate, or a constant. Gates that would have to be read
+     * around a loop of inline gates or too far back are pinned as nodes.
+     */
+    private int litOf(int g) {
+        if (g == n) return CONST_FALSE;
+        if (litState[g] == 2) return lit[g];
+        if (litState[g] == 1) {
+            pin(g);
+            return makeLit(g, 0, false);
+        }
+        litState[g] = 1;
+        int l;
+        int s = 0;
+        if (mode[g] == MODE_CONST) {
+            l = constValue[g] ? CONST_TRUE : CONST_FALSE;
+            s = settle[g];
+        } else if (mode[g] == MODE_ALIAS) {
+            l = litOf(aliasOf[g]);
+            s = Math.max(settle[g], settleOf(aliasOf[g]));
+        } else if (mode[g] == MODE_INLINE) {
+            int in = wireInput[g];
+            int b = litOf(in);
+            s = settleOf(in) + 1;
+            if (b >= 0 && delayOf(b) >= MAX_DELAY) {
+                pin(g);
+            }
+            l = passOn(b, wireInvert[g]);
+        } else {
+            l = makeLit(g, 0, false);
+        }
+        if (mode[g] == MODE_NODE || mode[g] == MODE_OPAQUE) {
+            // (it might have been pinned while we were following its inputs)
+            l = makeLit(g, 0, false);
+            s = 0;
+        }
+        lit[g] = l;
+        litSettle[g] = s;
+        litState[g] = 2;
+        return l;
+    }
+    
+    /**
+     * Makes the given gate a node for good.
+     */
+    private void pin(int g) {
+        if (mode[g] != MODE_NODE) {
+            mode[g] = MODE_NODE;
+            changed = true;
+        }
+        pinned[g] = true;
+    }
+    
+    /**
+     * Folds the constants and duplicates out of a node gate's inputs. The
+     * gate might turn out to be constant, or to pass on a single signal
+     * (then it becomes inline); otherwise its literals are stored in
+     * {@link #nodeLits} and a key that identifies its function is returned.
+     * 
+     * @return The key, or null if the gate stopped being a node.
+     */
+    private String fold(int g) {
+        boolean and = (kind[g] == KIND_AND);
+        int start = inputStart[g];
+        int count = inputStart[g + 1] - start;
+        int[] ls = new int[count];
+        int[] from = new int[count];
+        int m = 0;
+        int inputSettle = 0;
+        for (int j = 0; j < count; j++) {
+            int in = inputIndex[start + j];
+            int l = litOf(in);
+            inputSettle = Math.max(inputSettle, settleOf(in));
+            if (l < 0) {
+                // false decides an AND, true decides an OR
+                if ((l == CONST_TRUE) != and) {
+                    makeConst(g, !and ^ invert[g], settleOf(in) + 1);
+                    return null;
+                }
+            } else {
+                ls[m] = l;
+                from[m] = in;
+                m++;
+            }
+        }
+        
+        // sort by literal (insertion sort; gates have few inputs)
+        for (int a = 1; a < m; a++) {
+            int l = ls[a];
+            int f = from[a];
+            int b = a - 1;
+            while (b >= 0 && ls[b] > l) {
+                ls[b + 1] = ls[b];
+                from[b + 1] = from[b];
+                b--;
+            }
+            ls[b + 1] = l;
+            from[b + 1] = f;
+        }
+        int unique = 0;
+        for (int a = 0; a < m; a++) {
+            if (unique > 0 && ls[unique - 1] == ls[a]) continue;
+            if (unique > 0 && (ls[unique - 1] ^ 1) == ls[a]) {
+                // x and not x from the same tick
+                makeConst(g, !and ^ invert[g], inputSettle + 1);
+                return null;
+            }
+            ls[unique] = ls[a];
+            from[unique] = from[a];
+            unique++;
+        }
+        
+        if (unique == 0) {
+            makeConst(g, and ^ invert[g], inputSettle + 1);
+            return null;
+        }
+        if (unique == 1 && !pinned[g] && delayOf(ls[0]) < MAX_DELAY) {
+            mode[g] = MODE_INLINE;
+            wireInput[g] = from[0];
+            wireInvert[g] = invert[g];
+            changed = true;
+            return null;
+        }
+        
+        nodeLits[g] = Arrays.copyOf(ls, unique);
+        nodeSettle[g] = inputSettle + 1;
+        StringBuilder key = new StringBuilder();
+        key.append(and ? '&' : '|').append(invert[g] ? '!' : ' ');
+        for (int a = 0; a < unique; a++) {
+            key.append(ls[a]).append(',');
+        }
+        return key.toString();
+    }
+    
+    private void makeConst(int g, boolean value, int settleTime) {
+        mode[g] = MODE_CONST;
+        constValue[g] = value;
+        settle[g] = settleTime;
+        changed = true;
+    }
+    
+    // ------------ CircuitListener implementation --------------
+    
+    @Override
+    public synchronized void gatesAdded(CircuitEvent evt) {
+        detach();
+        super.gatesAdded(evt);
+        netlistStale = true;
+    }
+    
+    @Override
+    public synchronized void gatesRemoved(CircuitEvent evt) {
+        detach();
+        super.gatesRemoved(evt);
+        netlistStale = true;
+    }
+    
+    @Override
+    public synchronized void gatesConnected(CircuitEvent evt) {
+        detach();
+        super.gatesConnected(evt);
+        netlistStale = true;
+    }
+    
+    private static void debug(String msg) {
+        if (debugOn) System.out.println(msg);
+    }
+}
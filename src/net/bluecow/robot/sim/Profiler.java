@@ -0,0 +1,327 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.GameLoop;
+import net.bluecow.robot.Robot;
+
+/**
+ * Records where a game loop's time goes: how long each robot spends
+ * reading its sensors and evaluating its circuit, moving, and running the
+ * switches it crosses; how often each gate changes state (see
+ * {@link GateActivity}); and how many ticks per second the loop actually
+ * achieves compared to what its frame delay asks for.
+ * <p>
+ * Give one to {@link GameLoop#setProfiler(Profiler)} to turn profiling on.
+ * A loop without a profiler doesn't look at the clock or count anything.
+ * The numbers can be read from any thread while the loop is running,
+ * although the timings of a robot that's in the middle of a tick might be
+ * slightly stale. Robot timings are kept in atomic counters because the
+ * loop's helper threads add to them while other threads read or reset
+ * them.
+ */
+public class Profiler {
+
+    /**
+     * The number of recent ticks the tick rate is averaged over.
+     */
+    private static final int RATE_WINDOW = 64;
+    
+    /**
+     * The timings for one robot.
+     */
+    public static class RobotTimes {
+        private final Robot robot;
+        private final AtomicLong ticks = new AtomicLong();
+        private final AtomicLong evaluateNanos = new AtomicLong();
+        private final AtomicLong moveNanos = new AtomicLong();
+        private final AtomicLong switchNanos = new AtomicLong();
+        
+        RobotTimes(Robot robot) {
+            this.robot = robot;
+        }
+        
+        public Robot getRobot() {
+            return robot;
+        }
+        
+        /**
+         * Returns the number of ticks this robot has been advanced.
+         */
+        public long getTicks() {
+            return ticks.get();
+        }
+        
+        /**
+         * Returns the time spent updating this robot's sensors and
+         * evaluating its circuit, in nanoseconds.
+         */
+        public long getEvaluateNanos() {
+            return evaluateNanos.get();
+        }
+        
+        /**
+         * Returns the time spent moving this robot, in nanoseconds.
+         */
+        public long getMoveNanos() {
+            return moveNanos.get();
+        }
+        
+        /**
+         * Returns the time spent firing the switch events and running the
+         * switch actions and scripts this robot triggered, in nanoseconds.
+         */
+        public long getSwitchNanos() {
+            return switchNanos.get();
+        }
+        
+        public long getTotalNanos() {
+            return evaluateNanos.get() + moveNanos.get() + switchNanos.get();
+        }
+        
+        void reset() {
+            ticks.set(0);
+            evaluateNanos.set(0);
+            moveNanos.set(0);
+            switchNanos.set(0);
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s: %d ticks, evaluate %.3fms, move %.3fms, switches %.3fms",
+                    robot.getId(), getTicks(), getEvaluateNanos() / 1e6,
+                    getMoveNanos() / 1e6, getSwitchNanos() / 1e6);
+        }
+    }
+    
+    /**
+     * The timings for every robot seen so far. Entries are only added by
+     * {@link #tickStarted(List)}, on the loop's thread, before any robots
+     * are advanced; while the robots are being advanced (possibly on
+     * several threads) the map is only read.
+     */
+    private final Map<Robot, RobotTimes> robotTimes = new IdentityHashMap<Robot, RobotTimes>();
+    
+    /**
+     * The gate activity counters for the circuits of the robots in
+     * {@link #robotTimes}.
+     */
+    private final Map<Robot, GateActivity> activity = new IdentityHashMap<Robot, GateActivity>();
+    
+    /**
+     * When the most recent ticks finished (System.nanoTime()), as a ring.
+     */
+    private final long[] tickEnds = new long[RATE_WINDOW];
+    
+    /**
+     * The number of ticks recorded in {@link #tickEnds}, up to its length.
+     */
+    private int recordedTicks;
+    
+    /**
+     * The total number of ticks completed while profiling.
+     */
+    private long ticks;
+    
+    /**
+     * The tick rate the loop was set up for at the most recent tick.
+     */
+    private double targetTicksPerSecond;
+    
+    /**
+     * True after {@link #detach()}, until the next tick starts.
+     */
+    private boolean detached;
+    
+    /**
+     * Called by the game loop at the start of each tick. Makes sure all the
+     * given robots have timings and gate activity counters.
+     */
+    public synchronized void tickStarted(List<Robot> robots) {
+        if (detached) {
+            for (GateActivity a : activity.values()) {
+                a.attach();
+            }
+            detached = false;
+        }
+        for (int i = 0, n = robots.size(); i < n; i++) {
+            Robot r = robots.get(i);
+            if (!robotTimes.containsKey(r)) {
+                robotTimes.put(r, new RobotTimes(r));
+                activity.put(r, new GateActivity(r.getCircuit()));
+            }
+        }
+    }
+    
+    /**
+     * Called by the game loop after it advanced the given robot. The robot
+     * must have been passed to {@link #tickStarted(List)} on this tick.
+     */
+    public void robotAdvanced(Robot robot, long evaluateNanos, long moveNanos) {
+        RobotTimes t = robotTimes.get(robot);
+        t.ticks.incrementAndGet();
+        t.evaluateNanos.addAndGet(evaluateNanos);
+        t.moveNanos.addAndGet(moveNanos);
+    }
+    
+    /**
+     * Called by the game loop after it ran the switches the given robot
+     * crossed.
+     */
+    public void switchesRun(Robot robot, long nanos) {
+        robotTimes.get(robot).switchNanos.addAndGet(nanos);
+    }
+    
+    /**
+     * Called by the game loop at the end of each tick.
+     */
+    public synchronized void tickCompleted(GameLoop loop, long nanoTime) {
+        tickEnds[(int) (ticks % RATE_WINDOW)] = nanoTime;
+        ticks++;
+        if (recordedTicks < RATE_WINDOW) recordedTicks++;
+        if (loop.isUnthrottled()) {
+            targetTicksPerSecond = Double.POSITIVE_INFINITY;
+        } else {
+            targetTicksPerSecond = 1000.0 * loop.getTicksPerFrame() / Math.max(1, loop.getFrameDelay());
+        }
+    }
+    
+    /**
+     * Returns the number of ticks completed since profiling started (or
+     * since the last reset).
+     */
+    public synchronized long getTicks() {
+        return ticks;
+    }
+    
+    /**
+     * Returns the number of ticks per second the loop achieved over the
+     * last few dozen ticks, or 0 if it hasn't done two ticks yet. Time the
+     * loop spent paused or stopped is included, so this is only meaningful
+     * while the loop is running.
+     */
+    public synchronized double getTicksPerSecond() {
+        if (recordedTicks < 2) return 0.0;
+        long newest = tickEnds[(int) ((ticks - 1) % RATE_WINDOW)];
+        long oldest = tickEnds[(int) ((ticks - recordedTicks) % RATE_WINDOW)];
+        if (newest == oldest) return Double.POSITIVE_INFINITY;
+        return (recordedTicks - 1) * 1e9 / (newest - oldest);
+    }
+    
+    /**
+     * Returns the number of ticks per second the loop was set up to run at
+     * (from its frame delay and ticks per frame) as of the most recent
+     * tick. This is infinite for an unthrottled loop.
+     */
+    public synchronized double getTargetTicksPerSecond() {
+        return targetTicksPerSecond;
+    }
+    
+    /**
+     * Returns the timings of the given robot, or null if it hasn't been
+     * advanced while profiling.
+     */
+    public synchronized RobotTimes getRobotTimes(Robot robot) {
+        return robotTimes.get(robot);
+    }
+    
+    /**
+     * Returns the timings of every robot, busiest first.
+     */
+    public synchronized List<RobotTimes> getRobotTimes() {
+        List<RobotTimes> times = new ArrayList<RobotTimes>(robotTimes.values());
+        Collections.sort(times, new Comparator<RobotTimes>() {
+            public int compare(RobotTimes o1, RobotTimes o2) {
+                long t1 = o1.getTotalNanos();
+                long t2 = o2.getTotalNanos();
+                return t1 < t2 ? 1 : (t1 > t2 ? -1 : 0);
+            }
+        });
+        return times;
+    }
+    
+    /**
+     * Returns the gate activity counter for the given robot's circuit, or
+     * null if the robot hasn't been advanced while profiling.
+     */
+    public synchronized GateActivity getGateActivity(Robot robot) {
+        return activity.get(robot);
+    }
+    
+    /**
+     * Returns the gate activity counter for the given circuit, or null if
+     * no robot with that circuit has been advanced while profiling.
+     */
+    public synchronized GateActivity getGateActivity(Circuit circuit) {
+        for (GateActivity a : activity.values()) {
+            if (a.getCircuit() == circuit) return a;
+        }
+        return null;
+    }
+    
+    /**
+     * Zeroes all the timings, counts and the tick rate.
+     */
+    public synchronized void reset() {
+        for (RobotTimes t : robotTimes.values()) {
+            t.reset();
+        }
+        for (GateActivity a : activity.values()) {
+            a.reset();
+        }
+        ticks = 0;
+        recordedTicks = 0;
+    }
+    
+    /**
+     * Stops counting gate activity. The game loop calls this when the
+     * profiler is removed from it; the counts so far are kept, and counting
+     * picks up again if the profiler is put back.
+     */
+    public synchronized void detach() {
+        for (GateActivity a : activity.values()) {
+            a.detach();
+        }
+        detached = true;
+    }
+}
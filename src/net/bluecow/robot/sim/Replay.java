@@ -0,0 +1,399 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+
+/**
+ * Plays back a log written by {@link RunRecorder}. The log is memory-mapped,
+ * and ticks are only decoded when they are visited, so opening a long
+ * recording is cheap and seeking only costs decoding forward from the
+ * nearest keyframe.
+ * <p>
+ * A replay is a cursor: {@link #seek(int)} or {@link #next()} moves it to a
+ * tick record, and the accessors describe the state after that tick.
+ * {@link #applyTo(LevelConfig, List)} copies that state onto a level and
+ * its robots so it can be drawn on a playfield. No circuits are evaluated
+ * and no switch scripts are run.
+ * <p>
+ * The whole log is mapped into one buffer, so logs larger than
+ * {@link RunRecorder#MAX_LOG_SIZE} bytes can't be opened.
+ * <p>
+ * Instances of this class are not thread safe.
+ */
+public class Replay {
+
+    private final ByteBuffer buf;
+    
+    private final long initialStateHash;
+    private final int keyframeInterval;
+    
+    /**
+     * The format version of the log; version 1 has a one-byte event count.
+     */
+    private final short version;
+    private final List<String> robotIds;
+    private final List<String> switchIds;
+    private final int[] sensorBytes;
+    
+    /**
+     * The record number and file offset of every keyframe.
+     */
+    private final int[] keyframeRecords;
+    private final long[] keyframeOffsets;
+    
+    /**
+     * The total number of tick records in the log.
+     */
+    private final int recordCount;
+    
+    /**
+     * The offset just past the last tick record.
+     */
+    private final long ticksEnd;
+    
+    // the state at the cursor
+    
+    /** The record number the cursor is on, or -1 if it's before the first record. */
+    private int record = -1;
+    private int tick;
+    private int score;
+    private final float[] x;
+    private final float[] y;
+    private final int[] direction;
+    private final boolean[] goalReached;
+    private final long[] sensors;
+    private int eventCount;
+    private int[] events = new int[16 * 3];
+    
+    /**
+     * Opens the given recording.
+     * 
+     * @throws IOException if the file is not a complete recording, is
+     * too large to map, or can't be read
+     */
+    public Replay(File file) throws IOException {
+        this(file, RunRecorder.MAX_LOG_SIZE);
+    }
+    
+    /**
+     * Opens the given recording, refusing it if it's larger than the given
+     * number of bytes rather than {@link RunRecorder#MAX_LOG_SIZE}.
+     */
+    Replay(File file, long maxLogSize) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > maxLogSize) {
+                throw new IOException("Recording is "+channel.size()+" bytes, but replays are limited to "+
+                        maxLogSize+" bytes");
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+        
+        if (buf.limit() < 12 || buf.getInt(buf.limit() - 4) != RunRecorder.END_MAGIC) {
+            throw new IOException("Not a complete recording (missing trailer)");
+        }
+        if (buf.getInt(0) != RunRecorder.MAGIC) {
+            throw new IOException("Not a recording (bad magic number)");
+        }
+        buf.position(4);
+        version = buf.getShort();
+        if (version < 1 || version > RunRecorder.VERSION) {
+            throw new IOException("Unsupported recording version "+version);
+        }
+        initialStateHash = buf.getLong();
+        keyframeInterval = buf.getInt();
+        int robotCount = buf.getShort();
+        List<String> ids = new ArrayList<String>();
+        sensorBytes = new int[robotCount];
+        for (int i = 0; i < robotCount; i++) {
+            ids.add(readString());
+            sensorBytes[i] = (buf.get() + 7) / 8;
+        }
+        robotIds = Collections.unmodifiableList(ids);
+        int switchCount = buf.getShort();
+        ids = new ArrayList<String>();
+        for (int i = 0; i < switchCount; i++) {
+            ids.add(readString());
+        }
+        switchIds = Collections.unmodifiableList(ids);
+        int firstTickOffset = buf.position();
+        
+        ticksEnd = buf.getLong(buf.limit() - 12);
+        if (ticksEnd < firstTickOffset || ticksEnd > buf.limit() - 16) {
+            throw new IOException("Corrupt recording (bad index offset "+ticksEnd+")");
+        }
+        position(ticksEnd);
+        int keyframeCount = buf.getInt();
+        keyframeRecords = new int[keyframeCount];
+        keyframeOffsets = new long[keyframeCount];
+        for (int i = 0; i < keyframeCount; i++) {
+            keyframeRecords[i] = buf.getInt();
+            keyframeOffsets[i] = buf.getLong();
+            if (keyframeOffsets[i] < firstTickOffset || keyframeOffsets[i] >= ticksEnd) {
+                throw new IOException("Corrupt recording (bad keyframe offset "+keyframeOffsets[i]+")");
+            }
+        }
+        
+        x = new float[robotCount];
+        y = new float[robotCount];
+        direction = new int[robotCount];
+        goalReached = new boolean[robotCount];
+        sensors = new long[robotCount];
+        
+        // count the records after the last keyframe to find the total
+        int count = 0;
+        if (keyframeCount > 0) {
+            position(keyframeOffsets[keyframeCount - 1]);
+            count = keyframeRecords[keyframeCount - 1];
+            while (buf.position() < ticksEnd) {
+                readTick();
+                count++;
+            }
+        } else if (firstTickOffset != ticksEnd) {
+            throw new IOException("Recording has ticks but no keyframes");
+        }
+        recordCount = count;
+        record = -1;
+    }
+    
+    /**
+     * Moves the buffer to the given file offset. The constructor has checked
+     * that every offset in the log fits in the buffer.
+     */
+    private void position(long offset) {
+        buf.position((int) offset);
+    }
+    
+    private String readString() throws IOException {
+        byte[] bytes = new byte[buf.getShort() & 0xffff];
+        buf.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+    
+    /**
+     * Decodes the tick record at the buffer's position into the cursor state.
+     */
+    private void readTick() {
+        int flags = buf.get();
+        if ((flags & RunRecorder.TICK_KEYFRAME) != 0) {
+            tick = buf.getInt();
+        } else {
+            tick++;
+        }
+        if ((flags & RunRecorder.TICK_SCORE) != 0) {
+            score = buf.getInt();
+        }
+        for (int i = 0; i < x.length; i++) {
+            int robotFlags = buf.get() & 0xff;
+            direction[i] = robotFlags >>> RunRecorder.ROBOT_DIRECTION_SHIFT;
+            goalReached[i] = (robotFlags & RunRecorder.ROBOT_GOAL) != 0;
+            if ((robotFlags & RunRecorder.ROBOT_POSITION) != 0) {
+                x[i] = buf.getFloat();
+                y[i] = buf.getFloat();
+            }
+            long bits = 0L;
+            for (int b = 0; b < sensorBytes[i]; b++) {
+                bits |= (buf.get() & 0xffL) << (8 * b);
+            }
+            sensors[i] = bits;
+        }
+        eventCount = 0;
+        if ((flags & RunRecorder.TICK_EVENTS) != 0) {
+            eventCount = (version == 1 ? buf.get() & 0xff : buf.getShort() & 0xffff);
+            if (eventCount * 3 > events.length) {
+                events = new int[eventCount * 3];
+            }
+            for (int e = 0; e < eventCount; e++) {
+                events[e * 3] = buf.get();
+                events[e * 3 + 1] = buf.getShort();
+                events[e * 3 + 2] = buf.getShort();
+            }
+        }
+    }
+    
+    /**
+     * Moves the cursor to the given tick record.
+     * 
+     * @param recordNum The record number, from 0 to {@link #getRecordCount()} - 1.
+     */
+    public void seek(int recordNum) {
+        if (recordNum < 0 || recordNum >= recordCount) {
+            throw new IndexOutOfBoundsException("Record "+recordNum+" of "+recordCount);
+        }
+        if (recordNum < record || recordNum - record > keyframeInterval) {
+            int k = Math.min(recordNum / keyframeInterval, keyframeRecords.length - 1);
+            while (keyframeRecords[k] > recordNum) k--;
+            position(keyframeOffsets[k]);
+            record = keyframeRecords[k] - 1;
+        }
+        while (record < recordNum) {
+            next();
+        }
+    }
+    
+    /**
+     * Moves the cursor to the next tick record.
+     * 
+     * @return false if the cursor was already on the last record (in which
+     * case it stays there).
+     */
+    public boolean next() {
+        if (record + 1 >= recordCount) return false;
+        if (record == -1) {
+            position(keyframeOffsets[0]);
+        }
+        readTick();
+        record++;
+        return true;
+    }
+    
+    /**
+     * Copies the state at the cursor onto the given level and robots: the
+     * score, and each robot's position, movement direction and goal flag.
+     * 
+     * @param robots The robots to update, in the same order as
+     * {@link #getRobotIds()}.
+     */
+    public void applyTo(LevelConfig level, List<Robot> robots) {
+        if (robots.size() != x.length) {
+            throw new IllegalArgumentException(
+                    "Recording has "+x.length+" robots, but got "+robots.size());
+        }
+        level.setScore(score);
+        for (int i = 0; i < x.length; i++) {
+            Robot r = robots.get(i);
+            r.setPosition(new Point2D.Float(x[i], y[i]));
+            r.setMovingDirection(direction[i]);
+            r.setGoalReached(goalReached[i]);
+        }
+    }
+    
+    public long getInitialStateHash() {
+        return initialStateHash;
+    }
+    
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+    
+    /** Returns the IDs of the recorded robots, in recording order. */
+    public List<String> getRobotIds() {
+        return robotIds;
+    }
+    
+    /** Returns the IDs of the switches in the recorded level. */
+    public List<String> getSwitchIds() {
+        return switchIds;
+    }
+    
+    /** Returns the number of tick records in this recording. */
+    public int getRecordCount() {
+        return recordCount;
+    }
+    
+    /** Returns the record number the cursor is on, or -1 before the first one. */
+    public int getRecord() {
+        return record;
+    }
+    
+    /** Returns the game loop's loop count for the record at the cursor. */
+    public int getTick() {
+        return tick;
+    }
+    
+    public int getScore() {
+        return score;
+    }
+    
+    public float getX(int robot) {
+        return x[robot];
+    }
+    
+    public float getY(int robot) {
+        return y[robot];
+    }
+    
+    /** Returns the robot's moving direction bits; see {@link Robot#getMovingDirection()}. */
+    public int getMovingDirection(int robot) {
+        return direction[robot];
+    }
+    
+    public boolean isGoalReached(int robot) {
+        return goalReached[robot];
+    }
+    
+    /** Returns the robot's sensor bits; see {@link Robot#getSensorBits()}. */
+    public long getSensorBits(int robot) {
+        return sensors[robot];
+    }
+    
+    /** Returns the number of switch events at the cursor's tick. */
+    public int getEventCount() {
+        return eventCount;
+    }
+    
+    /** Returns true if the given event is a switch being entered (false for exited). */
+    public boolean isEnterEvent(int event) {
+        return events[event * 3] == RunRecorder.EVENT_ENTER;
+    }
+    
+    /** Returns the index of the robot that caused the given event. */
+    public int getEventRobot(int event) {
+        return events[event * 3 + 1];
+    }
+    
+    /**
+     * Returns the index of the switch involved in the given event, within
+     * the list of switches of the level that the event's robot belongs to.
+     */
+    public int getEventSwitch(int event) {
+        return events[event * 3 + 2];
+    }
+}
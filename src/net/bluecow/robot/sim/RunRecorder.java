@@ -0,0 +1,390 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.bluecow.robot.GameLoop;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.event.GameLoopEvent;
+import net.bluecow.robot.event.GameLoopListener;
+
+/**
+ * Records a run of a game loop into a compact binary log that can be
+ * played back with {@link Replay} without evaluating any circuits or
+ * switch scripts.
+ * <p>
+ * The log starts with a header holding the {@link StateHash} of the level
+ * at the time the recorder was created, then has one record per tick with
+ * the robot positions, movement, goal flags and sensor bits, the score (when
+ * it changes), and the switch enter/exit events of that tick. Positions are
+ * only written when they change, except in keyframes: every
+ * <tt>keyframeInterval</tt> ticks the whole state is written out, so a
+ * replay can seek to any tick by decoding forward from the closest keyframe.
+ * The keyframe index is written at the end of the log by {@link #close()}.
+ * <p>
+ * The file layout (all numbers big-endian):
+ * <pre>
+ *  header:   int MAGIC, short VERSION, long initialStateHash, int keyframeInterval,
+ *            short robotCount, { utf8 robotId, byte sensorCount } * robotCount,
+ *            short switchCount, { utf8 switchId } * switchCount
+ *  tick:     byte flags, [int tick if keyframe], [int score if keyframe or changed],
+ *            { byte robotFlags, [float x, float y], byte[] sensorBits } * robotCount,
+ *            [short eventCount, { byte kind, short robot, short switch } * eventCount]
+ *  index:    int keyframeCount, { int record, long offset } * keyframeCount
+ *  trailer:  long indexOffset, int END_MAGIC
+ * </pre>
+ * where utf8 is a short byte count followed by UTF-8 bytes, and the switch
+ * number in an event counts switches in the level of the robot that caused
+ * the event. (Version 1 logs have a byte eventCount.)
+ * <p>
+ * A log can't be longer than {@link #MAX_LOG_SIZE} bytes, because
+ * {@link Replay} maps it into a single buffer, and a tick can't have more than
+ * {@link #MAX_EVENTS_PER_TICK} switch events. The recorder stops writing
+ * ticks once either limit is passed, and {@link #close()} throws an
+ * IOException instead of finishing a log that doesn't hold the whole run.
+ */
+public class RunRecorder implements GameLoopListener {
+
+    static final int MAGIC = 0x47524452; // "GRDR"
+    static final int END_MAGIC = 0x2f475244; // "/GRD"
+    static final short VERSION = 2;
+    
+    static final int TICK_KEYFRAME = 1 << 0;
+    static final int TICK_SCORE = 1 << 1;
+    static final int TICK_EVENTS = 1 << 2;
+    
+    static final int ROBOT_POSITION = 1 << 0;
+    static final int ROBOT_GOAL = 1 << 1;
+    static final int ROBOT_DIRECTION_SHIFT = 4;
+    
+    static final int EVENT_EXIT = 0;
+    static final int EVENT_ENTER = 1;
+    
+    /**
+     * The most switch events that can be recorded in one tick.
+     */
+    static final int MAX_EVENTS_PER_TICK = 0xffff;
+    
+    /**
+     * The largest log, in bytes, that {@link Replay} can open.
+     */
+    static final long MAX_LOG_SIZE = Integer.MAX_VALUE;
+    
+    /**
+     * An output stream that counts the bytes written through it. Unlike
+     * {@link DataOutputStream#size()}, the count doesn't stop at
+     * Integer.MAX_VALUE.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        
+        long count;
+        
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+    
+    private final GameLoop loop;
+    private final DataOutputStream out;
+    private final CountingOutputStream counter;
+    private final int keyframeInterval;
+    
+    /**
+     * The most bytes this recorder will write. This is {@link #MAX_LOG_SIZE}
+     * except in the tests.
+     */
+    private final long maxLogSize;
+    
+    /**
+     * The robots being recorded, in the order they appear in the log.
+     */
+    private final Robot[] robots;
+    
+    /**
+     * The number of sensor bytes written for each robot.
+     */
+    private final int[] sensorBytes;
+    
+    /**
+     * The last position written for each robot.
+     */
+    private final float[] lastX;
+    private final float[] lastY;
+    
+    private int lastScore;
+    
+    /**
+     * The switch events of the current tick, three ints (kind, robot,
+     * switch) per event.
+     */
+    private int[] events = new int[16 * 3];
+    private int eventCount;
+    
+    /**
+     * The record numbers and file offsets of the keyframes written so far.
+     */
+    private final List<long[]> keyframes = new ArrayList<long[]>();
+    
+    /**
+     * The number of tick records written so far.
+     */
+    private int recordCount;
+    
+    /**
+     * An exception that happened while writing a tick. The game loop
+     * listener methods can't throw it, so it gets thrown by {@link #close()}.
+     */
+    private IOException writeError;
+    
+    /**
+     * Creates a new recorder that writes the header right away, and starts
+     * listening to the given game loop.
+     * 
+     * @param loop The game loop to record. All of its robots (including
+     * ghosts) are recorded.
+     * @param out The stream to write the log to. It will be closed by
+     * {@link #close()}.
+     * @param keyframeInterval The number of ticks between keyframes.
+     */
+    public RunRecorder(GameLoop loop, OutputStream out, int keyframeInterval) throws IOException {
+        this(loop, out, keyframeInterval, MAX_LOG_SIZE);
+    }
+    
+    /**
+     * Creates a new recorder that fails once the log grows past the given
+     * number of bytes, rather than {@link #MAX_LOG_SIZE}.
+     */
+    RunRecorder(GameLoop loop, OutputStream out, int keyframeInterval, long maxLogSize) throws IOException {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval must be at least 1");
+        }
+        this.loop = loop;
+        this.counter = new CountingOutputStream(new BufferedOutputStream(out));
+        this.out = new DataOutputStream(counter);
+        this.keyframeInterval = keyframeInterval;
+        this.maxLogSize = maxLogSize;
+        
+        List<Robot> robotList = loop.getRobots();
+        robots = robotList.toArray(new Robot[robotList.size()]);
+        sensorBytes = new int[robots.length];
+        lastX = new float[robots.length];
+        lastY = new float[robots.length];
+        
+        LevelConfig level = loop.getLevelConfig();
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+        this.out.writeLong(StateHash.hashLevel(level, true));
+        this.out.writeInt(keyframeInterval);
+        this.out.writeShort(robots.length);
+        for (int i = 0; i < robots.length; i++) {
+            writeString(robots[i].getId());
+            int sensorCount = Math.min(64, robots[i].getCircuit().getOutputs().size());
+            this.out.writeByte(sensorCount);
+            sensorBytes[i] = (sensorCount + 7) / 8;
+        }
+        List<Switch> switches = level.getSwitches();
+        this.out.writeShort(switches.size());
+        for (Switch s : switches) {
+            writeString(s.getId());
+        }
+        
+        loop.addGameLoopListener(this);
+    }
+    
+    private void writeString(String s) throws IOException {
+        byte[] bytes = (s == null ? "" : s).getBytes("UTF-8");
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+    
+    public void switchExited(GameLoopEvent evt) {
+        addEvent(EVENT_EXIT, evt);
+    }
+
+    public void switchEntered(GameLoopEvent evt) {
+        addEvent(EVENT_ENTER, evt);
+    }
+    
+    private void addEvent(int kind, GameLoopEvent evt) {
+        if (writeError != null) return;
+        if (eventCount == MAX_EVENTS_PER_TICK) {
+            writeError = new IOException("More than "+MAX_EVENTS_PER_TICK+
+                    " switch events on tick "+evt.getTick()+"; can't record them all");
+            return;
+        }
+        Robot robot = evt.getRobot();
+        int robotIndex = indexOf(robot);
+        int switchIndex = robot.getLevel().getSwitches().indexOf(evt.getSwitch());
+        if (robotIndex < 0 || switchIndex < 0) return;
+        if (eventCount * 3 == events.length) {
+            int[] bigger = new int[events.length * 2];
+            System.arraycopy(events, 0, bigger, 0, events.length);
+            events = bigger;
+        }
+        events[eventCount * 3] = kind;
+        events[eventCount * 3 + 1] = robotIndex;
+        events[eventCount * 3 + 2] = switchIndex;
+        eventCount++;
+    }
+    
+    private int indexOf(Robot robot) {
+        for (int i = 0; i < robots.length; i++) {
+            if (robots[i] == robot) return i;
+        }
+        return -1;
+    }
+
+    public void tickCompleted(GameLoopEvent evt) {
+        if (writeError != null) return;
+        try {
+            writeTick(evt.getTick());
+        } catch (IOException ex) {
+            writeError = ex;
+        }
+        eventCount = 0;
+    }
+    
+    private void writeTick(int tick) throws IOException {
+        boolean keyframe = (recordCount % keyframeInterval == 0);
+        int score = loop.getLevelConfig().getScore();
+        
+        int flags = 0;
+        if (keyframe) {
+            flags |= TICK_KEYFRAME;
+            keyframes.add(new long[] { recordCount, counter.count });
+        }
+        if (keyframe || score != lastScore) flags |= TICK_SCORE;
+        if (eventCount > 0) flags |= TICK_EVENTS;
+        
+        out.writeByte(flags);
+        if (keyframe) out.writeInt(tick);
+        if ((flags & TICK_SCORE) != 0) out.writeInt(score);
+        lastScore = score;
+        
+        for (int i = 0; i < robots.length; i++) {
+            Robot r = robots[i];
+            float x = (float) r.getX();
+            float y = (float) r.getY();
+            boolean moved = keyframe || x != lastX[i] || y != lastY[i];
+            int robotFlags = r.getMovingDirection() << ROBOT_DIRECTION_SHIFT;
+            if (moved) robotFlags |= ROBOT_POSITION;
+            if (r.isGoalReached()) robotFlags |= ROBOT_GOAL;
+            out.writeByte(robotFlags);
+            if (moved) {
+                out.writeFloat(x);
+                out.writeFloat(y);
+                lastX[i] = x;
+                lastY[i] = y;
+            }
+            long sensors = r.getSensorBits();
+            for (int b = 0; b < sensorBytes[i]; b++) {
+                out.writeByte((int) (sensors >>> (8 * b)));
+            }
+        }
+        
+        if (eventCount > 0) {
+            out.writeShort(eventCount);
+            for (int e = 0; e < eventCount; e++) {
+                out.writeByte(events[e * 3]);
+                out.writeShort(events[e * 3 + 1]);
+                out.writeShort(events[e * 3 + 2]);
+            }
+        }
+        recordCount++;
+        checkSize();
+    }
+    
+    /**
+     * Throws an IOException if the log has grown past the size
+     * {@link Replay} can open.
+     */
+    private void checkSize() throws IOException {
+        if (counter.count > maxLogSize) {
+            throw new IOException("Recording is larger than "+maxLogSize+
+                    " bytes, which is the most a replay can open");
+        }
+    }
+    
+    /**
+     * Returns the number of ticks recorded so far.
+     */
+    public int getTickCount() {
+        return recordCount;
+    }
+    
+    /**
+     * Stops recording, writes the keyframe index, and closes the output
+     * stream.
+     * 
+     * @throws IOException if writing the log failed at any point
+     */
+    public void close() throws IOException {
+        loop.removeGameLoopListener(this);
+        try {
+            if (writeError != null) throw writeError;
+            long indexOffset = counter.count;
+            out.writeInt(keyframes.size());
+            for (long[] kf : keyframes) {
+                out.writeInt((int) kf[0]);
+                out.writeLong(kf[1]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(END_MAGIC);
+            checkSize();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+/**
+ * The outcome of running one level with the {@link HeadlessEngine}.
+ */
+public class RunResult {
+
+    private final String levelName;
+    private final String circuitName;
+    private final boolean goalReached;
+    private final int ticks;
+    private final int score;
+    private final String error;
+    private final int cycleLength;
+    
+    public RunResult(String levelName, boolean goalReached, int ticks, int score) {
+        this(levelName, null, goalReached, ticks, score, null, 0);
+    }
+    
+    /**
+     * Creates a result for a run of the given level with the given circuit file.
+     * 
+     * @param error A description of the problem that prevented the run from
+     * completing, or null if there was no problem.
+     */
+    public RunResult(String levelName, String circuitName, boolean goalReached,
+            int ticks, int score, String error) {
+        this(levelName, circuitName, goalReached, ticks, score, error, 0);
+    }
+    
+    /**
+     * Creates a result for a run of the given level with the given circuit file.
+     * 
+     * @param error A description of the problem that prevented the run from
+     * completing, or null if there was no problem.
+     * @param cycleLength The length of the cycle of states the run was found
+     * to be stuck in, or 0 if it wasn't found to be stuck.
+     */
+    public RunResult(String levelName, String circuitName, boolean goalReached,
+            int ticks, int score, String error, int cycleLength) {
+        this.levelName = levelName;
+        this.circuitName = circuitName;
+        this.goalReached = goalReached;
+        this.ticks = ticks;
+        this.score = score;
+        this.error = error;
+        this.cycleLength = cycleLength;
+    }
+    
+    /**
+     * Returns a copy of this result which names the circuit that was run.
+     */
+    public RunResult withCircuitName(String circuitName) {
+        return new RunResult(levelName, circuitName, goalReached, ticks, score, error, cycleLength);
+    }
+
+    /**
+     * Returns the name of the level that was run.
+     */
+    public String getLevelName() {
+        return levelName;
+    }
+    
+    /**
+     * Returns the name of the circuit that was run, or null if it's not known.
+     */
+    public String getCircuitName() {
+        return circuitName;
+    }
+    
+    /**
+     * Returns a description of the problem that stopped this run, or null
+     * if the run completed normally.
+     */
+    public String getError() {
+        return error;
+    }
+    
+    /**
+     * Returns true if all the robots reached their goals before the
+     * run was cut off.
+     */
+    public boolean isGoalReached() {
+        return goalReached;
+    }
+    
+    /**
+     * Returns the number of game loop ticks that were run. If the goal was
+     * reached, this is the number of ticks it took to reach it.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+    
+    /**
+     * Returns the level's effective score at the end of the run.
+     */
+    public int getScore() {
+        return score;
+    }
+    
+    /**
+     * Returns true if the run was stopped because it was found to cycle
+     * through the same states forever.
+     */
+    public boolean isCyclesForever() {
+        return cycleLength != 0;
+    }
+    
+    /**
+     * Returns the length, in ticks, of the cycle the run was stuck in, or 0
+     * if it wasn't found to be stuck.
+     */
+    public int getCycleLength() {
+        return cycleLength;
+    }
+    
+    @Override
+    public String toString() {
+        return "RunResult[level="+levelName+", circuit="+circuitName+
+            ", goalReached="+goalReached+", ticks="+ticks+", score="+score+
+            (cycleLength == 0 ? "" : ", cyclesForever (length "+cycleLength+")")+
+            (error == null ? "" : ", error="+error)+"]";
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Created on Oct 18, 2026
+ *
+ * Copyright (c) 2007, Jonathan Fuerth
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in
+ *       the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the name of Jonathan Fuerth nor the names of other
+ *       contributors may be used to endorse or promote products derived
+ *       from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.bluecow.robot.sim;
+
+import net.bluecow.robot.Circuit;
+import net.bluecow.robot.LevelConfig;
+import net.bluecow.robot.Robot;
+import net.bluecow.robot.Square;
+import net.bluecow.robot.LevelConfig.Switch;
+import net.bluecow.robot.gate.AbstractGate;
+import net.bluecow.robot.gate.Gate;
+
+/**
+ * A 64-bit FNV-1a hash of the simulation state of a level. The state
+ * includes the score, every switch's position and enabled flag, and
+ * every robot's position, movement, goal flag and gate states (both the
+ * current and the latched next output of each gate). The map can be
+ * included too, for when scripts might be changing it.
+ * <p>
+ * Variables that switch scripts keep in the level's BeanShell interpreter
+ * are not part of the hash.
+ * <p>
+ * One StateHash object can be reused for any number of hashes by calling
+ * {@link #reset()} in between.
+ */
+public class StateHash {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    /**
+     * The hash value so far.
+     */
+    private long hash = FNV_OFFSET_BASIS;
+    
+    /**
+     * Returns the state hash of the given level.
+     * 
+     * @param includeMap Whether or not to hash the map squares as well.
+     */
+    public static long hashLevel(LevelConfig level, boolean includeMap) {
+        return new StateHash().addLevel(level, includeMap).get();
+    }
+    
+    /**
+     * Starts a new hash.
+     */
+    public StateHash reset() {
+        hash = FNV_OFFSET_BASIS;
+        return this;
+    }
+    
+    /**
+     * Returns the hash of everything added since the last reset.
+     */
+    public long get() {
+        return hash;
+    }
+    
+    public StateHash add(int v) {
+        long h = hash;
+        h = (h ^ (v & 0xff)) * FNV_PRIME;
+        h = (h ^ ((v >>> 8) & 0xff)) * FNV_PRIME;
+        h = (h ^ ((v >>> 16) & 0xff)) * FNV_PRIME;
+        h = (h ^ (v >>> 24)) * FNV_PRIME;
+        hash = h;
+        return this;
+    }
+    
+    public StateHash add(long v) {
+        add((int) v);
+        return add((int) (v >>> 32));
+    }
+    
+    public StateHash add(float v) {
+        return add(Float.floatToIntBits(v));
+    }
+    
+    public StateHash add(boolean v) {
+        hash = (hash ^ (v ? 1 : 0)) * FNV_PRIME;
+        return this;
+    }
+    
+    /**
+     * Adds the state of the given level, its switches and its robots.
+     * 
+     * @param includeMap Whether or not to add the map squares as well.
+     */
+    public StateHash addLevel(LevelConfig level, boolean includeMap) {
+        add(level.getScore());
+        if (includeMap) {
+            add(level.getWidth());
+            for (int x = 0; x < level.getWidth(); x++) {
+                add(level.getHeight());
+                for (int y = 0; y < level.getHeight(); y++) {
+                    Square square = level.getSquare(x, y);
+                    add(square == null ? 0 : square.getMapChar());
+                }
+            }
+        }
+        for (Switch s : level.getSwitches()) {
+            add(s.getX()).add(s.getY()).add(s.isEnabled());
+        }
+        for (Robot r : level.getRobots()) {
+            addRobot(r);
+        }
+        return this;
+    }
+    
+    /**
+     * Adds the state of the given robot and its circuit.
+     */
+    public StateHash addRobot(Robot r) {
+        add((float) r.getX());
+        add((float) r.getY());
+        add(r.getMovingDirection());
+        add(r.isGoalReached());
+        return addCircuit(r.getCircuit());
+    }
+    
+    /**
+     * Adds the output states of all the gates in the given circuit.
+     */
+    public StateHash addCircuit(Circuit c) {
+        for (Gate g : c.getGates()) {
+            add(g.getOutputState());
+            if (g instanceof AbstractGate) {
+                add(((AbstractGate) g).getNextOutputState());
+            }
+        }
+        return this;
+    }
+}
@@ -51,6 +51,10 @@ public class ClipEntry extends AbstractSoundManagerEntry {
         if (debugOn) System.out.println(msg);
     }
 
+    /**
+     * The clip this entry plays. Null if there's no audio device, in which
+     * case this entry stays silent.
+     */
     private final Clip clip;
 
     public ClipEntry(String name, String path, Clip clip) {
@@ -59,10 +63,12 @@ public class ClipEntry extends AbstractSoundManagerEntry {
     }
 
     public void close() {
+        if (clip == null) return;
         clip.close();
     }
 
     public void startPlaying(boolean loop) throws LineUnavailableException {
+        if (clip == null) return;
         clip.setFramePosition(0);
         if (loop) {
             clip.loop(Clip.LOOP_CONTINUOUSLY);
@@ -77,6 +83,7 @@ public class ClipEntry extends AbstractSoundManagerEntry {
                     "Warning: clips do not support special endings " +
                     "(ending \""+ending+"\" was requested)");
         }
+        if (clip == null) return;
         clip.stop();
     }
 
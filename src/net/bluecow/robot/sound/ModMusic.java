@@ -241,7 +241,13 @@ public class ModMusic extends AbstractSoundManagerEntry {
         song_duration = ibxm.calculate_song_duration();
 
         AudioFormat output_format = new AudioFormat( 48000, 16, 2, true, false );
-        output_line = AudioSystem.getSourceDataLine( output_format );
+        try {
+            output_line = AudioSystem.getSourceDataLine( output_format );
+        } catch (IllegalArgumentException e) {
+            // no audio device (for example, on a headless server). Stay silent.
+            System.out.println("Can't play music \""+name+"\": "+e.getMessage());
+            return;
+        }
         output_line.open();
         output_line.start();
 
@@ -352,6 +358,7 @@ public class ModMusic extends AbstractSoundManagerEntry {
     }
     
     public void startPlaying(boolean loop) throws LineUnavailableException {
+        if (playerThread == null) return;
         playerThread.startPlaying(loop);
     }
 
@@ -410,6 +417,7 @@ public class ModMusic extends AbstractSoundManagerEntry {
      */
     public void stopPlaying(String ending) {
         debugf("Stopping with ending %s", ending);
+        if (playerThread == null) return;
         SongPosition songPosition = endings.get(ending);
         if (ending != null && songPosition != null) {
             debugf("Resetting playback position: seq=%d offset=%d duration=%d",
@@ -462,6 +470,7 @@ public class ModMusic extends AbstractSoundManagerEntry {
     }
 
     public void close() {
+        if (playerThread == null) return;
         output_line.close();
         playerThread.terminate();
     }
@@ -124,12 +124,20 @@ public class SoundManager {
             if (type == EntryType.CLIP) {
                 Line.Info linfo = new Line.Info(Clip.class);
                 Line line;
-                line = AudioSystem.getLine(linfo);
+                try {
+                    line = AudioSystem.getLine(linfo);
+                } catch (IllegalArgumentException e) {
+                    // no audio device (for example, on a headless server)
+                    System.out.println("Can't play sound \""+name+"\": "+e.getMessage());
+                    line = null;
+                }
                 Clip clip = (Clip) line;
                 //clip.addLineListener(this);
-                BufferedInputStream bis = new BufferedInputStream(resourceLoader.getResourceAsStream(path));
-                AudioInputStream ais = AudioSystem.getAudioInputStream(bis);
-                clip.open(ais);
+                if (clip != null) {
+                    BufferedInputStream bis = new BufferedInputStream(resourceLoader.getResourceAsStream(path));
+                    AudioInputStream ais = AudioSystem.getAudioInputStream(bis);
+                    clip.open(ais);
+                }
                 retval = new ClipEntry(name, path, clip);
             } else if (type == EntryType.MOD) {
                 retval = new ModMusic(resourceLoader, name, path);